@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.service.BulkImportService;
+import ru.yandex.practicum.filmorate.service.UserChangeWatermarks;
+import ru.yandex.practicum.filmorate.storage.maintenance.H2StoreMaintenance;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.routing.ReadWriteRoutingDataSource;
+import ru.yandex.practicum.filmorate.storage.snapshot.DatasetSnapshots;
+
+import java.io.InputStream;
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminController {
+    private final ReferenceDataRegistry referenceData;
+    private final ObjectProvider<ReadWriteRoutingDataSource> routingDataSource;
+    private final ObjectProvider<H2StoreMaintenance> storeMaintenance;
+    private final BulkImportService bulkImportService;
+    private final ObjectProvider<DatasetSnapshots> datasetSnapshots;
+    private final UserChangeWatermarks watermarks;
+
+    /**
+     * Перечитать справочники (жанры, рейтинги MPA, типы событий, операции) после их изменения в базе.
+     */
+    @PostMapping("/reference-data/refresh")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void refreshReferenceData() {
+        log.info("Попытка перечитать справочники");
+        referenceData.refresh();
+        watermarks.referenceDataChanged();
+    }
+
+    /**
+     * Состояние пулов соединений основной базы и реплики; пустой список, если реплика не настроена.
+     */
+    @GetMapping("/datasources")
+    public List<ReadWriteRoutingDataSource.RouteStats> getDataSourceStats() {
+        ReadWriteRoutingDataSource routing = routingDataSource.getIfAvailable();
+        return routing == null ? List.of() : routing.stats();
+    }
+
+    /**
+     * Статистика файла базы H2 и кэша MVStore, счётчики уплотнений и резервных копий.
+     */
+    @GetMapping("/h2/stats")
+    public H2StoreMaintenance.StoreStats getStoreStats() {
+        return maintenance().stats();
+    }
+
+    /**
+     * Уплотнить файл базы сейчас, не дожидаясь расписания.
+     */
+    @PostMapping("/h2/compact")
+    public H2StoreMaintenance.CompactionResult compactStore() {
+        log.info("Попытка уплотнить файл базы");
+        return maintenance().compact();
+    }
+
+    /**
+     * Снять горячую резервную копию базы.
+     */
+    @PostMapping("/h2/backups")
+    @ResponseStatus(HttpStatus.CREATED)
+    public H2StoreMaintenance.BackupFile createBackup() {
+        log.info("Попытка снять резервную копию базы");
+        return maintenance().backup();
+    }
+
+    @GetMapping("/h2/backups")
+    public List<H2StoreMaintenance.BackupFile> getBackups() {
+        return maintenance().listBackups();
+    }
+
+    /**
+     * Массовая загрузка из тела запроса: films, users, likes или friendships в формате ndjson или csv.
+     * Ошибочные строки отклоняются и перечисляются в отчёте, остальные записываются.
+     */
+    @PostMapping("/import/{kind}")
+    public BulkImportService.ImportReport importRecords(@PathVariable String kind,
+                                                        @RequestParam(defaultValue = "ndjson") String format,
+                                                        InputStream body) {
+        log.info("Попытка массовой загрузки {} в формате {}", kind, format);
+        return bulkImportService.importRecords(BulkImportService.ImportKind.of(kind),
+                BulkImportService.ImportFormat.of(format), body);
+    }
+
+    /**
+     * Снять снимок всех таблиц, из которого база восстановится при следующем старте.
+     */
+    @PostMapping("/snapshots")
+    @ResponseStatus(HttpStatus.CREATED)
+    public DatasetSnapshots.SnapshotFile createSnapshot() {
+        log.info("Попытка снять снимок базы");
+        DatasetSnapshots snapshots = datasetSnapshots.getIfAvailable();
+        if (snapshots == null) {
+            throw new NotFoundException("Снимки базы выключены");
+        }
+        return snapshots.snapshot();
+    }
+
+    private H2StoreMaintenance maintenance() {
+        H2StoreMaintenance maintenance = storeMaintenance.getIfAvailable();
+        if (maintenance == null) {
+            throw new NotFoundException("Обслуживание базы H2 выключено");
+        }
+        return maintenance;
+    }
+}
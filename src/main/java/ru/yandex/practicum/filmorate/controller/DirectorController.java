@@ -5,8 +5,10 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.UserChangeWatermarks;
 
 import java.util.Collection;
 
@@ -16,15 +18,21 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class DirectorController {
     private final DirectorService directorService;
+    private final UserChangeWatermarks watermarks;
 
     /**
      * Получить список всех режиссёров.
      *
+     * @param request запрос, по заголовку If-None-Match которого может быть возвращён ответ 304
      * @return коллекция всех режиссёров
      */
     @GetMapping
-    public Collection<Director> findAllDirectors() {
-        log.info("Получен список всех режиссёров.");
+    public Collection<Director> findAllDirectors(WebRequest request) {
+        log.debug("Получен список всех режиссёров.");
+        UserChangeWatermarks.Validator validator = watermarks.directors();
+        if (request.checkNotModified(validator.etag(), validator.lastModified())) {
+            return null;
+        }
         return directorService.findAllDirectors();
     }
 
@@ -38,7 +46,7 @@ public class DirectorController {
      */
     @GetMapping("/{id}")
     public Director findDirectorById(@PathVariable Long id) {
-        log.info("Получен запрос на получение режиссёра с ID: {}", id);
+        log.debug("Получен запрос на получение режиссёра с ID: {}", id);
         return directorService.findDirectorById(id);
     }
 
@@ -50,7 +58,7 @@ public class DirectorController {
      */
     @PostMapping
     public Director createDirector(@Valid @RequestBody Director director) {
-        log.info("Получен запрос на создание режиссёра: {}", director.getName());
+        log.debug("Получен запрос на создание режиссёра: {}", director.getName());
         return directorService.createDirector(director);
     }
 
@@ -62,7 +70,7 @@ public class DirectorController {
      */
     @PutMapping
     public Director updateDirector(@Valid @RequestBody Director newDirector) {
-        log.info("Получен запрос на обновление режиссёра с ID: {}", newDirector.getId());
+        log.debug("Получен запрос на обновление режиссёра с ID: {}", newDirector.getId());
         return directorService.updateDirector(newDirector);
     }
 
@@ -73,7 +81,7 @@ public class DirectorController {
      */
     @DeleteMapping("/{id}")
     public void deleteDirector(@PathVariable Long id) {
-        log.info("Получен запрос на удаление режиссёра с ID: {}", id);
+        log.debug("Получен запрос на удаление режиссёра с ID: {}", id);
         directorService.deleteDirector(id);
     }
 }
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.exception.VersionConflictException;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Версия строки в заголовках ETag и If-Match: сильный тег вида "3" из ответа на изменение
+ * или слабый тег чтения, который заканчивается версией строки, вида W/"film-...-v3".
+ */
+final class EntityVersionTags {
+    private static final Pattern STRONG_TAG = Pattern.compile("\"(\\d{1,18})\"");
+    private static final Pattern READ_TAG = Pattern.compile("W/\"[\\w-]+-v(\\d{1,18})\"");
+
+    private EntityVersionTags() {
+    }
+
+    static String etag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * @return окончание слабого тега чтения с версией строки или пустая строка, если версия неизвестна
+     */
+    static String readVariant(Long version) {
+        return version == null ? "" : "v" + version;
+    }
+
+    /**
+     * @return версия строки из слабого тега чтения или null, если тег не такой
+     */
+    static Long readVersion(String tag) {
+        if (tag == null) {
+            return null;
+        }
+        Matcher matcher = READ_TAG.matcher(tag.trim());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : null;
+    }
+
+    /**
+     * @return ожидаемая версия или null, если заголовка нет или он равен "*"
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            // тег чтения слабый только ради сжатия ответа; сверяется версия строки в его окончании
+            Long version = readVersion(tag);
+            if (version == null) {
+                throw new VersionConflictException("Слабый тег " + tag + " не подходит для If-Match");
+            }
+            return version;
+        }
+        Matcher matcher = STRONG_TAG.matcher(tag);
+        if (!matcher.matches()) {
+            throw new ValidationException("Некорректный заголовок If-Match: " + tag);
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+}
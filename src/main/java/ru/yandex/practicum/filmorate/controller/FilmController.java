@@ -3,9 +3,13 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserChangeWatermarks;
 
 import java.util.Collection;
 
@@ -15,6 +19,7 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final UserChangeWatermarks watermarks;
 
     /**
      * Получить список всех фильмов.
@@ -23,7 +28,7 @@ public class FilmController {
      */
     @GetMapping
     public Collection<Film> findAllFilms() {
-        log.info("Получение всех фильмов");
+        log.debug("Получение всех фильмов");
         return filmService.findAllFilms();
     }
 
@@ -32,30 +37,61 @@ public class FilmController {
      *
      * @param count   количество фильмов для возврата (по умолчанию 10)
      * @param genreId идентификатор жанра (опционально)
-     * @param year    год выпуска фильма (опционально)
+     * @param year     год выпуска фильма (опционально)
+     * @param yearFrom начало диапазона лет выпуска включительно (опционально, не вместе с year)
+     * @param yearTo   конец диапазона лет выпуска включительно (опционально, не вместе с year)
+     * @param request  запрос, по заголовку If-None-Match которого может быть возвращён ответ 304
      * @return коллекция популярных фильмов
      */
     @GetMapping("/popular")
     public Collection<Film> getPopulateFilms(
             @RequestParam(defaultValue = "10") int count,
             @RequestParam(required = false) Long genreId,
-            @RequestParam(required = false) Integer year
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Integer yearFrom,
+            @RequestParam(required = false) Integer yearTo,
+            WebRequest request
     ) {
-        log.info("Получен запрос на получение популярных фильмов: count={}, genreId={}, year={}", count, genreId, year);
-        return filmService.getPopularFilms(count, genreId, year);
+        log.debug("Получен запрос на получение популярных фильмов: count={}, genreId={}, year={}, yearFrom={}, yearTo={}",
+                count, genreId, year, yearFrom, yearTo);
+        // параметры входят в URL, поэтому клиентский кэш не перепутает выборки с одинаковым ETag
+        UserChangeWatermarks.Validator validator = watermarks.popular();
+        if (request.checkNotModified(validator.etag(), validator.lastModified())) {
+            return null;
+        }
+        return filmService.getPopularFilms(count, genreId, year, yearFrom, yearTo);
     }
 
     /**
      * Получить фильм по ID.
      *
-     * @param id идентификатор фильма
+     * ETag фильма — отметки изменений и версия строки в конце, поэтому его можно передать в If-Match
+     * при обновлении. Пока отметки не сдвинулись, версия из тега клиента актуальна, и ответ 304
+     * отдаётся без чтения фильма.
+     *
+     * @param id      идентификатор фильма
+     * @param request запрос, по заголовку If-None-Match которого может быть возвращён ответ 304
      * @return фильм с указанным ID
      * NotFoundException если фильм не найден
      */
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable Long id) {
-        log.info("Получен запрос на получение фильма с ID: {}", id);
-        return filmService.getFilmById(id);
+    public Film getFilmById(@PathVariable Long id, WebRequest request) {
+        log.debug("Получен запрос на получение фильма с ID: {}", id);
+        UserChangeWatermarks.Validator validator = watermarks.film(id);
+        String cachedTag = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        Long cachedVersion = EntityVersionTags.readVersion(cachedTag);
+        if (cachedVersion != null) {
+            String etag = validator.etag(EntityVersionTags.readVariant(cachedVersion));
+            if (etag.equals(cachedTag.trim()) && request.checkNotModified(etag, validator.lastModified())) {
+                return null;
+            }
+        }
+        Film film = filmService.getFilmById(id);
+        if (request.checkNotModified(validator.etag(EntityVersionTags.readVariant(film.getVersion())),
+                validator.lastModified())) {
+            return null;
+        }
+        return film;
     }
 
     /**
@@ -66,20 +102,30 @@ public class FilmController {
      */
     @PostMapping
     public Film createFilm(@Valid @RequestBody Film film) {
-        log.info("Получен запрос на создание фильма: {}", film.getName());
+        log.debug("Получен запрос на создание фильма: {}", film.getName());
         return filmService.createFilm(film);
     }
 
     /**
      * Обновить существующий фильм.
+     * Заголовок If-Match с тегом версии из ETag применяет обновление только при совпадении версии,
+     * иначе ответ 412; без заголовка учитывается поле version из тела, если оно передано.
+     * Подходит и ETag ответа на обновление, и ETag из GET /films/{id}.
      *
      * @param newFilm объект фильма с обновлёнными данными
-     * @return обновлённый фильм
+     * @param ifMatch ожидаемая версия в виде "3", W/"film-...-v3" или null
+     * @return обновлённый фильм и его версия в заголовке ETag
      */
     @PutMapping
-    public Film updateFilm(@Valid @RequestBody Film newFilm) {
-        log.info("Получен запрос на обновление фильма с ID: {}", newFilm.getId());
-        return filmService.updateFilm(newFilm);
+    public ResponseEntity<Film> updateFilm(@Valid @RequestBody Film newFilm,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.debug("Получен запрос на обновление фильма с ID: {}", newFilm.getId());
+        Long expectedVersion = EntityVersionTags.expectedVersion(ifMatch);
+        if (expectedVersion != null) {
+            newFilm.setVersion(expectedVersion);
+        }
+        Film updated = filmService.updateFilm(newFilm);
+        return ResponseEntity.ok().eTag(EntityVersionTags.etag(updated.getVersion())).body(updated);
     }
 
     /**
@@ -91,7 +137,7 @@ public class FilmController {
     @PutMapping("/{filmId}/like/{userId}")
     public void addLike(@PathVariable Long filmId,
                         @PathVariable Long userId) {
-        log.info("Получен запрос на добавление лайка фильму с ID {} от пользователя с ID {}", filmId, userId);
+        log.debug("Получен запрос на добавление лайка фильму с ID {} от пользователя с ID {}", filmId, userId);
         filmService.addLike(filmId, userId);
     }
 
@@ -104,7 +150,7 @@ public class FilmController {
     @DeleteMapping("/{filmId}/like/{userId}")
     public void removeLike(@PathVariable Long filmId,
                            @PathVariable Long userId) {
-        log.info("Получен запрос на удаление лайка фильма с ID {} от пользователя с ID {}", filmId, userId);
+        log.debug("Получен запрос на удаление лайка фильма с ID {} от пользователя с ID {}", filmId, userId);
         filmService.removeLike(filmId, userId);
     }
 
@@ -118,7 +164,7 @@ public class FilmController {
     @GetMapping("/director/{directorId}")
     public Collection<Film> getFilmsByDirector(@PathVariable Long directorId,
                                                @RequestParam String sortBy) {
-        log.info("Получен запрос на получение фильмов режиссёра с ID {}, отсортированных по {}", directorId, sortBy);
+        log.debug("Получен запрос на получение фильмов режиссёра с ID {}, отсортированных по {}", directorId, sortBy);
         return filmService.getFilmsByDirector(directorId, sortBy);
     }
 
@@ -132,7 +178,7 @@ public class FilmController {
     @GetMapping("/search")
     public Collection<Film> searchFilm(@RequestParam String query,
                                        @RequestParam(defaultValue = "title") String by) {
-        log.info("Получен запрос на поиск фильмов: query={}, by={}", query, by);
+        log.debug("Получен запрос на поиск фильмов: query={}, by={}", query, by);
         return filmService.searchFilms(query, by);
     }
 
@@ -146,7 +192,7 @@ public class FilmController {
     @GetMapping("/common")
     public Collection<Film> getCommonFilms(@RequestParam("userId") Long userId,
                                            @RequestParam("friendId") Long friendId) {
-        log.info("Получен запрос на получение общих фильмов пользователей с ID {} и {}", userId, friendId);
+        log.debug("Получен запрос на получение общих фильмов пользователей с ID {} и {}", userId, friendId);
         return filmService.getCommonFilms(userId, friendId);
     }
 
@@ -157,7 +203,7 @@ public class FilmController {
      */
     @DeleteMapping("/{filmId}")
     public void removeFilm(@PathVariable Long filmId) {
-        log.info("Получен запрос на удаление фильма с ID: {}", filmId);
+        log.debug("Получен запрос на удаление фильма с ID: {}", filmId);
                 filmService.removeFilm(filmId);
     }
 }
@@ -2,14 +2,16 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
-
-import java.util.Collection;
+import ru.yandex.practicum.filmorate.service.UserChangeWatermarks;
 
 @RestController
 @RequestMapping("/genres")
@@ -17,16 +19,24 @@ import java.util.Collection;
 @Slf4j
 public class GenreController {
     private final GenreService genreService;
+    private final UserChangeWatermarks watermarks;
 
     /**
      * Получить список всех жанров.
      *
-     * @return коллекция всех жанров
+     * @param request запрос, по заголовку If-None-Match которого может быть возвращён ответ 304
+     * @return JSON-массив всех жанров, сериализованный один раз при загрузке справочника
      */
     @GetMapping
-    public Collection<Genre> getAllGenres() {
-        log.info("Попытка получения всех жанров");
-        return genreService.findAllGenres();
+    public ResponseEntity<byte[]> getAllGenres(WebRequest request) {
+        log.debug("Попытка получения всех жанров");
+        UserChangeWatermarks.Validator validator = watermarks.genres();
+        if (request.checkNotModified(validator.etag(), validator.lastModified())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(genreService.findAllGenresJson());
     }
 
     /**
@@ -38,7 +48,7 @@ public class GenreController {
      */
     @GetMapping("/{id}")
     public Genre getGenreById(@PathVariable Long id) {
-        log.info("Попытка получения жанра по ID: {}", id);
+        log.debug("Попытка получения жанра по ID: {}", id);
         return genreService.findGenreById(id);
     }
 }
@@ -2,14 +2,16 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.service.MpaRatingService;
-
-import java.util.Collection;
+import ru.yandex.practicum.filmorate.service.UserChangeWatermarks;
 
 @RestController
 @RequestMapping("/mpa")
@@ -17,16 +19,24 @@ import java.util.Collection;
 @Slf4j
 public class MpaController {
     private final MpaRatingService mpaRatingService;
+    private final UserChangeWatermarks watermarks;
 
     /**
      * Получить список всех рейтингов MPA.
      *
-     * @return коллекция всех рейтингов MPA
+     * @param request запрос, по заголовку If-None-Match которого может быть возвращён ответ 304
+     * @return JSON-массив всех рейтингов MPA, сериализованный один раз при загрузке справочника
      */
     @GetMapping
-    public Collection<MpaRating> getAllMpaRatings() {
-        log.info("Попытка получения всех рейтингов MPA");
-        return mpaRatingService.findAllMpa();
+    public ResponseEntity<byte[]> getAllMpaRatings(WebRequest request) {
+        log.debug("Попытка получения всех рейтингов MPA");
+        UserChangeWatermarks.Validator validator = watermarks.mpa();
+        if (request.checkNotModified(validator.etag(), validator.lastModified())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(mpaRatingService.findAllMpaJson());
     }
 
     /**
@@ -38,7 +48,7 @@ public class MpaController {
      */
     @GetMapping("/{id}")
     public MpaRating getMpaById(@PathVariable Long id) {
-        log.info("Попытка получения рейтинга MPA по ID: {}", id);
+        log.debug("Попытка получения рейтинга MPA по ID: {}", id);
         return mpaRatingService.findMpaById(id);
     }
 }
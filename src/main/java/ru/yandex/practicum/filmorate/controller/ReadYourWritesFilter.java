@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.storage.routing.ReadYourWrites;
+import ru.yandex.practicum.filmorate.storage.routing.ReplicaLagMonitor;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Читать свои записи при работе с репликой. Изменяющий запрос целиком выполняется на основной базе
+ * и ставит клиенту cookie со сроком в допустимое отставание реплики; пока cookie не истекла,
+ * чтения этого клиента тоже идут в основную базу, а остальных — в реплику.
+ */
+@Component
+@ConditionalOnProperty(prefix = "filmorate.datasource.replica", name = "url")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    static final String COOKIE = "filmorate-primary-until";
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReadYourWritesFilter(ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        if (!SAFE_METHODS.contains(request.getMethod())) {
+            ReadYourWrites.pin();
+            long stickMillis = lagMonitor.maxLag().toMillis();
+            Cookie cookie = new Cookie(COOKIE, Long.toString(now + stickMillis));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (stickMillis + 999) / 1000));
+            response.addCookie(cookie);
+        } else if (pinnedUntil(request) > now) {
+            ReadYourWrites.pin();
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.clear();
+        }
+    }
+
+    private long pinnedUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
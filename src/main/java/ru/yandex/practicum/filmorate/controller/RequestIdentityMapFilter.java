@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.storage.base.RequestIdentityMap;
+
+import java.io.IOException;
+
+/**
+ * Открывает карту идентичности репозиториев на время запроса и отбрасывает её по окончании.
+ * Число чтений по ID, обошедшихся без запроса к базе, пишется в лог.
+ */
+@Slf4j
+@Component
+public class RequestIdentityMapFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try (RequestIdentityMap.Scope scope = RequestIdentityMap.open()) {
+            chain.doFilter(request, response);
+            if (scope.savedQueries() > 0) {
+                log.debug("{} {}: карта идентичности сэкономила {} запросов к базе",
+                        request.getMethod(), request.getRequestURI(), scope.savedQueries());
+            }
+        }
+    }
+}
@@ -3,11 +3,15 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewVote;
 import ru.yandex.practicum.filmorate.service.ReviewService;
 
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RestController
@@ -24,20 +28,29 @@ public class ReviewController {
      */
     @PostMapping
     public Review createReview(@Valid @RequestBody Review review) {
-        log.info("Получен запрос на создание отзыва: {}", review);
+        log.debug("Получен запрос на создание отзыва: {}", review);
         return reviewService.createReview(review);
     }
 
     /**
      * Обновить существующий отзыв.
+     * Заголовок If-Match с тегом версии из ETag применяет обновление только при совпадении версии,
+     * иначе ответ 412; без заголовка учитывается поле version из тела, если оно передано.
      *
      * @param review объект отзыва с обновлёнными данными
-     * @return обновлённый отзыв
+     * @param ifMatch ожидаемая версия в виде "3" или null
+     * @return обновлённый отзыв и его версия в заголовке ETag
      */
     @PutMapping
-    public Review updateReview(@Valid @RequestBody Review review) {
-        log.info("Получен запрос на обновление отзыва с ID: {}", review.getReviewId());
-        return reviewService.updateReview(review);
+    public ResponseEntity<Review> updateReview(@Valid @RequestBody Review review,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.debug("Получен запрос на обновление отзыва с ID: {}", review.getReviewId());
+        Long expectedVersion = EntityVersionTags.expectedVersion(ifMatch);
+        if (expectedVersion != null) {
+            review.setVersion(expectedVersion);
+        }
+        Review updated = reviewService.updateReview(review);
+        return ResponseEntity.ok().eTag(EntityVersionTags.etag(updated.getVersion())).body(updated);
     }
 
     /**
@@ -47,10 +60,29 @@ public class ReviewController {
      */
     @DeleteMapping("/{id}")
     public void deleteReview(@PathVariable Long id) {
-        log.info("Получен запрос на удаление отзыва с ID: {}", id);
+        log.debug("Получен запрос на удаление отзыва с ID: {}", id);
         reviewService.deleteReview(id);
     }
 
+    /**
+     * Найти отзывы по тексту. Отзыв должен содержать все слова запроса,
+     * части запроса в двойных кавычках ищутся как фраза.
+     *
+     * @param q      поисковый запрос
+     * @param filmId (опционально) идентификатор фильма
+     * @param userId (опционально) идентификатор автора отзыва
+     * @param count  количество отзывов для возврата (по умолчанию 10)
+     * @return отзывы по убыванию полезности
+     */
+    @GetMapping("/search")
+    public List<Review> searchReviews(@RequestParam String q,
+                                      @RequestParam(required = false) Long filmId,
+                                      @RequestParam(required = false) Long userId,
+                                      @RequestParam(defaultValue = "10") int count) {
+        log.debug("Получен запрос на поиск отзывов: q={}, filmId={}, userId={}, count={}", q, filmId, userId, count);
+        return reviewService.searchReviews(q, filmId, userId, count);
+    }
+
     /**
      * Получить отзыв по ID.
      *
@@ -60,26 +92,41 @@ public class ReviewController {
      */
     @GetMapping("/{id}")
     public Review getReviewById(@PathVariable Long id) {
-        log.info("Получен запрос на получение отзыва с ID: {}", id);
+        log.debug("Получен запрос на получение отзыва с ID: {}", id);
         return reviewService.getReviewById(id);
     }
 
     /**
-     * Получить список отзывов.
+     * Получить список отзывов по убыванию полезности.
      *
-     * @param filmId (опционально) идентификатор фильма для фильтрации
-     * @param count  количество отзывов для возврата (по умолчанию 10)
+     * @param filmId        (опционально) идентификатор фильма для фильтрации
+     * @param count         количество отзывов для возврата (по умолчанию 10)
+     * @param afterUseful   (опционально) полезность последнего отзыва предыдущей страницы
+     * @param afterReviewId (опционально) идентификатор последнего отзыва предыдущей страницы
+     * @param viewerId      (опционально) пользователь, чья оценка будет указана у каждого отзыва
      * @return коллекция отзывов
      */
     @GetMapping
     public List<Review> getReviews(@RequestParam(required = false) Long filmId,
-                                   @RequestParam(defaultValue = "10") int count) {
-        log.info("Получен запрос на получение отзывов: filmId={}, count={}", filmId, count);
-        if (filmId != null) {
-            return reviewService.getReviewsByFilmId(filmId, count);
-        } else {
-            return reviewService.getAllReviews(count);
-        }
+                                   @RequestParam(defaultValue = "10") int count,
+                                   @RequestParam(required = false) Integer afterUseful,
+                                   @RequestParam(required = false) Long afterReviewId,
+                                   @RequestParam(required = false) Long viewerId) {
+        log.debug("Получен запрос на получение отзывов: filmId={}, count={}, afterUseful={}, afterReviewId={}, "
+                + "viewerId={}", filmId, count, afterUseful, afterReviewId, viewerId);
+        return reviewService.getReviews(filmId, afterUseful, afterReviewId, count, viewerId);
+    }
+
+    /**
+     * Применить пачку голосов за отзывы одной транзакцией.
+     *
+     * @param votes список голосов: отзыв, пользователь и оценка like, dislike или clear
+     * @return изменение рейтинга полезности по каждому затронутому отзыву
+     */
+    @PostMapping("/votes")
+    public Map<Long, Integer> applyVotes(@RequestBody List<ReviewVote> votes) {
+        log.debug("Получен запрос на применение пачки из {} голосов за отзывы", votes.size());
+        return reviewService.applyVotes(votes);
     }
 
     /**
@@ -91,7 +138,7 @@ public class ReviewController {
     @PutMapping("/{reviewId}/like/{userId}")
     public void addLike(@PathVariable Long reviewId,
                         @PathVariable Long userId) {
-        log.info("Получен запрос на добавление лайка отзыву с ID {} от пользователя с ID {}", reviewId, userId);
+        log.debug("Получен запрос на добавление лайка отзыву с ID {} от пользователя с ID {}", reviewId, userId);
         reviewService.addLike(reviewId, userId);
     }
 
@@ -104,7 +151,7 @@ public class ReviewController {
     @PutMapping("/{reviewId}/dislike/{userId}")
     public void addDislike(@PathVariable Long reviewId,
                            @PathVariable Long userId) {
-        log.info("Получен запрос на добавление дизлайка отзыву с ID {} от пользователя с ID {}", reviewId, userId);
+        log.debug("Получен запрос на добавление дизлайка отзыву с ID {} от пользователя с ID {}", reviewId, userId);
         reviewService.addDislike(reviewId, userId);
     }
 
@@ -117,7 +164,7 @@ public class ReviewController {
     @DeleteMapping("/{reviewId}/like/{userId}")
     public void removeLike(@PathVariable Long reviewId,
                            @PathVariable Long userId) {
-        log.info("Получен запрос на удаление лайка отзыва с ID {} от пользователя с ID {}", reviewId, userId);
+        log.debug("Получен запрос на удаление лайка отзыва с ID {} от пользователя с ID {}", reviewId, userId);
         reviewService.deleteLike(reviewId, userId);
     }
 
@@ -130,7 +177,7 @@ public class ReviewController {
     @DeleteMapping("/{reviewId}/dislike/{userId}")
     public void removeDislike(@PathVariable Long reviewId,
                               @PathVariable Long userId) {
-        log.info("Получен запрос на удаление дизлайка отзыва с ID {} от пользователя с ID {}", reviewId, userId);
+        log.debug("Получен запрос на удаление дизлайка отзыва с ID {} от пользователя с ID {}", reviewId, userId);
         reviewService.deleteDislike(reviewId, userId);
     }
 }
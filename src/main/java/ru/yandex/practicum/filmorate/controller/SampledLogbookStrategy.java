@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.zalando.logbook.Correlation;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Precorrelation;
+import org.zalando.logbook.Sink;
+import org.zalando.logbook.Strategy;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Стратегия Logbook с выборочной записью: успешный быстрый запрос попадает в лог с вероятностью
+ * sample-rate, ошибки (статус не ниже logbook.minimum-status) и медленные запросы — всегда.
+ * Запрос и ответ пишутся одной записью после ответа. Тело ответа буферизуется только у запросов
+ * из выборки: ответ GET /films не копируется ради лога, который не будет записан. Ошибка или
+ * медленный запрос вне выборки пишется без тела ответа — текст ошибки есть в логе обработчика.
+ * Асинхронный аппендер не отбрасывает записи по уровню, но при полностью заполненной очереди
+ * теряет любые записи, в том числе и эти: поток запроса не ждёт вывода.
+ */
+@Component
+public class SampledLogbookStrategy implements Strategy {
+    private static final int SCALE = 1 << 16;
+
+    private final int sampleThreshold;
+    private final int minimumStatus;
+    private final Duration slowThreshold;
+
+    public SampledLogbookStrategy(@Value("${filmorate.logging.sample-rate:0.01}") double sampleRate,
+                                  @Value("${logbook.minimum-status:400}") int minimumStatus,
+                                  @Value("${filmorate.logging.slow-threshold:500ms}") Duration slowThreshold) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Доля запросов в логе должна быть от 0 до 1: " + sampleRate);
+        }
+        this.sampleThreshold = (int) Math.round(sampleRate * SCALE);
+        this.minimumStatus = minimumStatus;
+        this.slowThreshold = slowThreshold;
+    }
+
+    @Override
+    public void write(Precorrelation precorrelation, HttpRequest request, Sink sink) {
+        // запрос пишется вместе с ответом, когда известны статус и длительность
+    }
+
+    @Override
+    public HttpResponse process(HttpRequest request, HttpResponse response) throws IOException {
+        return sampled(request) ? response.withBody() : response.withoutBody();
+    }
+
+    @Override
+    public void write(Correlation correlation, HttpRequest request, HttpResponse response, Sink sink)
+            throws IOException {
+        if (response.getStatus() >= minimumStatus
+                || correlation.getDuration().compareTo(slowThreshold) >= 0
+                || sampled(request)) {
+            sink.writeBoth(correlation, request, response);
+        }
+    }
+
+    // Logbook передаёт на обработку и на запись ответа один и тот же объект запроса, поэтому решение
+    // по его identityHashCode совпадает на обоих этапах без хранения состояния между ними
+    boolean sampled(HttpRequest request) {
+        int hash = System.identityHashCode(request) * 0x9E3779B1;
+        return (hash >>> 16) < sampleThreshold;
+    }
+}
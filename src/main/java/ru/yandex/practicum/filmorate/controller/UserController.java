@@ -3,13 +3,19 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.TimelinePage;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.EventService;
 import ru.yandex.practicum.filmorate.service.FriendService;
+import ru.yandex.practicum.filmorate.service.UserChangeWatermarks;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.service.ValidationService;
 
 import java.util.Collection;
 
@@ -21,6 +27,8 @@ public class UserController {
     private final UserService userService;
     private final FriendService friendService;
     private final EventService eventService;
+    private final UserChangeWatermarks watermarks;
+    private final ValidationService validationService;
 
     /**
      * Получить список всех пользователей.
@@ -29,19 +37,26 @@ public class UserController {
      */
     @GetMapping
     public Collection<User> findAllUsers() {
-        log.info("Получен запрос на получение списка всех пользователей");
+        log.debug("Получен запрос на получение списка всех пользователей");
         return userService.findAllUsers();
     }
 
     /**
      * Получить список друзей пользователя.
      *
-     * @param userId идентификатор пользователя
+     * @param userId  идентификатор пользователя
+     * @param request запрос, по заголовку If-None-Match которого может быть возвращён ответ 304
      * @return коллекция друзей пользователя
      */
     @GetMapping("/{userId}/friends")
-    public Collection<User> getFriends(@PathVariable Long userId) {
-        log.info("Получен запрос на получение списка друзей пользователя с ID: {}", userId);
+    public Collection<User> getFriends(@PathVariable Long userId, WebRequest request) {
+        log.debug("Получен запрос на получение списка друзей пользователя с ID: {}", userId);
+        // неизвестный пользователь получает 404, а не 304 по совпавшему тегу
+        validationService.validateUserExists(userId);
+        UserChangeWatermarks.Validator validator = watermarks.friends(userId);
+        if (request.checkNotModified(validator.etag(), validator.lastModified())) {
+            return null;
+        }
         return friendService.getFriends(userId);
     }
 
@@ -55,7 +70,7 @@ public class UserController {
     @GetMapping("/{userId}/friends/common/{otherId}")
     public Collection<User> getCommonFriends(@PathVariable Long userId,
                                              @PathVariable Long otherId) {
-        log.info("Получен запрос на получение общих друзей  пользователей с ID {} и {}", userId, otherId);
+        log.debug("Получен запрос на получение общих друзей  пользователей с ID {} и {}", userId, otherId);
         return friendService.getCommonFriends(userId, otherId);
     }
 
@@ -68,7 +83,7 @@ public class UserController {
      */
     @GetMapping("/{id}")
     public User getUserById(@PathVariable Long id) {
-        log.info("Получен запрос на получение пользователя с ID: {}", id);
+        log.debug("Получен запрос на получение пользователя с ID: {}", id);
         return userService.getUserById(id);
     }
 
@@ -80,20 +95,29 @@ public class UserController {
      */
     @PostMapping
     public User createUser(@Valid @RequestBody User user) {
-        log.info("Получен запрос на создание пользователя: {}", user.getName());
+        log.debug("Получен запрос на создание пользователя: {}", user.getName());
         return userService.createUser(user);
     }
 
     /**
      * Обновить существующего пользователя.
+     * Заголовок If-Match с тегом версии из ETag применяет обновление только при совпадении версии,
+     * иначе ответ 412; без заголовка учитывается поле version из тела, если оно передано.
      *
      * @param user объект пользователя с обновлёнными данными
-     * @return обновлённый пользователь
+     * @param ifMatch ожидаемая версия в виде "3" или null
+     * @return обновлённый пользователь и его версия в заголовке ETag
      */
     @PutMapping
-    public User updateUser(@Valid @RequestBody User user) {
-        log.info("Получен запрос на обновление пользователя с ID: {}", user.getId());
-        return userService.updateUser(user);
+    public ResponseEntity<User> updateUser(@Valid @RequestBody User user,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.debug("Получен запрос на обновление пользователя с ID: {}", user.getId());
+        Long expectedVersion = EntityVersionTags.expectedVersion(ifMatch);
+        if (expectedVersion != null) {
+            user.setVersion(expectedVersion);
+        }
+        User updated = userService.updateUser(user);
+        return ResponseEntity.ok().eTag(EntityVersionTags.etag(updated.getVersion())).body(updated);
     }
 
     /**
@@ -105,7 +129,7 @@ public class UserController {
     @PutMapping("/{userId}/friends/{friendId}")
     public void addFriend(@PathVariable Long userId,
                           @PathVariable Long friendId) {
-        log.info("Получен запрос на добавление друга с ID {} пользователю с ID {}", friendId, userId);
+        log.debug("Получен запрос на добавление друга с ID {} пользователю с ID {}", friendId, userId);
         friendService.addFriend(userId, friendId);
     }
 
@@ -118,19 +142,25 @@ public class UserController {
     @DeleteMapping("/{userId}/friends/{friendId}")
     public void removeFriend(@PathVariable Long userId,
                              @PathVariable Long friendId) {
-        log.info("Получен запрос на удаление друга с ID {} у пользователя с ID {}", friendId, userId);
+        log.debug("Получен запрос на удаление друга с ID {} у пользователя с ID {}", friendId, userId);
         friendService.removeFriend(userId, friendId);
     }
 
     /**
      * Получить рекомендации фильмов для пользователя.
      *
-     * @param userId идентификатор пользователя
+     * @param userId  идентификатор пользователя
+     * @param request запрос, по заголовку If-None-Match которого может быть возвращён ответ 304
      * @return коллекция рекомендованных фильмов
      */
     @GetMapping("/{id}/recommendations")
-    public Collection<Film> getRecommendedFilms(@PathVariable("id") Long userId) {
-        log.info("Получен запрос на получение рекомендаций фильмов для пользователя с ID: {}", userId);
+    public Collection<Film> getRecommendedFilms(@PathVariable("id") Long userId, WebRequest request) {
+        log.debug("Получен запрос на получение рекомендаций фильмов для пользователя с ID: {}", userId);
+        validationService.validateUserExists(userId);
+        UserChangeWatermarks.Validator validator = watermarks.recommendations(userId);
+        if (request.checkNotModified(validator.etag(), validator.lastModified())) {
+            return null;
+        }
         return userService.getRecommendedFilms(userId);
     }
 
@@ -141,20 +171,44 @@ public class UserController {
      */
     @DeleteMapping("/{userId}")
     public void removeUser(@PathVariable Long userId) {
-        log.info("Получен запрос на удаление пользователя с ID: {}", userId);
+        log.debug("Получен запрос на удаление пользователя с ID: {}", userId);
         userService.removeUser(userId);
     }
 
     /**
      * Получить ленту событий пользователя.
      *
-     * @param userId идентификатор пользователя
+     * @param userId  идентификатор пользователя
+     * @param compact схлопнуть повторяющиеся и взаимно отменяющиеся события LIKE/FRIEND (по умолчанию false)
+     * @param request запрос, по заголовку If-None-Match которого может быть возвращён ответ 304
      * @return коллекция событий пользователя
      */
     @GetMapping("/{userId}/feed")
-    public Collection<Event> getEventFeed(@PathVariable Long userId) {
-        log.info("Получен запрос на получение ленты событий пользователя с ID: {}", userId);
-        return eventService.findEventsByUserId(userId, 0);
+    public Collection<Event> getEventFeed(@PathVariable Long userId,
+                                          @RequestParam(defaultValue = "false") boolean compact,
+                                          WebRequest request) {
+        log.debug("Получен запрос на получение ленты событий пользователя с ID: {}", userId);
+        validationService.validateUserExists(userId);
+        UserChangeWatermarks.Validator validator = watermarks.feed(userId);
+        if (request.checkNotModified(validator.etag(compact ? "compact" : ""), validator.lastModified())) {
+            return null;
+        }
+        return eventService.findEventsByUserId(userId, 0, compact);
     }
-}
 
+    /**
+     * Получить ленту событий друзей пользователя, от новых к старым.
+     *
+     * @param userId идентификатор пользователя
+     * @param cursor курсор следующей страницы из предыдущего ответа (опционально)
+     * @param limit  размер страницы (по умолчанию 25)
+     * @return страница событий и курсор следующей страницы
+     */
+    @GetMapping("/{userId}/timeline")
+    public TimelinePage getFriendsTimeline(@PathVariable Long userId,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "25") int limit) {
+        log.debug("Получен запрос на получение ленты друзей пользователя с ID: {}", userId);
+        return eventService.getFriendsTimeline(userId, cursor, limit);
+    }
+}
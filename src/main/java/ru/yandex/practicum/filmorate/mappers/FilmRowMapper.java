@@ -1,15 +1,20 @@
 package ru.yandex.practicum.filmorate.mappers;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
 @Component
+@RequiredArgsConstructor
 public class FilmRowMapper implements RowMapper<Film> {
+    private final ReferenceDataRegistry referenceData;
+
     @Override
     public Film mapRow(ResultSet resultSet, int rowNum) throws SQLException {
         return new Film().toBuilder()
@@ -18,9 +23,12 @@ public class FilmRowMapper implements RowMapper<Film> {
                 .description(resultSet.getString("description"))
                 .releaseDate(resultSet.getDate("release_date").toLocalDate())
                 .duration(resultSet.getInt("duration"))
-                .mpa(new MpaRating(resultSet.getLong("mpa_id"),
-                        resultSet.getString("mpa_name"),
-                        resultSet.getString("mpa_description")))
+                .mpa(mpa(resultSet.getLong("mpa_id")))
+                .version(resultSet.getLong("version"))
                 .build();
     }
+
+    private MpaRating mpa(Long mpaId) {
+        return referenceData.findMpa(mpaId).orElseGet(() -> new MpaRating(mpaId, null, null));
+    }
 }
@@ -18,6 +18,7 @@ public class ReviewRowMapper implements RowMapper<Review> {
                 .userId(resultSet.getLong("user_id"))
                 .filmId(resultSet.getLong("film_id"))
                 .useful(resultSet.getInt("useful"))
+                .version(resultSet.getLong("version"))
                 .build();
     }
 }
@@ -17,6 +17,7 @@ public class UserRowMapper implements RowMapper<User> {
                 .login(resultSet.getString("login"))
                 .name(resultSet.getString("name"))
                 .birthday(resultSet.getDate("birthday").toLocalDate())
+                .version(resultSet.getLong("version"))
                 .build();
     }
 }
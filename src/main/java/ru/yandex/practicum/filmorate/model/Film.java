@@ -28,6 +28,8 @@ public class Film {
     private int duration;
     @NotNull(message = "Рейтинг MPA не может быть пустой")
     private MpaRating mpa;
+    // версия строки; если передана в запросе на обновление, фильм обновится только при совпадении
+    private Long version;
     @Builder.Default
     private Set<Long> likes = new HashSet<>();
     @Builder.Default
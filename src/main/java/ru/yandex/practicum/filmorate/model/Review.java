@@ -1,5 +1,7 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.*;
 import lombok.*;
 
@@ -19,4 +21,10 @@ public class Review {
     @NotNull(message = "Фильм обязателен.")
     private Long filmId;
     private Integer useful;
+    // версия строки; меняется при редактировании отзыва, но не при голосовании
+    private Long version;
+    // оценка отзыва пользователем, от имени которого запрошен список; CLEAR — пользователь не голосовал
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private ReviewVote.Type viewerVote;
 }
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.util.Locale;
+
+@Data
+@Builder(toBuilder = true)
+@RequiredArgsConstructor
+@AllArgsConstructor
+public class ReviewVote {
+    @NotNull(message = "Отзыв обязателен.")
+    private Long reviewId;
+    @NotNull(message = "Пользователь обязателен.")
+    private Long userId;
+    @NotNull(message = "Оценка обязательна.")
+    private Type vote;
+
+    public enum Type {
+        LIKE, DISLIKE, CLEAR;
+
+        @JsonCreator
+        public static Type of(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+}
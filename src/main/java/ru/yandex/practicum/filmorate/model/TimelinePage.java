@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder(toBuilder = true)
+@RequiredArgsConstructor
+@AllArgsConstructor
+public class TimelinePage {
+    @Builder.Default
+    private List<Event> events = new ArrayList<>();
+    private String nextCursor;
+}
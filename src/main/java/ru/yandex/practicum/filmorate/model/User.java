@@ -27,6 +27,8 @@ public class User {
     @NotNull(message = "Дата рождения не может быть пустой")
     @PastOrPresent(message = "Дата рождения не может быть в будущем")
     private LocalDate birthday;
+    // версия строки; если передана в запросе на обновление, пользователь обновится только при совпадении
+    private Long version;
     @Builder.Default
     private Set<Long> friends = new HashSet<>();
 }
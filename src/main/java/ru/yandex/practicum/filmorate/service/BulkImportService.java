@@ -0,0 +1,580 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.bulk.BulkImportRepository;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.existence.ExistenceIndex;
+import ru.yandex.practicum.filmorate.storage.like.LikeRepository;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Массовая загрузка фильмов, пользователей, лайков и дружб из NDJSON или CSV.
+ * Файл читается пачками по batchSize строк; пачки разбираются параллельно и проверяются
+ * по справочникам и индексу существования в памяти, а пишутся одним потоком крупными
+ * JDBC-batch, каждая в своей транзакции. Чтение ждёт, пока в работе больше maxPendingBatches
+ * пачек, поэтому медленная запись не копит файл в памяти. Ошибочные строки отклоняются
+ * и попадают в отчёт, остальная загрузка продолжается; если пачка не записалась целиком,
+ * её строки пишутся по одной. События ленты при загрузке не создаются.
+ */
+@Slf4j
+@Service
+public class BulkImportService {
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+    private static final int PROGRESS_LOG_BATCHES = 100;
+
+    private final BulkImportRepository bulkImportRepository;
+    private final LikeRepository likeRepository;
+    private final ReferenceDataRegistry referenceData;
+    private final ExistenceIndex existenceIndex;
+    private final UserChangeWatermarks watermarks;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactions;
+    private final int batchSize;
+    private final int maxPendingBatches;
+    private final ForkJoinPool parsers;
+
+    public BulkImportService(BulkImportRepository bulkImportRepository,
+                             LikeRepository likeRepository,
+                             ReferenceDataRegistry referenceData,
+                             ExistenceIndex existenceIndex,
+                             UserChangeWatermarks watermarks,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${filmorate.import.batch-size:1000}") int batchSize,
+                             @Value("${filmorate.import.parallelism:0}") int parallelism,
+                             @Value("${filmorate.import.max-pending-batches:8}") int maxPendingBatches) {
+        this.bulkImportRepository = bulkImportRepository;
+        this.likeRepository = likeRepository;
+        this.referenceData = referenceData;
+        this.existenceIndex = existenceIndex;
+        this.watermarks = watermarks;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxPendingBatches = maxPendingBatches;
+        this.parsers = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Загружает записи одного вида. Фильмы и пользователи должны нести ID: на них ссылаются
+     * лайки и дружбы из следующих файлов. После загрузки генераторы ID переставляются за максимальный ID.
+     */
+    public ImportReport importRecords(ImportKind kind, ImportFormat format, InputStream input) {
+        log.info("Начата загрузка {} в формате {}", kind, format);
+        long started = System.nanoTime();
+        Progress progress = new Progress();
+        Semaphore pending = new Semaphore(maxPendingBatches);
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        long lineNumber = 0;
+        try (ExecutorService writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "bulk-import-writer"));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            Map<String, Integer> header = null;
+            List<Line> chunk = new ArrayList<>(batchSize);
+            String text;
+            while ((text = reader.readLine()) != null) {
+                lineNumber++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                if (format == ImportFormat.CSV && header == null) {
+                    header = parseHeader(text);
+                    continue;
+                }
+                chunk.add(new Line(lineNumber, text));
+                if (chunk.size() == batchSize) {
+                    batches.add(submit(kind, format, header, chunk, progress, pending, writer));
+                    chunk = new ArrayList<>(batchSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                batches.add(submit(kind, format, header, chunk, progress, pending, writer));
+            }
+            CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).join();
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось прочитать файл загрузки: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Загрузка прервана");
+        }
+        if (progress.imported.get() > 0) {
+            finish(kind);
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        ImportReport report = new ImportReport(kind, lineNumber, progress.imported.get(), progress.rejected.get(),
+                elapsedMillis, progress.imported.get() * 1000 / elapsedMillis, progress.rejections());
+        log.info("Загрузка {} завершена: записано {}, отклонено {} за {} мс ({} строк/с)", kind,
+                report.imported(), report.rejected(), elapsedMillis, report.rowsPerSecond());
+        return report;
+    }
+
+    @PreDestroy
+    public void close() {
+        parsers.shutdown();
+    }
+
+    private CompletableFuture<Void> submit(ImportKind kind, ImportFormat format, Map<String, Integer> header,
+                                           List<Line> chunk, Progress progress, Semaphore pending,
+                                           ExecutorService writer) throws InterruptedException {
+        pending.acquire();
+        return CompletableFuture.supplyAsync(() -> parse(kind, format, header, chunk, progress), parsers)
+                .thenAcceptAsync(records -> write(kind, records, progress), writer)
+                .exceptionally(e -> {
+                    log.error("Пачка строк {}–{} не загружена", chunk.get(0).number(),
+                            chunk.get(chunk.size() - 1).number(), e);
+                    chunk.forEach(line -> progress.reject(line.number(), "Пачка не загружена: " + e.getMessage()));
+                    return null;
+                })
+                .whenComplete((ignored, e) -> {
+                    pending.release();
+                    long done = progress.batches.incrementAndGet();
+                    if (done % PROGRESS_LOG_BATCHES == 0) {
+                        log.info("Загрузка {}: обработано {} пачек, записано {} строк", kind, done,
+                                progress.imported.get());
+                    }
+                });
+    }
+
+    private List<Row> parse(ImportKind kind, ImportFormat format, Map<String, Integer> header, List<Line> chunk,
+                            Progress progress) {
+        List<Row> rows = new ArrayList<>(chunk.size());
+        for (Line line : chunk) {
+            try {
+                Fields fields = format == ImportFormat.CSV ? Fields.csv(header, line.text())
+                        : Fields.json(objectMapper.readTree(line.text()));
+                rows.add(switch (kind) {
+                    case FILMS -> filmRow(line.number(), fields);
+                    case USERS -> userRow(line.number(), fields);
+                    case LIKES -> new Row(line.number(), null, null,
+                            fields.requiredLong("filmId"), fields.requiredLong("userId"), false);
+                    case FRIENDSHIPS -> new Row(line.number(), null, null,
+                            fields.requiredLong("userId"), fields.requiredLong("friendId"),
+                            fields.optionalBoolean("confirmed", true));
+                });
+            } catch (IOException | RuntimeException e) {
+                progress.reject(line.number(), e.getMessage());
+            }
+        }
+        return checkReferences(kind, rows, progress);
+    }
+
+    private Row filmRow(long line, Fields fields) throws IOException {
+        Film film;
+        if (fields.json() != null) {
+            film = objectMapper.treeToValue(fields.json(), Film.class);
+        } else {
+            Long duration = fields.optionalLong("duration");
+            Long mpaId = fields.optionalLong("mpaId");
+            film = Film.builder()
+                    .id(fields.optionalLong("id"))
+                    .name(fields.text("name"))
+                    .description(fields.text("description"))
+                    .releaseDate(fields.date("releaseDate"))
+                    .duration(duration == null ? 0 : duration.intValue())
+                    .mpa(mpaId == null ? null : new MpaRating(mpaId, null, null))
+                    .genres(fields.longList("genreIds").stream()
+                            .map(id -> new Genre(id, null))
+                            .collect(Collectors.toCollection(TreeSet::new)))
+                    .directors(fields.longList("directorIds").stream()
+                            .map(id -> new Director(id, null))
+                            .collect(Collectors.toSet()))
+                    .build();
+        }
+        requireId(film.getId());
+        validate(film);
+        MpaRating mpa = Optional.ofNullable(film.getMpa().getId())
+                .flatMap(referenceData::findMpa)
+                .orElseThrow(() -> new ValidationException("Рейтинг MPA с ID " + film.getMpa().getId() + " не найден"));
+        Set<Genre> genres = new TreeSet<>();
+        for (Genre genre : film.getGenres()) {
+            genres.add(referenceData.findGenre(genre.getId())
+                    .orElseThrow(() -> new ValidationException("Жанр с ID " + genre.getId() + " не найден")));
+        }
+        film.setMpa(mpa);
+        film.setGenres(genres);
+        return new Row(line, film, null, film.getId(), 0, false);
+    }
+
+    private Row userRow(long line, Fields fields) throws IOException {
+        User user = fields.json() != null ? objectMapper.treeToValue(fields.json(), User.class) : User.builder()
+                .id(fields.optionalLong("id"))
+                .email(fields.text("email"))
+                .login(fields.text("login"))
+                .name(fields.text("name"))
+                .birthday(fields.date("birthday"))
+                .build();
+        requireId(user.getId());
+        validate(user);
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+        return new Row(line, null, user, user.getId(), 0, false);
+    }
+
+    /**
+     * Сверяет ссылки пачки с индексом существования одним обращением на вид сущности.
+     */
+    private List<Row> checkReferences(ImportKind kind, List<Row> rows, Progress progress) {
+        Set<Long> firstIds = rows.stream().map(Row::firstId).collect(Collectors.toSet());
+        Set<Long> secondIds = rows.stream().map(Row::secondId).collect(Collectors.toSet());
+        Map<EntityKind, Set<Long>> missing = new HashMap<>();
+        switch (kind) {
+            case FILMS -> {
+                missing.put(EntityKind.FILM, existenceIndex.findMissing(EntityKind.FILM, firstIds));
+                missing.put(EntityKind.DIRECTOR, existenceIndex.findMissing(EntityKind.DIRECTOR, rows.stream()
+                        .flatMap(row -> row.film().getDirectors().stream())
+                        .map(Director::getId)
+                        .collect(Collectors.toSet())));
+            }
+            case USERS -> missing.put(EntityKind.USER, existenceIndex.findMissing(EntityKind.USER, firstIds));
+            case LIKES -> {
+                missing.put(EntityKind.FILM, existenceIndex.findMissing(EntityKind.FILM, firstIds));
+                missing.put(EntityKind.USER, existenceIndex.findMissing(EntityKind.USER, secondIds));
+            }
+            case FRIENDSHIPS -> {
+                Set<Long> userIds = new HashSet<>(firstIds);
+                userIds.addAll(secondIds);
+                missing.put(EntityKind.USER, existenceIndex.findMissing(EntityKind.USER, userIds));
+            }
+        }
+
+        List<Row> checked = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            String reason = switch (kind) {
+                case FILMS -> !missing.get(EntityKind.FILM).contains(row.firstId())
+                        ? "Фильм с ID " + row.firstId() + " уже существует"
+                        : row.film().getDirectors().stream()
+                        .map(Director::getId)
+                        .filter(missing.get(EntityKind.DIRECTOR)::contains)
+                        .findFirst()
+                        .map(id -> "Режиссёр с ID " + id + " не найден")
+                        .orElse(null);
+                case USERS -> !missing.get(EntityKind.USER).contains(row.firstId())
+                        ? "Пользователь с ID " + row.firstId() + " уже существует" : null;
+                case LIKES -> missing.get(EntityKind.FILM).contains(row.firstId())
+                        ? "Фильм с ID " + row.firstId() + " не найден"
+                        : missing.get(EntityKind.USER).contains(row.secondId())
+                        ? "Пользователь с ID " + row.secondId() + " не найден" : null;
+                case FRIENDSHIPS -> row.firstId() == row.secondId()
+                        ? "Пользователь не может дружить сам с собой"
+                        : missing.get(EntityKind.USER).contains(row.firstId())
+                        ? "Пользователь с ID " + row.firstId() + " не найден"
+                        : missing.get(EntityKind.USER).contains(row.secondId())
+                        ? "Пользователь с ID " + row.secondId() + " не найден" : null;
+            };
+            if (reason == null) {
+                checked.add(row);
+            } else {
+                progress.reject(row.line(), reason);
+            }
+        }
+        return checked;
+    }
+
+    private void write(ImportKind kind, List<Row> rows, Progress progress) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            transactions.executeWithoutResult(status -> store(kind, rows));
+            stored(kind, rows, progress);
+        } catch (DataAccessException e) {
+            log.warn("Пачка из {} строк не записана целиком, строки пишутся по одной: {}", rows.size(),
+                    e.getMostSpecificCause().getMessage());
+            for (Row row : rows) {
+                try {
+                    transactions.executeWithoutResult(status -> store(kind, List.of(row)));
+                    stored(kind, List.of(row), progress);
+                } catch (DataAccessException rowError) {
+                    progress.reject(row.line(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private void store(ImportKind kind, List<Row> rows) {
+        switch (kind) {
+            case FILMS -> bulkImportRepository.insertFilms(rows.stream().map(Row::film).toList());
+            case USERS -> bulkImportRepository.insertUsers(rows.stream().map(Row::user).toList());
+            case LIKES -> likeRepository.addLikes(ids(rows, Row::firstId), ids(rows, Row::secondId));
+            case FRIENDSHIPS -> {
+                boolean[] confirmed = new boolean[rows.size()];
+                for (int i = 0; i < confirmed.length; i++) {
+                    confirmed[i] = rows.get(i).confirmed();
+                }
+                bulkImportRepository.insertFriendships(ids(rows, Row::firstId), ids(rows, Row::secondId), confirmed);
+            }
+        }
+    }
+
+    private void stored(ImportKind kind, List<Row> rows, Progress progress) {
+        progress.imported.addAndGet(rows.size());
+        if (kind == ImportKind.FILMS || kind == ImportKind.USERS) {
+            EntityKind entityKind = kind == ImportKind.FILMS ? EntityKind.FILM : EntityKind.USER;
+            rows.forEach(row -> existenceIndex.created(entityKind, row.firstId()));
+        }
+    }
+
+    private void finish(ImportKind kind) {
+        switch (kind) {
+            case FILMS -> {
+                bulkImportRepository.restartIdentity(EntityKind.FILM);
+                watermarks.filmsImported();
+            }
+            case USERS -> {
+                bulkImportRepository.restartIdentity(EntityKind.USER);
+                watermarks.profilesChanged();
+            }
+            case LIKES -> watermarks.allLikesChanged();
+            case FRIENDSHIPS -> watermarks.profilesChanged();
+        }
+    }
+
+    private void validate(Object entity) {
+        Set<ConstraintViolation<Object>> violations = validator.validate(entity);
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+    }
+
+    private static void requireId(Long id) {
+        if (id == null) {
+            throw new ValidationException("Не указан ID");
+        }
+    }
+
+    private static long[] ids(List<Row> rows, Function<Row, Long> id) {
+        long[] ids = new long[rows.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = id.apply(rows.get(i));
+        }
+        return ids;
+    }
+
+    private static Map<String, Integer> parseHeader(String text) {
+        List<String> names = splitCsv(text);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            header.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        return header;
+    }
+
+    /**
+     * Разбирает строку CSV через запятую; значения в двойных кавычках могут содержать запятые
+     * и удвоенные кавычки, но не переводы строк.
+     */
+    static List<String> splitCsv(String text) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new ValidationException("Незакрытая кавычка в строке CSV");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    public enum ImportKind {
+        FILMS, USERS, LIKES, FRIENDSHIPS;
+
+        public static ImportKind of(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Неизвестный вид загрузки: " + value);
+            }
+        }
+    }
+
+    public enum ImportFormat {
+        JSON, CSV;
+
+        public static ImportFormat of(String value) {
+            return switch (value.toLowerCase(Locale.ROOT)) {
+                case "ndjson", "json", "jsonl" -> JSON;
+                case "csv" -> CSV;
+                default -> throw new ValidationException("Неизвестный формат загрузки: " + value);
+            };
+        }
+    }
+
+    /**
+     * @param rejections первые отклонённые строки с причинами, по номеру строки
+     */
+    public record ImportReport(ImportKind kind, long lines, long imported, long rejected, long elapsedMillis,
+                               long rowsPerSecond, List<Rejection> rejections) {
+    }
+
+    public record Rejection(long line, String reason) {
+    }
+
+    private record Line(long number, String text) {
+    }
+
+    // firstId/secondId: фильм и пользователь лайка, пользователь и друг дружбы, ID фильма или пользователя
+    private record Row(long line, Film film, User user, long firstId, long secondId, boolean confirmed) {
+    }
+
+    private static final class Progress {
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final Queue<Rejection> rejections = new ConcurrentLinkedQueue<>();
+
+        void reject(long line, String reason) {
+            if (rejected.incrementAndGet() <= MAX_REPORTED_REJECTIONS) {
+                rejections.add(new Rejection(line, reason));
+            }
+        }
+
+        List<Rejection> rejections() {
+            return rejections.stream().sorted(Comparator.comparingLong(Rejection::line)).toList();
+        }
+    }
+
+    /**
+     * Поля строки по имени: из объекта NDJSON или из колонок CSV по заголовку.
+     */
+    private record Fields(JsonNode json, Map<String, Integer> header, List<String> values) {
+        static Fields json(JsonNode node) {
+            if (!node.isObject()) {
+                throw new ValidationException("Строка NDJSON должна быть объектом");
+            }
+            return new Fields(node, null, null);
+        }
+
+        static Fields csv(Map<String, Integer> header, String text) {
+            return new Fields(null, header, splitCsv(text));
+        }
+
+        String text(String name) {
+            if (json != null) {
+                JsonNode node = json.get(name);
+                return node == null || node.isNull() ? null : node.asText();
+            }
+            Integer index = header.get(name.toLowerCase(Locale.ROOT));
+            if (index == null || index >= values.size() || values.get(index).isEmpty()) {
+                return null;
+            }
+            return values.get(index);
+        }
+
+        Long optionalLong(String name) {
+            String value = text(name);
+            try {
+                return value == null ? null : Long.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                throw new ValidationException("Поле " + name + " должно быть числом: " + value);
+            }
+        }
+
+        long requiredLong(String name) {
+            Long value = optionalLong(name);
+            if (value == null) {
+                throw new ValidationException("Не указано поле " + name);
+            }
+            return value;
+        }
+
+        boolean optionalBoolean(String name, boolean defaultValue) {
+            String value = text(name);
+            return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+        }
+
+        LocalDate date(String name) {
+            String value = text(name);
+            try {
+                return value == null ? null : LocalDate.parse(value.trim());
+            } catch (RuntimeException e) {
+                throw new ValidationException("Поле " + name + " должно быть датой ГГГГ-ММ-ДД: " + value);
+            }
+        }
+
+        List<Long> longList(String name) {
+            String value = text(name);
+            if (value == null || value.isBlank()) {
+                return List.of();
+            }
+            List<Long> ids = new ArrayList<>();
+            for (String part : value.split(";")) {
+                try {
+                    ids.add(Long.valueOf(part.trim()));
+                } catch (NumberFormatException e) {
+                    throw new ValidationException("Поле " + name + " должно содержать числа через «;»: " + value);
+                }
+            }
+            return ids;
+        }
+    }
+}
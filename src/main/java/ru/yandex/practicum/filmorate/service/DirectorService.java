@@ -7,6 +7,8 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.director.DirectorRepository;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.existence.ExistenceIndex;
 
 import java.util.Collection;
 
@@ -16,41 +18,48 @@ import java.util.Collection;
 public class DirectorService {
     private final ValidationService validationService;
     private final DirectorRepository directorRepository;
+    private final ExistenceIndex existenceIndex;
+    private final UserChangeWatermarks watermarks;
 
     public Collection<Director> findAllDirectors() {
-        log.info("Попытка получения всех режиссеров");
+        log.debug("Попытка получения всех режиссеров");
         return directorRepository.findAllDirectors();
     }
 
     public Director findDirectorById(Long directorId) {
-        log.info("Попытка получения режиссера по ID"); //{}, directorId лучше не использовать
+        log.debug("Попытка получения режиссера по ID"); //{}, directorId лучше не использовать
         validationService.validateDirectorExists(directorId);
         return directorRepository.findDirectorById(directorId)
                 .orElseThrow(() -> new NotFoundException("Режиссер с ID " + directorId + " не найден"));
     }
 
     public Director createDirector(Director director) {
-        log.info("Попытка создания режиссера: {}", director.getName());
+        log.debug("Попытка создания режиссера: {}", director.getName());
         Director createdDirector = directorRepository.createDirector(director);
+        existenceIndex.created(EntityKind.DIRECTOR, createdDirector.getId());
+        watermarks.directorsChanged();
         log.info("Создан режиссер с ID: {}", createdDirector.getId());
         return createdDirector;
     }
 
     public Director updateDirector(Director newDirector) {
-        log.info("Попытка обновления режиссера");
+        log.debug("Попытка обновления режиссера");
         validationService.validateDirectorExists(newDirector.getId());
         Director updatedDirector = directorRepository.updateDirector(newDirector);
+        watermarks.directorsChanged();
         log.info("Режиссер с ID {} обновлен", newDirector.getId());
         return updatedDirector;
     }
 
     public void deleteDirector(Long directorId) {
-        log.info("Попытка удаления режиссера");
+        log.debug("Попытка удаления режиссера");
         validationService.validateDirectorExists(directorId);
         if (!directorRepository.deleteDirector(directorId)) {
             log.warn("Режиссер с ID={} не найден при попытке удаления", directorId);
             throw new NotFoundException("Режиссер с ID=" + directorId + " не найден");
         }
+        existenceIndex.deleted(EntityKind.DIRECTOR, directorId);
+        watermarks.directorsChanged();
         log.info("Режиссер  с ID {} успешно удален", directorId);
     }
 }
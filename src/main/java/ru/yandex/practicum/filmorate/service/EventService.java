@@ -3,25 +3,117 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.TimelinePage;
 import ru.yandex.practicum.filmorate.storage.event.EventRepository;
+import ru.yandex.practicum.filmorate.storage.friend.FriendRepository;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EventService {
+    private static final int MAX_TIMELINE_LIMIT = 100;
+    private static final long FIRST_SLICE_MILLIS = Duration.ofHours(1).toMillis();
+    private static final int SLICE_GROWTH = 4;
+    private static final int MAX_SLICES = 12;
+
     private final EventRepository eventRepository;
+    private final FriendRepository friendRepository;
     private final ValidationService validationService;
+    private final FeedCompactor feedCompactor;
+    private final UserChangeWatermarks watermarks;
 
     public Collection<Event> findEventsByUserId(Long userId, int limit) {
+        return findEventsByUserId(userId, limit, false);
+    }
+
+    public Collection<Event> findEventsByUserId(Long userId, int limit, boolean compact) {
         validationService.validateUserExists(userId);
-        return eventRepository.findEventsByUserId(userId, limit);
+        Collection<Event> events = eventRepository.findEventsByUserId(userId, limit);
+        return compact ? feedCompactor.compact(new ArrayList<>(events)) : events;
     }
 
     public void addEvent(Long userId, Long entityId, String eventType, String operation) {
         eventRepository.insertEvent(userId, entityId, eventType, operation);
+        watermarks.feedChanged(userId);
+    }
+
+    /**
+     * Лента событий друзей пользователя, от новых к старым.
+     * Страница собирается из срезов по времени: срез — один запрос событий всех друзей в окне
+     * [since, курсор), не больше недостающего до конца страницы. Первое окно — час до курсора
+     * (для первой страницы — до текущего момента), каждое следующее вчетверо длиннее и начинается
+     * там, где кончилось предыдущее; последний срез открыт в прошлое. Поэтому страница стоит
+     * не больше MAX_SLICES запросов и limit строк при любом числе друзей, а база читает только
+     * события внутри окон — по поиску в индексе на друга и строки окна.
+     *
+     * @param cursor курсор вида "timestamp:eventId" из предыдущей страницы или null для первой
+     */
+    public TimelinePage getFriendsTimeline(Long userId, String cursor, int limit) {
+        log.debug("Попытка получения ленты друзей пользователя {}: cursor={}, limit={}", userId, cursor, limit);
+        validationService.validateUserExists(userId);
+        if (limit <= 0 || limit > MAX_TIMELINE_LIMIT) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_TIMELINE_LIMIT);
+        }
+        long[] position = parseCursor(cursor);
+
+        List<Long> friendIds = friendRepository.getFriendIds(userId);
+        List<Event> events = readSlices(friendIds, position[0], position[1], limit);
+
+        String nextCursor = null;
+        if (events.size() == limit) {
+            Event last = events.get(events.size() - 1);
+            nextCursor = last.getTimestamp() + ":" + last.getEventId();
+        }
+        log.debug("Для пользователя {} собрана страница ленты друзей из {} событий", userId, events.size());
+        return new TimelinePage(events, nextCursor);
+    }
+
+    private List<Event> readSlices(List<Long> friendIds, long beforeTimestamp, long beforeEventId, int limit) {
+        if (friendIds.isEmpty()) {
+            return List.of();
+        }
+        List<Event> page = new ArrayList<>(limit);
+        long upperTimestamp = beforeTimestamp;
+        long upperEventId = beforeEventId;
+        long window = FIRST_SLICE_MILLIS;
+        long now = Instant.now().toEpochMilli();
+        for (int slice = 0; slice < MAX_SLICES && page.size() < limit; slice++) {
+            long since = slice == MAX_SLICES - 1 ? Long.MIN_VALUE : Math.min(upperTimestamp, now) - window;
+            page.addAll(eventRepository.findEventSlice(friendIds, since, upperTimestamp, upperEventId,
+                    limit - page.size()));
+            if (since <= 0) {
+                // отметки времени событий не отрицательны: окно дошло до начала истории
+                break;
+            }
+            // неполный срез исчерпал окно, следующее начинается строго раньше его нижней границы
+            upperTimestamp = since;
+            upperEventId = Long.MIN_VALUE;
+            window *= SLICE_GROWTH;
+        }
+        return page;
+    }
+
+    private long[] parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return new long[]{Long.MAX_VALUE, Long.MAX_VALUE};
+        }
+        String[] parts = cursor.split(":");
+        try {
+            if (parts.length != 2) {
+                throw new NumberFormatException(cursor);
+            }
+            return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректный курсор ленты: " + cursor);
+        }
     }
-}
\ No newline at end of file
+}
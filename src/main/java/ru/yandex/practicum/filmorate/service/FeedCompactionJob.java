@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.event.EventRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновое уплотнение старой части ленты. Обходит пользователей пачками
+ * и удаляет события, которые {@link FeedCompactor} считает избыточными.
+ * Строки только удаляются, поэтому порядок оставшихся событий в ленте не меняется.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.feed.compaction.enabled", havingValue = "true")
+public class FeedCompactionJob {
+    private final EventRepository eventRepository;
+    private final FeedCompactor feedCompactor;
+    private final UserChangeWatermarks watermarks;
+    private final Duration minAge;
+    private final int userBatchSize;
+    private final AtomicLong totalReclaimed = new AtomicLong();
+
+    public FeedCompactionJob(EventRepository eventRepository,
+                             FeedCompactor feedCompactor,
+                             UserChangeWatermarks watermarks,
+                             @Value("${filmorate.feed.compaction.min-age:7d}") Duration minAge,
+                             @Value("${filmorate.feed.compaction.user-batch-size:500}") int userBatchSize) {
+        this.eventRepository = eventRepository;
+        this.feedCompactor = feedCompactor;
+        this.watermarks = watermarks;
+        this.minAge = minAge;
+        this.userBatchSize = userBatchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.feed.compaction.interval:1h}",
+            initialDelayString = "${filmorate.feed.compaction.interval:1h}")
+    public void runScheduled() {
+        compactOlderThan(Instant.now().minus(minAge).toEpochMilli());
+    }
+
+    /**
+     * @return число удалённых строк
+     */
+    public int compactOlderThan(long beforeTimestamp) {
+        log.info("Запуск уплотнения ленты для событий старше {}", Instant.ofEpochMilli(beforeTimestamp));
+        int reclaimed = 0;
+        long afterUserId = 0;
+        List<Long> userIds = eventRepository.findUserIdsWithEventsBefore(afterUserId, beforeTimestamp, userBatchSize);
+        while (!userIds.isEmpty()) {
+            List<Event> segment = eventRepository.findEventsByUserIdsBefore(userIds, beforeTimestamp,
+                    FeedCompactor.COMPACTABLE_TYPES);
+            Set<Long> redundant = feedCompactor.findRedundantEventIds(segment);
+            reclaimed += eventRepository.deleteEventsByIds(redundant);
+            segment.stream()
+                    .filter(event -> redundant.contains(event.getEventId()))
+                    .map(Event::getUserId)
+                    .distinct()
+                    .forEach(watermarks::feedChanged);
+
+            afterUserId = userIds.get(userIds.size() - 1);
+            userIds = eventRepository.findUserIdsWithEventsBefore(afterUserId, beforeTimestamp, userBatchSize);
+        }
+        long total = totalReclaimed.addAndGet(reclaimed);
+        log.info("Уплотнение ленты завершено: удалено {} строк, всего с запуска приложения {}", reclaimed, total);
+        return reclaimed;
+    }
+
+    public long getTotalReclaimed() {
+        return totalReclaimed.get();
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Схлопывает избыточные события ленты по ключу (пользователь, тип, сущность):
+ * повтор той же операции подряд отбрасывается, а пара ADD/REMOVE (в любом порядке)
+ * взаимно уничтожается. Оставшиеся события сохраняют исходный порядок.
+ */
+@Component
+public class FeedCompactor {
+    public static final Set<String> COMPACTABLE_TYPES = Set.of("LIKE", "FRIEND");
+
+    /**
+     * @param events события в хронологическом порядке
+     * @return идентификаторы событий, которые можно удалить без изменения итогового состояния
+     */
+    public Set<Long> findRedundantEventIds(List<Event> events) {
+        Map<List<Object>, Event> lastKept = new HashMap<>();
+        Set<Long> redundant = new HashSet<>();
+        for (Event event : events) {
+            if (!COMPACTABLE_TYPES.contains(event.getEventType())) {
+                continue;
+            }
+            List<Object> key = List.of(event.getUserId(), event.getEventType(), event.getEntityId());
+            Event previous = lastKept.get(key);
+            if (previous == null) {
+                lastKept.put(key, event);
+            } else if (Objects.equals(previous.getOperation(), event.getOperation())) {
+                redundant.add(event.getEventId());
+            } else {
+                redundant.add(previous.getEventId());
+                redundant.add(event.getEventId());
+                lastKept.remove(key);
+            }
+        }
+        return redundant;
+    }
+
+    public List<Event> compact(List<Event> events) {
+        Set<Long> redundant = findRedundantEventIds(events);
+        if (redundant.isEmpty()) {
+            return events;
+        }
+        List<Event> result = new ArrayList<>(events.size() - redundant.size());
+        for (Event event : events) {
+            if (!redundant.contains(event.getEventId())) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+}
@@ -12,6 +12,8 @@ import ru.yandex.practicum.filmorate.storage.director.DirectorRepository;
 import ru.yandex.practicum.filmorate.storage.film.FilmRepository;
 import ru.yandex.practicum.filmorate.storage.genre.GenreRepository;
 import ru.yandex.practicum.filmorate.storage.review.ReviewRepository;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.existence.ExistenceIndex;
 
 import java.util.Collection;
 import java.util.List;
@@ -29,12 +31,14 @@ public class FilmService {
     private final DirectorRepository directorRepository;
     private final GenreRepository genreRepository;
     private final ReviewRepository reviewRepository;
+    private final UserChangeWatermarks watermarks;
+    private final ExistenceIndex existenceIndex;
 
     public Collection<Film> findAllFilms() {
-        log.info("Попытка получения всех фильмов");
+        log.debug("Попытка получения всех фильмов");
         Collection<Film> films = filmRepository.findAllFilms();
         if (films.isEmpty()) {
-            log.info("GET /films. Получена пустая коллекция");
+            log.debug("GET /films. Получена пустая коллекция");
             return films;
         }
         loadAdditionalData(new ArrayList<>(films));
@@ -42,12 +46,12 @@ public class FilmService {
             List<Review> reviews = reviewRepository.getReviewsByFilmId(film.getId(), Integer.MAX_VALUE);
             film.setReviews(reviews);
         }
-        log.info("по запросу GET /films получена коллекция из {} фильмов", films.size());
+        log.debug("по запросу GET /films получена коллекция из {} фильмов", films.size());
         return films;
     }
 
     public Film getFilmById(Long filmId) {
-        log.info("Попытка получения фильма по ID: {}", filmId);
+        log.debug("Попытка получения фильма по ID: {}", filmId);
         validationService.validateFilmExists(filmId);
         Film film = filmRepository.getFilmById(filmId)
                 .orElseThrow(() -> new NotFoundException("Фильм с ID " + filmId + " не найден"));
@@ -56,14 +60,16 @@ public class FilmService {
         List<Review> reviews = reviewRepository.getReviewsByFilmId(filmId, Integer.MAX_VALUE);
         film.setReviews(reviews);
         loadAdditionalData(List.of(film));
-        log.info("GET /films/{filmId} - получен  фильм ID={}, name={}", filmId, film.getName());
+        log.debug("GET /films/{filmId} - получен  фильм ID={}, name={}", filmId, film.getName());
         return film;
     }
 
     public Film createFilm(Film film) {
-        log.info("Попытка создания фильма: {}", film.getName());
+        log.debug("Попытка создания фильма: {}", film.getName());
         validationService.validateFilm(film);
         Film createdFilm = filmRepository.createFilm(film);
+        existenceIndex.created(EntityKind.FILM, createdFilm.getId());
+        watermarks.filmChanged(createdFilm.getId());
         if (film.getGenres() != null && !film.getGenres().isEmpty()) {
             film.setGenres(film.getGenres()
                     .stream()
@@ -75,7 +81,7 @@ public class FilmService {
     }
 
     public Film updateFilm(Film newFilm) {
-        log.info("Попытка обновления фильма с ID: {}", newFilm.getId());
+        log.debug("Попытка обновления фильма с ID: {}", newFilm.getId());
         validationService.validateFilmExists(newFilm.getId()); //проверка на обновление фильма с несуществующим id
         validationService.validateFilm(newFilm);
         //костыль на сортировку жанров в фильме
@@ -90,44 +96,64 @@ public class FilmService {
         if (newFilm.getDirectors() == null || newFilm.getDirectors().isEmpty()) { //обновление фильма (новый фильм пришел без режиссера)
             directorRepository.deleteAllFilmDirectors(newFilm.getId());
         }
+        watermarks.filmChanged(newFilm.getId());
         log.info("Фильм с ID {} обновлен", newFilm.getId());
         return updatedFilm;
     }
 
-    public Collection<Film> getPopularFilms(int count, Long genreId, Integer year) {
-        log.info("Попытка получения популярных фильмов: count={}, genreId={}, year={}", count, genreId, year);
+    /**
+     * Популярные фильмы с необязательными фильтрами по жанру и году выпуска.
+     * Год задаётся либо точно (year), либо диапазоном yearFrom..yearTo включительно,
+     * где любую из границ можно опустить; десятилетие — это диапазон вида 1990..1999.
+     */
+    public Collection<Film> getPopularFilms(int count, Long genreId, Integer year, Integer yearFrom, Integer yearTo) {
+        log.debug("Попытка получения популярных фильмов: count={}, genreId={}, year={}, yearFrom={}, yearTo={}",
+                count, genreId, year, yearFrom, yearTo);
 
         if (count <= 0) {
             throw new ValidationException("Количество фильмов должно быть положительным числом.");
         }
+        if (year != null && (yearFrom != null || yearTo != null)) {
+            throw new ValidationException("Нельзя одновременно указывать year и диапазон yearFrom/yearTo.");
+        }
+        if (year != null) {
+            yearFrom = year;
+            yearTo = year;
+        }
+        if (yearFrom != null && yearTo != null && yearFrom > yearTo) {
+            throw new ValidationException("Начало диапазона лет не может быть больше конца.");
+        }
+        boolean byYears = yearFrom != null || yearTo != null;
+        int from = yearFrom == null ? 0 : yearFrom;
+        int to = yearTo == null ? Integer.MAX_VALUE : yearTo;
 
         List<Film> popularFilms;
-        if (genreId != null && year != null) {
-            popularFilms = new ArrayList<>(filmRepository.getPopularFilmsByGenreAndYear(count, genreId, year));
+        if (genreId != null && byYears) {
+            popularFilms = new ArrayList<>(filmRepository.getPopularFilmsByGenreAndYears(count, genreId, from, to));
         } else if (genreId != null) {
             popularFilms = new ArrayList<>(filmRepository.getPopularFilmsByGenre(count, genreId));
-        } else if (year != null) {
-            popularFilms = new ArrayList<>(filmRepository.getPopularFilmsByYear(count, year));
+        } else if (byYears) {
+            popularFilms = new ArrayList<>(filmRepository.getPopularFilmsByYears(count, from, to));
         } else {
             popularFilms = new ArrayList<>(filmRepository.getPopularFilms(count));
         }
 
         if (popularFilms.isEmpty()) {
-            log.info("GET /films/popular?count={}. Получена пустая коллекция", count);
+            log.debug("GET /films/popular?count={}. Получена пустая коллекция", count);
             return popularFilms;
         }
 
         loadAdditionalData(popularFilms);
 
-        log.info("по запросу GET /films/popular?count={}&genreId={}&year={} " +
+        log.debug("по запросу GET /films/popular?count={}&genreId={}&yearFrom={}&yearTo={} " +
                         "получена коллекция из {} популярных фильмов",
-                count, genreId, year, popularFilms.size());
+                count, genreId, yearFrom, yearTo, popularFilms.size());
 
         return popularFilms;
     }
 
     public void addLike(Long filmId, Long userId) {
-        log.info("Попытка добавления лайка фильму {} от пользователя {}", filmId, userId);
+        log.debug("Попытка добавления лайка фильму {} от пользователя {}", filmId, userId);
         validationService.validateFilmAndUserIds(filmId, userId);
         validationService.validateFilmExists(filmId);
         validationService.validateUserExists(userId);
@@ -136,7 +162,7 @@ public class FilmService {
     }
 
     public void removeLike(Long filmId, Long userId) {
-        log.info("Попытка удаления лайка у фильма {} от пользователя {}", filmId, userId);
+        log.debug("Попытка удаления лайка у фильма {} от пользователя {}", filmId, userId);
         validationService.validateFilmAndUserIds(filmId, userId);
         likeService.removeLike(filmId, userId);
         log.info("Пользователь {} убрал лайк у фильма {}", userId, filmId);
@@ -144,7 +170,7 @@ public class FilmService {
 
     //GET /films/director/{directorId}?sortBy=[year,likes]
     public Collection<Film> getFilmsByDirector(Long directorId, String sortBy) {
-        log.info("Попытка получить список фильмов по режиссеру сортированный по {}", sortBy);
+        log.debug("Попытка получить список фильмов по режиссеру сортированный по {}", sortBy);
         validationService.validateDirectorExists(directorId);
 
         List<Film> films = switch (sortBy) {
@@ -154,16 +180,16 @@ public class FilmService {
         };
 
         if (films.isEmpty()) {
-            log.info("GET /films/director/{}. Получена пустая коллекция", directorId);
+            log.debug("GET /films/director/{}. Получена пустая коллекция", directorId);
             return films;
         }
         loadAdditionalData(films);
-        log.info("по запросу GET /films/director/{} получена коллекция из {} фильмов", directorId, films.size());
+        log.debug("по запросу GET /films/director/{} получена коллекция из {} фильмов", directorId, films.size());
         return films;
     }
 
     public Collection<Film> searchFilms(String query, String by) {
-        log.info("Поиск фильмов с query: {} и by: {}", query, by);
+        log.debug("Поиск фильмов с query: {} и by: {}", query, by);
         validationService.validateSearchQuery(query);
         Set<String> searchBy = validationService.validateAndParseSearchBy(by);
         Collection<Film> films;
@@ -181,11 +207,15 @@ public class FilmService {
     }
 
     public void removeFilm(Long filmId) {
-        log.info("Попытка удаления фильма {} ", filmId);
+        log.debug("Попытка удаления фильма {} ", filmId);
         validationService.validateFilmExists(filmId);
         filmRepository.deleteFilm(filmId);
+        existenceIndex.deleted(EntityKind.FILM, filmId);
+        // отзывы о фильме удалены каскадом
+        existenceIndex.invalidate(EntityKind.REVIEW);
         genreRepository.deleteFilmGenresByFilmId(filmId);
         likeService.removeLikesByFilmId(filmId);
+        watermarks.filmChanged(filmId);
         log.info("Фильм {}, а также связанные с ним лайки и жанры удалены", filmId);
     }
 
@@ -204,7 +234,7 @@ public class FilmService {
     public Collection<Film> getCommonFilms(long userId, long friendId) {
         Collection<Film> filmList = filmRepository.getCommonFilms(userId, friendId);
         loadAdditionalData(new ArrayList<>(filmList));
-        log.info("Отгрузил {} общих фильмов для пользователей {} и {}", filmList.size(),
+        log.debug("Отгрузил {} общих фильмов для пользователей {} и {}", filmList.size(),
                 userId, friendId);
         return filmList;
     }
@@ -16,14 +16,16 @@ public class FriendService {
     private final FriendRepository friendRepository;
     private final ValidationService validationService;
     private final EventService eventService;
+    private final UserChangeWatermarks watermarks;
 
     public void addFriend(Long userId, Long friendId) {
-        log.info("Попытка добавления друзья: пользователь {} добавляет {}", userId, friendId);
+        log.debug("Попытка добавления друзья: пользователь {} добавляет {}", userId, friendId);
         validationService.validateUsersExist(userId, friendId);
         if (userId.equals(friendId)) {
             throw new ValidationException("Пользователь не может добавить себя в друзья.");
         }
         friendRepository.addFriend(userId, friendId);
+        watermarks.friendsChanged(userId);
         eventService.addEvent(userId, friendId, "FRIEND", "ADD");
         log.info("Пользователь {} отправил запрос на дружбу пользователю {}", userId, friendId);
     }
@@ -32,18 +34,19 @@ public class FriendService {
         log.info("Пользователь {} удалил пользователя {} из друзей", userId, friendId);
         validationService.validateUsersExist(userId, friendId);
         friendRepository.removeFriend(userId, friendId);
+        watermarks.friendsChanged(userId);
         eventService.addEvent(userId, friendId, "FRIEND", "REMOVE");
         log.info("Пользователь {} удалил пользователя {} из друзей", userId, friendId);
     }
 
     public Collection<User> getFriends(Long userId) {
-        log.info("Попытка получения списка друзей для пользователя {}", userId);
+        log.debug("Попытка получения списка друзей для пользователя {}", userId);
         validationService.validateUserExists(userId);
         return friendRepository.getFriends(userId);
     }
 
     public Collection<User> getCommonFriends(Long userId1, Long userId2) {
-        log.info("Получение общих друзей пользователей {} и {}", userId1, userId2);
+        log.debug("Получение общих друзей пользователей {} и {}", userId1, userId2);
         validationService.validateUsersExist(userId1, userId2);
         return friendRepository.getCommonFriends(userId1, userId2);
     }
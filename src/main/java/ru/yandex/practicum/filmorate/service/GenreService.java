@@ -5,7 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.storage.genre.GenreRepository;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
 
 import java.util.List;
 
@@ -13,14 +13,21 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class GenreService {
-    private final GenreRepository genreRepository;
+    private final ReferenceDataRegistry referenceData;
 
     public Genre findGenreById(Long genreId) {
-        return genreRepository.findGenreById(genreId)
+        return referenceData.findGenre(genreId)
                 .orElseThrow(() -> new NotFoundException("Жанр с ID: " + genreId + " не найден."));
     }
 
     public List<Genre> findAllGenres() {
-        return genreRepository.findAllGenres();
+        return referenceData.genres();
+    }
+
+    /**
+     * Список всех жанров, заранее сериализованный в JSON.
+     */
+    public byte[] findAllGenresJson() {
+        return referenceData.genresJson();
     }
 }
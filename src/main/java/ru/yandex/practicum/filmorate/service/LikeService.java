@@ -10,10 +10,12 @@ public class LikeService {
     private final LikeRepository likeRepository;
     private final EventService eventService;
     private final ValidationService validationService;
+    private final UserChangeWatermarks watermarks;
 
     public void addLike(Long filmId, Long userId) {
         likeRepository.removeLike(filmId, userId);
         likeRepository.addLike(filmId, userId);
+        watermarks.likesChanged(userId);
         eventService.addEvent(userId, filmId, "LIKE", "ADD");
     }
 
@@ -21,14 +23,17 @@ public class LikeService {
         validationService.validateFilmExists(filmId);
         validationService.validateUserExists(userId);
         likeRepository.removeLike(filmId, userId);
+        watermarks.likesChanged(userId);
         eventService.addEvent(userId, filmId, "LIKE", "REMOVE");
     }
 
     public void removeLikesByFilmId(Long filmId) {
         likeRepository.deleteLikesByFilmId(filmId);
+        watermarks.allLikesChanged();
     }
 
     public void removeLikesByUserId(Long userId) {
         likeRepository.deleteLikesByUserId(userId);
+        watermarks.likesChanged(userId);
     }
 }
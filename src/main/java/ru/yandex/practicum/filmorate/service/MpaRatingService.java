@@ -5,7 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.MpaRating;
-import ru.yandex.practicum.filmorate.storage.mpa.MpaRepository;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
 
 import java.util.List;
 
@@ -13,14 +13,21 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class MpaRatingService {
-    private final MpaRepository mpaRepository;
+    private final ReferenceDataRegistry referenceData;
 
     public MpaRating findMpaById(Long mpaId) {
-        return mpaRepository.findMpaById(mpaId)
+        return referenceData.findMpa(mpaId)
                 .orElseThrow(() -> new NotFoundException("Рейтинг с таким ID: " + mpaId + " не найден."));
     }
 
     public List<MpaRating> findAllMpa() {
-        return mpaRepository.findAllMpa();
+        return referenceData.mpaRatings();
+    }
+
+    /**
+     * Список всех рейтингов MPA, заранее сериализованный в JSON.
+     */
+    public byte[] findAllMpaJson() {
+        return referenceData.mpaRatingsJson();
     }
 }
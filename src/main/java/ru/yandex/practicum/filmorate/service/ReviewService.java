@@ -2,138 +2,199 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Review;
-import ru.yandex.practicum.filmorate.model.ReviewLikes;
+import ru.yandex.practicum.filmorate.model.ReviewVote;
 import ru.yandex.practicum.filmorate.storage.review.ReviewRepository;
 import ru.yandex.practicum.filmorate.storage.reviewLikes.ReviewLikesRepository;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.existence.ExistenceIndex;
 
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ReviewService {
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
     private final ReviewRepository reviewRepository;
     private final ValidationService validationService;
     private final ReviewLikesRepository reviewLikesRepository;
     private final EventService eventService;
+    private final UserChangeWatermarks watermarks;
+    private final ExistenceIndex existenceIndex;
 
     public Review createReview(Review review) {
-        log.info("Попытка создания отзыва для фильма ID: {}, пользователем ID: {}",
+        log.debug("Попытка создания отзыва для фильма ID: {}, пользователем ID: {}",
                 review.getFilmId(), review.getUserId());
         validationService.validateReview(review);
         Review newReview = reviewRepository.createReview(review);
+        existenceIndex.created(EntityKind.REVIEW, newReview.getReviewId());
         eventService.addEvent(review.getUserId(), newReview.getReviewId(), "REVIEW", "ADD");
+        watermarks.reviewChanged(review.getFilmId());
         return newReview;
     }
 
     public Review updateReview(Review review) {
-        log.info("Попытка обновить отзыв {}", review.getReviewId());
+        log.debug("Попытка обновить отзыв {}", review.getReviewId());
         validationService.validateReview(review);
         validationService.validateReviewExists(review.getReviewId());
-        Review oldReview = reviewRepository.getReviewById(review.getReviewId()).get();
-        eventService.addEvent(oldReview.getUserId(), oldReview.getReviewId(), "REVIEW", "UPDATE");
-        return reviewRepository.updateReview(review);
+        // автор отзыва приходит из обновлённой строки, отдельное чтение отзыва не нужно
+        Review updatedReview = reviewRepository.updateReview(review);
+        eventService.addEvent(updatedReview.getUserId(), updatedReview.getReviewId(), "REVIEW", "UPDATE");
+        watermarks.reviewChanged(updatedReview.getFilmId());
+        return updatedReview;
     }
 
     public void deleteReview(Long reviewId) {
-        log.info("Попытка удаления отзыва с ID: {}", reviewId);
+        log.debug("Попытка удаления отзыва с ID: {}", reviewId);
         validationService.validateReviewExists(reviewId);
         Review review = reviewRepository.getReviewById(reviewId).get();
         eventService.addEvent(review.getUserId(), reviewId, "REVIEW", "REMOVE");
         reviewRepository.deleteReview(reviewId);
+        existenceIndex.deleted(EntityKind.REVIEW, reviewId);
+        watermarks.reviewChanged(review.getFilmId());
     }
 
     public Review getReviewById(Long reviewId) {
-        log.info("Попытка получения отзыва по ID: {}", reviewId);
+        log.debug("Попытка получения отзыва по ID: {}", reviewId);
         validationService.validateReviewExists(reviewId);
         return reviewRepository.getReviewById(reviewId)
                 .orElseThrow(() -> new NotFoundException("Отзыв с ID " + reviewId + " не найден"));
     }
 
-    public List<Review> getAllReviews(int count) {
-        log.info("Попытка получения {} отзывов", count);
+    /**
+     * Страница отзывов по убыванию полезности. Следующая страница запрашивается
+     * с курсором из полезности и ID последнего отзыва предыдущей страницы.
+     *
+     * @param viewerId пользователь, чьи оценки нужно проставить отзывам страницы, или null
+     */
+    public List<Review> getReviews(Long filmId, Integer afterUseful, Long afterReviewId, int count,
+                                   Long viewerId) {
+        log.debug("Попытка получения {} отзывов: filmId={}, после ({}, {})", count, filmId, afterUseful,
+                afterReviewId);
         if (count <= 0) {
             throw new ValidationException("Число отзывов должно быть положительным");
         }
-        return reviewRepository.getAllReviews(count);
+        if ((afterUseful == null) != (afterReviewId == null)) {
+            throw new ValidationException("Курсор страницы задаётся парой afterUseful и afterReviewId");
+        }
+        if (filmId != null) {
+            validationService.validateFilmExists(filmId);
+        }
+        if (viewerId != null) {
+            validationService.validateUserExists(viewerId);
+        }
+        List<Review> reviews = reviewRepository.getReviewsPage(filmId, afterUseful, afterReviewId, count);
+        if (viewerId != null) {
+            addViewerVotes(reviews, viewerId);
+        }
+        return reviews;
     }
 
-    public List<Review> getReviewsByFilmId(Long filmId, int count) {
-        log.info("Попытка получения {} отзыва для фильма с ID: {}", count, filmId);
-        validationService.validateFilmExists(filmId);
-        return reviewRepository.getReviewsByFilmId(filmId, count);
+    public List<Review> searchReviews(String query, Long filmId, Long userId, int count) {
+        log.debug("Попытка поиска {} отзывов по запросу '{}': filmId={}, userId={}", count, query, filmId, userId);
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не может быть пустым");
+        }
+        if (count <= 0) {
+            throw new ValidationException("Число отзывов должно быть положительным");
+        }
+        if (filmId != null) {
+            validationService.validateFilmExists(filmId);
+        }
+        if (userId != null) {
+            validationService.validateUserExists(userId);
+        }
+        return reviewRepository.searchReviews(query, filmId, userId, count);
     }
 
-    public void addLike(Long reviewId, Long userId) {
-        log.info("Попытка добавления лайка: пользователь {} ставит лайк отзыву {}", userId, reviewId);
-        validationService.validateReviewExists(reviewId);
-        Optional<ReviewLikes> rLikes = reviewLikesRepository.getReviewLikes(reviewId, userId);
-        if (rLikes.isPresent()) {
-            if (rLikes.get().getIsLike().equals(Boolean.TRUE)) {
-                log.info("Лайк отзыву {} от пользователя {} уже существует", reviewId, userId);
-                return;
-            } else {
-                log.info("На отзыве {} стоит дизлайк от пользователя {}. Ставим лайк", reviewId, userId);
-                reviewRepository.addLike(reviewId, userId);
-                reviewRepository.updateUseful(reviewId);
-            }
+    private void addViewerVotes(List<Review> reviews, Long viewerId) {
+        Map<Long, Boolean> votes = reviewLikesRepository.findVotesByUser(viewerId,
+                reviews.stream().map(Review::getReviewId).toList());
+        for (Review review : reviews) {
+            Boolean isLike = votes.get(review.getReviewId());
+            review.setViewerVote(isLike == null ? ReviewVote.Type.CLEAR
+                    : isLike ? ReviewVote.Type.LIKE : ReviewVote.Type.DISLIKE);
         }
-        reviewLikesRepository.addReviewLike(reviewId, userId, Boolean.TRUE);
-        log.info("Пользователь {} лайкнул отзыв {}", userId, reviewId);
-        reviewRepository.addLike(reviewId, userId);
-        reviewRepository.updateUseful(reviewId);
+    }
+
+    public void addLike(Long reviewId, Long userId) {
+        log.debug("Попытка добавления лайка: пользователь {} ставит лайк отзыву {}", userId, reviewId);
+        int delta = reviewLikesRepository.setVote(reviewId, userId, true);
+        votesChanged(reviewId, delta);
     }
 
     public void addDislike(Long reviewId, Long userId) {
-        log.info("Попытка добавления дизлайка: пользователь {} ставит дизлайк отзыву {}", userId, reviewId);
-        validationService.validateReviewExists(reviewId);
-        Optional<ReviewLikes> rLikes = reviewLikesRepository.getReviewLikes(reviewId, userId);
-        if (rLikes.isPresent()) {
-            if (rLikes.get().getIsLike().equals(Boolean.FALSE)) {
-                log.info("Дизайк отзыву {} от пользователя {} уже существует", reviewId, userId);
-                return;
-            } else {
-                log.info("На отзыве {} стоит лайк от пользователя {}. Ставим дизлайк", reviewId, userId);
-                reviewRepository.addDislike(reviewId, userId);
-                reviewRepository.updateUseful(reviewId);
-            }
-        }
-        reviewLikesRepository.addReviewLike(reviewId, userId, Boolean.FALSE);
-        log.info("Пользователь {} дизлайкнул отзыв {}", userId, reviewId);
-        reviewRepository.addDislike(reviewId, userId);
-        reviewRepository.updateUseful(reviewId);
+        log.debug("Попытка добавления дизлайка: пользователь {} ставит дизлайк отзыву {}", userId, reviewId);
+        int delta = reviewLikesRepository.setVote(reviewId, userId, false);
+        votesChanged(reviewId, delta);
     }
 
     public void deleteLike(Long reviewId, Long userId) {
-        log.info("Попытка удаления лайка: пользователь {} убирает лайк отзыву {}", userId, reviewId);
-        validationService.validateReviewExists(reviewId);
-        Optional<ReviewLikes> rLikes = reviewLikesRepository.getReviewLikes(reviewId, userId);
-        if (rLikes.isPresent()) {
-            reviewLikesRepository.deleteReviewLike(reviewId, userId);
-            if (rLikes.get().getIsLike().equals(Boolean.TRUE)) {
-                log.info("Удаляем лайк отзыву {} от пользователя {}", reviewId, userId);
-                reviewRepository.addDislike(reviewId, userId);
-                reviewRepository.updateUseful(reviewId);
+        log.debug("Попытка удаления лайка: пользователь {} убирает лайк отзыву {}", userId, reviewId);
+        int delta = reviewLikesRepository.removeVote(reviewId, userId, true);
+        votesChanged(reviewId, delta);
+    }
+
+    public void deleteDislike(Long reviewId, Long userId) {
+        log.debug("Попытка удаления дизлайка: пользователь {} убирает дизлайк отзыву {}", userId, reviewId);
+        int delta = reviewLikesRepository.removeVote(reviewId, userId, false);
+        votesChanged(reviewId, delta);
+    }
+
+    /**
+     * Применяет пачку голосов одной транзакцией. Если параллельный одиночный голос успел вставить ту же оценку,
+     * пачка откатывается и применяется заново с уже закоммиченными оценками.
+     *
+     * @return суммарное изменение рейтинга полезности по каждому затронутому отзыву
+     */
+    public Map<Long, Integer> applyVotes(List<ReviewVote> votes) {
+        log.debug("Попытка применения пачки из {} голосов за отзывы", votes == null ? 0 : votes.size());
+        validateVotes(votes);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Map<Long, Integer> deltas = reviewLikesRepository.applyVotes(votes);
+                log.info("Пачка голосов применена, изменён рейтинг {} отзывов", deltas.size());
+                if (!deltas.isEmpty()) {
+                    watermarks.reviewVotesChanged();
+                }
+                return deltas;
+            } catch (DuplicateKeyException e) {
+                if (attempt == MAX_BATCH_ATTEMPTS) {
+                    throw e;
+                }
+                log.info("Пачка голосов пересеклась с параллельным голосом, повтор {}", attempt);
             }
         }
     }
 
-    public void deleteDislike(Long reviewId, Long userId) {
-        log.info("Попытка удаления дизлайка: пользователь {} убирает дизлайк отзыву {}", userId, reviewId);
-        validationService.validateReviewExists(reviewId);
-        Optional<ReviewLikes> rLikes = reviewLikesRepository.getReviewLikes(reviewId, userId);
-        if (rLikes.isPresent()) {
-            reviewLikesRepository.deleteReviewLike(reviewId, userId);
-            if (rLikes.get().getIsLike().equals(Boolean.FALSE)) {
-                log.info("Удаляем дизлайк отзыву {} от пользователя {}", reviewId, userId);
-                reviewRepository.addLike(reviewId, userId);
-                reviewRepository.updateUseful(reviewId);
+    private void validateVotes(List<ReviewVote> votes) {
+        if (votes == null || votes.isEmpty()) {
+            throw new ValidationException("Пачка голосов не должна быть пустой");
+        }
+        if (votes.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("В пачке может быть не больше " + MAX_BATCH_SIZE + " голосов");
+        }
+        for (ReviewVote vote : votes) {
+            if (vote == null || vote.getReviewId() == null || vote.getUserId() == null || vote.getVote() == null) {
+                throw new ValidationException("Для каждого голоса обязательны reviewId, userId и vote");
             }
         }
     }
+
+    private void votesChanged(Long reviewId, int delta) {
+        if (delta == 0) {
+            log.info("Оценка отзыва {} не изменилась", reviewId);
+            return;
+        }
+        log.info("Рейтинг полезности отзыва {} изменён на {}", reviewId, delta);
+        watermarks.reviewVotesChanged();
+    }
 }
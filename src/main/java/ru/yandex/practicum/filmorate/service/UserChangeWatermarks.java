@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Отметки последнего изменения данных пользователей и каталога в памяти процесса.
+ * Отметки двигают пути записи, по ним контроллеры отдают ETag/Last-Modified и отвечают 304
+ * на If-None-Match, не обращаясь к базе и не хешируя тело ответа. Отметки не переживают рестарт,
+ * поэтому в ETag входит идентификатор запуска — после рестарта клиент один раз получит полный ответ.
+ * ETag слабый: Tomcat не сжимает ответы с сильным ETag, а сжатое и несжатое тело эквивалентны.
+ */
+@Component
+public class UserChangeWatermarks {
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final Watermark initial = new Watermark(0, Instant.now().toEpochMilli());
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Map<Long, Watermark> feed = new ConcurrentHashMap<>();
+    private final Map<Long, Watermark> friends = new ConcurrentHashMap<>();
+    private final Map<Long, Watermark> likes = new ConcurrentHashMap<>();
+    // изменения, которые затрагивают чужие списки: профили пользователей, все лайки, фильмы и отзывы
+    private final AtomicReference<Watermark> profiles = new AtomicReference<>(initial);
+    private final AtomicReference<Watermark> allLikes = new AtomicReference<>(initial);
+    private final AtomicReference<Watermark> catalog = new AtomicReference<>(initial);
+    // содержимое отдельных фильмов вместе с их отзывами, список фильмов и то, что в фильмы встроено
+    private final Map<Long, Watermark> films = new ConcurrentHashMap<>();
+    private final AtomicReference<Watermark> filmList = new AtomicReference<>(initial);
+    private final AtomicReference<Watermark> reviewVotes = new AtomicReference<>(initial);
+    private final AtomicReference<Watermark> directors = new AtomicReference<>(initial);
+    private final AtomicReference<Watermark> referenceData = new AtomicReference<>(initial);
+
+    public void feedChanged(Long userId) {
+        feed.put(userId, next());
+    }
+
+    public void friendsChanged(Long userId) {
+        friends.put(userId, next());
+    }
+
+    public void likesChanged(Long userId) {
+        Watermark watermark = next();
+        likes.put(userId, watermark);
+        allLikes.set(watermark);
+    }
+
+    public void allLikesChanged() {
+        allLikes.set(next());
+    }
+
+    public void profilesChanged() {
+        profiles.set(next());
+    }
+
+    public void filmChanged(Long filmId) {
+        Watermark watermark = next();
+        films.put(filmId, watermark);
+        filmList.set(watermark);
+        catalog.set(watermark);
+    }
+
+    public void filmsImported() {
+        Watermark watermark = next();
+        filmList.set(watermark);
+        catalog.set(watermark);
+    }
+
+    /**
+     * Отзыв создан, изменён или удалён: меняется фильм, в который встроены его отзывы.
+     */
+    public void reviewChanged(Long filmId) {
+        Watermark watermark = next();
+        films.put(filmId, watermark);
+        catalog.set(watermark);
+    }
+
+    /**
+     * Голос меняет полезность отзыва; фильм отзыва на этом пути не читается, поэтому отметка общая.
+     */
+    public void reviewVotesChanged() {
+        Watermark watermark = next();
+        reviewVotes.set(watermark);
+        catalog.set(watermark);
+    }
+
+    public void directorsChanged() {
+        Watermark watermark = next();
+        directors.set(watermark);
+        catalog.set(watermark);
+    }
+
+    public void referenceDataChanged() {
+        Watermark watermark = next();
+        referenceData.set(watermark);
+        catalog.set(watermark);
+    }
+
+    public void userRemoved(Long userId) {
+        Watermark watermark = next();
+        feed.put(userId, watermark);
+        friends.put(userId, watermark);
+        likes.put(userId, watermark);
+        profiles.set(watermark);
+        allLikes.set(watermark);
+    }
+
+    public Validator feed(Long userId) {
+        return validator("feed", feed.getOrDefault(userId, initial));
+    }
+
+    public Validator friends(Long userId) {
+        return validator("friends", friends.getOrDefault(userId, initial), profiles.get());
+    }
+
+    /**
+     * Рекомендации строятся по лайкам всех пользователей и включают данные фильмов и отзывов.
+     */
+    public Validator recommendations(Long userId) {
+        return validator("recommendations", likes.getOrDefault(userId, initial), allLikes.get(), catalog.get());
+    }
+
+    public Validator genres() {
+        return validator("genres", referenceData.get());
+    }
+
+    public Validator mpa() {
+        return validator("mpa", referenceData.get());
+    }
+
+    public Validator directors() {
+        return validator("directors", directors.get());
+    }
+
+    /**
+     * Фильм по ID включает жанры и рейтинг из справочников, режиссёров и отзывы; лайки в него не входят.
+     */
+    public Validator film(Long filmId) {
+        return validator("film", films.getOrDefault(filmId, initial), reviewVotes.get(), directors.get(),
+                referenceData.get());
+    }
+
+    /**
+     * Популярные фильмы зависят от лайков всех пользователей и данных фильмов, но не от отзывов.
+     */
+    public Validator popular() {
+        return validator("popular", allLikes.get(), filmList.get(), directors.get(), referenceData.get());
+    }
+
+    private Watermark next() {
+        return new Watermark(sequence.incrementAndGet(), Instant.now().toEpochMilli());
+    }
+
+    private Validator validator(String kind, Watermark... watermarks) {
+        StringBuilder etag = new StringBuilder("W/\"").append(kind).append('-').append(bootId);
+        long lastModified = 0;
+        for (Watermark watermark : watermarks) {
+            etag.append('-').append(watermark.version());
+            lastModified = Math.max(lastModified, watermark.modifiedAt());
+        }
+        return new Validator(etag.append('"').toString(), lastModified);
+    }
+
+    private record Watermark(long version, long modifiedAt) {
+    }
+
+    public record Validator(String etag, long lastModified) {
+        public String etag(String variant) {
+            return variant.isEmpty() ? etag : etag.substring(0, etag.length() - 1) + "-" + variant + "\"";
+        }
+    }
+}
@@ -13,6 +13,8 @@ import ru.yandex.practicum.filmorate.storage.film.FilmRepository;
 import ru.yandex.practicum.filmorate.storage.genre.GenreRepository;
 import ru.yandex.practicum.filmorate.storage.review.ReviewRepository;
 import ru.yandex.practicum.filmorate.storage.user.UserRepository;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.existence.ExistenceIndex;
 
 import java.util.Collection;
 import java.util.List;
@@ -29,14 +31,16 @@ public class UserService {
     private final LikeService likeService;
     private final GenreRepository genreRepository;
     private final ReviewRepository reviewRepository;
+    private final UserChangeWatermarks watermarks;
+    private final ExistenceIndex existenceIndex;
 
     public Collection<User> findAllUsers() {
-        log.info("Попытка получения списка всех пользователей.");
+        log.debug("Попытка получения списка всех пользователей.");
         return userRepository.findAllUsers();
     }
 
     public User getUserById(Long userId) {
-        log.info("Попытка получения пользователя по ID: {}", userId);
+        log.debug("Попытка получения пользователя по ID: {}", userId);
         if (userId == null) {
             throw new ValidationException("ID пользователя не может быть null.");
         }
@@ -45,17 +49,18 @@ public class UserService {
     }
 
     public User createUser(User user) {
-        log.info("Попытка создания нового пользователя: email={}, login={}", user.getEmail(), user.getLogin());
+        log.debug("Попытка создания нового пользователя: email={}, login={}", user.getEmail(), user.getLogin());
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
         }
         User createdUser = userRepository.createUser(user);
+        existenceIndex.created(EntityKind.USER, createdUser.getId());
         log.info("Создан пользователь с ID: {}", createdUser.getId());
         return createdUser;
     }
 
     public User updateUser(User newUser) {
-        log.info("Попытка обновления пользователя с ID: {}", newUser.getId());
+        log.debug("Попытка обновления пользователя с ID: {}", newUser.getId());
         if (newUser.getId() == null) {
             throw new ValidationException("ID пользователя не может быть null.");
         }
@@ -64,6 +69,7 @@ public class UserService {
             newUser.setName(newUser.getLogin());
         }
         User updatedUser = userRepository.updateUser(newUser);
+        watermarks.profilesChanged();
         log.info("Пользователь с ID {} обновлен", newUser.getId());
         return updatedUser;
     }
@@ -76,17 +82,21 @@ public class UserService {
             List<Review> reviews = reviewRepository.getReviewsByFilmId(film.getId(), Integer.MAX_VALUE);
             film.setReviews(reviews);
         }
-        log.info("Отгрузил {} рекомендованных фильмов для пользователя {}", filmList.size(),
+        log.debug("Отгрузил {} рекомендованных фильмов для пользователя {}", filmList.size(),
                 userId);
         return filmList;
     }
 
     public void removeUser(Long userId) {
-        log.info("Попытка удаления пользователя {} ", userId);
+        log.debug("Попытка удаления пользователя {} ", userId);
         validationService.validateUserExists(userId);
         userRepository.deleteUser(userId);
+        existenceIndex.deleted(EntityKind.USER, userId);
+        // отзывы пользователя удалены каскадом
+        existenceIndex.invalidate(EntityKind.REVIEW);
         friendService.removeAllFriendsByUserId(userId);
         likeService.removeLikesByUserId(userId);
+        watermarks.userRemoved(userId);
         log.info("Пользователь {}, а также связанные с ним записи о лайках и друзьях удалены", userId);
     }
 }
@@ -5,42 +5,39 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.storage.director.DirectorRepository;
 import ru.yandex.practicum.filmorate.model.Review;
-import ru.yandex.practicum.filmorate.storage.film.FilmRepository;
-import ru.yandex.practicum.filmorate.storage.review.ReviewRepository;
-import ru.yandex.practicum.filmorate.storage.user.UserRepository;
-import ru.yandex.practicum.filmorate.storage.genre.GenreRepository;
-import ru.yandex.practicum.filmorate.storage.mpa.MpaRepository;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.existence.ExistenceIndex;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ValidationService {
-    private final UserRepository userRepository;
-    private final FilmRepository filmRepository;
-    private final GenreRepository genreRepository;
-    private final MpaRepository mpaRepository;
-    private final ReviewRepository reviewRepository;
-    private final DirectorRepository directorRepository;
+    private final ReferenceDataRegistry referenceData;
+    private final ExistenceIndex existenceIndex;
 
     public void validateUserExists(Long userId) {
         if (userId == null) {
             throw new ValidationException("ID пользователя не может быть null");
         }
-        userRepository.getUserById(userId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с ID " + userId + " не найден"));
+        if (!existenceIndex.exists(EntityKind.USER, userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
     }
 
     public void validateUsersExist(Long userId1, Long userId2) {
         if (userId1 == null || userId2 == null) {
             throw new ValidationException("ID пользователей не могут быть null");
         }
-        validateUserExists(userId1);
-        validateUserExists(userId2);
+        Set<Long> missing = existenceIndex.findMissing(EntityKind.USER, List.of(userId1, userId2));
+        if (!missing.isEmpty()) {
+            throw new NotFoundException("Пользователь с ID " + missing.iterator().next() + " не найден");
+        }
     }
 
     public void validateFilmAndUserIds(Long filmId, Long userId) {
@@ -56,11 +53,11 @@ public class ValidationService {
         if (filmId == null) {
             throw new ValidationException("ID фильма не может быть null");
         }
-        filmRepository.getFilmById(filmId)
-                .orElseThrow(() -> new NotFoundException("Фильм с ID " + filmId + " не найден"));
+        if (!existenceIndex.exists(EntityKind.FILM, filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
     }
 
-    // обращение к БД в цикле!
     public void validateFilm(Film film) {
         if (film == null) {
             throw new ValidationException("Фильм не может быть null.");
@@ -83,7 +80,7 @@ public class ValidationService {
         if (genreId == null) {
             throw new ValidationException("ID жанра не может быть null");
         }
-        genreRepository.findGenreById(genreId)
+        referenceData.findGenre(genreId)
                 .orElseThrow(() -> new NotFoundException("Жанр с ID " + genreId + " не найден"));
     }
 
@@ -91,7 +88,7 @@ public class ValidationService {
         if (mpaId == null) {
             throw new ValidationException("ID рейтинга не может быть null");
         }
-        mpaRepository.findMpaById(mpaId)
+        referenceData.findMpa(mpaId)
                 .orElseThrow(() -> new NotFoundException("Рейтинг MPA с ID " + mpaId + " не найден"));
     }
 
@@ -99,8 +96,9 @@ public class ValidationService {
         if (directorId == null) {
             throw new ValidationException("ID режиссера не может быть null");
         }
-        directorRepository.findDirectorById(directorId)
-                .orElseThrow(() -> new NotFoundException("Режиссер с ID " + directorId + " не найден"));
+        if (!existenceIndex.exists(EntityKind.DIRECTOR, directorId)) {
+            throw new NotFoundException("Режиссер с ID " + directorId + " не найден");
+        }
     }
 
     public void validateSearchQuery(String query) {
@@ -127,8 +125,9 @@ public class ValidationService {
         if (reviewId == null) {
             throw new ValidationException("ID отзыва не может быть null");
         }
-        reviewRepository.getReviewById(reviewId)
-                .orElseThrow(() -> new NotFoundException("Отзыв с ID " + reviewId + " не найден"));
+        if (!existenceIndex.exists(EntityKind.REVIEW, reviewId)) {
+            throw new NotFoundException("Отзыв с ID " + reviewId + " не найден");
+        }
     }
 
     public void validateReview(Review review) {
@@ -8,6 +8,9 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.VersionConflictException;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
 
 import java.util.List;
 import java.util.Map;
@@ -27,10 +30,33 @@ public class BaseNamedParameterRepository<T> {
         }
     }
 
+    /**
+     * Чтение сущности по ID через карту идентичности запроса: повторное чтение той же
+     * сущности в рамках одного запроса не обращается к базе.
+     */
+    protected Optional<T> findById(EntityKind kind, Long id, String query, Map<String, ?> params) {
+        return RequestIdentityMap.load(kind, id, () -> findOne(query, params));
+    }
+
+    /**
+     * Чтение по ID заранее разобранным запросом: без карты параметров и упаковки ID.
+     */
+    protected Optional<T> findById(EntityKind kind, Long id, CompiledStatement statement) {
+        return RequestIdentityMap.load(kind, id, () -> statement.queryForOptional(jdbc.getJdbcOperations(), mapper, id));
+    }
+
     protected List<T> findMany(String query, Map<String, ?> params) {
         return jdbc.query(query, params, mapper);
     }
 
+    protected List<T> findMany(CompiledStatement statement, long... values) {
+        return statement.query(jdbc.getJdbcOperations(), mapper, values);
+    }
+
+    protected int execute(CompiledStatement statement, long... values) {
+        return statement.update(jdbc.getJdbcOperations(), values);
+    }
+
     protected boolean delete(String query, Map<String, ?> params) {
         int rowsDeleted = jdbc.update(query, params);
         return rowsDeleted > 0;
@@ -39,6 +65,20 @@ public class BaseNamedParameterRepository<T> {
     protected long insert(String query, Map<String, ?> params) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbc.update(query, new MapSqlParameterSource(params), keyHolder);
+        return extractKey(keyHolder);
+    }
+
+    /**
+     * Вставка в таблицу, где кроме ключа есть и другие генерируемые столбцы:
+     * драйвер возвращает только указанный столбец.
+     */
+    protected long insert(String query, Map<String, ?> params, String keyColumn) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(query, new MapSqlParameterSource(params), keyHolder, new String[]{keyColumn});
+        return extractKey(keyHolder);
+    }
+
+    private long extractKey(KeyHolder keyHolder) {
 
         Number key = keyHolder.getKey();
         if (key != null) {
@@ -48,6 +88,28 @@ public class BaseNamedParameterRepository<T> {
         }
     }
 
+    /**
+     * Обновление одной строки запросом SELECT ... FROM FINAL TABLE (UPDATE ...), который сразу
+     * возвращает изменённую строку. Только если строка не изменилась, одно чтение версии по ключу
+     * отличает удалённую строку от изменённой параллельно.
+     *
+     * @param versionQuery запрос текущей версии строки с теми же параметрами
+     * @param notFound     сообщение об ошибке, если строки нет
+     */
+    protected <R> R updateVersioned(String query, String versionQuery, Map<String, ?> params,
+                                    RowMapper<R> rowMapper, String notFound) {
+        List<R> rows = jdbc.query(query, params, rowMapper);
+        if (!rows.isEmpty()) {
+            return rows.get(0);
+        }
+        List<Long> current = jdbc.queryForList(versionQuery, params, Long.class);
+        if (current.isEmpty()) {
+            throw new NotFoundException(notFound);
+        }
+        throw new VersionConflictException("Ожидалась версия " + params.get("version")
+                + ", текущая версия " + current.get(0));
+    }
+
     protected boolean update(String query, Map<String, ?> params) {
         int rowsUpdated = jdbc.update(query, params);
         if (rowsUpdated == 0) {
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.storage.base;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.AbstractSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Запрос с именованными параметрами, заранее переведённый в позиционную форму.
+ * Разбор SQL и сопоставление имён с позициями делаются один раз при создании;
+ * при вызове значения передаются примитивами в порядке объявления параметров
+ * и ставятся в PreparedStatement через setLong — без карты параметров, упаковки
+ * и повторного разбора в NamedParameterJdbcTemplate. Подходит для горячих запросов
+ * по ID и счётчикам; запросы со списками в IN (:ids) по-прежнему идут через карту.
+ */
+public final class CompiledStatement {
+    private final String sql;
+    private final int[] slots;
+    private final int arity;
+
+    private CompiledStatement(String sql, int[] slots, int arity) {
+        this.sql = sql;
+        this.slots = slots;
+        this.arity = arity;
+    }
+
+    /**
+     * @param namedSql   запрос с параметрами вида :name
+     * @param parameters имена параметров в том порядке, в котором значения передаются при вызове
+     */
+    public static CompiledStatement compile(String namedSql, String... parameters) {
+        ParsedSql parsed = NamedParameterUtils.parseSqlStatement(namedSql);
+        // источник, возвращающий имя параметра, даёт имена в порядке их появления в тексте
+        Object[] names = NamedParameterUtils.buildValueArray(parsed, new AbstractSqlParameterSource() {
+            @Override
+            public boolean hasValue(String paramName) {
+                return true;
+            }
+
+            @Override
+            public Object getValue(String paramName) {
+                return paramName;
+            }
+        }, null);
+        List<String> declared = Arrays.asList(parameters);
+        int[] slots = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            slots[i] = declared.indexOf((String) names[i]);
+            if (slots[i] < 0) {
+                throw new IllegalArgumentException("Параметр :" + names[i] + " не объявлен: " + namedSql);
+            }
+        }
+        for (String parameter : parameters) {
+            if (!Arrays.asList(names).contains(parameter)) {
+                throw new IllegalArgumentException("Параметр :" + parameter + " не используется: " + namedSql);
+            }
+        }
+        return new CompiledStatement(NamedParameterUtils.substituteNamedParameters(parsed, null), slots,
+                parameters.length);
+    }
+
+    public String sql() {
+        return sql;
+    }
+
+    public int update(JdbcOperations jdbc, long... values) {
+        return jdbc.update(sql, binder(values));
+    }
+
+    /**
+     * Выполняет запрос пачкой JDBC-batch.
+     *
+     * @param columns значения каждого параметра по строкам пачки: columns[p][row], в порядке объявления параметров
+     */
+    public int[] batchUpdate(JdbcOperations jdbc, long[]... columns) {
+        if (columns.length != arity) {
+            throw new IllegalArgumentException("Ожидалось " + arity + " параметров, передано " + columns.length);
+        }
+        int rows = arity == 0 ? 0 : columns[0].length;
+        for (long[] column : columns) {
+            if (column.length != rows) {
+                throw new IllegalArgumentException("Столбцы пачки разной длины");
+            }
+        }
+        return jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int row) throws SQLException {
+                for (int i = 0; i < slots.length; i++) {
+                    ps.setLong(i + 1, columns[slots[i]][row]);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows;
+            }
+        });
+    }
+
+    public <T> List<T> query(JdbcOperations jdbc, RowMapper<T> mapper, long... values) {
+        return jdbc.query(sql, binder(values), mapper);
+    }
+
+    public <T> Optional<T> queryForOptional(JdbcOperations jdbc, RowMapper<T> mapper, long... values) {
+        return jdbc.query(sql, binder(values), rs -> rs.next() ? Optional.ofNullable(mapper.mapRow(rs, 0))
+                : Optional.empty());
+    }
+
+    /**
+     * @return первый столбец первой строки как логическое значение; false, если строк нет
+     */
+    public boolean queryForBoolean(JdbcOperations jdbc, long... values) {
+        Boolean result = jdbc.query(sql, binder(values), rs -> rs.next() && rs.getBoolean(1));
+        return Boolean.TRUE.equals(result);
+    }
+
+    private PreparedStatementSetter binder(long[] values) {
+        if (values.length != arity) {
+            throw new IllegalArgumentException("Ожидалось " + arity + " параметров, передано " + values.length);
+        }
+        return ps -> {
+            for (int i = 0; i < slots.length; i++) {
+                ps.setLong(i + 1, values[slots[i]]);
+            }
+        };
+    }
+}
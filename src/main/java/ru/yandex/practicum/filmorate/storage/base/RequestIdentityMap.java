@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.storage.base;
+
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Карта идентичности на время одного HTTP-запроса: сущность, прочитанная по ID,
+ * при повторном чтении в том же запросе берётся из карты, а не из базы.
+ * Область открывает фильтр запросов и закрывает по его окончании; вне открытой
+ * области (планировщик, тесты репозиториев) чтения идут в базу как обычно.
+ * Репозитории вычёркивают сущность из карты при её изменении.
+ */
+public final class RequestIdentityMap {
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private RequestIdentityMap() {
+    }
+
+    public static Scope open() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Возвращает сущность из карты или читает её загрузчиком и запоминает, в том числе отсутствие.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Optional<T> load(EntityKind kind, Long id, Supplier<Optional<T>> loader) {
+        Scope scope = CURRENT.get();
+        if (scope == null || id == null) {
+            return loader.get();
+        }
+        Key key = new Key(kind, id);
+        Optional<T> entity = (Optional<T>) scope.entities.get(key);
+        if (entity != null) {
+            scope.savedQueries++;
+            return entity;
+        }
+        entity = loader.get();
+        scope.entities.put(key, entity);
+        return entity;
+    }
+
+    public static void evict(EntityKind kind, Long id) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.entities.remove(new Key(kind, id));
+        }
+    }
+
+    /**
+     * Сбрасывает всю карту, например после удаления, которое каскадом затрагивает другие сущности.
+     */
+    public static void clear() {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.entities.clear();
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Scope parent;
+        private final Map<Key, Optional<?>> entities = new HashMap<>();
+        private int savedQueries;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        /**
+         * @return сколько чтений по ID в этой области обошлось без запроса к базе
+         */
+        public int savedQueries() {
+            return savedQueries;
+        }
+
+        public int size() {
+            return entities.size();
+        }
+
+        @Override
+        public void close() {
+            if (parent == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(parent);
+            }
+        }
+    }
+
+    private record Key(EntityKind kind, Long id) {
+    }
+}
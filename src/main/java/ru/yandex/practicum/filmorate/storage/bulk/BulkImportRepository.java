@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.storage.bulk;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+
+import java.util.List;
+
+/**
+ * Пакетная запись при массовой загрузке. Фильмы и пользователи пишутся с ID из файла,
+ * чтобы на них могли ссылаться загружаемые следом лайки и дружбы.
+ */
+public interface BulkImportRepository {
+
+    /**
+     * Записывает фильмы вместе с их жанрами и режиссёрами.
+     */
+    void insertFilms(List<Film> films);
+
+    void insertUsers(List<User> users);
+
+    /**
+     * Добавляет дружбы; userIds[i], friendIds[i] и confirmed[i] образуют i-ю запись.
+     */
+    void insertFriendships(long[] userIds, long[] friendIds, boolean[] confirmed);
+
+    /**
+     * Переставляет генератор ID за максимальный ID таблицы, чтобы обычное создание
+     * через API не столкнулось с загруженными строками.
+     */
+    void restartIdentity(EntityKind kind);
+}
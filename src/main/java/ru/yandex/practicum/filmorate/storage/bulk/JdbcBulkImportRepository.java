@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.storage.bulk;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class JdbcBulkImportRepository implements BulkImportRepository {
+    private static final String INSERT_FILM_QUERY = """
+            INSERT INTO films (film_id, name, description, release_date, duration, mpa_id)
+            VALUES (:filmId, :name, :description, :releaseDate, :duration, :mpaId)
+            """;
+    private static final String INSERT_FILM_GENRE_QUERY = """
+            INSERT INTO film_genre (film_id, genre_id) VALUES (:filmId, :genreId)
+            """;
+    private static final String INSERT_FILM_DIRECTOR_QUERY = """
+            INSERT INTO film_directors (film_id, director_id) VALUES (:filmId, :directorId)
+            """;
+    private static final String INSERT_USER_QUERY = """
+            INSERT INTO users (user_id, email, login, name, birthday)
+            VALUES (:userId, :email, :login, :name, :birthday)
+            """;
+    private static final String INSERT_FRIENDSHIP_QUERY = """
+            INSERT INTO friends (user_id, friend_id, confirmed) VALUES (:userId, :friendId, :confirmed)
+            """;
+    // %1$s — таблица, %2$s — столбец ID из EntityKind
+    private static final String NEXT_ID_QUERY = "SELECT COALESCE(MAX(%2$s), 0) + 1 FROM %1$s";
+    private static final String RESTART_IDENTITY_STATEMENT = "ALTER TABLE %s ALTER COLUMN %s RESTART WITH %d";
+
+    private final NamedParameterJdbcOperations jdbc;
+
+    @Override
+    public void insertFilms(List<Film> films) {
+        List<SqlParameterSource> rows = new ArrayList<>(films.size());
+        List<SqlParameterSource> genres = new ArrayList<>();
+        List<SqlParameterSource> directors = new ArrayList<>();
+        for (Film film : films) {
+            rows.add(new MapSqlParameterSource()
+                    .addValue("filmId", film.getId())
+                    .addValue("name", film.getName())
+                    .addValue("description", film.getDescription())
+                    .addValue("releaseDate", film.getReleaseDate())
+                    .addValue("duration", film.getDuration())
+                    .addValue("mpaId", film.getMpa().getId()));
+            for (Genre genre : film.getGenres()) {
+                genres.add(new MapSqlParameterSource("filmId", film.getId()).addValue("genreId", genre.getId()));
+            }
+            for (Director director : film.getDirectors()) {
+                directors.add(new MapSqlParameterSource("filmId", film.getId())
+                        .addValue("directorId", director.getId()));
+            }
+        }
+        jdbc.batchUpdate(INSERT_FILM_QUERY, rows.toArray(new SqlParameterSource[0]));
+        if (!genres.isEmpty()) {
+            jdbc.batchUpdate(INSERT_FILM_GENRE_QUERY, genres.toArray(new SqlParameterSource[0]));
+        }
+        if (!directors.isEmpty()) {
+            jdbc.batchUpdate(INSERT_FILM_DIRECTOR_QUERY, directors.toArray(new SqlParameterSource[0]));
+        }
+    }
+
+    @Override
+    public void insertUsers(List<User> users) {
+        SqlParameterSource[] rows = new SqlParameterSource[users.size()];
+        for (int i = 0; i < rows.length; i++) {
+            User user = users.get(i);
+            rows[i] = new MapSqlParameterSource()
+                    .addValue("userId", user.getId())
+                    .addValue("email", user.getEmail())
+                    .addValue("login", user.getLogin())
+                    .addValue("name", user.getName())
+                    .addValue("birthday", user.getBirthday());
+        }
+        jdbc.batchUpdate(INSERT_USER_QUERY, rows);
+    }
+
+    @Override
+    public void insertFriendships(long[] userIds, long[] friendIds, boolean[] confirmed) {
+        SqlParameterSource[] rows = new SqlParameterSource[userIds.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new MapSqlParameterSource()
+                    .addValue("userId", userIds[i])
+                    .addValue("friendId", friendIds[i])
+                    .addValue("confirmed", confirmed[i]);
+        }
+        jdbc.batchUpdate(INSERT_FRIENDSHIP_QUERY, rows);
+    }
+
+    @Override
+    public void restartIdentity(EntityKind kind) {
+        Long next = jdbc.queryForObject(NEXT_ID_QUERY.formatted(kind.getTable(), kind.getIdColumn()), Map.of(),
+                Long.class);
+        jdbc.getJdbcOperations().execute(RESTART_IDENTITY_STATEMENT.formatted(kind.getTable(), kind.getIdColumn(),
+                next));
+    }
+}
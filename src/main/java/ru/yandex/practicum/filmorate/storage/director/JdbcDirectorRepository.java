@@ -8,6 +8,10 @@ import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.storage.base.BaseNamedParameterRepository;
+import ru.yandex.practicum.filmorate.storage.base.CompiledStatement;
+import ru.yandex.practicum.filmorate.storage.base.RequestIdentityMap;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.routing.ReplicaRead;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -69,21 +73,22 @@ public class JdbcDirectorRepository extends BaseNamedParameterRepository<Directo
             WHERE fd.film_id IN (:filmIds)
             """;
 
+    private static final CompiledStatement FIND_DIRECTOR_BY_ID =
+            CompiledStatement.compile(FIND_DIRECTOR_BY_ID_QUERY, "directorId");
 
     public JdbcDirectorRepository(NamedParameterJdbcOperations jdbc, RowMapper<Director> mapper) {
         super(jdbc, mapper);
     }
 
     @Override
+    @ReplicaRead
     public List<Director> findAllDirectors() {
         return findMany(FIND_ALL_DIRECTORS_QUERY, new HashMap<>());
     }
 
     @Override
     public Optional<Director> findDirectorById(Long directorId) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("directorId", directorId);
-        return findOne(FIND_DIRECTOR_BY_ID_QUERY, params);
+        return findById(EntityKind.DIRECTOR, directorId, FIND_DIRECTOR_BY_ID);
     }
 
     @Override
@@ -110,6 +115,7 @@ public class JdbcDirectorRepository extends BaseNamedParameterRepository<Directo
         params.put("name", director.getName());
         params.put("directorId", director.getId());
         update(UPDATE_DIRECTOR_QUERY, params);
+        RequestIdentityMap.evict(EntityKind.DIRECTOR, director.getId());
         return director;
     }
 
@@ -118,6 +124,7 @@ public class JdbcDirectorRepository extends BaseNamedParameterRepository<Directo
         Map<String, Object> params = new HashMap<>();
         params.put("directorId", directorId);
         delete(DELETE_ALL_FILM_DIRECTORS_BY_DIRECTOR_ID_QUERY, params);
+        RequestIdentityMap.evict(EntityKind.DIRECTOR, directorId);
         return delete(DELETE_DIRECTOR_QUERY, params);
     }
 
@@ -129,6 +136,7 @@ public class JdbcDirectorRepository extends BaseNamedParameterRepository<Directo
     }
 
     @Override
+    @ReplicaRead
     public void loadDirectorsForFilms(Map<Long, Film> filmMap) {
         if (filmMap.isEmpty()) {
             return;
@@ -3,9 +3,25 @@ package ru.yandex.practicum.filmorate.storage.event;
 import ru.yandex.practicum.filmorate.model.Event;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface EventRepository {
     Collection<Event> findEventsByUserId(Long userId, int limit);
 
+    /**
+     * Срез событий пользователей из userIds с отметкой времени не раньше sinceTimestamp и строго
+     * раньше курсора (beforeTimestamp, beforeEventId), от новых к старым, не больше limit.
+     * Читаются только события внутри окна: по одному поиску в индексе на пользователя и строки окна.
+     */
+    List<Event> findEventSlice(Collection<Long> userIds, long sinceTimestamp, long beforeTimestamp,
+                               long beforeEventId, int limit);
+
     void insertEvent(Long userId, Long entityId, String eventType, String operation);
+
+    List<Long> findUserIdsWithEventsBefore(long afterUserId, long beforeTimestamp, int batchSize);
+
+    List<Event> findEventsByUserIdsBefore(Collection<Long> userIds, long beforeTimestamp,
+                                          Collection<String> eventTypes);
+
+    int deleteEventsByIds(Collection<Long> eventIds);
 }
@@ -1,17 +1,23 @@
 package ru.yandex.practicum.filmorate.storage.event;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.storage.base.BaseNamedParameterRepository;
+import ru.yandex.practicum.filmorate.storage.base.CompiledStatement;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
 
 import java.time.Instant;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Repository
+@ConditionalOnProperty(name = "filmorate.event-store.type", havingValue = "jdbc", matchIfMissing = true)
 public class JdbcEventRepository extends BaseNamedParameterRepository<Event> implements EventRepository {
     private static final int DEFAULT_LIMIT = 25;
     private static final String FIND_EVENTS_BY_USER_ID_QUERY = """
@@ -24,33 +30,120 @@ public class JdbcEventRepository extends BaseNamedParameterRepository<Event> imp
         LIMIT :limit;
         """;
 
+    // ID пользователей идут массивом в табличную функцию, а не в IN: по IN H2 ищет в idx_event_user_timeline
+    // только user_id и читает всю историю, а соединение ищет по user_id и окну времени, читая лишь строки окна
+    private static final String FIND_EVENT_SLICE_QUERY = """
+        SELECT e.event_id, e.user_id, e.entity_id, e.event_timestamp, o.name AS operation_name, et.name AS event_type_name
+        FROM TABLE(user_id BIGINT = :userIds) AS u
+            INNER JOIN event AS e USE INDEX (idx_event_user_timeline) ON e.user_id = u.user_id
+            INNER JOIN event_type AS et ON e.event_type_id = et.type_id
+            INNER JOIN operation AS o ON e.operation_id = o.operation_id
+        WHERE e.event_timestamp >= :sinceTimestamp
+            AND e.event_timestamp <= :beforeTimestamp
+            AND (e.event_timestamp < :beforeTimestamp OR e.event_id < :beforeEventId)
+        ORDER BY e.event_timestamp DESC, e.event_id DESC
+        LIMIT :limit;
+        """;
+
     private static final String INSERT_EVENT_QUERY = """
         INSERT INTO event(event_timestamp, entity_id, user_id, event_type_id, operation_id)
-        VALUES(:eventTimestamp, :entityId, :userId,
-            (SELECT type_id FROM event_type WHERE name = :eventName),
-            (SELECT operation_id FROM operation WHERE name = :operationName));
+        VALUES(:eventTimestamp, :entityId, :userId, :eventTypeId, :operationId);
+        """;
+
+    private static final String FIND_USER_IDS_WITH_EVENTS_BEFORE_QUERY = """
+        SELECT DISTINCT e.user_id
+        FROM event AS e
+        WHERE e.user_id > :afterUserId AND e.event_timestamp < :beforeTimestamp
+        ORDER BY e.user_id
+        LIMIT :batchSize;
+        """;
+
+    private static final String FIND_EVENTS_BY_USER_IDS_BEFORE_QUERY = """
+        SELECT e.event_id, e.user_id, e.entity_id, e.event_timestamp, o.name AS operation_name, et.name AS event_type_name
+        FROM event AS e
+            INNER JOIN event_type AS et ON e.event_type_id = et.type_id
+            INNER JOIN operation AS o ON e.operation_id = o.operation_id
+        WHERE e.user_id IN (:userIds)
+            AND e.event_timestamp < :beforeTimestamp
+            AND et.name IN (:eventTypes)
+        ORDER BY e.user_id, e.event_timestamp, e.event_id;
         """;
 
-    public JdbcEventRepository(NamedParameterJdbcOperations jdbc, RowMapper<Event> mapper) {
+    private static final String DELETE_EVENTS_BY_IDS_QUERY = "DELETE FROM event WHERE event_id IN (:eventIds);";
+
+    private static final CompiledStatement FIND_EVENTS_BY_USER_ID =
+            CompiledStatement.compile(FIND_EVENTS_BY_USER_ID_QUERY, "userId", "limit");
+    private static final CompiledStatement INSERT_EVENT = CompiledStatement.compile(INSERT_EVENT_QUERY,
+            "eventTimestamp", "entityId", "userId", "eventTypeId", "operationId");
+
+    private final ReferenceDataRegistry referenceData;
+
+    public JdbcEventRepository(NamedParameterJdbcOperations jdbc, RowMapper<Event> mapper,
+                               ReferenceDataRegistry referenceData) {
         super(jdbc, mapper);
+        this.referenceData = referenceData;
     }
 
     @Override
     public Collection<Event> findEventsByUserId(Long userId, int limit) {
+        return findMany(FIND_EVENTS_BY_USER_ID, userId, limit == 0 ? DEFAULT_LIMIT : limit);
+    }
+
+    @Override
+    public List<Event> findEventSlice(Collection<Long> userIds, long sinceTimestamp, long beforeTimestamp,
+                                      long beforeEventId, int limit) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
         Map<String, Object> params = new HashMap<>();
-        params.put("userId", userId);
-        params.put("limit", limit == 0 ? DEFAULT_LIMIT : limit);
-        return findMany(FIND_EVENTS_BY_USER_ID_QUERY, params);
+        params.put("userIds", userIds.toArray(new Long[0]));
+        params.put("sinceTimestamp", sinceTimestamp);
+        params.put("beforeTimestamp", beforeTimestamp);
+        params.put("beforeEventId", beforeEventId);
+        params.put("limit", limit);
+        return findMany(FIND_EVENT_SLICE_QUERY, params);
     }
 
     @Override
     public void insertEvent(Long userId, Long entityId, String eventType, String operation) {
+        Long eventTypeId = referenceData.eventTypeId(eventType);
+        Long operationId = referenceData.operationId(operation);
+        if (eventTypeId == null || operationId == null) {
+            // без типа или операции событие не попало бы в ленту: её запросы соединяют справочники через JOIN
+            throw new InternalServerException("Неизвестный тип события или операция: " + eventType + " " + operation);
+        }
+        execute(INSERT_EVENT, Instant.now().toEpochMilli(), entityId, userId, eventTypeId, operationId);
+    }
+
+    @Override
+    public List<Long> findUserIdsWithEventsBefore(long afterUserId, long beforeTimestamp, int batchSize) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("afterUserId", afterUserId);
+        params.put("beforeTimestamp", beforeTimestamp);
+        params.put("batchSize", batchSize);
+        return jdbc.queryForList(FIND_USER_IDS_WITH_EVENTS_BEFORE_QUERY, params, Long.class);
+    }
+
+    @Override
+    public List<Event> findEventsByUserIdsBefore(Collection<Long> userIds, long beforeTimestamp,
+                                                 Collection<String> eventTypes) {
+        if (userIds.isEmpty() || eventTypes.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("userIds", userIds);
+        params.put("beforeTimestamp", beforeTimestamp);
+        params.put("eventTypes", eventTypes);
+        return findMany(FIND_EVENTS_BY_USER_IDS_BEFORE_QUERY, params);
+    }
+
+    @Override
+    public int deleteEventsByIds(Collection<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return 0;
+        }
         Map<String, Object> params = new HashMap<>();
-        params.put("eventTimestamp", Instant.now().toEpochMilli());
-        params.put("entityId", entityId);
-        params.put("userId", userId);
-        params.put("eventName", eventType);
-        params.put("operationName", operation);
-        insert(INSERT_EVENT_QUERY, params);
+        params.put("eventIds", eventIds);
+        return jdbc.update(DELETE_EVENTS_BY_IDS_QUERY, params);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,407 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Хранилище событий ленты в виде журнала только на добавление.
+ * Журнал разбит на сегменты фиксированного размера, отображённые в память.
+ * Запись: [длина payload][CRC32 payload][payload]; payload начинается с вида записи
+ * (событие или tombstone удаления). При старте сегменты сканируются до первой
+ * нулевой длины или несовпадения CRC — так отбрасывается недописанный при падении хвост.
+ * В памяти держится только индекс позиций записей по пользователям.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "filmorate.event-store.type", havingValue = "log")
+public class LogEventRepository implements EventRepository, Closeable {
+    private static final int DEFAULT_LIMIT = 25;
+    private static final byte EVENT_RECORD = 1;
+    private static final byte TOMBSTONE_RECORD = 2;
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final Comparator<Event> NEWEST_FIRST = Comparator
+            .comparing(Event::getTimestamp, Comparator.reverseOrder())
+            .thenComparing(Event::getEventId, Comparator.reverseOrder());
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceOnAppend;
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final NavigableMap<Long, Positions> userIndex = new TreeMap<>();
+    private final Set<Long> tombstones = new HashSet<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int writePosition;
+    private long nextEventId = 1;
+    private long lastTimestamp;
+
+    public LogEventRepository(@Value("${filmorate.event-store.log.directory:./db/events}") Path directory,
+                              @Value("${filmorate.event-store.log.segment-size:16MB}") DataSize segmentSize,
+                              @Value("${filmorate.event-store.log.force-on-append:false}") boolean forceOnAppend) {
+        this.directory = directory;
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.forceOnAppend = forceOnAppend;
+        recover();
+    }
+
+    @Override
+    public Collection<Event> findEventsByUserId(Long userId, int limit) {
+        int max = limit == 0 ? DEFAULT_LIMIT : limit;
+        lock.readLock().lock();
+        try {
+            Positions positions = userIndex.get(userId);
+            List<Event> result = new ArrayList<>();
+            if (positions == null) {
+                return result;
+            }
+            for (int i = 0; i < positions.size && result.size() < max; i++) {
+                Event event = readEvent(positions.values[i]);
+                if (!tombstones.contains(event.getEventId())) {
+                    result.add(event);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Event> findEventSlice(Collection<Long> userIds, long sinceTimestamp, long beforeTimestamp,
+                                      long beforeEventId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Event> result = new ArrayList<>();
+            for (Long userId : userIds) {
+                Positions positions = userIndex.get(userId);
+                if (positions == null) {
+                    continue;
+                }
+                // записи пользователя лежат в порядке (timestamp, eventId), поэтому курсор ищется делением пополам
+                int low = 0;
+                int high = positions.size;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    Event event = readEvent(positions.values[middle]);
+                    boolean beforeCursor = event.getTimestamp() < beforeTimestamp
+                            || (event.getTimestamp() == beforeTimestamp && event.getEventId() < beforeEventId);
+                    if (beforeCursor) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                // больше limit событий одного пользователя в срез не попадёт
+                int taken = 0;
+                for (int i = low - 1; i >= 0 && taken < limit; i--) {
+                    Event event = readEvent(positions.values[i]);
+                    if (event.getTimestamp() < sinceTimestamp) {
+                        break;
+                    }
+                    if (!tombstones.contains(event.getEventId())) {
+                        result.add(event);
+                        taken++;
+                    }
+                }
+            }
+            result.sort(NEWEST_FIRST);
+            return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void insertEvent(Long userId, Long entityId, String eventType, String operation) {
+        lock.writeLock().lock();
+        try {
+            // время в журнале не убывает, поэтому порядок записей пользователя совпадает с порядком ленты
+            long timestamp = Math.max(Instant.now().toEpochMilli(), lastTimestamp);
+            Event event = new Event(userId, timestamp, nextEventId, entityId, operation, eventType);
+            long position = append(encodeEvent(event));
+            applyEvent(event, position);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Long> findUserIdsWithEventsBefore(long afterUserId, long beforeTimestamp, int batchSize) {
+        lock.readLock().lock();
+        try {
+            List<Long> result = new ArrayList<>();
+            for (Map.Entry<Long, Positions> entry : userIndex.tailMap(afterUserId, false).entrySet()) {
+                if (result.size() >= batchSize) {
+                    break;
+                }
+                Positions positions = entry.getValue();
+                for (int i = 0; i < positions.size; i++) {
+                    Event event = readEvent(positions.values[i]);
+                    if (event.getTimestamp() >= beforeTimestamp) {
+                        break;
+                    }
+                    if (!tombstones.contains(event.getEventId())) {
+                        result.add(entry.getKey());
+                        break;
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Event> findEventsByUserIdsBefore(Collection<Long> userIds, long beforeTimestamp,
+                                                 Collection<String> eventTypes) {
+        lock.readLock().lock();
+        try {
+            List<Event> result = new ArrayList<>();
+            for (Long userId : new TreeSet<>(userIds)) {
+                Positions positions = userIndex.get(userId);
+                if (positions == null) {
+                    continue;
+                }
+                for (int i = 0; i < positions.size; i++) {
+                    Event event = readEvent(positions.values[i]);
+                    if (event.getTimestamp() >= beforeTimestamp) {
+                        break;
+                    }
+                    if (eventTypes.contains(event.getEventType()) && !tombstones.contains(event.getEventId())) {
+                        result.add(event);
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int deleteEventsByIds(Collection<Long> eventIds) {
+        lock.writeLock().lock();
+        try {
+            int deleted = 0;
+            for (Long eventId : eventIds) {
+                if (eventId < 1 || eventId >= nextEventId || tombstones.contains(eventId)) {
+                    continue;
+                }
+                append(encodeTombstone(eventId));
+                tombstones.add(eventId);
+                deleted++;
+            }
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            segments.forEach(MappedByteBuffer::force);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void recover() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList();
+            }
+            for (Path file : files) {
+                MappedByteBuffer segment = map(file);
+                segments.add(segment);
+                writePosition = scanSegment(segments.size() - 1, segment);
+            }
+            if (segments.isEmpty()) {
+                openSegment();
+            } else {
+                // всё, что лежит после последней целой записи, — недописанный хвост
+                MappedByteBuffer last = segments.get(segments.size() - 1);
+                for (int i = writePosition; i < last.capacity(); i++) {
+                    last.put(i, (byte) 0);
+                }
+            }
+            log.info("Журнал событий восстановлен из {} сегментов: {} пользователей, следующий ID события {}",
+                    segments.size(), userIndex.size(), nextEventId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал событий " + directory, e);
+        }
+    }
+
+    private int scanSegment(int segmentNo, MappedByteBuffer segment) {
+        int position = 0;
+        while (position + HEADER_SIZE <= segment.capacity()) {
+            int length = segment.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > segment.capacity()) {
+                break;
+            }
+            ByteBuffer payload = segment.slice(position + HEADER_SIZE, length);
+            if (crc(payload) != segment.getInt(position + Integer.BYTES)) {
+                log.warn("Повреждённая запись в сегменте {} по смещению {}, хвост сегмента отброшен",
+                        segmentNo, position);
+                break;
+            }
+            byte kind = payload.get(0);
+            if (kind == EVENT_RECORD) {
+                applyEvent(decodeEvent(payload), packPosition(segmentNo, position));
+            } else if (kind == TOMBSTONE_RECORD) {
+                tombstones.add(payload.getLong(1));
+            }
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private void applyEvent(Event event, long position) {
+        userIndex.computeIfAbsent(event.getUserId(), id -> new Positions()).add(position);
+        nextEventId = Math.max(nextEventId, event.getEventId() + 1);
+        lastTimestamp = Math.max(lastTimestamp, event.getTimestamp());
+    }
+
+    private long append(ByteBuffer payload) {
+        int recordSize = HEADER_SIZE + payload.remaining();
+        if (recordSize > segmentSize) {
+            throw new InternalServerException("Запись события не помещается в сегмент журнала");
+        }
+        if (writePosition + recordSize > segmentSize) {
+            segments.get(segments.size() - 1).force();
+            openSegment();
+        }
+        int segmentNo = segments.size() - 1;
+        MappedByteBuffer segment = segments.get(segmentNo);
+        int position = writePosition;
+        int length = payload.remaining();
+        segment.put(position + HEADER_SIZE, payload, 0, length);
+        segment.putInt(position + Integer.BYTES, crc(payload));
+        // длина пишется последней: запись без длины при восстановлении считается концом журнала
+        segment.putInt(position, length);
+        if (forceOnAppend) {
+            segment.force(position, recordSize);
+        }
+        writePosition += recordSize;
+        return packPosition(segmentNo, position);
+    }
+
+    private void openSegment() {
+        Path file = directory.resolve(String.format("%010d%s", segments.size(), SEGMENT_SUFFIX));
+        try {
+            segments.add(map(file));
+            writePosition = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент журнала событий " + file, e);
+        }
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = Math.max(channel.size(), segmentSize);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private Event readEvent(long packedPosition) {
+        MappedByteBuffer segment = segments.get((int) (packedPosition >>> 32));
+        int position = (int) packedPosition;
+        int length = segment.getInt(position);
+        return decodeEvent(segment.slice(position + HEADER_SIZE, length));
+    }
+
+    private ByteBuffer encodeEvent(Event event) {
+        byte[] type = event.getEventType().getBytes(StandardCharsets.UTF_8);
+        byte[] operation = event.getOperation().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + Long.BYTES * 4 + Short.BYTES * 2 + type.length + operation.length);
+        buffer.put(EVENT_RECORD)
+                .putLong(event.getEventId())
+                .putLong(event.getTimestamp())
+                .putLong(event.getUserId())
+                .putLong(event.getEntityId())
+                .putShort((short) type.length).put(type)
+                .putShort((short) operation.length).put(operation);
+        return buffer.flip();
+    }
+
+    private ByteBuffer encodeTombstone(long eventId) {
+        return ByteBuffer.allocate(1 + Long.BYTES).put(TOMBSTONE_RECORD).putLong(eventId).flip();
+    }
+
+    private Event decodeEvent(ByteBuffer payload) {
+        ByteBuffer buffer = payload.duplicate().position(1);
+        long eventId = buffer.getLong();
+        long timestamp = buffer.getLong();
+        long userId = buffer.getLong();
+        long entityId = buffer.getLong();
+        byte[] type = new byte[buffer.getShort()];
+        buffer.get(type);
+        byte[] operation = new byte[buffer.getShort()];
+        buffer.get(operation);
+        return new Event(userId, timestamp, eventId, entityId,
+                new String(operation, StandardCharsets.UTF_8), new String(type, StandardCharsets.UTF_8));
+    }
+
+    private static int crc(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static long packPosition(int segmentNo, int position) {
+        return ((long) segmentNo << 32) | position;
+    }
+
+    private static final class Positions {
+        private long[] values = new long[8];
+        private int size;
+
+        private void add(long position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+    }
+}
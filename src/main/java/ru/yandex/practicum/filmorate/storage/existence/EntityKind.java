@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.storage.existence;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum EntityKind {
+    USER("users", "user_id"),
+    FILM("films", "film_id"),
+    REVIEW("reviews", "review_id"),
+    DIRECTOR("directors", "director_id");
+
+    private final String table;
+    private final String idColumn;
+}
@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.storage.existence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс существования сущностей для проверок в ValidationService.
+ * Для каждого вида сущности хранится битовое множество ID: установленный бит означает, что строка есть.
+ * Снятый бит ответа не даёт: строку могли создать параллельно (ID выдан, а created() ещё не вызван)
+ * или в обход сервисов, поэтому такие ID проверяются одним запросом по всем сразу. Подтверждённые
+ * промахи, как и удалённые через сервисы ID, какое-то время кэшируются, чтобы повторы
+ * с несуществующим ID не ходили в базу.
+ * Множество загружается из базы при первом обращении и сбрасывается, когда строки
+ * могли исчезнуть каскадом.
+ */
+@Slf4j
+@Component
+public class ExistenceIndex {
+    private static final int MAX_CACHED_MISSES = 10_000;
+
+    // %1$s — таблица, %2$s — столбец ID из EntityKind
+    private static final String FIND_EXISTING_QUERY = "SELECT %2$s FROM %1$s WHERE %2$s IN (:ids)";
+    private static final String LOAD_IDS_QUERY = "SELECT %2$s FROM %1$s WHERE %2$s BETWEEN 1 AND :maxId";
+
+    private final NamedParameterJdbcOperations jdbc;
+    private final long missTtlMillis;
+    private final Map<EntityKind, State> states = new EnumMap<>(EntityKind.class);
+
+    public ExistenceIndex(NamedParameterJdbcOperations jdbc,
+                          @Value("${filmorate.existence.negative-ttl:30s}") Duration missTtl) {
+        this.jdbc = jdbc;
+        this.missTtlMillis = missTtl.toMillis();
+        for (EntityKind kind : EntityKind.values()) {
+            states.put(kind, new State());
+        }
+    }
+
+    public boolean exists(EntityKind kind, Long id) {
+        return findMissing(kind, List.of(id)).isEmpty();
+    }
+
+    /**
+     * @return ID из ids, которых нет в базе, в порядке запроса
+     */
+    public Set<Long> findMissing(EntityKind kind, Collection<Long> ids) {
+        State state = loaded(kind);
+        Set<Long> missing = new LinkedHashSet<>();
+        Set<Long> ambiguous = new LinkedHashSet<>();
+        long now = System.currentTimeMillis();
+        state.lock.readLock().lock();
+        try {
+            for (Long id : ids) {
+                if (id > 0 && id <= Integer.MAX_VALUE && state.ids.get(id.intValue())) {
+                    continue;
+                }
+                Long expiresAt = state.misses.get(id);
+                if (id <= 0 || expiresAt != null && expiresAt > now) {
+                    missing.add(id);
+                } else {
+                    ambiguous.add(id);
+                }
+            }
+        } finally {
+            state.lock.readLock().unlock();
+        }
+        if (!ambiguous.isEmpty()) {
+            resolve(kind, state, ambiguous, missing, now);
+        }
+        return missing;
+    }
+
+    public void created(EntityKind kind, Long id) {
+        State state = loaded(kind);
+        state.lock.writeLock().lock();
+        try {
+            state.misses.remove(id);
+            if (id <= Integer.MAX_VALUE) {
+                state.ids.set(id.intValue());
+            }
+        } finally {
+            state.lock.writeLock().unlock();
+        }
+    }
+
+    public void deleted(EntityKind kind, Long id) {
+        State state = loaded(kind);
+        state.lock.writeLock().lock();
+        try {
+            if (id > 0 && id <= Integer.MAX_VALUE) {
+                state.ids.clear(id.intValue());
+            }
+            state.misses.put(id, System.currentTimeMillis() + missTtlMillis);
+        } finally {
+            state.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает индекс вида сущности: он будет заново загружен при следующей проверке.
+     */
+    public void invalidate(EntityKind kind) {
+        State state = states.get(kind);
+        state.lock.writeLock().lock();
+        try {
+            state.loaded = false;
+        } finally {
+            state.lock.writeLock().unlock();
+        }
+    }
+
+    private void resolve(EntityKind kind, State state, Set<Long> ambiguous, Set<Long> missing, long now) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("ids", ambiguous);
+        List<Long> found = jdbc.queryForList(FIND_EXISTING_QUERY.formatted(kind.getTable(), kind.getIdColumn()),
+                params, Long.class);
+        state.lock.writeLock().lock();
+        try {
+            for (Long id : found) {
+                ambiguous.remove(id);
+                if (id <= Integer.MAX_VALUE) {
+                    state.ids.set(id.intValue());
+                }
+            }
+            if (state.misses.size() + ambiguous.size() > MAX_CACHED_MISSES) {
+                state.misses.clear();
+            }
+            for (Long id : ambiguous) {
+                state.misses.put(id, now + missTtlMillis);
+            }
+        } finally {
+            state.lock.writeLock().unlock();
+        }
+        missing.addAll(ambiguous);
+    }
+
+    private State loaded(EntityKind kind) {
+        State state = states.get(kind);
+        if (state.loaded) {
+            return state;
+        }
+        state.lock.writeLock().lock();
+        try {
+            if (!state.loaded) {
+                BitSet ids = new BitSet();
+                jdbc.query(LOAD_IDS_QUERY.formatted(kind.getTable(), kind.getIdColumn()),
+                        Map.of("maxId", Integer.MAX_VALUE), rs -> {
+                    ids.set((int) rs.getLong(1));
+                });
+                state.ids = ids;
+                state.misses.clear();
+                state.loaded = true;
+                log.info("Индекс существования {} загружен: {} записей", kind, ids.cardinality());
+            }
+        } finally {
+            state.lock.writeLock().unlock();
+        }
+        return state;
+    }
+
+    private static final class State {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, Long> misses = new ConcurrentHashMap<>();
+        private BitSet ids = new BitSet();
+        private volatile boolean loaded;
+    }
+}
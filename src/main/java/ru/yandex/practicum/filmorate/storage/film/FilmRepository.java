@@ -11,11 +11,17 @@ public interface FilmRepository {
 
     Collection<Film> getPopularFilms(int count);
 
-    Collection<Film> getPopularFilmsByGenreAndYear(int count, Long genreId, Integer year);
+    /**
+     * Популярные фильмы жанра, вышедшие с yearFrom по yearTo включительно.
+     */
+    Collection<Film> getPopularFilmsByGenreAndYears(int count, Long genreId, int yearFrom, int yearTo);
 
     Collection<Film> getPopularFilmsByGenre(int count, Long genreId);
 
-    Collection<Film> getPopularFilmsByYear(int count, Integer year);
+    /**
+     * Популярные фильмы, вышедшие с yearFrom по yearTo включительно.
+     */
+    Collection<Film> getPopularFilmsByYears(int count, int yearFrom, int yearTo);
 
     Film createFilm(Film film);
 
@@ -5,13 +5,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.stereotype.Repository;
-import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.base.BaseNamedParameterRepository;
+import ru.yandex.practicum.filmorate.storage.base.CompiledStatement;
+import ru.yandex.practicum.filmorate.storage.base.RequestIdentityMap;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.routing.ReplicaRead;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -41,11 +45,25 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
             """;
 
     private static final String UPDATE_FILM_QUERY = """
-            UPDATE films
-            SET name = :name, description = :description, release_date = :releaseDate, duration = :duration, mpa_id = :mpaId
-            WHERE film_id = :filmId
+            SELECT version FROM FINAL TABLE (
+                UPDATE films
+                SET name = :name, description = :description, release_date = :releaseDate, duration = :duration,
+                    mpa_id = :mpaId, version = version + 1
+                WHERE film_id = :filmId
+            )
             """;
 
+    private static final String UPDATE_FILM_IF_VERSION_QUERY = """
+            SELECT version FROM FINAL TABLE (
+                UPDATE films
+                SET name = :name, description = :description, release_date = :releaseDate, duration = :duration,
+                    mpa_id = :mpaId, version = version + 1
+                WHERE film_id = :filmId AND version = :version
+            )
+            """;
+
+    private static final String FIND_FILM_VERSION_QUERY = "SELECT version FROM films WHERE film_id = :filmId";
+
     private static final String DELETE_FILM_QUERY = "DELETE FROM films WHERE film_id = :filmId";
 
     private static final String GET_POPULAR_FILM_QUERY = """
@@ -132,12 +150,12 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
                     m.name AS mpa_name,
                     m.description AS mpa_description,
                     COUNT(DISTINCT l.user_id) AS like_count
-            FROM films f
+            FROM film_genre fg
+            JOIN films f ON f.film_id = fg.film_id
             JOIN mpa_ratings m ON f.mpa_id = m.mpa_id
             LEFT JOIN likes l ON f.film_id = l.film_id
-            JOIN film_genre fg ON f.film_id = fg.film_id
             WHERE fg.genre_id = :genreId
-            AND EXTRACT(YEAR FROM f.release_date) = :year
+            AND f.release_year BETWEEN :yearFrom AND :yearTo
             GROUP BY f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_id,
                     m.mpa_id, m.name, m.description
             ORDER BY like_count DESC
@@ -150,10 +168,11 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
             	        m.name AS mpa_name,
             	        m.description AS mpa_description,
             	        COUNT(DISTINCT l.user_id) AS like_count
-            FROM films f
+            FROM film_genre fg
+            JOIN films f ON f.film_id = fg.film_id
             JOIN mpa_ratings m ON f.mpa_id = m.mpa_id
             LEFT JOIN likes l ON f.film_id = l.film_id
-            JOIN film_genre fg ON f.film_id = fg.film_id AND fg.genre_id = :genreId
+            WHERE fg.genre_id = :genreId
             GROUP BY f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_id,
                     m.mpa_id, m.name, m.description
             ORDER BY like_count DESC
@@ -169,7 +188,7 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
             FROM films f
             JOIN mpa_ratings m ON f.mpa_id = m.mpa_id
             LEFT JOIN likes l ON f.film_id = l.film_id
-            WHERE EXTRACT(YEAR FROM f.release_date) = :year
+            WHERE f.release_year BETWEEN :yearFrom AND :yearTo
             GROUP BY f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_id,
                         m.mpa_id, m.name, m.description
             ORDER BY like_count DESC
@@ -182,6 +201,7 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
                    f.description description,
                    f.release_date  release_date,
                    f.duration duration,
+                   f.version version,
                    r.mpa_id mpa_id,
                    r.name mpa_name,
                    r.description mpa_description
@@ -214,6 +234,7 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
                    f.description description,
                    f.release_date  release_date,
                    f.duration duration,
+                   f.version version,
                    r.mpa_id mpa_id,
                    r.name mpa_name,
                    r.description mpa_description
@@ -228,20 +249,21 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
             ORDER BY COUNT(l.film_id) DESC
             """;
 
+    private static final CompiledStatement FIND_FILM_BY_ID = CompiledStatement.compile(FIND_FILM_BY_ID_QUERY, "filmId");
+
     public JdbcFilmRepository(NamedParameterJdbcOperations jdbc, RowMapper<Film> mapper) {
         super(jdbc, mapper);
     }
 
     @Override
+    @ReplicaRead
     public List<Film> findAllFilms() {
         return findMany(FIND_ALL_FILMS_QUERY, new HashMap<>());
     }
 
     @Override
     public Optional<Film> getFilmById(Long filmId) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("filmId", filmId);
-        return findOne(FIND_FILM_BY_ID_QUERY, params);
+        return findById(EntityKind.FILM, filmId, FIND_FILM_BY_ID);
     }
 
     @Override
@@ -253,8 +275,9 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
         params.put("duration", film.getDuration());
         params.put("mpaId", film.getMpa().getId());
 
-        long id = insert(INSERT_FILM_QUERY, params);
+        long id = insert(INSERT_FILM_QUERY, params, "film_id");
         film.setId(id);
+        film.setVersion(0L);
         updateGenres(film.getGenres(), film.getId());
         updateDirector(film.getDirectors(), film.getId());
         return film;
@@ -264,12 +287,6 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
     @Transactional
     public Film updateFilm(Film newFilm) {
         log.info("Попытка обновить фильм с ID: {}", newFilm.getId());
-        Optional<Film> existingFilm = getFilmById(newFilm.getId());
-        if (existingFilm.isEmpty()) {
-            log.error("Фильм с ID {} не существует.", newFilm.getId());
-            throw new NotFoundException("Фильм с ID " + newFilm.getId() + " не существует.");
-        }
-
         Map<String, Object> params = new HashMap<>();
         params.put("name", newFilm.getName());
         params.put("description", newFilm.getDescription());
@@ -277,17 +294,19 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
         params.put("duration", newFilm.getDuration());
         params.put("mpaId", newFilm.getMpa().getId());
         params.put("filmId", newFilm.getId());
+        params.put("version", newFilm.getVersion());
 
         log.debug("Параметры для обновления: {}", params);
 
-        boolean isUpdated = update(UPDATE_FILM_QUERY, params);
-        if (!isUpdated) {
-            log.error("Не удалось обновить фильм с ID {}. Возможно, данные были изменены параллельно.", newFilm.getId());
-            throw new IllegalStateException("Не удалось обновить фильм с ID " + newFilm.getId());
-        }
+        // без предварительного чтения: отсутствие фильма выясняется, только если строка не обновилась
+        Long version = updateVersioned(newFilm.getVersion() == null ? UPDATE_FILM_QUERY : UPDATE_FILM_IF_VERSION_QUERY,
+                FIND_FILM_VERSION_QUERY, params, SingleColumnRowMapper.newInstance(Long.class),
+                "Фильм с ID " + newFilm.getId() + " не существует.");
+        newFilm.setVersion(version);
 
         updateGenres(newFilm.getGenres(), newFilm.getId());
         updateDirector(newFilm.getDirectors(), newFilm.getId());
+        RequestIdentityMap.evict(EntityKind.FILM, newFilm.getId());
         return newFilm;
     }
 
@@ -295,10 +314,13 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
     public boolean deleteFilm(Long filmId) {
         Map<String, Object> params = new HashMap<>();
         params.put("filmId", filmId);
+        // вместе с фильмом каскадом удаляются его отзывы
+        RequestIdentityMap.clear();
         return delete(DELETE_FILM_QUERY, params);
     }
 
     @Override
+    @ReplicaRead
     public Collection<Film> getPopularFilms(int count) {
         Map<String, Object> params = new HashMap<>();
         params.put("count", count);
@@ -306,16 +328,19 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
     }
 
     @Override
-    public Collection<Film> getPopularFilmsByGenreAndYear(int count, Long genreId, Integer year) {
+    @ReplicaRead
+    public Collection<Film> getPopularFilmsByGenreAndYears(int count, Long genreId, int yearFrom, int yearTo) {
         Map<String, Object> params = new HashMap<>();
         params.put("count", count);
         params.put("genreId", genreId);
-        params.put("year", year);
+        params.put("yearFrom", yearFrom);
+        params.put("yearTo", yearTo);
 
         return findMany(GET_POPULAR_FILMS_BY_GENRE_AND_YEAR_QUERY, params);
     }
 
     @Override
+    @ReplicaRead
     public Collection<Film> getPopularFilmsByGenre(int count, Long genreId) {
         Map<String, Object> params = new HashMap<>();
         params.put("count", count);
@@ -326,16 +351,19 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
     }
 
     @Override
-    public Collection<Film> getPopularFilmsByYear(int count, Integer year) {
+    @ReplicaRead
+    public Collection<Film> getPopularFilmsByYears(int count, int yearFrom, int yearTo) {
         Map<String, Object> params = new HashMap<>();
         params.put("count", count);
-        params.put("year", year);
+        params.put("yearFrom", yearFrom);
+        params.put("yearTo", yearTo);
 
         return findMany(GET_POPULAR_FILMS_BY_YEAR_QUERY, params);
     }
 
 
     @Override
+    @ReplicaRead
     public Collection<Film> findFilmsByDirectorSortedByYear(Long directorId) {
         Map<String, Object> params = new HashMap<>();
         params.put("directorId", directorId);
@@ -344,6 +372,7 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
 
 
     @Override
+    @ReplicaRead
     public Collection<Film> findFilmsByDirectorSortedByLikes(Long directorId) {
         Map<String, Object> params = new HashMap<>();
         params.put("directorId", directorId);
@@ -351,6 +380,7 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
     }
 
     @Override
+    @ReplicaRead
     public Collection<Film> searchFilmsByTitle(String query) {
         Map<String, Object> params = new HashMap<>();
         params.put("query", query);
@@ -358,6 +388,7 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
     }
 
     @Override
+    @ReplicaRead
     public Collection<Film> searchFilmsByDirector(String query) {
         Map<String, Object> params = new HashMap<>();
         params.put("query", query);
@@ -365,6 +396,7 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
     }
 
     @Override
+    @ReplicaRead
     public Collection<Film> searchFilmsByTitleAndDirector(String query) {
         Map<String, Object> params = new HashMap<>();
         params.put("query", query);
@@ -427,6 +459,7 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
     }
 
     @Override
+    @ReplicaRead
     public Collection<Film> getRecommendedFilms(long userId) {
         Map<String, Long> parameters = new HashMap<>();
         parameters.put("userId", userId);
@@ -436,6 +469,7 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
     }
 
     @Override
+    @ReplicaRead
     public Collection<Film> getCommonFilms(long userId, long friendId) {
         Map<String, Long> parameters = new HashMap<>();
         parameters.put("userId", userId);
@@ -451,5 +485,6 @@ public class JdbcFilmRepository extends BaseNamedParameterRepository<Film> imple
         jdbc.update("DELETE FROM film_genre", new HashMap<>());
         jdbc.update("DELETE FROM likes", new HashMap<>());
         jdbc.update("DELETE FROM films", new HashMap<>());
+        RequestIdentityMap.clear();
     }
 }
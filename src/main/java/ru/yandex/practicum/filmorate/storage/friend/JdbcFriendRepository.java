@@ -6,6 +6,8 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.mappers.UserRowMapper;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.base.CompiledStatement;
+import ru.yandex.practicum.filmorate.storage.routing.ReplicaRead;
 
 import java.util.HashMap;
 import java.util.List;
@@ -36,14 +38,20 @@ public class JdbcFriendRepository implements FriendRepository {
             """;
 
     private static final String GET_FRIENDS_QUERY = """
-            SELECT u.user_id, u.email, u.login, u.name, u.birthday
+            SELECT u.user_id, u.email, u.login, u.name, u.birthday, u.version
             FROM users u
             JOIN friends f ON u.user_id = f.friend_id
             WHERE f.user_id = :userId
             """;
 
+    private static final String GET_FRIEND_IDS_QUERY = """
+            SELECT friend_id
+            FROM friends
+            WHERE user_id = :userId
+            """;
+
     private static final String GET_COMMON_FRIENDS_QUERY = """
-            SELECT u.user_id, u.email, u.login, u.name, u.birthday
+            SELECT u.user_id, u.email, u.login, u.name, u.birthday, u.version
             FROM users u
             WHERE u.user_id IN (
                 SELECT f1.friend_id
@@ -59,7 +67,11 @@ public class JdbcFriendRepository implements FriendRepository {
             WHERE user_id = :userId AND friend_id = :friendId AND confirmed = :confirmed
             """;
 
-    private static final String DELETE_ALL_FRIENDS_BY_USER_ID = "DELETE FROM friends WHERE user_id = :userId OR friend_id = :userId;";
+    // два запроса вместо одного с OR: каждый идёт по своему индексу
+    private static final String DELETE_FRIENDS_BY_USER_ID = "DELETE FROM friends WHERE user_id = :userId";
+    private static final String DELETE_FRIENDS_BY_FRIEND_ID = "DELETE FROM friends WHERE friend_id = :userId";
+
+    private static final CompiledStatement GET_FRIEND_IDS = CompiledStatement.compile(GET_FRIEND_IDS_QUERY, "userId");
 
     @Override
     public void addFriend(Long userId, Long friendId) {
@@ -93,6 +105,7 @@ public class JdbcFriendRepository implements FriendRepository {
     }
 
     @Override
+    @ReplicaRead
     public List<User> getFriends(Long userId) {
         Map<String, Object> params = new HashMap<>();
         params.put("userId", userId);
@@ -100,6 +113,12 @@ public class JdbcFriendRepository implements FriendRepository {
     }
 
     @Override
+    public List<Long> getFriendIds(Long userId) {
+        return GET_FRIEND_IDS.query(jdbc.getJdbcOperations(), (rs, rowNum) -> rs.getLong(1), userId);
+    }
+
+    @Override
+    @ReplicaRead
     public List<User> getCommonFriends(Long userId1, Long userId2) {
         Map<String, Object> params = new HashMap<>();
         params.put("userId1", userId1);
@@ -116,7 +135,8 @@ public class JdbcFriendRepository implements FriendRepository {
     public void deleteAllFriendsByUserId(Long userId) {
         Map<String, Object> params = new HashMap<>();
         params.put("userId", userId);
-        jdbc.update(DELETE_ALL_FRIENDS_BY_USER_ID, params);
+        jdbc.update(DELETE_FRIENDS_BY_USER_ID, params);
+        jdbc.update(DELETE_FRIENDS_BY_FRIEND_ID, params);
     }
 
     private boolean checkFriendshipStatus(Long userId, Long friendId, boolean confirmed) {
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.base.BaseNamedParameterRepository;
+import ru.yandex.practicum.filmorate.storage.routing.ReplicaRead;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -56,6 +57,7 @@ public class JdbcGenreRepository extends BaseNamedParameterRepository<Genre> imp
     }
 
     @Override
+    @ReplicaRead
     public void loadGenresForFilms(Map<Long, Film> filmMap) {
         if (filmMap.isEmpty()) {
             return;
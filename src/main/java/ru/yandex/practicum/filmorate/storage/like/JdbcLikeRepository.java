@@ -1,48 +1,52 @@
 package ru.yandex.practicum.filmorate.storage.like;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.stereotype.Repository;
-
-import java.util.HashMap;
-import java.util.Map;
+import ru.yandex.practicum.filmorate.storage.base.CompiledStatement;
 
 @Repository
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "filmorate.sharding.enabled", havingValue = "false", matchIfMissing = true)
 public class JdbcLikeRepository implements LikeRepository {
+    private static final String ADD_LIKE_QUERY = "INSERT INTO likes (film_id, user_id) VALUES (:filmId, :userId)";
+    private static final String REMOVE_LIKE_QUERY = "DELETE FROM likes WHERE film_id = :filmId AND user_id = :userId";
+    private static final String DELETE_LIKES_BY_FILM_ID_QUERY = "DELETE FROM likes WHERE film_id = :filmId";
+    private static final String DELETE_LIKES_BY_USER_ID_QUERY = "DELETE FROM likes WHERE user_id = :userId";
+
+    private static final CompiledStatement ADD_LIKE = CompiledStatement.compile(ADD_LIKE_QUERY, "filmId", "userId");
+    private static final CompiledStatement REMOVE_LIKE =
+            CompiledStatement.compile(REMOVE_LIKE_QUERY, "filmId", "userId");
+    private static final CompiledStatement DELETE_LIKES_BY_FILM_ID =
+            CompiledStatement.compile(DELETE_LIKES_BY_FILM_ID_QUERY, "filmId");
+    private static final CompiledStatement DELETE_LIKES_BY_USER_ID =
+            CompiledStatement.compile(DELETE_LIKES_BY_USER_ID_QUERY, "userId");
+
     private final NamedParameterJdbcOperations jdbc;
 
     @Override
     public void addLike(Long filmId, Long userId) {
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (:filmId, :userId)";
-        Map<String, Object> params = new HashMap<>();
-        params.put("filmId", filmId);
-        params.put("userId", userId);
-        jdbc.update(sql, params);
+        ADD_LIKE.update(jdbc.getJdbcOperations(), filmId, userId);
+    }
+
+    @Override
+    public void addLikes(long[] filmIds, long[] userIds) {
+        ADD_LIKE.batchUpdate(jdbc.getJdbcOperations(), filmIds, userIds);
     }
 
     @Override
     public void removeLike(Long filmId, Long userId) {
-        String sql = "DELETE FROM likes WHERE film_id = :filmId AND user_id = :userId";
-        Map<String, Object> params = new HashMap<>();
-        params.put("filmId", filmId);
-        params.put("userId", userId);
-        jdbc.update(sql, params);
+        REMOVE_LIKE.update(jdbc.getJdbcOperations(), filmId, userId);
     }
 
     @Override
     public void deleteLikesByFilmId(Long filmId) {
-        String sql = "DELETE FROM likes WHERE film_id = :filmId;";
-        Map<String, Object> params = new HashMap<>();
-        params.put("filmId", filmId);
-        jdbc.update(sql, params);
+        DELETE_LIKES_BY_FILM_ID.update(jdbc.getJdbcOperations(), filmId);
     }
 
     @Override
     public void deleteLikesByUserId(Long userId) {
-        String sql = "DELETE FROM likes WHERE user_id = :userId;";
-        Map<String, Object> params = new HashMap<>();
-        params.put("userId", userId);
-        jdbc.update(sql, params);
+        DELETE_LIKES_BY_USER_ID.update(jdbc.getJdbcOperations(), userId);
     }
 }
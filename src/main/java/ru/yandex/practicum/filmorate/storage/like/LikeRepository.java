@@ -4,6 +4,11 @@ public interface LikeRepository {
 
     void addLike(Long filmId, Long userId);
 
+    /**
+     * Добавляет лайки одной пачкой; filmIds[i] и userIds[i] образуют i-й лайк.
+     */
+    void addLikes(long[] filmIds, long[] userIds);
+
     void removeLike(Long filmId, Long userId);
 
     void deleteLikesByFilmId(Long filmId);
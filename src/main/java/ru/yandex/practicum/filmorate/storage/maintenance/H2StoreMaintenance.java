@@ -0,0 +1,291 @@
+package ru.yandex.practicum.filmorate.storage.maintenance;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ConditionsNotMetException;
+import ru.yandex.practicum.filmorate.storage.routing.ReadWriteRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Обслуживание файловой базы H2 без остановки приложения.
+ * Статистика MVStore (размер файла, заполненность, кэш) читается из INFORMATION_SCHEMA.SETTINGS.
+ * Уплотнение идёт через SQL-команду SHUTDOWN COMPACT: H2 закрывает базу, переписывает файл
+ * и открывает его заново при следующем соединении, поэтому соединения пула после неё
+ * вытесняются, а незавершённые транзакции других соединений обрываются. По расписанию
+ * уплотнение запускается, только когда заполненность чанков упала ниже порога и пул основной
+ * базы простаивает; если пул не удалось найти, расписание уплотнение пропускает.
+ * Ручной запуск порог и нагрузку не проверяет.
+ * Горячая копия снимается командой BACKUP TO в zip-архив, старые копии сверх retain удаляются.
+ * Для базы в памяти доступна только статистика.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.h2.maintenance.enabled", havingValue = "true")
+public class H2StoreMaintenance {
+    private static final String STATS_QUERY = """
+            SELECT SETTING_NAME, SETTING_VALUE
+            FROM INFORMATION_SCHEMA.SETTINGS
+            WHERE SETTING_NAME LIKE 'info.%'
+            """;
+    private static final String DATABASE_PATH_QUERY = "SELECT DATABASE_PATH()";
+    private static final String CHECKPOINT = "CHECKPOINT";
+    private static final String SHUTDOWN_COMPACT = "SHUTDOWN COMPACT";
+    private static final String BACKUP_PREFIX = "filmorate-";
+    private static final String BACKUP_SUFFIX = ".zip";
+    private static final DateTimeFormatter BACKUP_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final JdbcTemplate jdbc;
+    private final DataSource dataSource;
+    private final ObjectProvider<ReadWriteRoutingDataSource> routingDataSource;
+    private final Path backupDirectory;
+    private final int retain;
+    private final int compactBelowFillRate;
+    private final int idleMaxActiveConnections;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private final AtomicLong backups = new AtomicLong();
+    private volatile LocalDateTime lastCompaction;
+    private volatile LocalDateTime lastBackup;
+
+    public H2StoreMaintenance(DataSource dataSource,
+                              ObjectProvider<ReadWriteRoutingDataSource> routingDataSource,
+                              @Value("${filmorate.h2.maintenance.backup.directory:./db/backup}") Path backupDirectory,
+                              @Value("${filmorate.h2.maintenance.backup.retain:7}") int retain,
+                              @Value("${filmorate.h2.maintenance.compaction.below-fill-rate:70}")
+                              int compactBelowFillRate,
+                              @Value("${filmorate.h2.maintenance.compaction.idle-max-active-connections:0}")
+                              int idleMaxActiveConnections) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.dataSource = dataSource;
+        this.routingDataSource = routingDataSource;
+        this.backupDirectory = backupDirectory;
+        this.retain = retain;
+        this.compactBelowFillRate = compactBelowFillRate;
+        this.idleMaxActiveConnections = idleMaxActiveConnections;
+    }
+
+    public StoreStats stats() {
+        Map<String, String> info = new HashMap<>();
+        jdbc.query(STATS_QUERY, rs -> {
+            info.put(rs.getString(1).substring("info.".length()), rs.getString(2));
+        });
+        return new StoreStats(databasePath(), number(info, "FILE_SIZE"), number(info, "FILL_RATE"),
+                number(info, "CHUNKS_FILL_RATE"), number(info, "CHUNK_COUNT"), number(info, "CACHE_SIZE"),
+                number(info, "CACHE_MAX_SIZE"), number(info, "CACHE_HIT_RATIO"), number(info, "FILE_WRITE_BYTES"),
+                number(info, "FILE_READ_BYTES"), compactions.get(), reclaimedBytes.get(), lastCompaction,
+                backups.get(), lastBackup);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.h2.maintenance.compaction.check-interval:600000}",
+            initialDelayString = "${filmorate.h2.maintenance.compaction.check-interval:600000}")
+    public void compactIfIdle() {
+        StoreStats stats = stats();
+        if (stats.path() == null || stats.chunksFillRate() == null
+                || stats.chunksFillRate() >= compactBelowFillRate) {
+            return;
+        }
+        HikariPoolMXBean pool = primaryPool();
+        if (pool == null) {
+            log.debug("Уплотнение базы пропущено: пул соединений основной базы не найден");
+            return;
+        }
+        if (pool.getActiveConnections() > idleMaxActiveConnections) {
+            log.debug("Уплотнение базы отложено: занято {} соединений", pool.getActiveConnections());
+            return;
+        }
+        compact();
+    }
+
+    /**
+     * Уплотняет файл базы: H2 закрывает её, переписывает живые страницы и отрезает освободившееся место.
+     * Пока идёт уплотнение, новые соединения ждут открытия базы.
+     */
+    public CompactionResult compact() {
+        String path = requireFileDatabase();
+        lock.lock();
+        try {
+            // размер до уплотнения считается по сброшенному на диск файлу, а не по буферу записи
+            jdbc.execute(CHECKPOINT);
+            long before = fileSize();
+            long startedAt = System.nanoTime();
+            try {
+                // JdbcTemplate после выполнения читает предупреждения оператора, а база к этому моменту закрыта
+                jdbc.execute((ConnectionCallback<Void>) connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute(SHUTDOWN_COMPACT);
+                    }
+                    return null;
+                });
+            } finally {
+                // соединения к закрытой базе пул без вытеснения выдал бы снова
+                HikariPoolMXBean pool = primaryPool();
+                if (pool != null) {
+                    pool.softEvictConnections();
+                }
+            }
+            long after = fileSize();
+            long tookMillis = Duration.ofNanos(System.nanoTime() - startedAt).toMillis();
+            compactions.incrementAndGet();
+            reclaimedBytes.addAndGet(Math.max(0, before - after));
+            lastCompaction = LocalDateTime.now();
+            log.info("База {} уплотнена за {} мс: {} -> {} байт", path, tookMillis, before, after);
+            return new CompactionResult(before, after, tookMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(cron = "${filmorate.h2.maintenance.backup.cron:0 0 3 * * *}")
+    public void scheduledBackup() {
+        if (databasePath() == null) {
+            return;
+        }
+        try {
+            backup();
+        } catch (RuntimeException e) {
+            log.error("Не удалось снять резервную копию базы", e);
+        }
+    }
+
+    /**
+     * Снимает горячую копию базы в каталог резервных копий и удаляет копии сверх retain.
+     */
+    public BackupFile backup() {
+        requireFileDatabase();
+        lock.lock();
+        try {
+            Files.createDirectories(backupDirectory);
+            Path target = backupDirectory.resolve(BACKUP_PREFIX + LocalDateTime.now().format(BACKUP_STAMP)
+                    + BACKUP_SUFFIX).toAbsolutePath();
+            jdbc.update("BACKUP TO ?", target.toString());
+            backups.incrementAndGet();
+            lastBackup = LocalDateTime.now();
+            BackupFile backup = new BackupFile(target.getFileName().toString(), Files.size(target));
+            log.info("Снята резервная копия базы {} ({} байт)", backup.name(), backup.size());
+            rotate();
+            return backup;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return резервные копии от новых к старым
+     */
+    public List<BackupFile> listBackups() {
+        if (!Files.isDirectory(backupDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(backupDirectory)) {
+            return files
+                    .filter(this::isBackup)
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .map(file -> {
+                        try {
+                            return new BackupFile(file.getFileName().toString(), Files.size(file));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void rotate() throws IOException {
+        List<BackupFile> existing = listBackups();
+        for (BackupFile stale : existing.subList(Math.min(retain, existing.size()), existing.size())) {
+            Files.deleteIfExists(backupDirectory.resolve(stale.name()));
+            log.info("Удалена устаревшая резервная копия {}", stale.name());
+        }
+    }
+
+    private boolean isBackup(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(BACKUP_PREFIX) && name.endsWith(BACKUP_SUFFIX);
+    }
+
+    private String requireFileDatabase() {
+        String path = databasePath();
+        if (path == null) {
+            throw new ConditionsNotMetException("База данных в памяти: уплотнение и резервные копии недоступны");
+        }
+        return path;
+    }
+
+    private String databasePath() {
+        return jdbc.queryForObject(DATABASE_PATH_QUERY, String.class);
+    }
+
+    private long fileSize() {
+        Long size = stats().fileSize();
+        return size == null ? 0 : size;
+    }
+
+    // за LazyConnectionDataSourceProxy при настроенной реплике пул основной базы берётся из маршрутизатора
+    private HikariPoolMXBean primaryPool() {
+        ReadWriteRoutingDataSource routing = routingDataSource.getIfAvailable();
+        try {
+            HikariDataSource primary = routing != null ? routing.primary()
+                    : dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class)
+                    : null;
+            return primary == null ? null : primary.getHikariPoolMXBean();
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static Long number(Map<String, String> info, String name) {
+        String value = info.get(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public record StoreStats(String path, Long fileSize, Long fillRate, Long chunksFillRate, Long chunkCount,
+                             Long cacheSize, Long cacheMaxSize, Long cacheHitRatio, Long fileWriteBytes,
+                             Long fileReadBytes, long compactions, long reclaimedBytes,
+                             LocalDateTime lastCompaction, long backups, LocalDateTime lastBackup) {
+    }
+
+    public record CompactionResult(long fileSizeBefore, long fileSizeAfter, long tookMillis) {
+    }
+
+    public record BackupFile(String name, long size) {
+    }
+}
@@ -0,0 +1,168 @@
+package ru.yandex.practicum.filmorate.storage.reference;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Справочники, которые заполняет data.sql: жанры, рейтинги MPA, типы событий и операции.
+ * Загружаются одним снимком при старте и дальше читаются без обращения к базе.
+ * Снимок неизменяем и подменяется целиком при {@link #refresh()}, поэтому читатели
+ * никогда не видят наполовину обновлённый справочник. Наружу отдаются копии моделей:
+ * Genre и MpaRating изменяемы, а экземпляры снимка общие для всех потоков.
+ * Полные списки жанров и рейтингов хранятся в снимке уже сериализованными в JSON.
+ */
+@Slf4j
+@Component
+public class ReferenceDataRegistry {
+    private static final String FIND_GENRES_QUERY = "SELECT genre_id, name FROM genres ORDER BY genre_id";
+    private static final String FIND_MPA_QUERY = "SELECT mpa_id, name, description FROM mpa_ratings ORDER BY mpa_id";
+    private static final String FIND_EVENT_TYPES_QUERY = "SELECT type_id, name FROM event_type";
+    private static final String FIND_OPERATIONS_QUERY = "SELECT operation_id, name FROM operation";
+
+    private final NamedParameterJdbcOperations jdbc;
+    private final ObjectMapper objectMapper;
+
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public ReferenceDataRegistry(NamedParameterJdbcOperations jdbc, ObjectProvider<ObjectMapper> objectMapper) {
+        this(jdbc, objectMapper.getIfAvailable(ObjectMapper::new));
+    }
+
+    public ReferenceDataRegistry(NamedParameterJdbcOperations jdbc, ObjectMapper objectMapper) {
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        current();
+    }
+
+    /**
+     * Перечитывает справочники из базы после их изменения администратором.
+     */
+    public synchronized void refresh() {
+        Snapshot previous = snapshot;
+        snapshot = load(previous == null ? 1 : previous.version() + 1);
+    }
+
+    public Optional<Genre> findGenre(Long genreId) {
+        return Optional.ofNullable(current().genres().get(genreId)).map(genre -> genre.toBuilder().build());
+    }
+
+    public List<Genre> genres() {
+        return current().genres().values().stream().map(genre -> genre.toBuilder().build()).toList();
+    }
+
+    /**
+     * @return JSON-массив всех жанров; массив общий, изменять его нельзя
+     */
+    public byte[] genresJson() {
+        return current().genresJson();
+    }
+
+    public Optional<MpaRating> findMpa(Long mpaId) {
+        return Optional.ofNullable(current().mpa().get(mpaId)).map(mpa -> mpa.toBuilder().build());
+    }
+
+    public List<MpaRating> mpaRatings() {
+        return current().mpa().values().stream().map(mpa -> mpa.toBuilder().build()).toList();
+    }
+
+    /**
+     * @return JSON-массив всех рейтингов MPA; массив общий, изменять его нельзя
+     */
+    public byte[] mpaRatingsJson() {
+        return current().mpaJson();
+    }
+
+    /**
+     * @return ID типа события по имени или null, если такого типа нет
+     */
+    public Long eventTypeId(String name) {
+        return current().eventTypes().get(name);
+    }
+
+    /**
+     * @return ID операции по имени или null, если такой операции нет
+     */
+    public Long operationId(String name) {
+        return current().operations().get(name);
+    }
+
+    /**
+     * @return номер снимка; растёт при каждом {@link #refresh()}
+     */
+    public long version() {
+        return current().version();
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = load(1);
+            }
+            return snapshot;
+        }
+    }
+
+    private Snapshot load(long version) {
+        Map<Long, Genre> genres = new LinkedHashMap<>();
+        jdbc.query(FIND_GENRES_QUERY, rs -> {
+            genres.put(rs.getLong("genre_id"), new Genre(rs.getLong("genre_id"), rs.getString("name")));
+        });
+        Map<Long, MpaRating> mpa = new LinkedHashMap<>();
+        jdbc.query(FIND_MPA_QUERY, rs -> {
+            mpa.put(rs.getLong("mpa_id"),
+                    new MpaRating(rs.getLong("mpa_id"), rs.getString("name"), rs.getString("description")));
+        });
+        Map<String, Long> eventTypes = new HashMap<>();
+        jdbc.query(FIND_EVENT_TYPES_QUERY, rs -> {
+            eventTypes.put(rs.getString("name"), rs.getLong("type_id"));
+        });
+        Map<String, Long> operations = new HashMap<>();
+        jdbc.query(FIND_OPERATIONS_QUERY, rs -> {
+            operations.put(rs.getString("name"), rs.getLong("operation_id"));
+        });
+        log.info("Справочники загружены (версия {}): {} жанров, {} рейтингов MPA, {} типов событий, {} операций",
+                version, genres.size(), mpa.size(), eventTypes.size(), operations.size());
+        // Map.copyOf не сохраняет порядок, а жанры и рейтинги отдаются по возрастанию ID
+        return new Snapshot(version, Collections.unmodifiableMap(genres),
+                Collections.unmodifiableMap(mpa), Map.copyOf(eventTypes), Map.copyOf(operations),
+                toJson(genres.values()), toJson(mpa.values()));
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать справочник", e);
+        }
+    }
+
+    private record Snapshot(long version, Map<Long, Genre> genres, Map<Long, MpaRating> mpa,
+                            Map<String, Long> eventTypes, Map<String, Long> operations,
+                            byte[] genresJson, byte[] mpaJson) {
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.storage.base.BaseNamedParameterRepository;
+import ru.yandex.practicum.filmorate.storage.base.RequestIdentityMap;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
 
 import java.util.*;
 
@@ -17,60 +19,53 @@ public class JdbcReviewRepository extends BaseNamedParameterRepository<Review> i
             VALUES (:content, :isPositive, :userId, :filmId, :useful)
             """;
 
+    // автор, фильм и рейтинг отзыва возвращаются тем же запросом, без чтения перед обновлением
     private static final String UPDATE_REVIEW_QUERY = """
-            UPDATE reviews
-            SET content = :content, is_positive = :isPositive
-            WHERE review_id = :reviewId;
+            SELECT * FROM FINAL TABLE (
+                UPDATE reviews
+                SET content = :content, is_positive = :isPositive, version = version + 1
+                WHERE review_id = :reviewId
+            )
+            """;
+
+    private static final String UPDATE_REVIEW_IF_VERSION_QUERY = """
+            SELECT * FROM FINAL TABLE (
+                UPDATE reviews
+                SET content = :content, is_positive = :isPositive, version = version + 1
+                WHERE review_id = :reviewId AND version = :version
+            )
             """;
 
+    private static final String FIND_REVIEW_VERSION_QUERY = "SELECT version FROM reviews WHERE review_id = :reviewId";
+
     private static final String DELETE_REVIEW_QUERY = "DELETE FROM reviews WHERE review_id = :reviewId";
 
     private static final String FIND_REVIEW_BY_ID_QUERY = "SELECT * FROM reviews WHERE review_id = :reviewId";
 
-    private static final String FIND_REVIEWS_BY_FILM_ID_QUERY = """
-            SELECT * FROM reviews
-            WHERE film_id = :filmId
-            ORDER BY useful DESC
-            LIMIT :count
-            """;
-
-    private static final String FIND_ALL_REVIEWS_QUERY = """
-            SELECT * FROM reviews
-            ORDER BY useful DESC
-            LIMIT :count
-            """;
+    private static final String FIND_REVIEW_USEFUL_QUERY = "SELECT useful FROM reviews WHERE review_id = :reviewId";
 
-    private static final String UPDATE_REVIEW_LIKE_QUERY = """
-            UPDATE reviews
-            SET useful = useful + 1
-            WHERE review_id = :reviewId
-            """;
+    private static final String FIND_REVIEWS_BY_IDS_QUERY = "SELECT * FROM reviews WHERE review_id IN (:reviewIds)";
 
-    private static final String UPDATE_REVIEW_DISLIKE_QUERY = """
-            UPDATE reviews
-            SET useful = useful - 1
-            WHERE review_id = :reviewId
-            """;
+    private static final Comparator<Review> MOST_USEFUL_FIRST = Comparator
+            .comparing(Review::getUseful, Comparator.reverseOrder())
+            .thenComparing(Review::getReviewId);
 
-    private static final String UPDATE_USEFUL_QUERY = """
-            UPDATE reviews
-            SET useful = (
-                SELECT COALESCE(SUM(CASE WHEN is_like THEN 1 ELSE -1 END), 0)
-                FROM review_likes
-                WHERE review_id = :reviewId
-            )
-            WHERE review_id = :reviewId
-            """;
+    private final ReviewUsefulCounters usefulCounters;
+    private final ReviewRankingIndex rankingIndex;
+    private final ReviewSearchIndex searchIndex;
 
-    public JdbcReviewRepository(NamedParameterJdbcOperations jdbc, RowMapper<Review> mapper) {
+    public JdbcReviewRepository(NamedParameterJdbcOperations jdbc, RowMapper<Review> mapper,
+                                ReviewUsefulCounters usefulCounters, ReviewRankingIndex rankingIndex,
+                                ReviewSearchIndex searchIndex) {
         super(jdbc, mapper);
+        this.usefulCounters = usefulCounters;
+        this.rankingIndex = rankingIndex;
+        this.searchIndex = searchIndex;
     }
 
     @Override
     public List<Review> getAllReviews(int count) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("count", count);
-        return findMany(FIND_ALL_REVIEWS_QUERY, params);
+        return getReviewsPage(null, null, null, count);
     }
 
     @Override
@@ -85,76 +80,150 @@ public class JdbcReviewRepository extends BaseNamedParameterRepository<Review> i
         long id = insert(INSERT_REVIEW_QUERY, params);
         review.setReviewId(id);
         review.setUseful(0);
+        review.setVersion(0L);
+        rankingIndex.add(id, review.getFilmId(), 0);
+        searchIndex.put(id, review.getFilmId(), review.getUserId(), review.getContent());
         return review;
     }
 
     @Override
     public Review updateReview(Review newReview) {
-        Optional<Review> existingReviewOpt = getReviewById(newReview.getReviewId());
-        if (existingReviewOpt.isEmpty()) {
-            throw new RuntimeException("Review not found with id: " + newReview.getReviewId());
-        }
-
-        Review existingReview = existingReviewOpt.get();
-
         Map<String, Object> params = new HashMap<>();
         params.put("content", newReview.getContent());
         params.put("isPositive", newReview.getIsPositive());
-        params.put("useful", existingReview.getUseful());
-        params.put("userId", existingReview.getUserId());
-        params.put("filmId", existingReview.getFilmId());
         params.put("reviewId", newReview.getReviewId());
-
-        update(UPDATE_REVIEW_QUERY, params);
-
-        newReview.setUserId(existingReview.getUserId());
-        newReview.setFilmId(existingReview.getFilmId());
-        newReview.setUseful(existingReview.getUseful());
-        return newReview;
-    }
-
-    @Override
-    public void updateUseful(Long reviewId) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("reviewId", reviewId);
-        update(UPDATE_USEFUL_QUERY, params);
+        params.put("version", newReview.getVersion());
+
+        Review updated = updateVersioned(newReview.getVersion() == null ? UPDATE_REVIEW_QUERY
+                        : UPDATE_REVIEW_IF_VERSION_QUERY, FIND_REVIEW_VERSION_QUERY, params, mapper,
+                "Отзыв с ID " + newReview.getReviewId() + " не найден");
+        // строка прочитана самим UPDATE, поэтому рейтинг перечитывается согласованно с переносом счётчиков
+        updated.setUseful(usefulCounters.readConsistent(() -> jdbc.queryForObject(FIND_REVIEW_USEFUL_QUERY, params,
+                Integer.class) + usefulCounters.pending(updated.getReviewId())));
+        RequestIdentityMap.evict(EntityKind.REVIEW, updated.getReviewId());
+        searchIndex.put(updated.getReviewId(), updated.getFilmId(), updated.getUserId(), updated.getContent());
+        return updated;
     }
 
     @Override
     public boolean deleteReview(Long reviewId) {
         Map<String, Object> params = new HashMap<>();
         params.put("reviewId", reviewId);
-        return update(DELETE_REVIEW_QUERY, params);
+        boolean deleted = update(DELETE_REVIEW_QUERY, params);
+        RequestIdentityMap.evict(EntityKind.REVIEW, reviewId);
+        usefulCounters.forget(reviewId);
+        rankingIndex.remove(reviewId);
+        searchIndex.remove(reviewId);
+        return deleted;
     }
 
     @Override
     public Optional<Review> getReviewById(Long reviewId) {
         Map<String, Object> params = new HashMap<>();
         params.put("reviewId", reviewId);
-        return findOne(FIND_REVIEW_BY_ID_QUERY, params);
+        return RequestIdentityMap.load(EntityKind.REVIEW, reviewId, () -> usefulCounters.readConsistent(() -> {
+            Optional<Review> review = findOne(FIND_REVIEW_BY_ID_QUERY, params);
+            review.ifPresent(this::addPendingUseful);
+            return review;
+        }));
     }
 
     @Override
     public List<Review> getReviewsByFilmId(Long filmId, int count) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("filmId", filmId);
-        params.put("count", count);
-        return findMany(FIND_REVIEWS_BY_FILM_ID_QUERY, params);
+        return getReviewsPage(filmId, null, null, count);
     }
 
+    /**
+     * Порядок и курсор берутся из индекса рейтинга, из базы отзывы читаются только по первичному ключу.
+     * Отзывы, которых уже нет в базе (например, удалённые каскадом вместе с фильмом), вычищаются из индекса,
+     * а расхождение рейтинга с индексом исправляется по прочитанному значению для следующих запросов.
+     * Сама страница остаётся в порядке индекса и показывает полезность из него: курсор, собранный клиентом
+     * из последнего отзыва, продолжает обход ровно с той записи, на которой страница кончилась.
+     */
     @Override
-    public void addLike(Long reviewId, Long userId) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("reviewId", reviewId);
-        params.put("userId", userId);
-        update(UPDATE_REVIEW_LIKE_QUERY, params);
+    public List<Review> getReviewsPage(Long filmId, Integer afterUseful, Long afterReviewId, int count) {
+        List<Review> page = new ArrayList<>(Math.min(count, 256));
+        Set<Long> seen = new HashSet<>();
+        while (page.size() < count) {
+            List<ReviewRankingIndex.Entry> entries = rankingIndex.page(filmId, afterUseful, afterReviewId,
+                    count - page.size());
+            if (entries.isEmpty()) {
+                break;
+            }
+            Map<Long, Review> found = findByIds(entries);
+            for (ReviewRankingIndex.Entry entry : entries) {
+                Review review = found.get(entry.reviewId());
+                if (review == null) {
+                    rankingIndex.remove(entry.reviewId());
+                    continue;
+                }
+                if (!seen.add(review.getReviewId())) {
+                    // исправленная позиция оказалась дальше курсора, отзыв уже есть на странице
+                    continue;
+                }
+                rankingIndex.reposition(review.getReviewId(), review.getFilmId(), review.getUseful());
+                review.setUseful(entry.useful());
+                page.add(review);
+            }
+            ReviewRankingIndex.Entry last = entries.get(entries.size() - 1);
+            afterUseful = last.useful();
+            afterReviewId = last.reviewId();
+        }
+        return page;
     }
 
+    /**
+     * Кандидаты из поискового индекса упорядочиваются по рейтингу из индекса рейтинга,
+     * из базы читаются только отзывы, попадающие в результат.
+     */
     @Override
-    public void addDislike(Long reviewId, Long userId) {
+    public List<Review> searchReviews(String query, Long filmId, Long userId, int count) {
+        List<ReviewRankingIndex.Entry> candidates = new ArrayList<>();
+        for (Long reviewId : searchIndex.search(query, filmId, userId)) {
+            Integer useful = rankingIndex.useful(reviewId);
+            candidates.add(new ReviewRankingIndex.Entry(reviewId, null, useful == null ? 0 : useful));
+        }
+        candidates.sort(Comparator.comparingInt(ReviewRankingIndex.Entry::useful).reversed()
+                .thenComparingLong(ReviewRankingIndex.Entry::reviewId));
+
+        List<Review> result = new ArrayList<>(Math.min(count, 256));
+        int from = 0;
+        while (result.size() < count && from < candidates.size()) {
+            List<ReviewRankingIndex.Entry> chunk = candidates.subList(from,
+                    Math.min(candidates.size(), from + count - result.size()));
+            from += chunk.size();
+            Map<Long, Review> found = findByIds(chunk);
+            for (ReviewRankingIndex.Entry entry : chunk) {
+                Review review = found.get(entry.reviewId());
+                if (review == null) {
+                    searchIndex.remove(entry.reviewId());
+                    rankingIndex.remove(entry.reviewId());
+                    continue;
+                }
+                result.add(review);
+            }
+        }
+        result.sort(MOST_USEFUL_FIRST);
+        return result;
+    }
+
+    /**
+     * @return отзывы по идентификаторам с уже добавленной не перенесённой полезностью
+     */
+    private Map<Long, Review> findByIds(List<ReviewRankingIndex.Entry> entries) {
         Map<String, Object> params = new HashMap<>();
-        params.put("reviewId", reviewId);
-        params.put("userId", userId);
-        update(UPDATE_REVIEW_DISLIKE_QUERY, params);
+        params.put("reviewIds", entries.stream().map(ReviewRankingIndex.Entry::reviewId).toList());
+        return usefulCounters.readConsistent(() -> {
+            Map<Long, Review> reviews = new HashMap<>();
+            for (Review review : findMany(FIND_REVIEWS_BY_IDS_QUERY, params)) {
+                addPendingUseful(review);
+                reviews.put(review.getReviewId(), review);
+            }
+            return reviews;
+        });
+    }
+
+    private void addPendingUseful(Review review) {
+        review.setUseful(review.getUseful() + usefulCounters.pending(review.getReviewId()));
     }
 }
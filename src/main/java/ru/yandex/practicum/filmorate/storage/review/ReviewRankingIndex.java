@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.storage.review;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * Упорядоченный индекс отзывов по (useful DESC, review_id ASC): общий и отдельно по каждому фильму.
+ * Поддерживается при создании, удалении и голосовании, поэтому первая и следующие страницы
+ * отзывов читаются обходом skip-list от курсора без сортировки в базе.
+ * При перестановке отзыва новая запись добавляется раньше, чем удаляется старая;
+ * устаревшие записи читатели пропускают, сверяясь с картой актуальных записей.
+ */
+@Slf4j
+@Component
+public class ReviewRankingIndex {
+    private static final Comparator<Entry> RANKING = Comparator
+            .comparingInt(Entry::useful).reversed()
+            .thenComparingLong(Entry::reviewId);
+
+    private static final String LOAD_QUERY = "SELECT review_id, film_id, useful FROM reviews";
+
+    private final NamedParameterJdbcOperations jdbc;
+    private final ReviewUsefulCounters usefulCounters;
+
+    private final NavigableSet<Entry> global = new ConcurrentSkipListSet<>(RANKING);
+    private final Map<Long, NavigableSet<Entry>> byFilm = new ConcurrentHashMap<>();
+    private final Map<Long, Entry> current = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public ReviewRankingIndex(NamedParameterJdbcOperations jdbc, ReviewUsefulCounters usefulCounters) {
+        this.jdbc = jdbc;
+        this.usefulCounters = usefulCounters;
+    }
+
+    public void add(Long reviewId, Long filmId, int useful) {
+        ensureLoaded();
+        put(reviewId, old -> new Entry(reviewId, filmId, useful));
+    }
+
+    public void remove(Long reviewId) {
+        ensureLoaded();
+        Entry entry = current.remove(reviewId);
+        if (entry != null) {
+            global.remove(entry);
+            films(entry.filmId()).remove(entry);
+        }
+    }
+
+    /**
+     * Сдвигает отзыв на delta после коммита текущей транзакции.
+     */
+    public void shiftAfterCommit(Long reviewId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            shift(reviewId, delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                shift(reviewId, delta);
+            }
+        });
+    }
+
+    /**
+     * Исправляет позицию отзыва, если прочитанный из базы рейтинг разошёлся с индексом.
+     */
+    public void reposition(Long reviewId, Long filmId, int useful) {
+        Entry entry = current.get(reviewId);
+        if (entry == null || entry.useful() != useful) {
+            put(reviewId, old -> new Entry(reviewId, filmId, useful));
+        }
+    }
+
+    /**
+     * Записи страницы рейтинга строго после курсора (afterUseful, afterReviewId).
+     *
+     * @param filmId        фильм или null для общего рейтинга
+     * @param afterUseful   рейтинг последнего отзыва предыдущей страницы или null для первой страницы
+     * @param afterReviewId идентификатор последнего отзыва предыдущей страницы
+     */
+    public List<Entry> page(Long filmId, Integer afterUseful, Long afterReviewId, int count) {
+        ensureLoaded();
+        NavigableSet<Entry> ranking = filmId == null ? global : byFilm.get(filmId);
+        List<Entry> entries = new ArrayList<>(Math.min(count, 256));
+        if (ranking == null) {
+            return entries;
+        }
+        NavigableSet<Entry> tail = afterUseful == null ? ranking
+                : ranking.tailSet(new Entry(afterReviewId, null, afterUseful), false);
+        for (Entry entry : tail) {
+            if (entries.size() == count) {
+                break;
+            }
+            if (entry.equals(current.get(entry.reviewId()))) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return рейтинг отзыва по индексу или null, если отзыва в индексе нет
+     */
+    public Integer useful(Long reviewId) {
+        ensureLoaded();
+        Entry entry = current.get(reviewId);
+        return entry == null ? null : entry.useful();
+    }
+
+    public int size() {
+        ensureLoaded();
+        return current.size();
+    }
+
+    private void shift(Long reviewId, int delta) {
+        if (!loaded) {
+            // голос уже закоммичен, и загрузка прочитает рейтинг вместе с ним
+            ensureLoaded();
+            return;
+        }
+        put(reviewId, old -> old == null ? null : new Entry(reviewId, old.filmId(), old.useful() + delta));
+    }
+
+    // перестановка атомарна для одного отзыва: параллельные сдвиги не теряют друг друга
+    private void put(Long reviewId, UnaryOperator<Entry> update) {
+        current.compute(reviewId, (id, old) -> {
+            Entry entry = update.apply(old);
+            if (entry == null) {
+                return null;
+            }
+            global.add(entry);
+            films(entry.filmId()).add(entry);
+            if (old != null && !old.equals(entry)) {
+                global.remove(old);
+                films(old.filmId()).remove(old);
+            }
+            return entry;
+        });
+    }
+
+    private NavigableSet<Entry> films(Long filmId) {
+        return byFilm.computeIfAbsent(filmId, id -> new ConcurrentSkipListSet<>(RANKING));
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            List<Entry> entries = usefulCounters.readConsistent(() -> jdbc.query(LOAD_QUERY, (rs, rowNum) -> {
+                long reviewId = rs.getLong("review_id");
+                return new Entry(reviewId, rs.getLong("film_id"),
+                        rs.getInt("useful") + usefulCounters.pending(reviewId));
+            }));
+            entries.forEach(entry -> put(entry.reviewId(), old -> entry));
+            loaded = true;
+            log.info("Индекс рейтинга отзывов загружен: {} отзывов", current.size());
+        }
+    }
+
+    public record Entry(long reviewId, Long filmId, int useful) {
+    }
+}
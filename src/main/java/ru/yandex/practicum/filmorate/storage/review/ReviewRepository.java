@@ -17,11 +17,24 @@ public interface ReviewRepository {
 
     List<Review> getReviewsByFilmId(Long filmId, int count);
 
-    void addLike(Long reviewId, Long userId);
-
-    void addDislike(Long reviewId, Long userId);
+    /**
+     * Страница отзывов по убыванию полезности (при равенстве — по возрастанию ID),
+     * начиная строго после отзыва (afterUseful, afterReviewId). Полезность отзывов страницы — та,
+     * по которой они упорядочены, поэтому курсор берётся из последнего отзыва как есть.
+     *
+     * @param filmId      фильм или null для всех отзывов
+     * @param afterUseful полезность последнего отзыва предыдущей страницы или null для первой страницы
+     */
+    List<Review> getReviewsPage(Long filmId, Integer afterUseful, Long afterReviewId, int count);
 
     List<Review> getAllReviews(int count);
 
-    void updateUseful(Long reviewId);
+    /**
+     * Поиск по тексту отзывов с сортировкой по убыванию полезности.
+     *
+     * @param query  слова, которые должны встретиться в отзыве; фразы в двойных кавычках ищутся целиком
+     * @param filmId фильм или null
+     * @param userId автор или null
+     */
+    List<Review> searchReviews(String query, Long filmId, Long userId, int count);
 }
@@ -0,0 +1,183 @@
+package ru.yandex.practicum.filmorate.storage.review;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Инвертированный индекс по словам текста отзывов. Для каждого слова хранится множество отзывов,
+ * для каждого отзыва — последовательность его слов, по которой проверяются фразы и отбрасываются
+ * кандидаты из устаревших списков. Индекс загружается из базы при первом обращении, дальше
+ * обновляется репозиторием при создании, изменении и удалении отзыва.
+ */
+@Slf4j
+@Component
+public class ReviewSearchIndex {
+    private static final Pattern PHRASE = Pattern.compile("\"([^\"]*)\"");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final String LOAD_QUERY = "SELECT review_id, film_id, user_id, content FROM reviews";
+
+    private final NamedParameterJdbcOperations jdbc;
+
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+    private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public ReviewSearchIndex(NamedParameterJdbcOperations jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public void put(Long reviewId, Long filmId, Long userId, String content) {
+        ensureLoaded();
+        index(new Document(reviewId, filmId, userId, tokenize(content)));
+    }
+
+    public void remove(Long reviewId) {
+        ensureLoaded();
+        documents.computeIfPresent(reviewId, (id, old) -> {
+            unlink(old, Set.of());
+            return null;
+        });
+    }
+
+    /**
+     * Отзывы, содержащие все слова запроса; части запроса в двойных кавычках должны идти подряд.
+     *
+     * @param filmId фильм или null
+     * @param userId автор отзыва или null
+     * @return ID подходящих отзывов в произвольном порядке
+     */
+    public List<Long> search(String query, Long filmId, Long userId) {
+        ensureLoaded();
+        List<String[]> phrases = new ArrayList<>();
+        Matcher matcher = PHRASE.matcher(query);
+        StringBuilder loose = new StringBuilder();
+        while (matcher.find()) {
+            String[] phrase = tokenize(matcher.group(1));
+            if (phrase.length > 1) {
+                phrases.add(phrase);
+            } else {
+                loose.append(' ').append(matcher.group(1));
+            }
+            matcher.appendReplacement(loose, " ");
+        }
+        matcher.appendTail(loose);
+
+        Set<String> terms = new LinkedHashSet<>(Arrays.asList(tokenize(loose.toString())));
+        phrases.forEach(phrase -> terms.addAll(Arrays.asList(phrase)));
+        List<Long> found = new ArrayList<>();
+        if (terms.isEmpty()) {
+            return found;
+        }
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String term : terms) {
+            Set<Long> list = postings.get(term);
+            if (list == null) {
+                return found;
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        // кандидаты берутся из самого короткого списка, остальные условия проверяются по документу
+        for (Long reviewId : lists.get(0)) {
+            Document document = documents.get(reviewId);
+            if (document != null
+                    && (filmId == null || filmId.equals(document.filmId()))
+                    && (userId == null || userId.equals(document.userId()))
+                    && document.containsAll(terms)
+                    && phrases.stream().allMatch(document::containsPhrase)) {
+                found.add(reviewId);
+            }
+        }
+        return found;
+    }
+
+    static String[] tokenize(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        return Arrays.stream(SEPARATORS.split(normalized))
+                .filter(token -> !token.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    private void index(Document document) {
+        documents.compute(document.reviewId(), (id, old) -> {
+            Set<String> terms = document.terms();
+            for (String term : terms) {
+                postings.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+            if (old != null) {
+                unlink(old, terms);
+            }
+            return document;
+        });
+    }
+
+    // пустые списки слов остаются в карте: их удаление гонялось бы с параллельной вставкой
+    private void unlink(Document document, Set<String> keep) {
+        for (String term : document.terms()) {
+            if (!keep.contains(term)) {
+                Set<Long> list = postings.get(term);
+                if (list != null) {
+                    list.remove(document.reviewId());
+                }
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            jdbc.query(LOAD_QUERY, rs -> {
+                index(new Document(rs.getLong("review_id"), rs.getLong("film_id"), rs.getLong("user_id"),
+                        tokenize(rs.getString("content"))));
+            });
+            loaded = true;
+            log.info("Поисковый индекс отзывов загружен: {} отзывов, {} слов", documents.size(), postings.size());
+        }
+    }
+
+    private record Document(Long reviewId, Long filmId, Long userId, String[] tokens) {
+        Set<String> terms() {
+            return new LinkedHashSet<>(Arrays.asList(tokens));
+        }
+
+        boolean containsAll(Set<String> terms) {
+            return terms().containsAll(terms);
+        }
+
+        boolean containsPhrase(String[] phrase) {
+            for (int start = 0; start + phrase.length <= tokens.length; start++) {
+                int i = 0;
+                while (i < phrase.length && tokens[start + i].equals(phrase[i])) {
+                    i++;
+                }
+                if (i == phrase.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
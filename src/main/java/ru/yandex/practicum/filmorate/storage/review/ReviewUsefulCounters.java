@@ -0,0 +1,218 @@
+package ru.yandex.practicum.filmorate.storage.review;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Счётчики полезности «горячих» отзывов в памяти.
+ * Пока за отзыв голосуют по одному, голос сразу меняет reviews.useful под блокировкой строки.
+ * Если голоса за один отзыв начинают пересекаться во времени, отзыв становится горячим:
+ * голос меняет только review_likes, а разница копится в {@link LongAdder}
+ * и раз в интервал одним UPDATE переносится в reviews.useful.
+ * Чтения складывают значение из базы с ещё не перенесённой разницей через {@link #readConsistent},
+ * чтобы перенос, зафиксированный между чтением строки и чтением разницы, не был учтён дважды или потерян.
+ */
+@Slf4j
+@Component
+public class ReviewUsefulCounters {
+    private static final String ADD_USEFUL_QUERY = """
+            UPDATE reviews
+            SET useful = useful + :delta
+            WHERE review_id = :reviewId
+            """;
+
+    private final NamedParameterJdbcOperations jdbc;
+    private final int promoteAfter;
+    private final int demoteBelow;
+
+    private final Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> contention = new ConcurrentHashMap<>();
+    private final Map<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final StampedLock foldLock = new StampedLock();
+
+    public ReviewUsefulCounters(NamedParameterJdbcOperations jdbc,
+                                @Value("${filmorate.reviews.hot.promote-after:8}") int promoteAfter,
+                                @Value("${filmorate.reviews.hot.demote-below:10}") int demoteBelow) {
+        this.jdbc = jdbc;
+        this.promoteAfter = promoteAfter;
+        this.demoteBelow = demoteBelow;
+    }
+
+    /**
+     * Отмечает начало голосования за отзыв. Голос, заставший другой голос за тот же отзыв,
+     * считается конфликтом; после promoteAfter конфликтов за интервал отзыв становится горячим.
+     *
+     * @return true, если голос нужно провести без блокировки строки отзыва
+     */
+    public boolean enter(Long reviewId) {
+        int concurrent = inFlight.computeIfAbsent(reviewId, id -> new AtomicInteger()).incrementAndGet();
+        Cell cell = cells.get(reviewId);
+        if (cell != null && cell.hot) {
+            cell.votes.increment();
+            return true;
+        }
+        if (concurrent > 1
+                && contention.computeIfAbsent(reviewId, id -> new AtomicInteger()).incrementAndGet() >= promoteAfter) {
+            promote(reviewId);
+        }
+        return false;
+    }
+
+    public void exit(Long reviewId) {
+        inFlight.computeIfPresent(reviewId, (id, count) -> count.decrementAndGet() == 0 ? null : count);
+    }
+
+    /**
+     * Добавляет разницу к горячему счётчику после коммита текущей транзакции,
+     * чтобы откаченный голос не попал в рейтинг.
+     * Разница добавляется под блокировкой ключа, которой перенос удаляет остывшие ячейки,
+     * поэтому голос не может попасть в уже удалённую ячейку.
+     */
+    public void addAfterCommit(Long reviewId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(reviewId, delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(reviewId, delta);
+            }
+        });
+    }
+
+    /**
+     * @return разница, ещё не перенесённая в reviews.useful
+     */
+    public int pending(Long reviewId) {
+        Cell cell = cells.get(reviewId);
+        return cell == null ? 0 : (int) cell.delta.sum();
+    }
+
+    /**
+     * Выполняет чтение из reviews вместе с добавлением {@link #pending}. Если за время чтения перенос
+     * зафиксировал разницу в базе, результат мог учесть её дважды или ни разу, и чтение повторяется
+     * под блокировкой чтения, когда перенос уже вычел её из памяти. Вызывается вне транзакций,
+     * удерживающих блокировки строк reviews, иначе перенос ждал бы их до таймаута.
+     */
+    public <T> T readConsistent(Supplier<T> read) {
+        long stamp = foldLock.tryOptimisticRead();
+        if (stamp != 0) {
+            T result = read.get();
+            if (foldLock.validate(stamp)) {
+                return result;
+            }
+        }
+        stamp = foldLock.readLock();
+        try {
+            return read.get();
+        } finally {
+            foldLock.unlockRead(stamp);
+        }
+    }
+
+    public void forget(Long reviewId) {
+        cells.remove(reviewId);
+        contention.remove(reviewId);
+    }
+
+    public boolean isHot(Long reviewId) {
+        Cell cell = cells.get(reviewId);
+        return cell != null && cell.hot;
+    }
+
+    /**
+     * Переносит накопленные разницы в базу одной пачкой UPDATE и снимает признак горячего
+     * с отзывов, за которые за интервал проголосовали реже demoteBelow раз.
+     * Перенесённая разница вычитается из счётчика только после успешного UPDATE: до этого чтения
+     * видят её в памяти, а при ошибке она просто остаётся там до следующего переноса.
+     * UPDATE и вычитание выполняются под блокировкой записи, см. {@link #readConsistent}.
+     * Ячейки не горячих отзывов без разницы удаляются, чтобы память не росла с числом отзывов.
+     */
+    @SuppressWarnings("unchecked")
+    @Scheduled(fixedDelayString = "${filmorate.reviews.hot.fold-interval:1000}")
+    public void fold() {
+        contention.clear();
+        List<Cell> folded = new ArrayList<>();
+        List<Map<String, Object>> batch = new ArrayList<>();
+        cells.forEach((reviewId, cell) -> {
+            if (cell.hot && cell.votes.sumThenReset() < demoteBelow) {
+                cell.hot = false;
+                log.info("Отзыв {} больше не горячий", reviewId);
+            }
+            long delta = cell.delta.sum();
+            if (delta != 0) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("reviewId", reviewId);
+                params.put("delta", delta);
+                folded.add(cell);
+                batch.add(params);
+            }
+        });
+        if (!batch.isEmpty()) {
+            long stamp = foldLock.writeLock();
+            try {
+                jdbc.batchUpdate(ADD_USEFUL_QUERY, batch.toArray(new Map[0]));
+                for (int i = 0; i < folded.size(); i++) {
+                    folded.get(i).delta.add(-(Long) batch.get(i).get("delta"));
+                }
+                log.debug("Перенесены счётчики полезности {} отзывов", batch.size());
+            } catch (RuntimeException e) {
+                log.error("Не удалось перенести счётчики полезности, разница будет перенесена позже", e);
+            } finally {
+                foldLock.unlockWrite(stamp);
+            }
+        }
+        cells.forEach((reviewId, cell) -> cells.computeIfPresent(reviewId,
+                (id, current) -> current.hot || current.delta.sum() != 0 ? current : null));
+    }
+
+    @PreDestroy
+    public void flush() {
+        fold();
+    }
+
+    private void add(Long reviewId, int delta) {
+        cells.compute(reviewId, (id, cell) -> {
+            Cell current = cell == null ? new Cell() : cell;
+            current.delta.add(delta);
+            return current;
+        });
+    }
+
+    private void promote(Long reviewId) {
+        cells.compute(reviewId, (id, cell) -> {
+            Cell current = cell == null ? new Cell() : cell;
+            if (!current.hot) {
+                current.hot = true;
+                log.info("Отзыв {} стал горячим: голоса копятся в памяти", reviewId);
+            }
+            return current;
+        });
+    }
+
+    private static final class Cell {
+        private final LongAdder delta = new LongAdder();
+        private final LongAdder votes = new LongAdder();
+        private volatile boolean hot;
+    }
+}
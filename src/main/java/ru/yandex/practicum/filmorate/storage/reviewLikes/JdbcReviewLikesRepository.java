@@ -1,62 +1,297 @@
 package ru.yandex.practicum.filmorate.storage.reviewLikes;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.ReviewLikes;
+import ru.yandex.practicum.filmorate.model.ReviewVote;
 import ru.yandex.practicum.filmorate.storage.base.BaseNamedParameterRepository;
+import ru.yandex.practicum.filmorate.storage.base.RequestIdentityMap;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.review.ReviewRankingIndex;
+import ru.yandex.practicum.filmorate.storage.review.ReviewUsefulCounters;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 @Repository
 @Qualifier("reviewLikes")
 public class JdbcReviewLikesRepository extends BaseNamedParameterRepository<ReviewLikes> implements ReviewLikesRepository {
 
+    // блокирует строку отзыва до конца транзакции: голоса за один отзыв применяются строго по очереди
+    private static final String LOCK_REVIEW_QUERY = """
+            SELECT review_id FROM reviews
+            WHERE review_id = :reviewId
+            FOR UPDATE
+            """;
+
+    // читается отдельным запросом уже под блокировкой, чтобы увидеть оценку, закоммиченную предыдущим голосом;
+    // строка оценки блокируется тоже, так как голоса за горячий отзыв строку отзыва не блокируют
+    private static final String LOCK_VOTE_QUERY = """
+            SELECT is_like FROM review_likes
+            WHERE review_id = :reviewId AND user_id = :userId
+            FOR UPDATE
+            """;
+
     private static final String INSERT_REVIEW_LIKES_QUERY = """
             INSERT INTO review_likes (review_id, user_id, is_like)
             VALUES (:reviewId, :userId, :isLike)
             """;
 
+    private static final String UPDATE_REVIEW_LIKES_QUERY = """
+            UPDATE review_likes
+            SET is_like = :isLike
+            WHERE review_id = :reviewId AND user_id = :userId
+            """;
+
     private static final String DELETE_REVIEW_LIKES_QUERY = """
             DELETE FROM review_likes
             WHERE review_id = :reviewId AND user_id = :userId
             """;
 
-    private static final String FIND_REVIEW_LIKES_BY_ID_QUERY = """
-            SELECT rl.*
-            FROM review_likes rl
-            WHERE review_id = :reviewId AND user_id = :userId
+    private static final String UPDATE_USEFUL_QUERY = """
+            UPDATE reviews
+            SET useful = useful + :delta
+            WHERE review_id = :reviewId
+            """;
+
+    // отзывы пачки блокируются в порядке ID, чтобы встречные пачки не взаимоблокировались
+    private static final String LOCK_REVIEWS_QUERY = """
+            SELECT review_id FROM reviews
+            WHERE review_id IN (:reviewIds)
+            ORDER BY review_id
+            FOR UPDATE
+            """;
+
+    private static final String FIND_USERS_QUERY = "SELECT user_id FROM users WHERE user_id IN (:userIds)";
+
+    // берёт с запасом все пары из декартова произведения, лишние отбрасываются в памяти
+    private static final String LOCK_VOTES_QUERY = """
+            SELECT * FROM review_likes
+            WHERE review_id IN (:reviewIds) AND user_id IN (:userIds)
+            FOR UPDATE
+            """;
+
+    private static final String FIND_VOTES_BY_USER_QUERY = """
+            SELECT review_id, is_like FROM review_likes
+            WHERE user_id = :userId AND review_id IN (:reviewIds)
             """;
 
-    public JdbcReviewLikesRepository(NamedParameterJdbcOperations jdbc, RowMapper<ReviewLikes> mapper) {
+    private static final int MAX_VOTE_ATTEMPTS = 5;
+
+    private final ReviewUsefulCounters usefulCounters;
+    private final ReviewRankingIndex rankingIndex;
+
+    public JdbcReviewLikesRepository(NamedParameterJdbcOperations jdbc, RowMapper<ReviewLikes> mapper,
+                                     ReviewUsefulCounters usefulCounters, ReviewRankingIndex rankingIndex) {
         super(jdbc, mapper);
+        this.usefulCounters = usefulCounters;
+        this.rankingIndex = rankingIndex;
     }
 
     @Override
-    public void addReviewLike(Long reviewId, Long userId, Boolean isLike) {
-        Map<String,Object> params = new HashMap<>();
+    @Transactional
+    public int setVote(Long reviewId, Long userId, boolean isLike) {
+        Map<String, Object> params = new HashMap<>();
         params.put("reviewId", reviewId);
         params.put("userId", userId);
         params.put("isLike", isLike);
-        update(INSERT_REVIEW_LIKES_QUERY, params);
+
+        boolean hot = usefulCounters.enter(reviewId);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                Boolean oldVote = lockVote(params, hot);
+                if (oldVote != null && oldVote == isLike) {
+                    return 0;
+                }
+                try {
+                    update(oldVote == null ? INSERT_REVIEW_LIKES_QUERY : UPDATE_REVIEW_LIKES_QUERY, params);
+                } catch (DuplicateKeyException e) {
+                    // параллельный голос того же пользователя успел вставить оценку — перечитываем её под блокировкой
+                    if (attempt == MAX_VOTE_ATTEMPTS) {
+                        throw e;
+                    }
+                    continue;
+                } catch (DataIntegrityViolationException e) {
+                    throw new NotFoundException("Отзыв с ID " + reviewId + " или пользователь с ID " + userId
+                            + " не найден");
+                }
+                int delta = weight(isLike) - (oldVote == null ? 0 : weight(oldVote));
+                return applyDelta(params, delta, hot);
+            }
+        } finally {
+            usefulCounters.exit(reviewId);
+        }
     }
 
     @Override
-    public void deleteReviewLike(Long reviewId, Long userId) {
-        Map<String,Object> params = new HashMap<>();
+    @Transactional
+    public int removeVote(Long reviewId, Long userId, boolean isLike) {
+        Map<String, Object> params = new HashMap<>();
         params.put("reviewId", reviewId);
         params.put("userId", userId);
-        update(DELETE_REVIEW_LIKES_QUERY, params);
+
+        boolean hot = usefulCounters.enter(reviewId);
+        try {
+            Boolean oldVote = lockVote(params, hot);
+            if (oldVote == null || oldVote != isLike) {
+                return 0;
+            }
+            update(DELETE_REVIEW_LIKES_QUERY, params);
+            return applyDelta(params, -weight(oldVote), hot);
+        } finally {
+            usefulCounters.exit(reviewId);
+        }
     }
 
+    /**
+     * Пачка голосов применяется в одной транзакции: существование отзывов и пользователей проверяется
+     * двумя запросами по множествам, старые оценки читаются одним запросом, изменения оценок уходят
+     * тремя JDBC-пакетами, а рейтинг каждого затронутого отзыва сдвигается один раз на суммарную разницу.
+     * Если для пары (отзыв, пользователь) в пачке несколько голосов, действует последний.
+     */
     @Override
-    public Optional<ReviewLikes> getReviewLikes(Long reviewId, Long userId) {
-        Map<String,Object> params = new HashMap<>();
-        params.put("reviewId", reviewId);
+    @Transactional
+    public Map<Long, Integer> applyVotes(List<ReviewVote> votes) {
+        Map<VoteKey, ReviewVote.Type> requested = new LinkedHashMap<>();
+        for (ReviewVote vote : votes) {
+            requested.put(new VoteKey(vote.getReviewId(), vote.getUserId()), vote.getVote());
+        }
+        Set<Long> reviewIds = new TreeSet<>();
+        Set<Long> userIds = new TreeSet<>();
+        requested.keySet().forEach(key -> {
+            reviewIds.add(key.reviewId());
+            userIds.add(key.userId());
+        });
+        Map<String, Object> params = new HashMap<>();
+        params.put("reviewIds", reviewIds);
+        params.put("userIds", userIds);
+
+        requireAll(reviewIds, jdbc.queryForList(LOCK_REVIEWS_QUERY, params, Long.class), "Отзывы");
+        requireAll(userIds, jdbc.queryForList(FIND_USERS_QUERY, params, Long.class), "Пользователи");
+        Map<VoteKey, Boolean> oldVotes = new HashMap<>();
+        for (ReviewLikes like : findMany(LOCK_VOTES_QUERY, params)) {
+            oldVotes.put(new VoteKey(like.getReviewId(), like.getUserId()), like.getIsLike());
+        }
+
+        List<Map<String, Object>> inserts = new ArrayList<>();
+        List<Map<String, Object>> updates = new ArrayList<>();
+        List<Map<String, Object>> deletes = new ArrayList<>();
+        Map<Long, Integer> deltas = new TreeMap<>();
+        requested.forEach((key, type) -> {
+            Boolean oldVote = oldVotes.get(key);
+            Boolean newVote = type == ReviewVote.Type.CLEAR ? null : type == ReviewVote.Type.LIKE;
+            if (Objects.equals(oldVote, newVote)) {
+                return;
+            }
+            Map<String, Object> row = new HashMap<>();
+            row.put("reviewId", key.reviewId());
+            row.put("userId", key.userId());
+            row.put("isLike", newVote);
+            if (oldVote == null) {
+                inserts.add(row);
+            } else if (newVote == null) {
+                deletes.add(row);
+            } else {
+                updates.add(row);
+            }
+            int delta = (newVote == null ? 0 : weight(newVote)) - (oldVote == null ? 0 : weight(oldVote));
+            deltas.merge(key.reviewId(), delta, Integer::sum);
+        });
+        batch(INSERT_REVIEW_LIKES_QUERY, inserts);
+        batch(UPDATE_REVIEW_LIKES_QUERY, updates);
+        batch(DELETE_REVIEW_LIKES_QUERY, deletes);
+
+        List<Map<String, Object>> usefulUpdates = new ArrayList<>();
+        deltas.forEach((reviewId, delta) -> {
+            if (delta == 0) {
+                return;
+            }
+            if (usefulCounters.isHot(reviewId)) {
+                usefulCounters.addAfterCommit(reviewId, delta);
+            } else {
+                Map<String, Object> row = new HashMap<>();
+                row.put("reviewId", reviewId);
+                row.put("delta", delta);
+                usefulUpdates.add(row);
+            }
+            rankingIndex.shiftAfterCommit(reviewId, delta);
+            RequestIdentityMap.evict(EntityKind.REVIEW, reviewId);
+        });
+        batch(UPDATE_USEFUL_QUERY, usefulUpdates);
+        deltas.values().removeIf(delta -> delta == 0);
+        return deltas;
+    }
+
+    @Override
+    public Map<Long, Boolean> findVotesByUser(Long userId, Collection<Long> reviewIds) {
+        Map<Long, Boolean> votes = new HashMap<>();
+        if (reviewIds.isEmpty()) {
+            return votes;
+        }
+        Map<String, Object> params = new HashMap<>();
         params.put("userId", userId);
-        return findOne(FIND_REVIEW_LIKES_BY_ID_QUERY, params);
+        params.put("reviewIds", reviewIds);
+        jdbc.query(FIND_VOTES_BY_USER_QUERY, params, rs -> {
+            votes.put(rs.getLong("review_id"), rs.getBoolean("is_like"));
+        });
+        return votes;
+    }
+
+    private void requireAll(Set<Long> requested, List<Long> found, String entities) {
+        if (found.size() == requested.size()) {
+            return;
+        }
+        Set<Long> missing = new TreeSet<>(requested);
+        found.forEach(missing::remove);
+        throw new NotFoundException(entities + " с ID " + missing + " не найдены");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void batch(String query, List<Map<String, Object>> rows) {
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate(query, rows.toArray(new Map[0]));
+        }
+    }
+
+    private Boolean lockVote(Map<String, Object> params, boolean hot) {
+        if (!hot && jdbc.queryForList(LOCK_REVIEW_QUERY, params, Long.class).isEmpty()) {
+            throw new NotFoundException("Отзыв с ID " + params.get("reviewId") + " не найден");
+        }
+        List<Boolean> votes = jdbc.queryForList(LOCK_VOTE_QUERY, params, Boolean.class);
+        return votes.isEmpty() ? null : votes.get(0);
+    }
+
+    private int applyDelta(Map<String, Object> params, int delta, boolean hot) {
+        Long reviewId = (Long) params.get("reviewId");
+        if (hot) {
+            usefulCounters.addAfterCommit(reviewId, delta);
+        } else {
+            params.put("delta", delta);
+            update(UPDATE_USEFUL_QUERY, params);
+        }
+        rankingIndex.shiftAfterCommit(reviewId, delta);
+        RequestIdentityMap.evict(EntityKind.REVIEW, reviewId);
+        return delta;
+    }
+
+    private static int weight(boolean isLike) {
+        return isLike ? 1 : -1;
+    }
+
+    private record VoteKey(long reviewId, long userId) {
     }
 }
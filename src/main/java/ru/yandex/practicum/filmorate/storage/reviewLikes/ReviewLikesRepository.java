@@ -1,14 +1,39 @@
 package ru.yandex.practicum.filmorate.storage.reviewLikes;
 
-import ru.yandex.practicum.filmorate.model.ReviewLikes;
+import ru.yandex.practicum.filmorate.model.ReviewVote;
 
-import java.util.Optional;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public interface ReviewLikesRepository {
 
-    void addReviewLike(Long reviewId, Long userId, Boolean isLike);
+    /**
+     * Ставит пользователю оценку отзыва (лайк или дизлайк) и в той же транзакции
+     * сдвигает рейтинг полезности отзыва на разницу между старой и новой оценкой.
+     *
+     * @return на сколько изменился рейтинг полезности отзыва
+     */
+    int setVote(Long reviewId, Long userId, boolean isLike);
 
-    void deleteReviewLike(Long reviewId, Long userId);
+    /**
+     * Снимает оценку пользователя, если она совпадает с isLike, и корректирует рейтинг полезности.
+     *
+     * @return на сколько изменился рейтинг полезности отзыва
+     */
+    int removeVote(Long reviewId, Long userId, boolean isLike);
 
-    Optional<ReviewLikes> getReviewLikes(Long reviewId, Long userId);
+    /**
+     * Применяет пачку голосов в одной транзакции.
+     *
+     * @return суммарное изменение рейтинга полезности по каждому затронутому отзыву
+     */
+    Map<Long, Integer> applyVotes(List<ReviewVote> votes);
+
+    /**
+     * Оценки пользователя для набора отзывов одним запросом.
+     *
+     * @return is_like по ID отзыва; отзывов без оценки пользователя в результате нет
+     */
+    Map<Long, Boolean> findVotesByUser(Long userId, Collection<Long> reviewIds);
 }
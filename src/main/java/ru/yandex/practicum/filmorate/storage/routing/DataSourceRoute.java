@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+/**
+ * Пул соединений, в который маршрутизируется запрос к базе.
+ */
+public enum DataSourceRoute {
+    PRIMARY,
+    REPLICA
+}
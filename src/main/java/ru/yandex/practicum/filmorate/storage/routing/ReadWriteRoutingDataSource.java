@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Источник данных, который отдаёт соединения транзакций только для чтения из пула реплики,
+ * а все остальные — из пула основной базы. Реплика не используется, если запрос привязан
+ * к основной базе после записи ({@link ReadYourWrites}) или реплика отстаёт ({@link ReplicaLagMonitor}).
+ * Решение принимается при получении соединения, поэтому источник оборачивается
+ * в LazyConnectionDataSourceProxy: к этому моменту признак «только для чтения» уже выставлен.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+    private final ReplicaLagMonitor lagMonitor;
+    private final Map<DataSourceRoute, LongAdder> connections = new EnumMap<>(DataSourceRoute.class);
+
+    public ReadWriteRoutingDataSource(HikariDataSource primary, HikariDataSource replica,
+                                      ReplicaLagMonitor lagMonitor) {
+        this.primary = primary;
+        this.replica = replica;
+        this.lagMonitor = lagMonitor;
+        for (DataSourceRoute route : DataSourceRoute.values()) {
+            connections.put(route, new LongAdder());
+        }
+        setTargetDataSources(Map.of(DataSourceRoute.PRIMARY, primary, DataSourceRoute.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        DataSourceRoute route = currentRoute();
+        connections.get(route).increment();
+        return route;
+    }
+
+    public HikariDataSource primary() {
+        return primary;
+    }
+
+    public DataSourceRoute currentRoute() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !ReadYourWrites.isPinned()
+                && lagMonitor.isAvailable()) {
+            return DataSourceRoute.REPLICA;
+        }
+        return DataSourceRoute.PRIMARY;
+    }
+
+    /**
+     * Состояние пулов по маршрутам: соединения в работе и свободные, ожидающие потоки
+     * и сколько раз соединение выдавалось по маршруту с момента запуска.
+     */
+    public List<RouteStats> stats() {
+        List<RouteStats> stats = new ArrayList<>();
+        stats.add(stats(DataSourceRoute.PRIMARY, primary));
+        stats.add(stats(DataSourceRoute.REPLICA, replica));
+        return stats;
+    }
+
+    private RouteStats stats(DataSourceRoute route, HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        long routed = connections.get(route).sum();
+        if (pool == null) {
+            return new RouteStats(route, dataSource.getPoolName(), 0, 0, 0, 0, routed);
+        }
+        return new RouteStats(route, dataSource.getPoolName(), pool.getActiveConnections(),
+                pool.getIdleConnections(), pool.getTotalConnections(), pool.getThreadsAwaitingConnection(), routed);
+    }
+
+    public record RouteStats(DataSourceRoute route, String pool, int active, int idle, int total,
+                             int awaiting, long routed) {
+    }
+}
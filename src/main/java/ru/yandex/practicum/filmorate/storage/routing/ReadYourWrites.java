@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+/**
+ * Привязка текущего запроса к основной базе: после записи клиент должен видеть свои изменения,
+ * а реплика может от них отставать. Привязку ставит фильтр запросов и снимает по их окончании;
+ * вне запроса (планировщик, тесты репозиториев) чтения маршрутизируются как обычно.
+ */
+public final class ReadYourWrites {
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    public static void pin() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    public static void clear() {
+        PINNED.remove();
+    }
+}
@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Следит за тем, можно ли читать с реплики. Отставание измеряется запросом lagQuery к реплике,
+ * который возвращает его в секундах (для H2 репликации нет, и запрос не задаётся — тогда
+ * проверяется только доступность реплики). Пока отставание больше maxLag или реплика
+ * не отвечает, все чтения идут в основную базу.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+    private final DataSource replica;
+    private final String lagQuery;
+    private final Duration maxLag;
+
+    private volatile boolean available = true;
+    private volatile double lagSeconds;
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public double lagSeconds() {
+        return lagSeconds;
+    }
+
+    public Duration maxLag() {
+        return maxLag;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.datasource.replica.lag-check-interval:1000}")
+    public void check() {
+        boolean nowAvailable;
+        try (Connection connection = replica.getConnection()) {
+            if (lagQuery.isBlank()) {
+                lagSeconds = 0;
+                nowAvailable = connection.isValid(1);
+            } else {
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery(lagQuery)) {
+                    lagSeconds = rs.next() ? rs.getDouble(1) : Double.MAX_VALUE;
+                }
+                nowAvailable = lagSeconds * 1000 <= maxLag.toMillis();
+            }
+        } catch (SQLException e) {
+            log.debug("Реплика не ответила на проверку отставания", e);
+            nowAvailable = false;
+        }
+        if (nowAvailable != available) {
+            available = nowAvailable;
+            if (nowAvailable) {
+                log.info("Чтения снова идут в реплику: отставание {} с", lagSeconds);
+            } else {
+                log.warn("Реплика недоступна или отстаёт больше чем на {}: чтения идут в основную базу", maxLag);
+            }
+        }
+    }
+}
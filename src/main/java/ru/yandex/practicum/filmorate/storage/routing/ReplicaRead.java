@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Чтение, которое можно отдать реплике: метод выполняется в транзакции только для чтения,
+ * и маршрутизирующий источник данных берёт для неё соединение из пула реплики.
+ * Внутри уже открытой пишущей транзакции метод к ней присоединяется и читает с основной базы.
+ * Без настроенной реплики это обычная транзакция только для чтения.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Transactional(readOnly = true)
+public @interface ReplicaRead {
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Набор баз-шардов, между которыми данные пользователей делятся по хешу user_id.
+ * Число шардов задаётся списком filmorate.sharding.urls и после наполнения данных не меняется:
+ * при другом числе шардов пользователь попал бы в другую базу, а ID событий разных шардов
+ * пересеклись бы. Схема шардов накатывается миграциями из db/shard при запуске. Запросы ко всем шардам выполняются параллельно
+ * в отдельном пуле fork-join по потоку на шард.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.sharding.enabled", havingValue = "true")
+public class ShardSet {
+    private final List<HikariDataSource> dataSources = new ArrayList<>();
+    private final List<NamedParameterJdbcOperations> shards = new ArrayList<>();
+    private final ForkJoinPool pool;
+
+    public ShardSet(@Value("${filmorate.sharding.urls}") List<String> urls,
+                    @Value("${filmorate.sharding.username:${spring.datasource.username:}}") String username,
+                    @Value("${filmorate.sharding.password:${spring.datasource.password:}}") String password,
+                    @Value("${filmorate.sharding.pool-size:5}") int poolSize) {
+        if (urls.isEmpty()) {
+            throw new IllegalStateException("Шардирование включено, но filmorate.sharding.urls пуст");
+        }
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(i).trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            dataSource.setPoolName("shard-" + i);
+            dataSource.setMaximumPoolSize(poolSize);
+            Flyway.configure()
+                    .dataSource(dataSource)
+                    .locations("classpath:db/shard")
+                    .placeholders(Map.of("firstEventId", Integer.toString(i + 1),
+                            "shardCount", Integer.toString(urls.size())))
+                    .load()
+                    .migrate();
+            dataSources.add(dataSource);
+            shards.add(new NamedParameterJdbcTemplate(dataSource));
+        }
+        pool = new ForkJoinPool(urls.size());
+        log.info("Шардирование включено: {} шардов", urls.size());
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    /**
+     * Номер шарда пользователя. ID перемешиваются перед делением, чтобы подряд
+     * созданные пользователи расходились по шардам равномерно.
+     */
+    public int shardOf(long userId) {
+        long mixed = userId * 0x9E3779B97F4A7C15L;
+        return Math.floorMod(mixed ^ (mixed >>> 32), shards.size());
+    }
+
+    public NamedParameterJdbcOperations forUser(long userId) {
+        return shards.get(shardOf(userId));
+    }
+
+    /**
+     * Номер шарда, выдавшего ID события: шард i выдаёт ID с остатком i от деления ID - 1 на число шардов.
+     */
+    public int shardOfEvent(long eventId) {
+        return (int) Math.floorMod(eventId - 1, (long) shards.size());
+    }
+
+    public NamedParameterJdbcOperations shard(int index) {
+        return shards.get(index);
+    }
+
+    /**
+     * Выполняет запрос на всех шардах параллельно.
+     *
+     * @return результаты в порядке номеров шардов
+     */
+    public <R> List<R> scatter(Function<NamedParameterJdbcOperations, R> query) {
+        List<ForkJoinTask<R>> tasks = new ArrayList<>(shards.size());
+        for (NamedParameterJdbcOperations shard : shards) {
+            tasks.add(pool.submit(() -> query.apply(shard)));
+        }
+        List<R> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<R> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdown();
+        dataSources.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.bulk.BulkImportRepository;
+import ru.yandex.practicum.filmorate.storage.bulk.JdbcBulkImportRepository;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+
+import java.util.List;
+
+/**
+ * Массовая загрузка в шардированном режиме: фильмы и пользователи пишутся в основную базу,
+ * а дружбы — в шарды пользователей.
+ */
+@Primary
+@Repository
+@ConditionalOnProperty(name = "filmorate.sharding.enabled", havingValue = "true")
+public class ShardedBulkImportRepository implements BulkImportRepository {
+    private final JdbcBulkImportRepository bulkImport;
+    private final ShardedFriendRepository friends;
+
+    public ShardedBulkImportRepository(JdbcBulkImportRepository bulkImport, ShardedFriendRepository friends) {
+        this.bulkImport = bulkImport;
+        this.friends = friends;
+    }
+
+    @Override
+    public void insertFilms(List<Film> films) {
+        bulkImport.insertFilms(films);
+    }
+
+    @Override
+    public void insertUsers(List<User> users) {
+        bulkImport.insertUsers(users);
+    }
+
+    @Override
+    public void insertFriendships(long[] userIds, long[] friendIds, boolean[] confirmed) {
+        friends.addFriendships(userIds, friendIds, confirmed);
+    }
+
+    @Override
+    public void restartIdentity(EntityKind kind) {
+        bulkImport.restartIdentity(kind);
+    }
+}
@@ -0,0 +1,193 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.event.EventRepository;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * События ленты в шардированном режиме: событие хранится в шарде своего автора.
+ * Лента пользователя читается из одного шарда, срез ленты друзей — из шардов, где есть его друзья,
+ * а по всем шардам идут только проходы сжатия ленты. ID событий шарды выдают без пересечений (см. db/shard),
+ * поэтому удаление по ID отправляется сразу в нужный шард. События удалённого пользователя
+ * остаются в шарде, как и в журнальном хранилище, но в ленты они не попадают: дружбы удалены.
+ */
+@Primary
+@Repository
+@ConditionalOnProperty(name = "filmorate.sharding.enabled", havingValue = "true")
+public class ShardedEventRepository implements EventRepository {
+    private static final int DEFAULT_LIMIT = 25;
+    private static final String FIND_EVENTS_BY_USER_ID_QUERY = """
+        SELECT e.event_id, e.user_id, e.entity_id, e.event_timestamp, o.name AS operation_name, et.name AS event_type_name
+        FROM event AS e
+            INNER JOIN event_type AS et ON e.event_type_id = et.type_id
+            INNER JOIN operation AS o ON e.operation_id = o.operation_id
+        WHERE e.user_id = :userId
+        ORDER BY e.event_timestamp
+        LIMIT :limit;
+        """;
+
+    // ID пользователей идут массивом в табличную функцию, а не в IN, как и в основной базе: см. JdbcEventRepository
+    private static final String FIND_EVENT_SLICE_QUERY = """
+        SELECT e.event_id, e.user_id, e.entity_id, e.event_timestamp, o.name AS operation_name, et.name AS event_type_name
+        FROM TABLE(user_id BIGINT = :userIds) AS u
+            INNER JOIN event AS e USE INDEX (idx_event_user_timeline) ON e.user_id = u.user_id
+            INNER JOIN event_type AS et ON e.event_type_id = et.type_id
+            INNER JOIN operation AS o ON e.operation_id = o.operation_id
+        WHERE e.event_timestamp >= :sinceTimestamp
+            AND e.event_timestamp <= :beforeTimestamp
+            AND (e.event_timestamp < :beforeTimestamp OR e.event_id < :beforeEventId)
+        ORDER BY e.event_timestamp DESC, e.event_id DESC
+        LIMIT :limit;
+        """;
+
+    private static final String INSERT_EVENT_QUERY = """
+        INSERT INTO event(event_timestamp, entity_id, user_id, event_type_id, operation_id)
+        VALUES(:eventTimestamp, :entityId, :userId, :eventTypeId, :operationId);
+        """;
+
+    private static final String FIND_USER_IDS_WITH_EVENTS_BEFORE_QUERY = """
+        SELECT DISTINCT e.user_id
+        FROM event AS e
+        WHERE e.user_id > :afterUserId AND e.event_timestamp < :beforeTimestamp
+        ORDER BY e.user_id
+        LIMIT :batchSize;
+        """;
+
+    private static final String FIND_EVENTS_BY_USER_IDS_BEFORE_QUERY = """
+        SELECT e.event_id, e.user_id, e.entity_id, e.event_timestamp, o.name AS operation_name, et.name AS event_type_name
+        FROM event AS e
+            INNER JOIN event_type AS et ON e.event_type_id = et.type_id
+            INNER JOIN operation AS o ON e.operation_id = o.operation_id
+        WHERE e.user_id IN (:userIds)
+            AND e.event_timestamp < :beforeTimestamp
+            AND et.name IN (:eventTypes)
+        ORDER BY e.user_id, e.event_timestamp, e.event_id;
+        """;
+
+    private static final String DELETE_EVENTS_BY_IDS_QUERY = "DELETE FROM event WHERE event_id IN (:eventIds);";
+
+    private static final Comparator<Event> NEWEST_FIRST = Comparator
+            .comparing(Event::getTimestamp, Comparator.reverseOrder())
+            .thenComparing(Event::getEventId, Comparator.reverseOrder());
+    private static final Comparator<Event> BY_USER_AND_TIME = Comparator.comparing(Event::getUserId)
+            .thenComparing(Event::getTimestamp)
+            .thenComparing(Event::getEventId);
+
+    private final ShardSet shards;
+    private final RowMapper<Event> mapper;
+    private final ReferenceDataRegistry referenceData;
+
+    public ShardedEventRepository(ShardSet shards, RowMapper<Event> mapper, ReferenceDataRegistry referenceData) {
+        this.shards = shards;
+        this.mapper = mapper;
+        this.referenceData = referenceData;
+    }
+
+    @Override
+    public Collection<Event> findEventsByUserId(Long userId, int limit) {
+        return shards.forUser(userId).query(FIND_EVENTS_BY_USER_ID_QUERY,
+                Map.of("userId", userId, "limit", limit == 0 ? DEFAULT_LIMIT : limit), mapper);
+    }
+
+    /**
+     * Срез читается из шардов, где есть кто-то из userIds: запросов не больше, чем шардов,
+     * и каждый шард отдаёт не больше limit событий.
+     */
+    @Override
+    public List<Event> findEventSlice(Collection<Long> userIds, long sinceTimestamp, long beforeTimestamp,
+                                      long beforeEventId, int limit) {
+        List<Event> events = new ArrayList<>();
+        groupByShard(userIds).forEach((shard, shardUserIds) -> events.addAll(shards.shard(shard).query(
+                FIND_EVENT_SLICE_QUERY, Map.of("userIds", shardUserIds.toArray(new Long[0]), "sinceTimestamp", sinceTimestamp,
+                        "beforeTimestamp", beforeTimestamp, "beforeEventId", beforeEventId, "limit", limit),
+                mapper)));
+        events.sort(NEWEST_FIRST);
+        return events.size() > limit ? new ArrayList<>(events.subList(0, limit)) : events;
+    }
+
+    /**
+     * Справочники шарда повторяют основную базу, поэтому ID типа и операции берутся из общего реестра.
+     */
+    @Override
+    public void insertEvent(Long userId, Long entityId, String eventType, String operation) {
+        Long eventTypeId = referenceData.eventTypeId(eventType);
+        Long operationId = referenceData.operationId(operation);
+        if (eventTypeId == null || operationId == null) {
+            throw new InternalServerException("Неизвестный тип события или операция: " + eventType + " " + operation);
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("eventTimestamp", Instant.now().toEpochMilli());
+        params.put("entityId", entityId);
+        params.put("userId", userId);
+        params.put("eventTypeId", eventTypeId);
+        params.put("operationId", operationId);
+        shards.forUser(userId).update(INSERT_EVENT_QUERY, params);
+    }
+
+    /**
+     * Каждый шард отдаёт свои первые batchSize пользователей после afterUserId;
+     * среди их объединения первые batchSize — те же, что дал бы запрос к одной базе.
+     */
+    @Override
+    public List<Long> findUserIdsWithEventsBefore(long afterUserId, long beforeTimestamp, int batchSize) {
+        Map<String, Object> params = Map.of("afterUserId", afterUserId, "beforeTimestamp", beforeTimestamp,
+                "batchSize", batchSize);
+        TreeSet<Long> userIds = new TreeSet<>();
+        shards.scatter(shard -> shard.queryForList(FIND_USER_IDS_WITH_EVENTS_BEFORE_QUERY, params, Long.class))
+                .forEach(userIds::addAll);
+        return userIds.stream().limit(batchSize).toList();
+    }
+
+    @Override
+    public List<Event> findEventsByUserIdsBefore(Collection<Long> userIds, long beforeTimestamp,
+                                                 Collection<String> eventTypes) {
+        if (userIds.isEmpty() || eventTypes.isEmpty()) {
+            return List.of();
+        }
+        List<Event> events = new ArrayList<>();
+        groupByShard(userIds).forEach((shard, shardUserIds) -> events.addAll(shards.shard(shard).query(
+                FIND_EVENTS_BY_USER_IDS_BEFORE_QUERY, Map.of("userIds", shardUserIds,
+                        "beforeTimestamp", beforeTimestamp, "eventTypes", eventTypes), mapper)));
+        events.sort(BY_USER_AND_TIME);
+        return events;
+    }
+
+    @Override
+    public int deleteEventsByIds(Collection<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (Long eventId : eventIds) {
+            byShard.computeIfAbsent(shards.shardOfEvent(eventId), shard -> new ArrayList<>()).add(eventId);
+        }
+        int deleted = 0;
+        for (Map.Entry<Integer, List<Long>> entry : byShard.entrySet()) {
+            deleted += shards.shard(entry.getKey()).update(DELETE_EVENTS_BY_IDS_QUERY,
+                    Map.of("eventIds", entry.getValue()));
+        }
+        return deleted;
+    }
+
+    private Map<Integer, List<Long>> groupByShard(Collection<Long> userIds) {
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (Long userId : userIds) {
+            byShard.computeIfAbsent(shards.shardOf(userId), shard -> new ArrayList<>()).add(userId);
+        }
+        return byShard;
+    }
+}
@@ -0,0 +1,204 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmRepository;
+import ru.yandex.practicum.filmorate.storage.film.JdbcFilmRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Фильмы в шардированном режиме. Сами фильмы по-прежнему в основной базе и читаются
+ * через {@link JdbcFilmRepository}, а всё, что упорядочено по лайкам, собирается из шардов:
+ * популярные фильмы, общие фильмы друзей, рекомендации и фильмы режиссёра по лайкам.
+ * Для фильтров по жанру и годам кандидаты выбираются в основной базе, а топ среди них
+ * считается тем же трёхраундовым алгоритмом, что и общий топ, только в пределах кандидатов.
+ */
+@Primary
+@Repository
+@ConditionalOnProperty(name = "filmorate.sharding.enabled", havingValue = "true")
+public class ShardedFilmRepository implements FilmRepository {
+    private static final String FIND_FILMS_BY_IDS_QUERY = "SELECT f.* FROM films f WHERE f.film_id IN (:filmIds)";
+    private static final String FIND_FILM_IDS_QUERY = "SELECT film_id FROM films ORDER BY film_id LIMIT :count";
+    private static final String FIND_FILM_IDS_BY_GENRE_AND_YEARS_QUERY = """
+            SELECT f.film_id
+            FROM film_genre fg
+            JOIN films f ON f.film_id = fg.film_id
+            WHERE fg.genre_id = :genreId
+            AND f.release_year BETWEEN :yearFrom AND :yearTo
+            """;
+    private static final String FIND_FILM_IDS_BY_GENRE_QUERY = "SELECT film_id FROM film_genre WHERE genre_id = :genreId";
+    private static final String FIND_FILM_IDS_BY_YEARS_QUERY = """
+            SELECT film_id FROM films WHERE release_year BETWEEN :yearFrom AND :yearTo
+            """;
+
+    private final JdbcFilmRepository films;
+    private final ShardedLikeRepository likes;
+    private final NamedParameterJdbcOperations jdbc;
+    private final RowMapper<Film> mapper;
+
+    public ShardedFilmRepository(JdbcFilmRepository films, ShardedLikeRepository likes,
+                                 NamedParameterJdbcOperations jdbc, RowMapper<Film> mapper) {
+        this.films = films;
+        this.likes = likes;
+        this.jdbc = jdbc;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public Collection<Film> getPopularFilms(int count) {
+        List<Long> ranked = new ArrayList<>(likes.topFilms(count).stream().map(Map.Entry::getKey).toList());
+        if (ranked.size() < count) {
+            // фильмы без лайков добирают список так же, как LEFT JOIN в запросе основной базы
+            Set<Long> seen = new HashSet<>(ranked);
+            jdbc.queryForList(FIND_FILM_IDS_QUERY, Map.of("count", count + ranked.size()), Long.class).stream()
+                    .filter(seen::add)
+                    .limit(count - ranked.size())
+                    .forEach(ranked::add);
+        }
+        return findFilmsInOrder(ranked);
+    }
+
+    @Override
+    public Collection<Film> getPopularFilmsByGenreAndYears(int count, Long genreId, int yearFrom, int yearTo) {
+        return rankByLikes(jdbc.queryForList(FIND_FILM_IDS_BY_GENRE_AND_YEARS_QUERY,
+                Map.of("genreId", genreId, "yearFrom", yearFrom, "yearTo", yearTo), Long.class), count);
+    }
+
+    @Override
+    public Collection<Film> getPopularFilmsByGenre(int count, Long genreId) {
+        return rankByLikes(jdbc.queryForList(FIND_FILM_IDS_BY_GENRE_QUERY, Map.of("genreId", genreId), Long.class),
+                count);
+    }
+
+    @Override
+    public Collection<Film> getPopularFilmsByYears(int count, int yearFrom, int yearTo) {
+        return rankByLikes(jdbc.queryForList(FIND_FILM_IDS_BY_YEARS_QUERY,
+                Map.of("yearFrom", yearFrom, "yearTo", yearTo), Long.class), count);
+    }
+
+    @Override
+    public Collection<Film> findFilmsByDirectorSortedByLikes(Long directorId) {
+        List<Film> directorFilms = new ArrayList<>(films.findFilmsByDirectorSortedByYear(directorId));
+        Map<Long, Long> counts = likes.countLikes(directorFilms.stream().map(Film::getId).toList());
+        directorFilms.sort(Comparator.comparing((Film film) -> counts.getOrDefault(film.getId(), 0L)).reversed());
+        return directorFilms;
+    }
+
+    @Override
+    public Collection<Film> getCommonFilms(long userId, long friendId) {
+        Set<Long> common = likes.findFilmIdsByUserId(userId);
+        common.retainAll(likes.findFilmIdsByUserId(friendId));
+        return rankByLikes(common, common.size());
+    }
+
+    /**
+     * Та же выборка, что и в основной базе: берутся лайки пользователя с наименьшим
+     * ненулевым пересечением, за вычетом уже лайкнутых фильмов.
+     */
+    @Override
+    public Collection<Film> getRecommendedFilms(long userId) {
+        Set<Long> liked = likes.findFilmIdsByUserId(userId);
+        Long similarUser = likes.countOverlaps(liked, userId).entrySet().stream()
+                .min(Map.Entry.<Long, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+        if (similarUser == null) {
+            return List.of();
+        }
+        Set<Long> recommended = likes.findFilmIdsByUserId(similarUser);
+        recommended.removeAll(liked);
+        return findFilmsInOrder(recommended.stream().sorted().toList());
+    }
+
+    @Override
+    public void deleteAllFilms() {
+        films.deleteAllFilms();
+        likes.deleteAllLikes();
+    }
+
+    @Override
+    public Collection<Film> findAllFilms() {
+        return films.findAllFilms();
+    }
+
+    @Override
+    public Film createFilm(Film film) {
+        return films.createFilm(film);
+    }
+
+    @Override
+    public Film updateFilm(Film newFilm) {
+        return films.updateFilm(newFilm);
+    }
+
+    @Override
+    public Optional<Film> getFilmById(Long id) {
+        return films.getFilmById(id);
+    }
+
+    @Override
+    public boolean deleteFilm(Long id) {
+        return films.deleteFilm(id);
+    }
+
+    @Override
+    public Collection<Film> findFilmsByDirectorSortedByYear(Long directorId) {
+        return films.findFilmsByDirectorSortedByYear(directorId);
+    }
+
+    @Override
+    public Collection<Film> searchFilmsByTitle(String query) {
+        return films.searchFilmsByTitle(query);
+    }
+
+    @Override
+    public Collection<Film> searchFilmsByDirector(String query) {
+        return films.searchFilmsByDirector(query);
+    }
+
+    @Override
+    public Collection<Film> searchFilmsByTitleAndDirector(String query) {
+        return films.searchFilmsByTitleAndDirector(query);
+    }
+
+    /**
+     * Первые count кандидатов по лайкам, при равенстве по ID; кандидаты без лайков добирают
+     * список по возрастанию ID, как и в запросах основной базы.
+     */
+    private List<Film> rankByLikes(Collection<Long> filmIds, int count) {
+        Set<Long> candidates = new HashSet<>(filmIds);
+        List<Long> ranked = new ArrayList<>(likes.topFilms(count, candidates).stream()
+                .map(Map.Entry::getKey)
+                .toList());
+        if (ranked.size() < count) {
+            candidates.removeAll(ranked);
+            candidates.stream().sorted().limit(count - ranked.size()).forEach(ranked::add);
+        }
+        return findFilmsInOrder(ranked);
+    }
+
+    private List<Film> findFilmsInOrder(List<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Film> byId = new HashMap<>();
+        for (Film film : jdbc.query(FIND_FILMS_BY_IDS_QUERY, Map.of("filmIds", filmIds), mapper)) {
+            byId.put(film.getId(), film);
+        }
+        return filmIds.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.friend.FriendRepository;
+import ru.yandex.practicum.filmorate.storage.routing.ReplicaRead;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Друзья в шардированном режиме: строка (user_id, friend_id) хранится в шарде user_id,
+ * поэтому список друзей пользователя читается из одного шарда. Профили друзей остаются
+ * в основной базе и дочитываются одним запросом по списку ID.
+ */
+@Primary
+@Repository
+@ConditionalOnProperty(name = "filmorate.sharding.enabled", havingValue = "true")
+public class ShardedFriendRepository implements FriendRepository {
+    private static final String ADD_FRIEND_QUERY = """
+            INSERT INTO friends (user_id, friend_id, confirmed)
+            VALUES (:userId, :friendId, TRUE)
+            """;
+    private static final String INSERT_FRIENDSHIP_QUERY = """
+            INSERT INTO friends (user_id, friend_id, confirmed) VALUES (:userId, :friendId, :confirmed)
+            """;
+    private static final String CONFIRM_FRIENDSHIP_QUERY = """
+            UPDATE friends
+            SET confirmed = TRUE
+            WHERE user_id = :userId AND friend_id = :friendId
+            """;
+    private static final String REMOVE_FRIEND_QUERY = """
+            DELETE FROM friends
+            WHERE user_id = :userId AND friend_id = :friendId
+            """;
+    private static final String GET_FRIEND_IDS_QUERY = """
+            SELECT friend_id
+            FROM friends
+            WHERE user_id = :userId
+            """;
+    private static final String CHECK_FRIENDSHIP_STATUS_QUERY = """
+            SELECT COUNT(*) > 0 AS has_friendship
+            FROM friends
+            WHERE user_id = :userId AND friend_id = :friendId AND confirmed = :confirmed
+            """;
+    private static final String DELETE_FRIENDS_BY_USER_ID = "DELETE FROM friends WHERE user_id = :userId";
+    private static final String DELETE_FRIENDS_BY_FRIEND_ID = "DELETE FROM friends WHERE friend_id = :userId";
+
+    private static final String FIND_USERS_BY_IDS_QUERY = """
+            SELECT u.user_id, u.email, u.login, u.name, u.birthday, u.version
+            FROM users u
+            WHERE u.user_id IN (:userIds)
+            """;
+
+    private final ShardSet shards;
+    private final NamedParameterJdbcOperations jdbc;
+    private final UserRowMapper userRowMapper;
+
+    public ShardedFriendRepository(ShardSet shards, NamedParameterJdbcOperations jdbc, UserRowMapper userRowMapper) {
+        this.shards = shards;
+        this.jdbc = jdbc;
+        this.userRowMapper = userRowMapper;
+    }
+
+    /**
+     * Встречная заявка лежит в шарде друга, поэтому подтверждение меняет строки в двух шардах.
+     */
+    @Override
+    public void addFriend(Long userId, Long friendId) {
+        if (checkFriendshipStatus(userId, friendId, false)) {
+            shards.forUser(userId).update(CONFIRM_FRIENDSHIP_QUERY, Map.of("userId", userId, "friendId", friendId));
+            shards.forUser(friendId).update(CONFIRM_FRIENDSHIP_QUERY, Map.of("userId", friendId, "friendId", userId));
+        } else {
+            shards.forUser(userId).update(ADD_FRIEND_QUERY, Map.of("userId", userId, "friendId", friendId));
+        }
+    }
+
+    /**
+     * Дружбы раскладываются по шардам пользователей, каждый шард получает свою пачку.
+     */
+    public void addFriendships(long[] userIds, long[] friendIds, boolean[] confirmed) {
+        List<List<SqlParameterSource>> batches = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            batches.add(new ArrayList<>());
+        }
+        for (int i = 0; i < userIds.length; i++) {
+            batches.get(shards.shardOf(userIds[i])).add(new MapSqlParameterSource()
+                    .addValue("userId", userIds[i])
+                    .addValue("friendId", friendIds[i])
+                    .addValue("confirmed", confirmed[i]));
+        }
+        for (int i = 0; i < batches.size(); i++) {
+            if (!batches.get(i).isEmpty()) {
+                shards.shard(i).batchUpdate(INSERT_FRIENDSHIP_QUERY,
+                        batches.get(i).toArray(new SqlParameterSource[0]));
+            }
+        }
+    }
+
+    @Override
+    public void removeFriend(Long userId, Long friendId) {
+        shards.forUser(userId).update(REMOVE_FRIEND_QUERY, Map.of("userId", userId, "friendId", friendId));
+    }
+
+    @Override
+    @ReplicaRead
+    public List<User> getFriends(Long userId) {
+        return findUsersInOrder(getFriendIds(userId));
+    }
+
+    @Override
+    public List<Long> getFriendIds(Long userId) {
+        return shards.forUser(userId).queryForList(GET_FRIEND_IDS_QUERY, Map.of("userId", userId), Long.class);
+    }
+
+    @Override
+    @ReplicaRead
+    public List<User> getCommonFriends(Long userId1, Long userId2) {
+        Set<Long> common = new LinkedHashSet<>(getFriendIds(userId1));
+        common.retainAll(getFriendIds(userId2));
+        return findUsersInOrder(new ArrayList<>(common));
+    }
+
+    @Override
+    public boolean hasFriendship(Long userId, Long friendId) {
+        return checkFriendshipStatus(userId, friendId, true);
+    }
+
+    /**
+     * Свои строки пользователя лежат в его шарде, а строки, где он друг, — в шардах других пользователей.
+     */
+    @Override
+    public void deleteAllFriendsByUserId(Long userId) {
+        Map<String, Object> params = Map.of("userId", userId);
+        shards.forUser(userId).update(DELETE_FRIENDS_BY_USER_ID, params);
+        shards.scatter(shard -> shard.update(DELETE_FRIENDS_BY_FRIEND_ID, params));
+    }
+
+    private boolean checkFriendshipStatus(Long userId, Long friendId, boolean confirmed) {
+        Boolean result = shards.forUser(userId).queryForObject(CHECK_FRIENDSHIP_STATUS_QUERY,
+                Map.of("userId", userId, "friendId", friendId, "confirmed", confirmed), Boolean.class);
+        return result != null ? result : false;
+    }
+
+    private List<User> findUsersInOrder(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, User> byId = new HashMap<>();
+        for (User user : jdbc.query(FIND_USERS_BY_IDS_QUERY, Map.of("userIds", userIds), userRowMapper)) {
+            byId.put(user.getId(), user);
+        }
+        return userIds.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+}
@@ -0,0 +1,247 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.storage.like.LikeRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Лайки в шардированном режиме: лайк хранится в шарде пользователя, который его поставил.
+ * Поэтому число лайков фильма складывается из всех шардов, а лайки одного пользователя
+ * читаются из одного шарда.
+ */
+@Repository
+@ConditionalOnProperty(name = "filmorate.sharding.enabled", havingValue = "true")
+public class ShardedLikeRepository implements LikeRepository {
+    private static final String ADD_LIKE_QUERY = """
+            MERGE INTO likes (film_id, user_id) KEY (film_id, user_id) VALUES (:filmId, :userId)
+            """;
+    private static final String REMOVE_LIKE_QUERY = "DELETE FROM likes WHERE film_id = :filmId AND user_id = :userId";
+    private static final String DELETE_LIKES_BY_FILM_ID_QUERY = "DELETE FROM likes WHERE film_id = :filmId";
+    private static final String DELETE_LIKES_BY_USER_ID_QUERY = "DELETE FROM likes WHERE user_id = :userId";
+    private static final String DELETE_ALL_LIKES_QUERY = "DELETE FROM likes";
+    private static final String FIND_FILM_IDS_BY_USER_ID_QUERY = "SELECT film_id FROM likes WHERE user_id = :userId";
+
+    private static final String TOP_FILMS_QUERY = """
+            SELECT film_id, COUNT(*) AS like_count
+            FROM likes
+            GROUP BY film_id
+            ORDER BY like_count DESC, film_id
+            LIMIT :count
+            """;
+    private static final String FILMS_WITH_AT_LEAST_QUERY = """
+            SELECT film_id, COUNT(*) AS like_count
+            FROM likes
+            GROUP BY film_id
+            HAVING COUNT(*) >= :threshold
+            """;
+    // те же два раунда TPUT среди кандидатов фильтра: шард возвращает свой топ, а не счётчики всех кандидатов
+    private static final String TOP_FILMS_AMONG_QUERY = """
+            SELECT film_id, COUNT(*) AS like_count
+            FROM likes
+            WHERE film_id IN (:filmIds)
+            GROUP BY film_id
+            ORDER BY like_count DESC, film_id
+            LIMIT :count
+            """;
+    private static final String FILMS_AMONG_WITH_AT_LEAST_QUERY = """
+            SELECT film_id, COUNT(*) AS like_count
+            FROM likes
+            WHERE film_id IN (:filmIds)
+            GROUP BY film_id
+            HAVING COUNT(*) >= :threshold
+            """;
+    private static final String COUNT_LIKES_BY_FILM_IDS_QUERY = """
+            SELECT film_id, COUNT(*) AS like_count
+            FROM likes
+            WHERE film_id IN (:filmIds)
+            GROUP BY film_id
+            """;
+    private static final String COUNT_OVERLAPS_QUERY = """
+            SELECT user_id, COUNT(*) AS overlap
+            FROM likes
+            WHERE film_id IN (:filmIds) AND user_id <> :userId
+            GROUP BY user_id
+            """;
+
+    private final ShardSet shards;
+
+    public ShardedLikeRepository(ShardSet shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public void addLike(Long filmId, Long userId) {
+        shards.forUser(userId).update(ADD_LIKE_QUERY, Map.of("filmId", filmId, "userId", userId));
+    }
+
+    /**
+     * Лайки раскладываются по шардам пользователей, каждый шард получает свою пачку.
+     */
+    @Override
+    public void addLikes(long[] filmIds, long[] userIds) {
+        List<List<Map<String, Object>>> batches = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            batches.add(new ArrayList<>());
+        }
+        for (int i = 0; i < filmIds.length; i++) {
+            batches.get(shards.shardOf(userIds[i])).add(Map.of("filmId", filmIds[i], "userId", userIds[i]));
+        }
+        for (int i = 0; i < batches.size(); i++) {
+            if (!batches.get(i).isEmpty()) {
+                shards.shard(i).batchUpdate(ADD_LIKE_QUERY, SqlParameterSourceUtils.createBatch(batches.get(i)));
+            }
+        }
+    }
+
+    @Override
+    public void removeLike(Long filmId, Long userId) {
+        shards.forUser(userId).update(REMOVE_LIKE_QUERY, Map.of("filmId", filmId, "userId", userId));
+    }
+
+    @Override
+    public void deleteLikesByFilmId(Long filmId) {
+        shards.scatter(shard -> shard.update(DELETE_LIKES_BY_FILM_ID_QUERY, Map.of("filmId", filmId)));
+    }
+
+    @Override
+    public void deleteLikesByUserId(Long userId) {
+        shards.forUser(userId).update(DELETE_LIKES_BY_USER_ID_QUERY, Map.of("userId", userId));
+    }
+
+    public void deleteAllLikes() {
+        shards.scatter(shard -> shard.update(DELETE_ALL_LIKES_QUERY, Map.of()));
+    }
+
+    public Set<Long> findFilmIdsByUserId(long userId) {
+        return new HashSet<>(shards.forUser(userId)
+                .queryForList(FIND_FILM_IDS_BY_USER_ID_QUERY, Map.of("userId", userId), Long.class));
+    }
+
+    /**
+     * Точное число лайков каждого из фильмов; фильмов без лайков в ответе нет.
+     */
+    public Map<Long, Long> countLikes(Collection<Long> filmIds) {
+        Map<Long, Long> totals = new HashMap<>();
+        if (filmIds.isEmpty()) {
+            return totals;
+        }
+        for (Map<Long, Long> partial : shards.scatter(shard -> counts(shard, COUNT_LIKES_BY_FILM_IDS_QUERY,
+                Map.of("filmIds", filmIds)))) {
+            partial.forEach((filmId, count) -> totals.merge(filmId, count, Long::sum));
+        }
+        return totals;
+    }
+
+    /**
+     * Точный топ фильмов по числу лайков за три раунда к шардам (алгоритм TPUT),
+     * не собирая счётчики всех фильмов в одном месте.
+     * 1. Каждый шард отдаёт свой топ-count; по частичным суммам берётся нижняя граница tau1
+     * для count-го места. Фильм с суммой не меньше tau1 хотя бы в одном из n шардов
+     * набрал не меньше tau1 / n.
+     * 2. Каждый шард отдаёт фильмы с местным счётчиком не меньше этого порога; фильмы,
+     * у которых даже верхняя оценка суммы ниже новой нижней границы tau2, отбрасываются.
+     * 3. Для оставшихся кандидатов точные суммы считаются по всем шардам.
+     *
+     * @return до count пар «фильм — число лайков» по убыванию лайков, при равенстве по ID
+     */
+    public List<Map.Entry<Long, Long>> topFilms(int count) {
+        return topFilms(count, TOP_FILMS_QUERY, FILMS_WITH_AT_LEAST_QUERY, Map.of());
+    }
+
+    /**
+     * Тот же топ, но только среди фильмов-кандидатов (отобранных по жанру, годам и т. п.):
+     * в первых двух раундах каждый шард отдаёт лишь свой топ и фильмы не ниже порога,
+     * а точные суммы в третьем раунде считаются только для оставшихся кандидатов.
+     * Фильмов без лайков в ответе нет.
+     */
+    public List<Map.Entry<Long, Long>> topFilms(int count, Collection<Long> filmIds) {
+        if (filmIds.isEmpty() || count <= 0) {
+            return List.of();
+        }
+        return topFilms(count, TOP_FILMS_AMONG_QUERY, FILMS_AMONG_WITH_AT_LEAST_QUERY, Map.of("filmIds", filmIds));
+    }
+
+    private List<Map.Entry<Long, Long>> topFilms(int count, String topQuery, String atLeastQuery,
+                                                 Map<String, Object> filter) {
+        int n = shards.size();
+        Map<String, Object> topParams = new HashMap<>(filter);
+        topParams.put("count", count);
+        Map<Long, Long> round1 = new HashMap<>();
+        for (Map<Long, Long> partial : shards.scatter(shard -> counts(shard, topQuery, topParams))) {
+            partial.forEach((filmId, likes) -> round1.merge(filmId, likes, Long::sum));
+        }
+        long tau1 = kth(round1.values(), count);
+        long threshold = Math.max(1, (tau1 + n - 1) / n);
+
+        Map<String, Object> atLeastParams = new HashMap<>(filter);
+        atLeastParams.put("threshold", threshold);
+        Map<Long, Long> lower = new HashMap<>();
+        Map<Long, Integer> reported = new HashMap<>();
+        for (Map<Long, Long> partial : shards.scatter(shard -> counts(shard, atLeastQuery, atLeastParams))) {
+            partial.forEach((filmId, likes) -> {
+                lower.merge(filmId, likes, Long::sum);
+                reported.merge(filmId, 1, Integer::sum);
+            });
+        }
+        long tau2 = kth(lower.values(), count);
+        List<Long> candidates = new ArrayList<>();
+        lower.forEach((filmId, likes) -> {
+            // в шарде, не вернувшем фильм, у него меньше threshold лайков
+            long upper = likes + (long) (n - reported.get(filmId)) * (threshold - 1);
+            if (upper >= tau2) {
+                candidates.add(filmId);
+            }
+        });
+
+        return countLikes(candidates).entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .toList();
+    }
+
+    /**
+     * Сколько фильмов из набора лайкнул каждый из остальных пользователей; пользователи без
+     * совпадений в ответ не попадают.
+     */
+    public Map<Long, Long> countOverlaps(Collection<Long> filmIds, long userId) {
+        Map<Long, Long> overlaps = new HashMap<>();
+        if (filmIds.isEmpty()) {
+            return overlaps;
+        }
+        // пользователь целиком живёт в одном шарде, поэтому частичные ответы не пересекаются
+        shards.scatter(shard -> {
+            Map<Long, Long> partial = new HashMap<>();
+            shard.query(COUNT_OVERLAPS_QUERY, Map.of("filmIds", filmIds, "userId", userId),
+                    (RowCallbackHandler) rs -> partial.put(rs.getLong("user_id"), rs.getLong("overlap")));
+            return partial;
+        }).forEach(overlaps::putAll);
+        return overlaps;
+    }
+
+    private static Map<Long, Long> counts(NamedParameterJdbcOperations shard, String query, Map<String, ?> params) {
+        Map<Long, Long> counts = new HashMap<>();
+        shard.query(query, params,
+                (RowCallbackHandler) rs -> counts.put(rs.getLong("film_id"), rs.getLong("like_count")));
+        return counts;
+    }
+
+    private static long kth(Collection<Long> values, int k) {
+        if (values.size() < k) {
+            return 0;
+        }
+        return values.stream().sorted(Comparator.reverseOrder()).skip(k - 1).findFirst().orElse(0L);
+    }
+}
@@ -0,0 +1,613 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.existence.ExistenceIndex;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Снимок всех таблиц базы в сжатый двоичный файл и восстановление из него при старте.
+ * Нужен прежде всего профилю с базой в памяти, который теряет данные при рестарте.
+ * <p>
+ * Файл — zip-архив: манифест с версией схемы Flyway и по отдельной записи на таблицу,
+ * строки в записи закодированы по типам столбцов. Снимок читается в одной транзакции
+ * SERIALIZABLE, поэтому таблицы согласованы между собой. Записи таблиц независимы,
+ * и при восстановлении таблицы грузятся параллельно своими соединениями пачками
+ * JDBC-batch; проверка внешних ключей на время загрузки выключена, а вторичные индексы
+ * удаляются до загрузки и строятся заново после неё. Снимок другой версии схемы не восстанавливается.
+ * <p>
+ * Снимок по расписанию и при остановке снимается, только когда приложение полностью запустилось
+ * и последнее восстановление не оборвалось: иначе пустая или частично загруженная база
+ * заменила бы собой единственный исправный снимок.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.snapshot.enabled", havingValue = "true")
+public class DatasetSnapshots implements SmartInitializingSingleton {
+    private static final int MAGIC = 0x464D534E;
+    private static final int FORMAT_VERSION = 1;
+    private static final String MANIFEST_ENTRY = "manifest";
+    private static final String TABLE_ENTRY_PREFIX = "tables/";
+    private static final String SCHEMA_HISTORY_TABLE = "flyway_schema_history";
+
+    private static final String FIND_TABLES_QUERY = """
+            SELECT table_name
+            FROM information_schema.tables
+            WHERE table_schema = 'PUBLIC' AND table_type = 'BASE TABLE' AND table_name <> :historyTable
+            ORDER BY table_name
+            """;
+    private static final String FIND_COLUMNS_QUERY = """
+            SELECT table_name, column_name, is_identity
+            FROM information_schema.columns
+            WHERE table_schema = 'PUBLIC' AND is_generated = 'NEVER'
+            ORDER BY table_name, ordinal_position
+            """;
+    private static final String FIND_SECONDARY_INDEXES_QUERY = """
+            SELECT i.table_name, i.index_name, c.column_name, c.ordering_specification
+            FROM information_schema.indexes i
+            JOIN information_schema.index_columns c
+                ON c.index_schema = i.index_schema AND c.index_name = i.index_name
+            WHERE i.index_schema = 'PUBLIC' AND i.index_type_name = 'INDEX' AND NOT i.is_generated
+            ORDER BY i.index_name, c.ordinal_position
+            """;
+    private static final String FIND_SCHEMA_VERSION_QUERY = """
+            SELECT "version" FROM "flyway_schema_history"
+            WHERE "success" AND "version" IS NOT NULL
+            ORDER BY "installed_rank" DESC
+            LIMIT 1
+            """;
+
+    private final NamedParameterJdbcOperations jdbc;
+    private final DataSource dataSource;
+    private final TransactionTemplate snapshotTransaction;
+    private final ReferenceDataRegistry referenceData;
+    private final ExistenceIndex existenceIndex;
+    private final Path file;
+    private final boolean restoreOnStartup;
+    private final boolean snapshotOnShutdown;
+    private final int batchSize;
+    private final int parallelism;
+
+    private volatile boolean ready;
+    private volatile boolean restoreIncomplete;
+
+    public DatasetSnapshots(NamedParameterJdbcOperations jdbc,
+                            DataSource dataSource,
+                            PlatformTransactionManager transactionManager,
+                            ReferenceDataRegistry referenceData,
+                            ExistenceIndex existenceIndex,
+                            @Value("${filmorate.snapshot.file:./db/snapshot/filmorate.snapshot}") Path file,
+                            @Value("${filmorate.snapshot.restore-on-startup:true}") boolean restoreOnStartup,
+                            @Value("${filmorate.snapshot.on-shutdown:false}") boolean snapshotOnShutdown,
+                            @Value("${filmorate.snapshot.restore.batch-size:5000}") int batchSize,
+                            @Value("${filmorate.snapshot.restore.parallelism:4}") int parallelism) {
+        this.jdbc = jdbc;
+        this.dataSource = dataSource;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        this.referenceData = referenceData;
+        this.existenceIndex = existenceIndex;
+        this.file = file;
+        this.restoreOnStartup = restoreOnStartup;
+        this.snapshotOnShutdown = snapshotOnShutdown;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Восстановление идёт после миграций и до того, как веб-сервер начнёт принимать запросы.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (restoreOnStartup && Files.isRegularFile(file)) {
+            restore(file);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void markReady() {
+        ready = true;
+    }
+
+    @Scheduled(cron = "${filmorate.snapshot.cron:-}")
+    public void scheduledSnapshot() {
+        if (safeToOverwrite()) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Вызывается и при неудачном старте, когда контекст закрывается до готовности приложения.
+     */
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        if (snapshotOnShutdown && safeToOverwrite()) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Пишет снимок во временный файл рядом с целевым и атомарно заменяет им предыдущий снимок.
+     */
+    public synchronized SnapshotFile snapshot() {
+        long started = System.nanoTime();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Manifest manifest;
+            try (ZipOutputStream zip = new ZipOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                zip.setLevel(Deflater.BEST_SPEED);
+                manifest = snapshotTransaction.execute(status -> writeTables(zip));
+                zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+                manifest.write(new DataOutputStream(zip));
+                zip.closeEntry();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            SnapshotFile snapshot = new SnapshotFile(file.toString(), Files.size(file), manifest.createdAt(),
+                    manifest.schemaVersion(), manifest.rowCounts(), elapsedMillis);
+            log.info("Снимок базы записан в {}: {} строк, {} байт за {} мс", file, snapshot.rows(),
+                    snapshot.sizeBytes(), elapsedMillis);
+            return snapshot;
+        } catch (IOException | UncheckedIOException e) {
+            throw new InternalServerException("Не удалось записать снимок базы: " + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                log.warn("Не удалось удалить временный файл снимка {}", temporary, e);
+            }
+        }
+    }
+
+    /**
+     * Заменяет содержимое всех таблиц данными снимка. Рассчитано на старт приложения,
+     * когда база ещё не обслуживает запросы.
+     */
+    public synchronized RestoreResult restore(Path snapshot) {
+        long started = System.nanoTime();
+        try (ZipFile zip = new ZipFile(snapshot.toFile())) {
+            Manifest manifest;
+            try (DataInputStream in = entry(zip, MANIFEST_ENTRY)) {
+                manifest = Manifest.read(in);
+            }
+            String schemaVersion = schemaVersion();
+            if (!Objects.equals(schemaVersion, manifest.schemaVersion())) {
+                log.warn("Снимок {} снят со схемы версии {}, а база на версии {}: восстановление пропущено",
+                        snapshot, manifest.schemaVersion(), schemaVersion);
+                return new RestoreResult(snapshot.toString(), false, Map.of(), 0);
+            }
+            Map<String, List<Column>> layout = layout();
+            restoreIncomplete = true;
+            List<String> indexes = dropSecondaryIndexes();
+            try {
+                jdbc.getJdbcOperations().execute("SET REFERENTIAL_INTEGRITY FALSE");
+                try {
+                    for (String table : layout.keySet()) {
+                        jdbc.getJdbcOperations().execute("TRUNCATE TABLE " + quote(table));
+                    }
+                    loadTables(zip, manifest, layout);
+                } finally {
+                    jdbc.getJdbcOperations().execute("SET REFERENTIAL_INTEGRITY TRUE");
+                }
+            } finally {
+                indexes.forEach(jdbc.getJdbcOperations()::execute);
+            }
+            restartIdentities(layout);
+            restoreIncomplete = false;
+
+            referenceData.refresh();
+            for (EntityKind kind : EntityKind.values()) {
+                existenceIndex.invalidate(kind);
+            }
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            log.info("База восстановлена из снимка {} от {}: {} строк за {} мс", snapshot, manifest.createdAt(),
+                    manifest.rowCounts().values().stream().mapToLong(Long::longValue).sum(), elapsedMillis);
+            return new RestoreResult(snapshot.toString(), true, manifest.rowCounts(), elapsedMillis);
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось прочитать снимок базы " + snapshot + ": " + e.getMessage());
+        }
+    }
+
+    private boolean safeToOverwrite() {
+        if (!ready || restoreIncomplete) {
+            log.warn("Снимок базы не снят: {}", restoreIncomplete
+                    ? "восстановление из снимка не завершилось" : "приложение не запустилось");
+            return false;
+        }
+        return true;
+    }
+
+    private Manifest writeTables(ZipOutputStream zip) {
+        Map<String, Long> rowCounts = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, List<Column>> table : layout().entrySet()) {
+                zip.putNextEntry(new ZipEntry(TABLE_ENTRY_PREFIX + table.getKey()));
+                // поток записи не закрывается: закрытие закрыло бы весь архив
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(zip, 1 << 16));
+                rowCounts.put(table.getKey(), writeRows(out, table.getKey(), table.getValue()));
+                out.flush();
+                zip.closeEntry();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Manifest(schemaVersion(), Instant.now(), rowCounts);
+    }
+
+    private long writeRows(DataOutputStream out, String table, List<Column> columns) throws IOException {
+        long[] rows = {0};
+        jdbc.getJdbcOperations().query(selectSql(table, columns), rs -> {
+            try {
+                if (rows[0] == 0) {
+                    writeHeader(out, columns, rs);
+                }
+                out.writeBoolean(true);
+                for (int i = 0; i < columns.size(); i++) {
+                    writeValue(out, rs, i + 1, columns.get(i));
+                }
+                rows[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (rows[0] == 0) {
+            out.writeInt(0);
+        }
+        out.writeBoolean(false);
+        return rows[0];
+    }
+
+    // типы столбцов берутся из первой строки выборки; пустая таблица пишется без заголовка
+    private void writeHeader(DataOutputStream out, List<Column> columns, ResultSet rs) throws IOException {
+        try {
+            out.writeInt(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                Column column = columns.get(i);
+                column.type = ValueType.of(rs.getMetaData().getColumnType(i + 1), column.name);
+                out.writeUTF(column.name);
+                out.writeByte(column.type.ordinal());
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void loadTables(ZipFile zip, Manifest manifest, Map<String, List<Column>> layout) {
+        ExecutorService loaders = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, layout.size())),
+                r -> new Thread(r, "snapshot-restore"));
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (String table : manifest.rowCounts().keySet()) {
+                if (!layout.containsKey(table)) {
+                    log.warn("Таблицы {} из снимка нет в базе, она пропущена", table);
+                    continue;
+                }
+                tasks.add(loaders.submit(() -> {
+                    loadTable(zip, table);
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Восстановление снимка прервано");
+        } catch (ExecutionException e) {
+            throw new InternalServerException("Не удалось восстановить таблицу из снимка: " + e.getCause().getMessage());
+        } finally {
+            loaders.shutdownNow();
+        }
+    }
+
+    private void loadTable(ZipFile zip, String table) throws IOException, SQLException {
+        long started = System.nanoTime();
+        try (DataInputStream in = entry(zip, TABLE_ENTRY_PREFIX + table)) {
+            int columnCount = in.readInt();
+            if (columnCount == 0) {
+                return;
+            }
+            List<Column> columns = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                Column column = new Column(in.readUTF(), false);
+                column.type = ValueType.values()[in.readByte()];
+                columns.add(column);
+            }
+            long rows = 0;
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                try (PreparedStatement insert = connection.prepareStatement(insertSql(table, columns))) {
+                    while (in.readBoolean()) {
+                        for (int i = 0; i < columnCount; i++) {
+                            readValue(in, insert, i + 1, columns.get(i).type);
+                        }
+                        insert.addBatch();
+                        if (++rows % batchSize == 0) {
+                            insert.executeBatch();
+                            connection.commit();
+                        }
+                    }
+                    insert.executeBatch();
+                    connection.commit();
+                } catch (SQLException | IOException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            }
+            log.debug("Таблица {} восстановлена: {} строк за {} мс", table, rows,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    /**
+     * Удаляет созданные миграциями вторичные индексы.
+     *
+     * @return команды, которые создают их заново
+     */
+    private List<String> dropSecondaryIndexes() {
+        Map<String, List<String>> columns = new LinkedHashMap<>();
+        Map<String, String> tables = new LinkedHashMap<>();
+        jdbc.query(FIND_SECONDARY_INDEXES_QUERY, Map.of(), rs -> {
+            String index = rs.getString("index_name");
+            tables.put(index, rs.getString("table_name"));
+            columns.computeIfAbsent(index, name -> new ArrayList<>())
+                    .add(quote(rs.getString("column_name")) + " " + rs.getString("ordering_specification"));
+        });
+        List<String> create = new ArrayList<>();
+        for (Map.Entry<String, String> index : tables.entrySet()) {
+            create.add("CREATE INDEX " + quote(index.getKey()) + " ON " + quote(index.getValue())
+                    + " (" + String.join(", ", columns.get(index.getKey())) + ")");
+            jdbc.getJdbcOperations().execute("DROP INDEX " + quote(index.getKey()));
+        }
+        return create;
+    }
+
+    private void restartIdentities(Map<String, List<Column>> layout) {
+        layout.forEach((table, columns) -> columns.stream().filter(Column::identity).forEach(column -> {
+            Long next = jdbc.getJdbcOperations().queryForObject(
+                    "SELECT COALESCE(MAX(" + quote(column.name) + "), 0) + 1 FROM " + quote(table), Long.class);
+            jdbc.getJdbcOperations().execute("ALTER TABLE " + quote(table) + " ALTER COLUMN " + quote(column.name)
+                    + " RESTART WITH " + next);
+        }));
+    }
+
+    /**
+     * @return записываемые столбцы по таблицам, без вычисляемых
+     */
+    private Map<String, List<Column>> layout() {
+        Map<String, List<Column>> layout = new LinkedHashMap<>();
+        for (String table : jdbc.queryForList(FIND_TABLES_QUERY, Map.of("historyTable", SCHEMA_HISTORY_TABLE),
+                String.class)) {
+            layout.put(table, new ArrayList<>());
+        }
+        jdbc.query(FIND_COLUMNS_QUERY, Map.of(), rs -> {
+            List<Column> columns = layout.get(rs.getString("table_name"));
+            if (columns != null) {
+                columns.add(new Column(rs.getString("column_name"), "YES".equals(rs.getString("is_identity"))));
+            }
+        });
+        return layout;
+    }
+
+    private String schemaVersion() {
+        return jdbc.queryForList(FIND_SCHEMA_VERSION_QUERY, Map.of(), String.class).stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    // имена таблиц и столбцов приходят из INFORMATION_SCHEMA как есть, поэтому берутся в кавычки
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    private static String selectSql(String table, List<Column> columns) {
+        return "SELECT " + String.join(", ", columns.stream().map(column -> quote(column.name())).toList())
+                + " FROM " + quote(table);
+    }
+
+    private static String insertSql(String table, List<Column> columns) {
+        return "INSERT INTO " + quote(table) + " ("
+                + String.join(", ", columns.stream().map(column -> quote(column.name())).toList())
+                + ") VALUES (" + String.join(", ", columns.stream().map(column -> "?").toList()) + ")";
+    }
+
+    private static void writeValue(DataOutputStream out, ResultSet rs, int index, Column column)
+            throws IOException {
+        try {
+            Object value = rs.getObject(index);
+            out.writeBoolean(value != null);
+            if (value == null) {
+                return;
+            }
+            switch (column.type) {
+                case LONG -> out.writeLong(rs.getLong(index));
+                case INT -> out.writeInt(rs.getInt(index));
+                case BOOLEAN -> out.writeBoolean(rs.getBoolean(index));
+                case STRING -> writeString(out, rs.getString(index));
+                case DATE -> out.writeLong(rs.getDate(index).toLocalDate().toEpochDay());
+                case TIMESTAMP -> {
+                    Timestamp timestamp = rs.getTimestamp(index);
+                    out.writeLong(timestamp.getTime());
+                    out.writeInt(timestamp.getNanos());
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void readValue(DataInputStream in, PreparedStatement insert, int index, ValueType type)
+            throws IOException, SQLException {
+        if (!in.readBoolean()) {
+            insert.setNull(index, type.sqlType);
+            return;
+        }
+        switch (type) {
+            case LONG -> insert.setLong(index, in.readLong());
+            case INT -> insert.setInt(index, in.readInt());
+            case BOOLEAN -> insert.setBoolean(index, in.readBoolean());
+            case STRING -> insert.setString(index, readString(in));
+            case DATE -> insert.setDate(index, Date.valueOf(LocalDate.ofEpochDay(in.readLong())));
+            case TIMESTAMP -> {
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                insert.setTimestamp(index, timestamp);
+            }
+        }
+    }
+
+    // writeUTF ограничен 64 КБ, поэтому строки пишутся длиной и байтами UTF-8
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static DataInputStream entry(ZipFile zip, String name) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        if (entry == null) {
+            throw new IOException("В снимке нет записи " + name);
+        }
+        return new DataInputStream(new BufferedInputStream(zip.getInputStream(entry), 1 << 16));
+    }
+
+    private enum ValueType {
+        LONG(Types.BIGINT), INT(Types.INTEGER), BOOLEAN(Types.BOOLEAN), STRING(Types.VARCHAR), DATE(Types.DATE),
+        TIMESTAMP(Types.TIMESTAMP);
+
+        private final int sqlType;
+
+        ValueType(int sqlType) {
+            this.sqlType = sqlType;
+        }
+
+        static ValueType of(int sqlType, String column) {
+            return switch (sqlType) {
+                case Types.BIGINT -> LONG;
+                case Types.INTEGER, Types.SMALLINT, Types.TINYINT -> INT;
+                case Types.BOOLEAN, Types.BIT -> BOOLEAN;
+                case Types.VARCHAR, Types.CHAR, Types.LONGVARCHAR, Types.CLOB, Types.NVARCHAR -> STRING;
+                case Types.DATE -> DATE;
+                case Types.TIMESTAMP -> TIMESTAMP;
+                default -> throw new IllegalStateException("Тип столбца " + column + " не поддерживается снимком: "
+                        + sqlType);
+            };
+        }
+    }
+
+    private static final class Column {
+        private final String name;
+        private final boolean identity;
+        private ValueType type;
+
+        Column(String name, boolean identity) {
+            this.name = name;
+            this.identity = identity;
+        }
+
+        String name() {
+            return name;
+        }
+
+        boolean identity() {
+            return identity;
+        }
+    }
+
+    private record Manifest(String schemaVersion, Instant createdAt, Map<String, Long> rowCounts) {
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(schemaVersion == null ? "" : schemaVersion);
+            out.writeLong(createdAt.toEpochMilli());
+            out.writeInt(rowCounts.size());
+            for (Map.Entry<String, Long> table : rowCounts.entrySet()) {
+                out.writeUTF(table.getKey());
+                out.writeLong(table.getValue());
+            }
+            out.flush();
+        }
+
+        static Manifest read(DataInputStream in) throws IOException {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Файл не является снимком базы этой версии");
+            }
+            String schemaVersion = in.readUTF();
+            Instant createdAt = Instant.ofEpochMilli(in.readLong());
+            int tables = in.readInt();
+            Map<String, Long> rowCounts = new LinkedHashMap<>();
+            for (int i = 0; i < tables; i++) {
+                rowCounts.put(in.readUTF(), in.readLong());
+            }
+            return new Manifest(schemaVersion.isEmpty() ? null : schemaVersion, createdAt, rowCounts);
+        }
+    }
+
+    public record SnapshotFile(String path, long sizeBytes, Instant createdAt, String schemaVersion,
+                               Map<String, Long> tables, long elapsedMillis) {
+        public long rows() {
+            return tables.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+
+    public record RestoreResult(String path, boolean restored, Map<String, Long> tables, long elapsedMillis) {
+    }
+}
@@ -2,10 +2,15 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.base.BaseNamedParameterRepository;
+import ru.yandex.practicum.filmorate.storage.base.CompiledStatement;
+import ru.yandex.practicum.filmorate.storage.base.RequestIdentityMap;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.routing.ReplicaRead;
 
 import java.util.HashMap;
 import java.util.List;
@@ -19,24 +24,30 @@ public class JdbcUserRepository extends BaseNamedParameterRepository<User> imple
     private static final String FIND_USER_BY_ID_QUERY = "SELECT * FROM users WHERE user_id = :userId";
     private static final String INSERT_USERS_QUERY = "INSERT INTO users (email, login, name, birthday)" +
             "VALUES (:email, :login, :name, :birthday)";
-    private static final String UPDATE_USER_QUERY = "UPDATE users SET email = :email, login = :login, name = :name, " +
-            "birthday = :birthday WHERE user_id = :userId";
+    private static final String UPDATE_USER_QUERY = "SELECT version FROM FINAL TABLE (UPDATE users " +
+            "SET email = :email, login = :login, name = :name, birthday = :birthday, version = version + 1 " +
+            "WHERE user_id = :userId)";
+    private static final String UPDATE_USER_IF_VERSION_QUERY = "SELECT version FROM FINAL TABLE (UPDATE users " +
+            "SET email = :email, login = :login, name = :name, birthday = :birthday, version = version + 1 " +
+            "WHERE user_id = :userId AND version = :version)";
+    private static final String FIND_USER_VERSION_QUERY = "SELECT version FROM users WHERE user_id = :userId";
     private static final String DELETE_USER_QUERY = "DELETE FROM users WHERE user_id = :userId";
 
+    private static final CompiledStatement FIND_USER_BY_ID = CompiledStatement.compile(FIND_USER_BY_ID_QUERY, "userId");
+
     public JdbcUserRepository(NamedParameterJdbcOperations jdbc, RowMapper<User> mapper) {
         super(jdbc, mapper);
     }
 
     @Override
+    @ReplicaRead
     public List<User> findAllUsers() {
         return findMany(FIND_ALL_USERS_QUERY, new HashMap<>());
     }
 
     @Override
     public Optional<User> getUserById(Long userId) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("userId", userId);
-        return findOne(FIND_USER_BY_ID_QUERY, params);
+        return findById(EntityKind.USER, userId, FIND_USER_BY_ID);
     }
 
     @Override
@@ -49,6 +60,7 @@ public class JdbcUserRepository extends BaseNamedParameterRepository<User> imple
 
         long id = insert(INSERT_USERS_QUERY, params);
         user.setId(id);
+        user.setVersion(0L);
         return user;
     }
 
@@ -60,8 +72,13 @@ public class JdbcUserRepository extends BaseNamedParameterRepository<User> imple
         params.put("name", newUser.getName());
         params.put("birthday", newUser.getBirthday());
         params.put("userId", newUser.getId());
+        params.put("version", newUser.getVersion());
 
-        update(UPDATE_USER_QUERY, params);
+        Long version = updateVersioned(newUser.getVersion() == null ? UPDATE_USER_QUERY : UPDATE_USER_IF_VERSION_QUERY,
+                FIND_USER_VERSION_QUERY, params, SingleColumnRowMapper.newInstance(Long.class),
+                "Пользователь с ID " + newUser.getId() + " не найден");
+        newUser.setVersion(version);
+        RequestIdentityMap.evict(EntityKind.USER, newUser.getId());
         return newUser;
     }
 
@@ -69,6 +86,8 @@ public class JdbcUserRepository extends BaseNamedParameterRepository<User> imple
     public boolean deleteUser(Long id) {
         Map<String, Object> params = new HashMap<>();
         params.put("userId", id);
+        // вместе с пользователем каскадом удаляются его отзывы
+        RequestIdentityMap.clear();
         return delete(DELETE_USER_QUERY, params);
     }
 
@@ -76,6 +95,7 @@ public class JdbcUserRepository extends BaseNamedParameterRepository<User> imple
     public void deleteAllUsers() {
         jdbc.update("DELETE FROM friends", new HashMap<>());
         jdbc.update("DELETE FROM users", new HashMap<>());
+        RequestIdentityMap.clear();
     }
 }
 
@@ -0,0 +1,21 @@
+-- Вторичные индексы под частые фильтры и сортировки.
+-- H2 сам индексирует столбцы внешних ключей, но под своими именами и только по одному столбцу;
+-- здесь индексы заданы явно, а составные покрывают и сортировку.
+
+-- Лайки пользователя: рекомендации, общие фильмы
+CREATE INDEX IF NOT EXISTS idx_likes_user_id ON likes (user_id);
+
+-- Популярные фильмы с фильтром по жанру
+CREATE INDEX IF NOT EXISTS idx_film_genre_genre_id ON film_genre (genre_id);
+
+-- Фильмы режиссёра
+CREATE INDEX IF NOT EXISTS idx_film_directors_director_id ON film_directors (director_id);
+
+-- Отзывы фильма по убыванию полезности
+CREATE INDEX IF NOT EXISTS idx_reviews_film_id_useful ON reviews (film_id, useful DESC);
+
+-- Лента событий пользователя по времени
+CREATE INDEX IF NOT EXISTS idx_event_user_id_timestamp ON event (user_id, event_timestamp);
+
+-- Обратная сторона дружбы: у кого пользователь в друзьях
+CREATE INDEX IF NOT EXISTS idx_friends_friend_id ON friends (friend_id);
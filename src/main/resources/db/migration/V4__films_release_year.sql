@@ -0,0 +1,7 @@
+-- Год выпуска как вычисляемый столбец: H2 хранит его значение в строке и пересчитывает
+-- при изменении release_date, существующие строки заполняются при добавлении столбца.
+-- Фильтры по году и диапазону лет идут по индексу вместо EXTRACT(YEAR FROM release_date).
+ALTER TABLE films ADD COLUMN IF NOT EXISTS release_year INT
+    GENERATED ALWAYS AS (EXTRACT(YEAR FROM release_date));
+
+CREATE INDEX IF NOT EXISTS idx_films_release_year ON films (release_year, film_id);
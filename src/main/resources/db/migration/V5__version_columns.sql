@@ -0,0 +1,6 @@
+-- Версия строки для оптимистичной блокировки: каждое изменение увеличивает её на единицу,
+-- обновление с ожидаемой версией выполняется одним UPDATE ... WHERE id = ? AND version = ?.
+-- Существующие строки получают версию 0.
+ALTER TABLE films ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE reviews ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,7 @@
+-- Раны ленты друзей: события пользователя от новых к старым, начиная с курсора.
+-- Направление всех столбцов совпадает с ORDER BY запроса рана, и H2 читает индекс
+-- без сортировки, останавливаясь на LIMIT. Прежний индекс по (user_id, event_timestamp)
+-- этот покрывает.
+CREATE INDEX IF NOT EXISTS idx_event_user_timeline ON event (user_id DESC, event_timestamp DESC, event_id DESC);
+
+DROP INDEX IF EXISTS idx_event_user_id_timestamp;
@@ -0,0 +1,9 @@
+-- Схема шарда: лайки пользователей, попавших в шард по хешу user_id.
+-- Фильмы и пользователи живут в основной базе, поэтому внешних ключей здесь нет.
+CREATE TABLE IF NOT EXISTS likes (
+    film_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    PRIMARY KEY (film_id, user_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_likes_user_id ON likes (user_id);
@@ -0,0 +1,46 @@
+-- Друзья и события ленты пользователей, попавших в шард по хешу user_id.
+-- Строка дружбы лежит в шарде пользователя из user_id, событие — в шарде его автора.
+CREATE TABLE IF NOT EXISTS friends (
+    user_id BIGINT NOT NULL,
+    friend_id BIGINT NOT NULL,
+    confirmed BOOLEAN DEFAULT FALSE,
+    PRIMARY KEY (user_id, friend_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_friends_friend_id ON friends (friend_id);
+
+-- Справочники ленты повторяют основную базу, чтобы запросы событий соединяли их так же
+CREATE TABLE IF NOT EXISTS event_type (
+    type_id BIGINT PRIMARY KEY,
+    name VARCHAR(10) NOT NULL
+);
+
+MERGE INTO event_type (type_id, name)
+VALUES
+    (1, 'LIKE'),
+    (2, 'REVIEW'),
+    (3, 'FRIEND');
+
+CREATE TABLE IF NOT EXISTS operation (
+    operation_id BIGINT PRIMARY KEY,
+    name VARCHAR(10) NOT NULL
+);
+
+MERGE INTO operation (operation_id, name)
+VALUES
+    (1, 'REMOVE'),
+    (2, 'ADD'),
+    (3, 'UPDATE');
+
+-- ID событий не пересекаются между шардами: шард с номером i выдаёт i + 1, i + 1 + n, i + 1 + 2n...
+-- Поэтому курсор ленты (время, ID) однозначен для событий разных шардов, а по ID находится шард.
+CREATE TABLE IF NOT EXISTS event (
+    event_id BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH ${firstEventId} INCREMENT BY ${shardCount}) PRIMARY KEY,
+    event_timestamp BIGINT,
+    entity_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    event_type_id BIGINT REFERENCES event_type (type_id),
+    operation_id BIGINT REFERENCES operation (operation_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_event_user_timeline ON event (user_id DESC, event_timestamp DESC, event_id DESC);
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.event.EventRepository;
+import ru.yandex.practicum.filmorate.storage.event.JdbcEventRepository;
+import ru.yandex.practicum.filmorate.storage.event.LogEventRepository;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение пропускной способности записи и чтения ленты для JDBC-хранилища
+ * и журнала событий. Запуск: main-метод этого класса из IDE или
+ * {@code java -cp target/test-classes:<classpath> ...EventStoreBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventStoreBenchmark {
+    private static final int USERS = 100;
+
+    @Param({"jdbc", "log"})
+    public String store;
+
+    private EventRepository repository;
+    private Path logDirectory;
+    private DriverManagerDataSource dataSource;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("log".equals(store)) {
+            logDirectory = Files.createTempDirectory("filmorate-events");
+            repository = new LogEventRepository(logDirectory, DataSize.ofMegabytes(64), false);
+        } else {
+            dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                    "sa", "");
+            Flyway.configure().dataSource(dataSource).load().migrate();
+            NamedParameterJdbcTemplate jdbc = new NamedParameterJdbcTemplate(dataSource);
+            for (int i = 1; i <= USERS; i++) {
+                jdbc.update("INSERT INTO users (user_id, email, login, name) VALUES (:id, :email, :login, :login)",
+                        Map.of("id", i, "email", "user" + i + "@mail.ru", "login", "user" + i));
+            }
+            repository = new JdbcEventRepository(jdbc, new EventRowMapper(),
+                    new ReferenceDataRegistry(jdbc, new ObjectMapper()));
+        }
+        for (long i = 0; i < USERS * 50; i++) {
+            repository.insertEvent(i % USERS + 1, i, "LIKE", "ADD");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (logDirectory != null) {
+            ((LogEventRepository) repository).close();
+            FileSystemUtils.deleteRecursively(logDirectory);
+        } else {
+            new NamedParameterJdbcTemplate(dataSource).getJdbcOperations().execute("SHUTDOWN");
+        }
+    }
+
+    @Benchmark
+    public void append() {
+        long userId = ThreadLocalRandom.current().nextLong(USERS) + 1;
+        repository.insertEvent(userId, userId, "FRIEND", "ADD");
+    }
+
+    @Benchmark
+    public Collection<Event> readFeed() {
+        return repository.findEventsByUserId(ThreadLocalRandom.current().nextLong(USERS) + 1, 0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EventStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+}
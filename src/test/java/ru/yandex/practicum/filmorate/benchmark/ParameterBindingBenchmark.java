@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.yandex.practicum.filmorate.storage.base.CompiledStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Привязка параметров через карту и NamedParameterJdbcTemplate против {@link CompiledStatement}
+ * на запросах горячих путей: проверка лайка по паре ID и лента пользователя.
+ * Главная метрика — gc.alloc.rate.norm (байт на вызов) из профилировщика GC,
+ * который подключается в main; соединение одно, чтобы пул не добавлял своих аллокаций.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParameterBindingBenchmark {
+    private static final int USERS = 100;
+    private static final int FILMS = 100;
+
+    private static final String HAS_LIKE_QUERY =
+            "SELECT COUNT(*) > 0 FROM likes WHERE film_id = :filmId AND user_id = :userId";
+    private static final String FIND_EVENTS_QUERY = """
+            SELECT event_id, entity_id, event_timestamp FROM event
+            WHERE user_id = :userId
+            ORDER BY event_timestamp
+            LIMIT :limit
+            """;
+
+    private static final CompiledStatement HAS_LIKE = CompiledStatement.compile(HAS_LIKE_QUERY, "filmId", "userId");
+    private static final CompiledStatement FIND_EVENTS =
+            CompiledStatement.compile(FIND_EVENTS_QUERY, "userId", "limit");
+
+    private SingleConnectionDataSource dataSource;
+    private NamedParameterJdbcTemplate named;
+    private JdbcOperations plain;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "sa", "", true);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        named = new NamedParameterJdbcTemplate(dataSource);
+        plain = named.getJdbcOperations();
+        plain.update("INSERT INTO users (user_id, email, login, name) "
+                + "SELECT X, 'user' || X || '@mail.ru', 'user' || X, 'user' || X FROM SYSTEM_RANGE(1, " + USERS + ")");
+        plain.update("INSERT INTO films (film_id, name, description, release_date, duration, mpa_id) "
+                + "SELECT X, 'film' || X, '', DATE '2000-01-01', 90, 1 FROM SYSTEM_RANGE(1, " + FILMS + ")");
+        plain.update("INSERT INTO likes (film_id, user_id) SELECT X, MOD(X * 7, " + USERS + ") + 1 "
+                + "FROM SYSTEM_RANGE(1, " + FILMS + ")");
+        plain.update("INSERT INTO event (event_timestamp, entity_id, user_id, event_type_id, operation_id) "
+                + "SELECT X, X, MOD(X, " + USERS + ") + 1, 1, 1 FROM SYSTEM_RANGE(1, " + USERS * 20 + ")");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        plain.execute("SHUTDOWN");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public boolean hasLikeNamedMap() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("filmId", randomId(FILMS));
+        params.put("userId", randomId(USERS));
+        return Boolean.TRUE.equals(named.queryForObject(HAS_LIKE_QUERY, params, Boolean.class));
+    }
+
+    @Benchmark
+    public boolean hasLikeCompiled() {
+        return HAS_LIKE.queryForBoolean(plain, randomId(FILMS), randomId(USERS));
+    }
+
+    @Benchmark
+    public int feedNamedMap() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("userId", randomId(USERS));
+        params.put("limit", 10);
+        return named.query(FIND_EVENTS_QUERY, params, (rs, rowNum) -> rs.getLong(1)).size();
+    }
+
+    @Benchmark
+    public int feedCompiled() {
+        return FIND_EVENTS.query(plain, (rs, rowNum) -> rs.getLong(1), randomId(USERS), 10).size();
+    }
+
+    private static long randomId(int bound) {
+        return ThreadLocalRandom.current().nextLong(bound) + 1;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ParameterBindingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,168 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.zalando.logbook.Logbook;
+import org.zalando.logbook.core.BodyFilters;
+import org.zalando.logbook.core.DefaultHttpLogWriter;
+import org.zalando.logbook.core.DefaultSink;
+import org.zalando.logbook.core.DefaultStrategy;
+import org.zalando.logbook.json.JsonHttpLogFormatter;
+import org.zalando.logbook.servlet.LogbookFilter;
+import ru.yandex.practicum.filmorate.controller.SampledLogbookStrategy;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена журнала HTTP-запросов на один запрос GET /films: Logbook перед цепочкой, которая пишет
+ * JSON-ответ заданного размера. full — прежняя настройка (каждый запрос с телами целиком),
+ * sampled — выборка 1% с обрезкой тел до 4 КБ, none — без Logbook. Вывод идёт в пустой поток
+ * синхронно или через асинхронный аппендер, чтобы отделить цену форматирования от цены записи.
+ * Кроме времени смотреть gc.alloc.rate.norm: буферизация и сериализация тел — основной источник мусора.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestLoggingBenchmark {
+
+    @Param({"none", "full", "sampled"})
+    private String logging;
+
+    @Param({"sync", "async"})
+    private String appender;
+
+    @Param({"1", "512"})
+    private int responseKb;
+
+    private Logger logbookLogger;
+    private Appender<ILoggingEvent> output;
+    private LogbookFilter filter;
+    private FilterChain chain;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Trial)
+    public void setUp() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        output = "async".equals(appender) ? async(context, nullOutput(context)) : nullOutput(context);
+        logbookLogger = context.getLogger(Logbook.class);
+        logbookLogger.detachAndStopAllAppenders();
+        logbookLogger.setAdditive(false);
+        logbookLogger.setLevel(Level.TRACE);
+        logbookLogger.addAppender(output);
+
+        Logbook logbook = switch (logging) {
+            case "full" -> Logbook.builder()
+                    .strategy(new DefaultStrategy())
+                    .sink(new DefaultSink(new JsonHttpLogFormatter(), new DefaultHttpLogWriter()))
+                    .build();
+            case "sampled" -> Logbook.builder()
+                    .strategy(new SampledLogbookStrategy(0.01, 400, Duration.ofMillis(500)))
+                    .bodyFilter(BodyFilters.truncate(4096))
+                    .sink(new DefaultSink(new JsonHttpLogFormatter(), new DefaultHttpLogWriter()))
+                    .build();
+            default -> null;
+        };
+        filter = logbook == null ? null : new LogbookFilter(logbook);
+
+        byte[] body = films(responseKb * 1024);
+        chain = (request, response) -> {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getOutputStream().write(body);
+        };
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Trial)
+    public void tearDown() {
+        logbookLogger.detachAndStopAllAppenders();
+        logbookLogger.setLevel(null);
+        logbookLogger.setAdditive(true);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse getFilms() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        if (filter == null) {
+            chain.doFilter(request, response);
+        } else {
+            filter.doFilter(request, response, chain);
+        }
+        return response;
+    }
+
+    private static Appender<ILoggingEvent> nullOutput(LoggerContext context) {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d %-5level %logger - %msg%n");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> output = new OutputStreamAppender<>();
+        output.setContext(context);
+        output.setEncoder(encoder);
+        output.setOutputStream(OutputStream.nullOutputStream());
+        output.start();
+        return output;
+    }
+
+    private static Appender<ILoggingEvent> async(LoggerContext context, Appender<ILoggingEvent> delegate) {
+        AsyncAppender async = new AsyncAppender();
+        async.setContext(context);
+        async.setQueueSize(8192);
+        async.setNeverBlock(true);
+        async.addAppender(delegate);
+        async.start();
+        return async;
+    }
+
+    private static byte[] films(int size) {
+        StringBuilder json = new StringBuilder(size + 256).append('[');
+        for (int id = 1; json.length() < size; id++) {
+            if (id > 1) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(id)
+                    .append(",\"name\":\"Фильм ").append(id)
+                    .append("\",\"description\":\"Описание фильма\",\"releaseDate\":\"2000-01-01\",")
+                    .append("\"duration\":120,\"mpa\":{\"id\":1,\"name\":\"G\"},\"genres\":[],\"directors\":[]}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RequestLoggingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
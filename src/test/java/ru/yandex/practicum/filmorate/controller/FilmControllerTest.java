@@ -5,13 +5,27 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.exception.VersionConflictException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserChangeWatermarks;
 
 import java.util.Arrays;
 import java.util.Collection;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 /**
@@ -21,6 +35,8 @@ import static org.mockito.Mockito.*;
  * <ul>
  *     <li>Получение списка всех фильмов</li>
  *     <li>Получение популярных фильмов</li>
+ *     <li>Ответ 304 по If-None-Match без обращения к сервису</li>
+ *     <li>ETag фильма в If-Match при обновлении</li>
  *     <li>Создание фильма</li>
  *     <li>Обновление фильма</li>
  *     <li>Добавление и удаление лайков</li>
@@ -33,6 +49,8 @@ public class FilmControllerTest {
 
     @Mock
     private FilmService filmService;
+    @Spy
+    private UserChangeWatermarks watermarks = new UserChangeWatermarks();
 
     @InjectMocks
     private FilmController filmController;
@@ -62,9 +80,9 @@ public class FilmControllerTest {
     }
 
     /**
-     * Проверяет, что метод {@link FilmController#getPopulateFilms(int, Long, Integer)} возвращает указанное количество фильмов.
+     * Проверяет, что метод {@link FilmController#getPopulateFilms(int, Long, Integer, Integer, Integer, WebRequest)} возвращает указанное количество фильмов.
      *
-     * <p>Ожидается, что вызов делегируется в {@link FilmService#getPopularFilms(int, Long, Integer)}</p>
+     * <p>Ожидается, что вызов делегируется в {@link FilmService#getPopularFilms(int, Long, Integer, Integer, Integer)}</p>
      */
     @Test
     public void testGetPopulateFilms() {
@@ -76,12 +94,12 @@ public class FilmControllerTest {
         Film film2 = new Film();
         Collection<Film> popularFilms = Arrays.asList(film1, film2);
 
-        when(filmService.getPopularFilms(count, genreId, year)).thenReturn(popularFilms);
+        when(filmService.getPopularFilms(count, genreId, year, null, null)).thenReturn(popularFilms);
 
-        Collection<Film> result = filmController.getPopulateFilms(count, genreId, year);
+        Collection<Film> result = filmController.getPopulateFilms(count, genreId, year, null, null, webRequest());
 
         assertEquals(2, result.size());
-        verify(filmService, times(1)).getPopularFilms(count, genreId, year);
+        verify(filmService, times(1)).getPopularFilms(count, genreId, year, null, null);
     }
 
     /**
@@ -96,12 +114,12 @@ public class FilmControllerTest {
         Film film = new Film();
         Collection<Film> popularFilms = Arrays.asList(film);
 
-        when(filmService.getPopularFilms(count, genreId, year)).thenReturn(popularFilms);
+        when(filmService.getPopularFilms(count, genreId, year, null, null)).thenReturn(popularFilms);
 
-        Collection<Film> result = filmController.getPopulateFilms(count, genreId, year);
+        Collection<Film> result = filmController.getPopulateFilms(count, genreId, year, null, null, webRequest());
 
         assertEquals(1, result.size());
-        verify(filmService, times(1)).getPopularFilms(count, genreId, year);
+        verify(filmService, times(1)).getPopularFilms(count, genreId, year, null, null);
     }
 
     /**
@@ -116,12 +134,12 @@ public class FilmControllerTest {
         Film film = new Film();
         Collection<Film> popularFilms = Arrays.asList(film);
 
-        when(filmService.getPopularFilms(count, genreId, year)).thenReturn(popularFilms);
+        when(filmService.getPopularFilms(count, genreId, year, null, null)).thenReturn(popularFilms);
 
-        Collection<Film> result = filmController.getPopulateFilms(count, genreId, year);
+        Collection<Film> result = filmController.getPopulateFilms(count, genreId, year, null, null, webRequest());
 
         assertEquals(1, result.size());
-        verify(filmService, times(1)).getPopularFilms(count, genreId, year);
+        verify(filmService, times(1)).getPopularFilms(count, genreId, year, null, null);
     }
 
     /**
@@ -136,14 +154,141 @@ public class FilmControllerTest {
         Film film = new Film();
         Collection<Film> popularFilms = Arrays.asList(film);
 
-        when(filmService.getPopularFilms(count, genreId, year)).thenReturn(popularFilms);
+        when(filmService.getPopularFilms(count, genreId, year, null, null)).thenReturn(popularFilms);
 
-        Collection<Film> result = filmController.getPopulateFilms(count, genreId, year);
+        Collection<Film> result = filmController.getPopulateFilms(count, genreId, year, null, null, webRequest());
 
         assertEquals(1, result.size());
-        verify(filmService, times(1)).getPopularFilms(count, genreId, year);
+        verify(filmService, times(1)).getPopularFilms(count, genreId, year, null, null);
     }
 
+    /**
+     * Проверка получения популярных фильмов за диапазон лет.
+     */
+    @Test
+    public void testGetPopularFilms_WithYearRange() {
+        int count = 10;
+        Integer yearFrom = 1990;
+        Integer yearTo = 1999;
+
+        Collection<Film> popularFilms = Arrays.asList(new Film(), new Film());
+
+        when(filmService.getPopularFilms(count, null, null, yearFrom, yearTo)).thenReturn(popularFilms);
+
+        Collection<Film> result = filmController.getPopulateFilms(count, null, null, yearFrom, yearTo, webRequest());
+
+        assertEquals(2, result.size());
+        verify(filmService, times(1)).getPopularFilms(count, null, null, yearFrom, yearTo);
+    }
+
+    /**
+     * Популярные фильмы с актуальным ETag отдаются ответом 304, сервис не вызывается.
+     */
+    @Test
+    public void testGetPopularFilmsNotModifiedSkipsService() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/popular");
+        request.addHeader("If-None-Match", watermarks.popular().etag());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        Collection<Film> result = filmController.getPopulateFilms(10, null, null, null, null,
+                new ServletWebRequest(request, response));
+
+        assertNull(result);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        verifyNoInteractions(filmService);
+    }
+
+    /**
+     * Новый лайк меняет ETag популярных фильмов, и прежний ETag больше не даёт 304.
+     */
+    @Test
+    public void testPopularFilmsEtagChangesAfterLike() {
+        String etag = watermarks.popular().etag();
+        watermarks.likesChanged(1L);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/popular");
+        request.addHeader("If-None-Match", etag);
+        when(filmService.getPopularFilms(10, null, null, null, null)).thenReturn(Arrays.asList(new Film()));
+
+        Collection<Film> result = filmController.getPopulateFilms(10, null, null, null, null,
+                new ServletWebRequest(request, new MockHttpServletResponse()));
+
+        assertEquals(1, result.size());
+        assertNotEquals(etag, watermarks.popular().etag());
+    }
+
+    /**
+     * Фильм с актуальным ETag отдаётся ответом 304; изменение другого фильма его ETag не трогает,
+     * а изменение отзыва о нём — меняет.
+     */
+    @Test
+    public void testGetFilmByIdNotModifiedUntilFilmOrItsReviewsChange() {
+        String etag = watermarks.film(1L).etag(EntityVersionTags.readVariant(1L));
+        watermarks.filmChanged(2L);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/1");
+        request.addHeader("If-None-Match", etag);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(filmController.getFilmById(1L, new ServletWebRequest(request, response)));
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        verifyNoInteractions(filmService);
+
+        watermarks.reviewChanged(1L);
+        Film film = Film.builder().id(1L).version(1L).build();
+        when(filmService.getFilmById(1L)).thenReturn(film);
+
+        assertEquals(film, filmController.getFilmById(1L,
+                new ServletWebRequest(request, new MockHttpServletResponse())));
+    }
+
+    /**
+     * ETag из GET /films/{id} подходит для If-Match при обновлении: в сервис уходит версия строки из тега.
+     */
+    @Test
+    public void testFilmEtagFromGetIsAcceptedByUpdateIfMatch() {
+        Film film = Film.builder().id(1L).name("Фильм").version(3L).build();
+        when(filmService.getFilmById(1L)).thenReturn(film);
+        when(filmService.updateFilm(any(Film.class)))
+                .thenAnswer(invocation -> invocation.<Film>getArgument(0).toBuilder().version(4L).build());
+        MockHttpServletResponse getResponse = new MockHttpServletResponse();
+
+        filmController.getFilmById(1L, new ServletWebRequest(new MockHttpServletRequest("GET", "/films/1"),
+                getResponse));
+        String etag = getResponse.getHeader(HttpHeaders.ETAG);
+        ResponseEntity<Film> updated = filmController.updateFilm(film.toBuilder().version(null).build(), etag);
+
+        assertTrue(etag.startsWith("W/"));
+        verify(filmService).updateFilm(argThat(newFilm -> newFilm.getVersion() == 3L));
+        assertEquals("\"4\"", updated.getHeaders().getETag());
+    }
+
+    /**
+     * Повторный GET с ETag, полученным из ответа, отдаёт 304 без чтения фильма.
+     */
+    @Test
+    public void testGetFilmByIdWithOwnEtagSkipsService() {
+        when(filmService.getFilmById(1L)).thenReturn(Film.builder().id(1L).version(3L).build());
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filmController.getFilmById(1L, new ServletWebRequest(new MockHttpServletRequest("GET", "/films/1"), first));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/1");
+        request.addHeader("If-None-Match", first.getHeader(HttpHeaders.ETAG));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(filmController.getFilmById(1L, new ServletWebRequest(request, response)));
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        verify(filmService, times(1)).getFilmById(1L);
+    }
+
+    /**
+     * Слабый тег без версии строки (например, списка фильмов) для If-Match не подходит.
+     */
+    @Test
+    public void testUpdateWithWeakTagWithoutVersionIsRejected() {
+        Film film = Film.builder().id(1L).name("Фильм").build();
+
+        assertThrows(VersionConflictException.class,
+                () -> filmController.updateFilm(film, watermarks.popular().etag()));
+        verifyNoInteractions(filmService);
+    }
 
     /**
      * Проверяет, что метод {@link FilmController#createFilm(Film)} корректно создаёт новый фильм.
@@ -163,7 +308,7 @@ public class FilmControllerTest {
     }
 
     /**
-     * Проверяет, что метод {@link FilmController#updateFilm(Film)} корректно обновляет данные фильма.
+     * Проверяет, что метод {@link FilmController#updateFilm(Film, String)} корректно обновляет данные фильма.
      *
      * <p>Ожидается, что вызов делегируется в {@link FilmService#updateFilm(Film)}</p>
      */
@@ -173,7 +318,7 @@ public class FilmControllerTest {
 
         when(filmService.updateFilm(newFilm)).thenReturn(newFilm);
 
-        Film result = filmController.updateFilm(newFilm);
+        Film result = filmController.updateFilm(newFilm, null).getBody();
 
         assertEquals(newFilm, result);
         verify(filmService, times(1)).updateFilm(newFilm);
@@ -208,4 +353,8 @@ public class FilmControllerTest {
 
         verify(filmService, times(1)).removeLike(filmId, userId);
     }
+
+    private ServletWebRequest webRequest() {
+        return new ServletWebRequest(new MockHttpServletRequest("GET", "/films"), new MockHttpServletResponse());
+    }
 }
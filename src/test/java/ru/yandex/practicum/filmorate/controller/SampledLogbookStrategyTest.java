@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.zalando.logbook.Correlation;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Sink;
+
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+public class SampledLogbookStrategyTest {
+    private final HttpRequest request = mock(HttpRequest.class);
+    private final HttpResponse response = mock(HttpResponse.class);
+    private final HttpResponse withoutBody = mock(HttpResponse.class);
+    private final Correlation correlation = mock(Correlation.class);
+    private final Sink sink = mock(Sink.class);
+
+    @BeforeEach
+    public void setUp() {
+        when(response.withoutBody()).thenReturn(withoutBody);
+        when(response.getStatus()).thenReturn(200);
+        when(correlation.getDuration()).thenReturn(Duration.ofMillis(5));
+    }
+
+    @Test
+    public void testFastSuccessfulRequestOutsideSampleIsSkippedWithoutBuffering() throws Exception {
+        SampledLogbookStrategy strategy = new SampledLogbookStrategy(0, 400, Duration.ofMillis(500));
+
+        assertThat(strategy.process(request, response)).isSameAs(withoutBody);
+        strategy.write(correlation, request, response, sink);
+
+        verify(response, never()).withBody();
+        verifyNoInteractions(sink);
+    }
+
+    @Test
+    public void testErrorsAndSlowRequestsAreAlwaysWritten() throws Exception {
+        SampledLogbookStrategy strategy = new SampledLogbookStrategy(0, 400, Duration.ofMillis(500));
+
+        when(response.getStatus()).thenReturn(404);
+        strategy.write(correlation, request, response, sink);
+
+        when(response.getStatus()).thenReturn(200);
+        when(correlation.getDuration()).thenReturn(Duration.ofSeconds(1));
+        strategy.write(correlation, request, response, sink);
+
+        verify(sink, times(2)).writeBoth(correlation, request, response);
+    }
+
+    @Test
+    public void testSampledRequestKeepsBody() throws Exception {
+        SampledLogbookStrategy strategy = new SampledLogbookStrategy(1, 400, Duration.ofMillis(500));
+        when(response.withBody()).thenReturn(response);
+
+        assertThat(strategy.process(request, response)).isSameAs(response);
+        strategy.write(correlation, request, response, sink);
+
+        verify(sink).writeBoth(correlation, request, response);
+    }
+
+    @Test
+    public void testSampleRateApproximatesShareOfRequests() {
+        SampledLogbookStrategy strategy = new SampledLogbookStrategy(0.25, 400, Duration.ofMillis(500));
+
+        long sampled = IntStream.range(0, 4_000)
+                .filter(i -> strategy.sampled(mock(HttpRequest.class)))
+                .count();
+
+        assertThat(sampled).isBetween(800L, 1_200L);
+    }
+
+    @Test
+    public void testSampleRateOutsideRangeIsRejected() {
+        assertThatThrownBy(() -> new SampledLogbookStrategy(1.5, 400, Duration.ofMillis(500)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -5,14 +5,24 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FriendService;
+import ru.yandex.practicum.filmorate.service.UserChangeWatermarks;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.service.ValidationService;
 
 import java.util.Arrays;
 import java.util.Collection;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 public class UserControllerTest {
@@ -21,6 +31,10 @@ public class UserControllerTest {
     private UserService userService;
     @Mock
     private FriendService friendService;
+    @Mock
+    private ValidationService validationService;
+    @Spy
+    private UserChangeWatermarks watermarks = new UserChangeWatermarks();
 
     @InjectMocks
     private UserController userController;
@@ -53,12 +67,54 @@ public class UserControllerTest {
 
         when(friendService.getFriends(friendId)).thenReturn(friends);
 
-        Collection<User> result = userController.getFriends(friendId);
+        Collection<User> result = userController.getFriends(friendId, webRequest(new MockHttpServletRequest("GET", "/users")));
 
         assertEquals(2, result.size());
         verify(friendService, times(1)).getFriends(friendId);
     }
 
+    @Test
+    public void testGetFriendsNotModifiedSkipsService() {
+        Long userId = 1L;
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.addHeader("If-None-Match", watermarks.friends(userId).etag());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        Collection<User> result = userController.getFriends(userId, new ServletWebRequest(request, response));
+
+        assertNull(result);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        verify(friendService, never()).getFriends(userId);
+    }
+
+    @Test
+    public void testGetFriendsOfUnknownUserIsNotFoundDespiteMatchingEtag() {
+        Long userId = 404L;
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.addHeader("If-None-Match", watermarks.friends(userId).etag());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        doThrow(new NotFoundException("Пользователь с ID " + userId + " не найден"))
+                .when(validationService).validateUserExists(userId);
+
+        assertThrows(NotFoundException.class,
+                () -> userController.getFriends(userId, new ServletWebRequest(request, response)));
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        verify(friendService, never()).getFriends(userId);
+    }
+
+    @Test
+    public void testGetFriendsEtagChangesAfterFriendsChanged() {
+        Long userId = 1L;
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.addHeader("If-None-Match", watermarks.friends(userId).etag());
+        watermarks.friendsChanged(userId);
+        when(friendService.getFriends(userId)).thenReturn(Arrays.asList(new User()));
+
+        Collection<User> result = userController.getFriends(userId, webRequest(request));
+
+        assertEquals(1, result.size());
+    }
+
     @Test
     public void testGetCommonFriends() {
         Long friendId = (Long) 1L;
@@ -92,7 +148,7 @@ public class UserControllerTest {
 
         when(userService.updateUser(user)).thenReturn(user);
 
-        User result = userController.updateUser(user);
+        User result = userController.updateUser(user, null).getBody();
 
         assertEquals(user, result);
         verify(userService, times(1)).updateUser(user);
@@ -117,5 +173,8 @@ public class UserControllerTest {
 
         verify(friendService, times(1)).removeFriend(userId, friendId);
     }
-}
 
+    private ServletWebRequest webRequest(MockHttpServletRequest request) {
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+}
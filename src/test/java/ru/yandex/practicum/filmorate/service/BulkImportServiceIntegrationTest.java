@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.service.BulkImportService.ImportFormat;
+import ru.yandex.practicum.filmorate.service.BulkImportService.ImportKind;
+import ru.yandex.practicum.filmorate.service.BulkImportService.ImportReport;
+import ru.yandex.practicum.filmorate.storage.bulk.JdbcBulkImportRepository;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+import ru.yandex.practicum.filmorate.storage.existence.ExistenceIndex;
+import ru.yandex.practicum.filmorate.storage.like.JdbcLikeRepository;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Загрузка пишет из отдельного потока, поэтому тест идёт без транзакции. Загруженные строки
+ * фиксируются, так что база своя, а не общая testdb, и закрывается вместе с контекстом после каждого теста.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@Import({
+        BulkImportService.class,
+        JdbcBulkImportRepository.class,
+        JdbcLikeRepository.class,
+        ReferenceDataRegistry.class,
+        ExistenceIndex.class,
+        UserChangeWatermarks.class
+})
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:bulk-import",
+        "filmorate.import.batch-size=4",
+        "filmorate.import.parallelism=3",
+        "filmorate.import.max-pending-batches=2",
+        "filmorate.reviews.hot.fold-interval=3600000"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class BulkImportServiceIntegrationTest {
+
+    @Autowired
+    private BulkImportService bulkImportService;
+    @Autowired
+    private ExistenceIndex existenceIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testImportsAllKindsAndRejectsBadLines() {
+        ImportReport users = load(ImportKind.USERS, ImportFormat.CSV, """
+                id,email,login,name,birthday
+                10,ten@example.com,ten,"Ten, the user",1990-01-01
+                11,eleven@example.com,eleven,,1991-02-02
+                12,not-an-email,twelve,Twelve,1992-03-03
+                1,again@example.com,again,Again,1990-01-01
+                """);
+        assertThat(users.imported()).isEqualTo(2);
+        assertThat(users.rejections()).extracting(BulkImportService.Rejection::line).containsExactly(4L, 5L);
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM users WHERE user_id = 10", String.class))
+                .isEqualTo("Ten, the user");
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM users WHERE user_id = 11", String.class))
+                .isEqualTo("eleven");
+
+        ImportReport films = load(ImportKind.FILMS, ImportFormat.JSON, """
+                {"id":10,"name":"Film","description":"d","releaseDate":"2001-01-01","duration":90,\
+                "mpa":{"id":1},"genres":[{"id":1},{"id":2}],"directors":[{"id":1}]}
+                {"id":11,"name":"Unknown genre","releaseDate":"2001-01-01","duration":90,\
+                "mpa":{"id":1},"genres":[{"id":99}]}
+                {"id":12,"name":"Unknown director","releaseDate":"2001-01-01","duration":90,\
+                "mpa":{"id":1},"directors":[{"id":99}]}
+                not json
+                """);
+        assertThat(films.imported()).isEqualTo(1);
+        assertThat(films.rejected()).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film_genre WHERE film_id = 10", Integer.class))
+                .isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film_directors WHERE film_id = 10",
+                Integer.class)).isEqualTo(1);
+        assertThat(existenceIndex.exists(EntityKind.FILM, 10L)).isTrue();
+
+        ImportReport likes = load(ImportKind.LIKES, ImportFormat.CSV, """
+                filmId,userId
+                10,10
+                10,11
+                11,10
+                10,99
+                """);
+        assertThat(likes.imported()).isEqualTo(2);
+        assertThat(likes.rejected()).isEqualTo(2);
+
+        ImportReport friendships = load(ImportKind.FRIENDSHIPS, ImportFormat.JSON, """
+                {"userId":10,"friendId":11}
+                {"userId":11,"friendId":10,"confirmed":false}
+                {"userId":10,"friendId":10}
+                """);
+        assertThat(friendships.imported()).isEqualTo(2);
+        assertThat(friendships.rejections()).extracting(BulkImportService.Rejection::line).containsExactly(3L);
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedRowByRowAndIdentityMovesPastImportedIds() {
+        StringBuilder csv = new StringBuilder("id,email,login,birthday\n");
+        for (int id = 100; id < 130; id++) {
+            // логин 115 повторяет логин 114: пачка с ним падает и пишется построчно
+            String login = "user" + (id == 115 ? 114 : id);
+            csv.append(id).append(',').append(login).append("@example.com,").append(login).append(",1990-01-01\n");
+        }
+
+        ImportReport report = load(ImportKind.USERS, ImportFormat.CSV, csv.toString());
+
+        assertThat(report.lines()).isEqualTo(31);
+        assertThat(report.imported()).isEqualTo(29);
+        assertThat(report.rejections()).singleElement()
+                .satisfies(rejection -> assertThat(rejection.line()).isEqualTo(17));
+        assertThat(report.rowsPerSecond()).isPositive();
+
+        jdbcTemplate.update("INSERT INTO users (email, login, birthday) VALUES ('new@example.com', 'new', "
+                + "DATE '2000-01-01')");
+        assertThat(jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'new'", Long.class))
+                .isEqualTo(130L);
+    }
+
+    private ImportReport load(ImportKind kind, ImportFormat format, String content) {
+        return bulkImportService.importRecords(kind, format,
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.TimelinePage;
+import ru.yandex.practicum.filmorate.storage.event.EventRepository;
+import ru.yandex.practicum.filmorate.storage.friend.FriendRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Лента друзей собирается из срезов по времени: число запросов и прочитанных событий зависит
+ * от размера страницы и плотности событий, но не от числа друзей и не от длины их истории.
+ */
+public class EventServiceTest {
+    private static final int EVENTS = 2_000;
+    private static final int MAX_QUERIES_PER_PAGE = 12;
+    private static final Comparator<Event> NEWEST_FIRST = Comparator
+            .comparing(Event::getTimestamp, Comparator.reverseOrder())
+            .thenComparing(Event::getEventId, Comparator.reverseOrder());
+
+    private final EventRepository eventRepository = mock(EventRepository.class);
+    private final FriendRepository friendRepository = mock(FriendRepository.class);
+    private final EventService eventService = new EventService(eventRepository, friendRepository,
+            mock(ValidationService.class), new FeedCompactor(), new UserChangeWatermarks());
+    private final List<Event> history = new ArrayList<>();
+    private List<Long> friendIds = List.of();
+    private final AtomicInteger queries = new AtomicInteger();
+    private final AtomicInteger rowsRead = new AtomicInteger();
+
+    @Test
+    public void testPagesMatchGlobalOrderAcrossCursor() {
+        givenHistory(40, Instant.now().toEpochMilli(), Duration.ofSeconds(7).toMillis());
+        List<Event> expected = history.stream().sorted(NEWEST_FIRST).limit(50).toList();
+
+        TimelinePage first = eventService.getFriendsTimeline(1000L, null, 25);
+        TimelinePage second = eventService.getFriendsTimeline(1000L, first.getNextCursor(), 25);
+
+        List<Event> pages = new ArrayList<>(first.getEvents());
+        pages.addAll(second.getEvents());
+        assertThat(pages).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void testPageReadsAtMostLimitEvents() {
+        givenHistory(40, Instant.now().toEpochMilli(), Duration.ofMinutes(1).toMillis());
+        int limit = 20;
+
+        TimelinePage page = eventService.getFriendsTimeline(1000L, null, limit);
+        eventService.getFriendsTimeline(1000L, page.getNextCursor(), limit);
+
+        assertThat(page.getEvents()).hasSize(limit);
+        assertThat(rowsRead.get()).isLessThanOrEqualTo(2 * limit);
+    }
+
+    @Test
+    public void testQueryCountDoesNotGrowWithFriendCount() {
+        // границы окон (час, 5, 21, 85 часов назад) приходятся между событиями, а не на них
+        long newest = Instant.now().minus(Duration.ofMinutes(5)).toEpochMilli();
+        long spacing = Duration.ofMinutes(10).toMillis();
+
+        givenHistory(10, newest, spacing);
+        TimelinePage few = eventService.getFriendsTimeline(1000L, null, 100);
+        int fewQueries = queries.getAndSet(0);
+        int fewRows = rowsRead.getAndSet(0);
+
+        givenHistory(2_000, newest, spacing);
+        TimelinePage many = eventService.getFriendsTimeline(1000L, null, 100);
+
+        // тот же поток событий, разложенный на 10 или 2000 друзей, читается теми же срезами
+        assertThat(few.getEvents()).hasSize(100);
+        assertThat(many.getEvents()).hasSize(100);
+        assertThat(queries.get()).isEqualTo(fewQueries).isLessThanOrEqualTo(MAX_QUERIES_PER_PAGE);
+        assertThat(rowsRead.get()).isEqualTo(fewRows).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    public void testOldHistoryIsReachedInBoundedQueries() {
+        // друзья давно неактивны: окна растут, пока не дойдут до их событий
+        givenHistory(40, Instant.now().minus(Duration.ofDays(3 * 365)).toEpochMilli(), 1_000L);
+        List<Event> expected = history.stream().sorted(NEWEST_FIRST).limit(25).toList();
+
+        TimelinePage page = eventService.getFriendsTimeline(1000L, null, 25);
+
+        assertThat(page.getEvents()).containsExactlyElementsOf(expected);
+        assertThat(queries.get()).isLessThanOrEqualTo(MAX_QUERIES_PER_PAGE);
+        assertThat(rowsRead.get()).isEqualTo(25);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        when(friendRepository.getFriendIds(1000L)).thenAnswer(invocation -> friendIds);
+        when(eventRepository.findEventSlice(anyCollection(), anyLong(), anyLong(), anyLong(), anyInt()))
+                .thenAnswer(invocation -> {
+                    Set<Long> userIds = new HashSet<>(invocation.<Collection<Long>>getArgument(0));
+                    long since = invocation.getArgument(1);
+                    long beforeTimestamp = invocation.getArgument(2);
+                    long beforeEventId = invocation.getArgument(3);
+                    int limit = invocation.getArgument(4);
+                    List<Event> slice = history.stream()
+                            .filter(event -> userIds.contains(event.getUserId()))
+                            .filter(event -> event.getTimestamp() >= since)
+                            .filter(event -> event.getTimestamp() < beforeTimestamp
+                                    || event.getTimestamp() == beforeTimestamp && event.getEventId() < beforeEventId)
+                            .sorted(NEWEST_FIRST)
+                            .limit(limit)
+                            .toList();
+                    queries.incrementAndGet();
+                    rowsRead.addAndGet(slice.size());
+                    return slice;
+                });
+    }
+
+    /**
+     * EVENTS событий с шагом spacing, последнее — в newest; событие i принадлежит другу i % friends + 1.
+     */
+    private void givenHistory(int friends, long newest, long spacing) {
+        history.clear();
+        for (long eventId = 1; eventId <= EVENTS; eventId++) {
+            long friendId = eventId % friends + 1;
+            history.add(new Event(friendId, newest - (EVENTS - eventId) * spacing, eventId, eventId, "ADD", "LIKE"));
+        }
+        friendIds = LongStream.rangeClosed(1, friends).boxed().toList();
+    }
+}
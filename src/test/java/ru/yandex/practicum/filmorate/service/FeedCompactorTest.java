@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FeedCompactorTest {
+    private final FeedCompactor feedCompactor = new FeedCompactor();
+
+    @Test
+    public void testAddRemoveAddCollapsesToLastAdd() {
+        List<Event> events = List.of(
+                event(1, "LIKE", 10, "ADD"),
+                event(2, "LIKE", 10, "REMOVE"),
+                event(3, "LIKE", 10, "ADD"));
+
+        assertThat(feedCompactor.compact(events)).extracting(Event::getEventId).containsExactly(3L);
+    }
+
+    @Test
+    public void testDuplicateAddKeepsFirst() {
+        List<Event> events = List.of(
+                event(1, "FRIEND", 2, "ADD"),
+                event(2, "FRIEND", 2, "ADD"));
+
+        assertThat(feedCompactor.findRedundantEventIds(events)).containsExactly(2L);
+    }
+
+    @Test
+    public void testOtherEntitiesAndReviewsKeepOrder() {
+        List<Event> events = List.of(
+                event(1, "LIKE", 10, "ADD"),
+                event(2, "REVIEW", 5, "ADD"),
+                event(3, "LIKE", 11, "ADD"),
+                event(4, "REVIEW", 5, "REMOVE"),
+                event(5, "LIKE", 10, "REMOVE"));
+
+        assertThat(feedCompactor.compact(events)).extracting(Event::getEventId).containsExactly(2L, 3L, 4L);
+    }
+
+    private Event event(long eventId, String type, long entityId, String operation) {
+        return Event.builder()
+                .eventId(eventId)
+                .userId(1L)
+                .timestamp(eventId)
+                .eventType(type)
+                .entityId(entityId)
+                .operation(operation)
+                .build();
+    }
+}
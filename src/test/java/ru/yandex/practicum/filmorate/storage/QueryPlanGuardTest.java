@@ -0,0 +1,216 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.storage.existence.EntityKind;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет планы всех SQL-констант репозиториев storage.*: каждый запрос прогоняется через EXPLAIN
+ * на заполненной базе, и полный просмотр большой таблицы считается ошибкой, если запрос
+ * не внесён в query-plan-allowlist.txt с объяснением, почему просмотр здесь допустим.
+ * ANALYZE фиксирует транзакцию, поэтому засев живёт в отдельной базе и не попадает в общую testdb.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:query-plans")
+@DirtiesContext
+public class QueryPlanGuardTest {
+    private static final String STORAGE_PACKAGE = "ru.yandex.practicum.filmorate.storage";
+    private static final String ALLOW_LIST = "query-plan-allowlist.txt";
+    private static final Pattern STATEMENT = Pattern.compile("^\\s*(SELECT|INSERT|UPDATE|DELETE|MERGE|WITH)\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern PARAMETER = Pattern.compile("(?<!:):(\\w+)");
+    // таблица, за которой в плане идёт индекс без условия: tableScan или обход индекса целиком
+    private static final Pattern FULL_SCAN = Pattern.compile(
+            "\"PUBLIC\"\\.\"(\\w+)\"[^\\n]*\\n\\s*/\\* PUBLIC\\.[\\w.]+ \\*/");
+    // справочники из нескольких строк просматривать дешевле, чем идти по индексу
+    private static final Set<String> SMALL_TABLES = Set.of("GENRES", "MPA_RATINGS", "EVENT_TYPE", "OPERATION");
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @TestFactory
+    public Stream<DynamicTest> statementsDoNotScanLargeTables() throws IOException {
+        seed();
+        Map<String, String> statements = collectStatements();
+        Set<String> allowed = readAllowList();
+        assertThat(statements).isNotEmpty();
+        assertThat(statements.keySet())
+                .as("в списке исключений есть запросы, которых больше нет")
+                .containsAll(allowed);
+
+        return statements.entrySet().stream().map(statement -> DynamicTest.dynamicTest(statement.getKey(), () -> {
+            String plan = explain(statement.getValue());
+            Set<String> scanned = new TreeSet<>();
+            Matcher matcher = FULL_SCAN.matcher(plan);
+            while (matcher.find()) {
+                if (!SMALL_TABLES.contains(matcher.group(1))) {
+                    scanned.add(matcher.group(1));
+                }
+            }
+            if (allowed.contains(statement.getKey())) {
+                assertThat(scanned)
+                        .as("%s больше не просматривает таблицы целиком — уберите его из %s:%n%s",
+                                statement.getKey(), ALLOW_LIST, plan)
+                        .isNotEmpty();
+            } else {
+                assertThat(scanned)
+                        .as("%s просматривает таблицы целиком:%n%s", statement.getKey(), plan)
+                        .isEmpty();
+            }
+        }));
+    }
+
+    private String explain(String sql) {
+        String statement = sql.strip();
+        if (statement.endsWith(";")) {
+            statement = statement.substring(0, statement.length() - 1);
+        }
+        // значения параметров на план не влияют, важно только, что они есть
+        if (statement.indexOf('?') >= 0) {
+            Object[] args = new Object[(int) statement.chars().filter(c -> c == '?').count()];
+            Arrays.fill(args, 1);
+            return String.join("\n", jdbc.getJdbcOperations().queryForList("EXPLAIN " + statement, String.class, args));
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        Matcher matcher = PARAMETER.matcher(statement);
+        while (matcher.find()) {
+            params.addValue(matcher.group(1), 1);
+        }
+        return String.join("\n", jdbc.queryForList("EXPLAIN " + statement, params, String.class));
+    }
+
+    private Map<String, String> collectStatements() {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter((reader, factory) -> true);
+        List<Class<?>> classes = new ArrayList<>();
+        scanner.findCandidateComponents(STORAGE_PACKAGE).forEach(definition -> {
+            try {
+                classes.add(Class.forName(definition.getBeanClassName()));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        classes.sort(Comparator.comparing(Class::getName));
+
+        Map<String, String> statements = new LinkedHashMap<>();
+        for (Class<?> type : classes) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) || !Modifier.isFinal(field.getModifiers())
+                        || field.getType() != String.class) {
+                    continue;
+                }
+                field.setAccessible(true);
+                String sql;
+                try {
+                    sql = (String) field.get(null);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (!STATEMENT.matcher(sql).find()) {
+                    continue;
+                }
+                String key = type.getSimpleName() + "." + field.getName();
+                if (sql.contains("%1$s")) {
+                    // шаблон запроса по таблице сущности из EntityKind
+                    for (EntityKind kind : EntityKind.values()) {
+                        statements.put(key + "[" + kind + "]", sql.formatted(kind.getTable(), kind.getIdColumn()));
+                    }
+                } else {
+                    statements.put(key, sql);
+                }
+            }
+        }
+        return statements;
+    }
+
+    private Set<String> readAllowList() throws IOException {
+        Set<String> allowed = new TreeSet<>();
+        try (InputStream in = new ClassPathResource(ALLOW_LIST).getInputStream()) {
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                String entry = line.replaceFirst("#.*", "").strip();
+                if (!entry.isEmpty()) {
+                    allowed.add(entry);
+                }
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Заполняет базу поверх тестовых данных, чтобы оценки стоимости H2 были ближе к рабочим,
+     * и собирает статистику по столбцам.
+     */
+    private void seed() {
+        Map<String, Object> none = Map.of();
+        jdbc.update("""
+                INSERT INTO users (user_id, email, login, name)
+                SELECT x, 'seed' || x || '@example.com', 'seed' || x, 'Seed' FROM SYSTEM_RANGE(1000, 2999)
+                """, none);
+        jdbc.update("INSERT INTO directors (director_id, name) SELECT x, 'Seed' FROM SYSTEM_RANGE(1000, 1099)", none);
+        jdbc.update("""
+                INSERT INTO films (film_id, name, description, release_date, duration, mpa_id)
+                SELECT x, 'Seed', 'Seed', DATEADD(DAY, -x, DATE '2024-01-01'), 100, MOD(x, 5) + 1
+                FROM SYSTEM_RANGE(1000, 4999)
+                """, none);
+        jdbc.update("""
+                INSERT INTO film_genre (film_id, genre_id)
+                SELECT x, MOD(x, 6) + 1 FROM SYSTEM_RANGE(1000, 4999)
+                """, none);
+        jdbc.update("""
+                INSERT INTO film_directors (film_id, director_id)
+                SELECT x, MOD(x, 100) + 1000 FROM SYSTEM_RANGE(1000, 4999)
+                """, none);
+        jdbc.update("""
+                INSERT INTO likes (film_id, user_id)
+                SELECT x / 10 + 1000, MOD(x * 7, 2000) + 1000 FROM SYSTEM_RANGE(0, 39999)
+                """, none);
+        jdbc.update("""
+                INSERT INTO friends (user_id, friend_id, confirmed)
+                SELECT x / 5 + 1000, MOD(x * 13 + 1, 2000) + 1000, FALSE FROM SYSTEM_RANGE(0, 9999)
+                WHERE x / 5 <> MOD(x * 13 + 1, 2000)
+                """, none);
+        jdbc.update("""
+                INSERT INTO reviews (review_id, content, is_positive, user_id, film_id, useful)
+                SELECT x, 'Seed', TRUE, MOD(x, 2000) + 1000, MOD(x, 4000) + 1000, MOD(x, 21) - 10
+                FROM SYSTEM_RANGE(1000, 20999)
+                """, none);
+        jdbc.update("""
+                INSERT INTO review_likes (review_id, user_id, is_like)
+                SELECT MOD(x, 20000) + 1000, MOD(x * 3, 2000) + 1000, TRUE FROM SYSTEM_RANGE(1, 20000)
+                """, none);
+        jdbc.update("""
+                INSERT INTO event (event_timestamp, entity_id, user_id, event_type_id, operation_id)
+                SELECT x, x, MOD(x, 2000) + 1000, 1, 2 FROM SYSTEM_RANGE(1, 40000)
+                """, none);
+        jdbc.getJdbcOperations().execute("ANALYZE");
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class SchemaMigrationsIntegrationTest {
+
+    @Autowired
+    private Flyway flyway;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Test
+    public void testAllMigrationsAreRecorded() {
+        assertThat(jdbc.queryForList("SELECT \"version\" FROM \"flyway_schema_history\" "
+                + "WHERE \"success\" AND \"version\" IS NOT NULL ORDER BY \"installed_rank\"", Map.of(), String.class))
+                .containsExactly("1", "2", "3", "4", "5", "6");
+        assertThat(flyway.info().pending()).isEmpty();
+    }
+
+    @Test
+    public void testRepeatedMigrateAppliesNothing() {
+        assertThat(flyway.migrate().migrationsExecuted).isZero();
+    }
+
+    @Test
+    public void testIndexesAreCreated() {
+        assertThat(jdbc.queryForList("SELECT LOWER(index_name) FROM information_schema.indexes "
+                + "WHERE LOWER(index_name) LIKE 'idx_%'", Map.of(), String.class))
+                .contains("idx_likes_user_id", "idx_film_genre_genre_id", "idx_film_directors_director_id",
+                        "idx_reviews_film_id_useful", "idx_event_user_timeline", "idx_friends_friend_id",
+                        "idx_films_release_year");
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.storage.base;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CompiledStatementTest {
+
+    @Test
+    public void testNamedParametersBecomePositional() {
+        CompiledStatement statement = CompiledStatement.compile(
+                "SELECT * FROM event WHERE user_id = :userId AND (ts < :before OR (ts = :before AND id < :id))",
+                "userId", "before", "id");
+
+        assertThat(statement.sql())
+                .isEqualTo("SELECT * FROM event WHERE user_id = ? AND (ts < ? OR (ts = ? AND id < ?))");
+    }
+
+    @Test
+    public void testValuesAreBoundByDeclaredOrder() {
+        SingleConnectionDataSource dataSource =
+                new SingleConnectionDataSource("jdbc:h2:mem:compiled-statement", "sa", "", true);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        try {
+            CompiledStatement statement = CompiledStatement.compile(
+                    "SELECT :b * 10 + :a WHERE :a > 0", "a", "b");
+
+            assertThat(statement.query(jdbc, (rs, rowNum) -> rs.getLong(1), 2, 7)).containsExactly(72L);
+            assertThat(statement.queryForOptional(jdbc, (rs, rowNum) -> rs.getLong(1), -1, 7)).isEmpty();
+            assertThat(CompiledStatement.compile("SELECT :x = 5", "x").queryForBoolean(jdbc, 5)).isTrue();
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    @Test
+    public void testBatchColumnsAreBoundByDeclaredOrder() {
+        SingleConnectionDataSource dataSource =
+                new SingleConnectionDataSource("jdbc:h2:mem:compiled-batch", "sa", "", true);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        try {
+            jdbc.execute("CREATE TABLE pairs (a BIGINT, b BIGINT)");
+            CompiledStatement insert = CompiledStatement.compile("INSERT INTO pairs (b, a) VALUES (:b, :a)", "a", "b");
+
+            insert.batchUpdate(jdbc, new long[]{1, 2, 3}, new long[]{10, 20, 30});
+
+            assertThat(jdbc.queryForList("SELECT b - a * 10 FROM pairs", Long.class)).containsOnly(0L);
+            assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM pairs", Integer.class)).isEqualTo(3);
+            assertThatThrownBy(() -> insert.batchUpdate(jdbc, new long[]{1}, new long[]{1, 2}))
+                    .isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    @Test
+    public void testParametersMustMatchDeclaration() {
+        assertThatThrownBy(() -> CompiledStatement.compile("SELECT :a, :b", "a"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(":b");
+        assertThatThrownBy(() -> CompiledStatement.compile("SELECT :a", "a", "b"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(":b");
+        assertThatThrownBy(() -> CompiledStatement.compile("SELECT :a", "a").update(null, 1, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
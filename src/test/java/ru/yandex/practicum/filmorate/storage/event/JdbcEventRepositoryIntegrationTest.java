@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import java.lang.reflect.Field;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JdbcEventRepository.class, EventRowMapper.class, ReferenceDataRegistry.class})
+@DirtiesContext
+public class JdbcEventRepositoryIntegrationTest {
+
+    @Autowired
+    private JdbcEventRepository eventRepository;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Test
+    public void testFindEventSliceReturnsNewestEventsOfGivenUsers() {
+        for (long filmId = 1; filmId <= 3; filmId++) {
+            eventRepository.insertEvent(1L, filmId, "LIKE", "ADD");
+            eventRepository.insertEvent(2L, filmId, "LIKE", "ADD");
+            eventRepository.insertEvent(3L, filmId, "LIKE", "ADD");
+        }
+
+        List<Event> slice = eventRepository.findEventSlice(List.of(1L, 2L), Long.MIN_VALUE, Long.MAX_VALUE,
+                Long.MAX_VALUE, 4);
+
+        assertThat(slice).hasSize(4);
+        assertThat(slice).extracting(Event::getUserId).containsOnly(1L, 2L);
+        assertThat(slice).extracting(Event::getEventId).isSortedAccordingTo(Comparator.reverseOrder());
+        assertThat(slice.get(0).getEntityId()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testFindEventSliceStartsAfterCursorAndStopsAtSince() {
+        jdbc.update("""
+                INSERT INTO event (event_timestamp, entity_id, user_id, event_type_id, operation_id)
+                VALUES (100, 1, 1, 1, 2), (200, 2, 1, 1, 2), (200, 3, 2, 1, 2), (300, 4, 2, 1, 2)
+                """, Map.of());
+        Event newest = eventRepository.findEventSlice(List.of(1L, 2L), 200, 300, Long.MIN_VALUE, 10).get(0);
+
+        List<Event> older = eventRepository.findEventSlice(List.of(1L, 2L), 150, newest.getTimestamp(),
+                newest.getEventId(), 10);
+
+        assertThat(newest.getTimestamp()).isEqualTo(200);
+        assertThat(older).extracting(Event::getEntityId).containsExactly(2L);
+    }
+
+    @Test
+    public void testFindEventSliceReadsOnlyRowsInsideWindow() throws ReflectiveOperationException {
+        // отдельные пользователи с различными отметками времени: в выборке нет чужих событий и совпадений по времени
+        jdbc.update("""
+                MERGE INTO users (user_id, email, login, name)
+                VALUES (50, 'run50@example.com', 'run50', 'Run'), (51, 'run51@example.com', 'run51', 'Run')
+                """, Map.of());
+        jdbc.update("""
+                INSERT INTO event (event_timestamp, entity_id, user_id, event_type_id, operation_id)
+                SELECT x, x, 50 + MOD(x, 2), 1, 2 FROM SYSTEM_RANGE(1, 400)
+                """, Map.of());
+        Field query = JdbcEventRepository.class.getDeclaredField("FIND_EVENT_SLICE_QUERY");
+        query.setAccessible(true);
+
+        String plan = jdbc.queryForObject("EXPLAIN ANALYZE " + query.get(null), Map.of("userIds", new Long[]{50L, 51L},
+                "sinceTimestamp", 301, "beforeTimestamp", 321, "beforeEventId", Long.MAX_VALUE, "limit", 5),
+                String.class);
+
+        // история пользователей не читается: из индекса событий берутся только 20 строк окна
+        Matcher scanned = Pattern.compile("PUBLIC\\.IDX_EVENT_USER_TIMELINE.*?scanCount: (\\d+)", Pattern.DOTALL)
+                .matcher(plan);
+        assertThat(scanned.find()).as(plan).isTrue();
+        assertThat(Integer.parseInt(scanned.group(1))).as(plan).isLessThanOrEqualTo(24);
+    }
+
+    @Test
+    public void testDeleteEventsByIdsRemovesOnlyGivenEvents() {
+        eventRepository.insertEvent(3L, 1L, "LIKE", "ADD");
+        eventRepository.insertEvent(3L, 1L, "LIKE", "REMOVE");
+        eventRepository.insertEvent(3L, 2L, "REVIEW", "ADD");
+        List<Event> likes = eventRepository.findEventsByUserIdsBefore(List.of(3L), Long.MAX_VALUE, Set.of("LIKE"));
+
+        int deleted = eventRepository.deleteEventsByIds(likes.stream().map(Event::getEventId).toList());
+
+        assertThat(deleted).isEqualTo(2);
+        assertThat(eventRepository.findEventsByUserId(3L, 0))
+                .extracting(Event::getEventType)
+                .containsExactly("REVIEW");
+        assertThat(eventRepository.findUserIdsWithEventsBefore(0, Long.MAX_VALUE, 10)).containsExactly(3L);
+    }
+}
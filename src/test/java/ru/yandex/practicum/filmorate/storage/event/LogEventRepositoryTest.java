@@ -0,0 +1,173 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogEventRepositoryTest {
+    private static final DataSize SEGMENT_SIZE = DataSize.ofBytes(512);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testEventsSurviveReopenWithoutClose() {
+        LogEventRepository repository = open();
+        repository.insertEvent(1L, 10L, "LIKE", "ADD");
+        repository.insertEvent(1L, 11L, "FRIEND", "ADD");
+        repository.insertEvent(2L, 12L, "REVIEW", "UPDATE");
+
+        LogEventRepository recovered = open();
+
+        assertThat(recovered.findEventsByUserId(1L, 0))
+                .extracting(Event::getEntityId)
+                .containsExactly(10L, 11L);
+        assertThat(recovered.findEventsByUserId(2L, 0))
+                .singleElement()
+                .satisfies(event -> {
+                    assertThat(event.getEventType()).isEqualTo("REVIEW");
+                    assertThat(event.getOperation()).isEqualTo("UPDATE");
+                    assertThat(event.getEventId()).isEqualTo(3L);
+                });
+    }
+
+    @Test
+    public void testSegmentRolloverKeepsAllEvents() throws IOException {
+        LogEventRepository repository = open();
+        for (long entityId = 1; entityId <= 40; entityId++) {
+            repository.insertEvent(1L, entityId, "LIKE", "ADD");
+        }
+        repository.close();
+
+        assertThat(segmentFiles()).hasSizeGreaterThan(1);
+        assertThat(open().findEventsByUserId(1L, 100)).hasSize(40);
+    }
+
+    @Test
+    public void testTornTailIsDiscardedAndAppendsContinue() throws IOException {
+        LogEventRepository repository = open();
+        repository.insertEvent(1L, 10L, "LIKE", "ADD");
+        repository.insertEvent(1L, 11L, "LIKE", "ADD");
+        long tail = endOfLastRecord();
+        // имитация падения посреди записи: длина уже записана, payload и CRC — нет
+        try (RandomAccessFile file = new RandomAccessFile(lastSegment().toFile(), "rw")) {
+            file.seek(tail);
+            file.writeInt(40);
+            file.writeInt(0);
+            file.write(new byte[]{1, 2, 3});
+        }
+
+        LogEventRepository recovered = open();
+        assertThat(recovered.findEventsByUserId(1L, 0)).hasSize(2);
+        recovered.insertEvent(1L, 12L, "LIKE", "ADD");
+
+        assertThat(open().findEventsByUserId(1L, 0))
+                .extracting(Event::getEntityId)
+                .containsExactly(10L, 11L, 12L);
+    }
+
+    @Test
+    public void testCorruptedRecordFailsCrcCheck() throws IOException {
+        LogEventRepository repository = open();
+        repository.insertEvent(1L, 10L, "LIKE", "ADD");
+        repository.insertEvent(1L, 11L, "LIKE", "ADD");
+        repository.close();
+        long secondRecordPayload = endOfFirstRecord() + Integer.BYTES * 2 + 1;
+        try (RandomAccessFile file = new RandomAccessFile(lastSegment().toFile(), "rw")) {
+            file.seek(secondRecordPayload);
+            file.write(0x7F);
+        }
+
+        assertThat(open().findEventsByUserId(1L, 0))
+                .extracting(Event::getEntityId)
+                .containsExactly(10L);
+    }
+
+    @Test
+    public void testDeletedEventsStayDeletedAfterRecovery() {
+        LogEventRepository repository = open();
+        repository.insertEvent(1L, 10L, "LIKE", "ADD");
+        repository.insertEvent(1L, 10L, "LIKE", "REMOVE");
+        repository.insertEvent(1L, 11L, "LIKE", "ADD");
+
+        assertThat(repository.deleteEventsByIds(List.of(1L, 2L, 99L))).isEqualTo(2);
+
+        LogEventRepository recovered = open();
+        assertThat(recovered.findEventsByUserId(1L, 0))
+                .extracting(Event::getEventId)
+                .containsExactly(3L);
+        recovered.insertEvent(1L, 12L, "LIKE", "ADD");
+        assertThat(recovered.findEventsByUserId(1L, 0))
+                .extracting(Event::getEventId)
+                .containsExactly(3L, 4L);
+    }
+
+    @Test
+    public void testEventSlicesAreNewestFirstAcrossUsers() {
+        LogEventRepository repository = open();
+        for (long entityId = 1; entityId <= 3; entityId++) {
+            repository.insertEvent(2L, entityId, "LIKE", "ADD");
+            repository.insertEvent(1L, entityId, "LIKE", "ADD");
+            repository.insertEvent(3L, entityId, "LIKE", "ADD");
+        }
+
+        List<Event> slice = repository.findEventSlice(List.of(1L, 2L), Long.MIN_VALUE, Long.MAX_VALUE,
+                Long.MAX_VALUE, 3);
+        Event cursor = slice.get(2);
+        List<Event> older = repository.findEventSlice(List.of(1L, 2L), Long.MIN_VALUE, cursor.getTimestamp(),
+                cursor.getEventId(), 10);
+        List<Event> window = repository.findEventSlice(List.of(1L, 2L), cursor.getTimestamp(), Long.MAX_VALUE,
+                Long.MAX_VALUE, 10);
+
+        assertThat(slice).extracting(Event::getEventId).containsExactly(8L, 7L, 5L);
+        assertThat(older).extracting(Event::getEventId).containsExactly(4L, 2L, 1L);
+        assertThat(window).extracting(Event::getEventId).startsWith(8L, 7L, 5L);
+        assertThat(window).allSatisfy(event -> assertThat(event.getTimestamp()).isGreaterThanOrEqualTo(
+                cursor.getTimestamp()));
+    }
+
+    private LogEventRepository open() {
+        return new LogEventRepository(directory, SEGMENT_SIZE, false);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> files = segmentFiles();
+        return files.get(files.size() - 1);
+    }
+
+    private long endOfFirstRecord() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(lastSegment().toFile(), "r")) {
+            return Integer.BYTES * 2 + file.readInt();
+        }
+    }
+
+    private long endOfLastRecord() throws IOException {
+        long position = 0;
+        try (RandomAccessFile file = new RandomAccessFile(lastSegment().toFile(), "r")) {
+            while (true) {
+                file.seek(position);
+                int length = file.readInt();
+                if (length == 0) {
+                    return position;
+                }
+                position += Integer.BYTES * 2 + length;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.storage.existence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Общая testdb может содержать строки, зафиксированные другими тестами, поэтому новые ID
+ * отсчитываются от текущего максимума, а вставки откатываются вместе с транзакцией теста.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ExistenceIndex.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD) // индекс живёт дольше транзакции теста
+public class ExistenceIndexIntegrationTest {
+
+    @Autowired
+    private ExistenceIndex existenceIndex;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+    private long base;
+
+    @BeforeEach
+    public void setUp() {
+        base = jdbc.queryForObject("SELECT COALESCE(MAX(user_id), 0) FROM users", Map.of(), Long.class);
+    }
+
+    @Test
+    public void testLoadedIdsAnswerWithoutQueries() {
+        assertThat(existenceIndex.exists(EntityKind.USER, 1L)).isTrue();
+        assertThat(existenceIndex.findMissing(EntityKind.USER, List.of(3L, 2L, 0L, -5L)))
+                .containsExactly(0L, -5L);
+        assertThat(existenceIndex.exists(EntityKind.FILM, 2L)).isTrue();
+    }
+
+    @Test
+    public void testCreatedAndDeletedIdsAreTracked() {
+        existenceIndex.exists(EntityKind.USER, 1L);
+        insertUser(base + 10);
+        existenceIndex.created(EntityKind.USER, base + 10);
+
+        assertThat(existenceIndex.exists(EntityKind.USER, base + 10)).isTrue();
+
+        existenceIndex.deleted(EntityKind.USER, base + 10);
+        // удалённый через сервис ID кэшируется как промах и не проверяется в базе
+        assertThat(existenceIndex.exists(EntityKind.USER, base + 10)).isFalse();
+    }
+
+    @Test
+    public void testIdBelowNewestCreatedIsCheckedInDatabase() {
+        existenceIndex.exists(EntityKind.USER, 1L);
+        insertUser(base + 10);
+        existenceIndex.created(EntityKind.USER, base + 10);
+        // параллельное создание с меньшим ID ещё не сообщило индексу о себе: это не повод для 404
+        insertUser(base + 7);
+
+        assertThat(existenceIndex.exists(EntityKind.USER, base + 7)).isTrue();
+        assertThat(existenceIndex.findMissing(EntityKind.USER, List.of(base + 7, base + 8)))
+                .containsExactly(base + 8);
+    }
+
+    @Test
+    public void testUnknownIdsAreResolvedAndMissesCached() {
+        existenceIndex.exists(EntityKind.USER, 1L);
+        insertUser(base + 20);
+
+        assertThat(existenceIndex.findMissing(EntityKind.USER, List.of(base + 20, base + 21)))
+                .containsExactly(base + 21);
+
+        // промах закэширован: строка, вставленная в обход индекса, не видна до истечения срока
+        insertUser(base + 21);
+        assertThat(existenceIndex.exists(EntityKind.USER, base + 21)).isFalse();
+        existenceIndex.created(EntityKind.USER, base + 21);
+        assertThat(existenceIndex.exists(EntityKind.USER, base + 21)).isTrue();
+    }
+
+    @Test
+    public void testInvalidateReloadsFromDatabase() {
+        assertThat(existenceIndex.exists(EntityKind.USER, 3L)).isTrue();
+        jdbc.update("DELETE FROM users WHERE user_id = 3", Map.of());
+
+        existenceIndex.invalidate(EntityKind.USER);
+
+        assertThat(existenceIndex.exists(EntityKind.USER, 3L)).isFalse();
+    }
+
+    private void insertUser(long id) {
+        jdbc.update("INSERT INTO users (user_id, email, login, name) VALUES (:id, :email, :login, :login)",
+                Map.of("id", id, "email", "user" + id + "@example.com", "login", "user" + id));
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.exception.VersionConflictException;
 import ru.yandex.practicum.filmorate.mappers.FilmRowMapper;
 import ru.yandex.practicum.filmorate.mappers.GenreRowMapper;
 import ru.yandex.practicum.filmorate.mappers.MpaRatingRowMapper;
@@ -15,6 +16,7 @@ import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.storage.genre.JdbcGenreRepository;
 import ru.yandex.practicum.filmorate.storage.mpa.JdbcMpaRepository;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
 
 import java.time.LocalDate;
 import java.util.HashSet;
@@ -22,6 +24,7 @@ import java.util.Optional;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -31,7 +34,8 @@ import static org.assertj.core.api.Assertions.assertThat;
         JdbcGenreRepository.class,
         GenreRowMapper.class,
         JdbcMpaRepository.class,
-        MpaRatingRowMapper.class
+        MpaRatingRowMapper.class,
+        ReferenceDataRegistry.class
 })
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class JdbcFilmRepositoryIntegrationTest {
@@ -93,6 +97,19 @@ public class JdbcFilmRepositoryIntegrationTest {
         Film result = filmRepository.updateFilm(updated);
         assertThat(result.getName()).isEqualTo("Updated Name");
         assertThat(result.getDescription()).isEqualTo("Updated Description");
+        assertThat(result.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testUpdateFilmWithStaleVersionIsRejected() {
+        Film created = filmRepository.createFilm(createUniqueFilm("Versioned"));
+        filmRepository.updateFilm(created.toBuilder().name("First").version(0L).build());
+
+        assertThatThrownBy(() -> filmRepository.updateFilm(created.toBuilder().name("Second").version(0L).build()))
+                .isInstanceOf(VersionConflictException.class);
+        assertThat(filmRepository.getFilmById(created.getId())).get()
+                .extracting(Film::getName, Film::getVersion)
+                .containsExactly("First", 1L);
     }
 
     @Test
@@ -117,6 +134,25 @@ public class JdbcFilmRepositoryIntegrationTest {
         assertThat(filmRepository.getPopularFilms(2)).hasSize(2);
     }
 
+    @Test
+    public void testGetPopularFilmsByYears() {
+        Film nineties = createUniqueFilm("Nineties");
+        nineties.setReleaseDate(LocalDate.of(1994, 5, 1));
+        Long ninetiesId = filmRepository.createFilm(nineties).getId();
+        Film later = createUniqueFilm("Later");
+        later.setReleaseDate(LocalDate.of(2001, 1, 1));
+        Long laterId = filmRepository.createFilm(later).getId();
+
+        assertThat(filmRepository.getPopularFilmsByYears(1000, 1990, 1999))
+                .extracting(Film::getId)
+                .contains(ninetiesId)
+                .doesNotContain(laterId);
+        assertThat(filmRepository.getPopularFilmsByGenreAndYears(1000, 1L, 2001, 2001))
+                .extracting(Film::getId)
+                .contains(laterId)
+                .doesNotContain(ninetiesId);
+    }
+
 
     private Film createUniqueFilm(String name) {
         return Film.builder()
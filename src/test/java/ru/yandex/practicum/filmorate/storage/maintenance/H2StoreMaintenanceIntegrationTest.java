@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.storage.maintenance;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(H2StoreMaintenance.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class H2StoreMaintenanceIntegrationTest {
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    private H2StoreMaintenance maintenance;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:h2:file:" + directory.resolve("filmorate").toAbsolutePath());
+        registry.add("filmorate.h2.maintenance.enabled", () -> "true");
+        registry.add("filmorate.h2.maintenance.backup.directory", () -> directory.resolve("backup").toString());
+        registry.add("filmorate.h2.maintenance.backup.retain", () -> "2");
+        registry.add("filmorate.h2.maintenance.backup.cron", () -> "-");
+        registry.add("filmorate.h2.maintenance.compaction.check-interval", () -> "3600000");
+        registry.add("filmorate.reviews.hot.fold-interval", () -> "3600000");
+    }
+
+    @Test
+    public void testStatsDescribeFileStore() {
+        H2StoreMaintenance.StoreStats stats = maintenance.stats();
+
+        assertThat(stats.path()).endsWith("filmorate");
+        assertThat(stats.fileSize()).isPositive();
+        assertThat(stats.chunksFillRate()).isBetween(0L, 100L);
+        assertThat(stats.cacheMaxSize()).isPositive();
+    }
+
+    @Test
+    public void testCompactionDoesNotGrowFile() {
+        jdbc.update("CREATE TABLE IF NOT EXISTS filler (id INT PRIMARY KEY, payload VARCHAR)", Map.of());
+        jdbc.update("INSERT INTO filler SELECT X, REPEAT('x', 1000) FROM SYSTEM_RANGE(1, 5000)", Map.of());
+        jdbc.update("DROP TABLE filler", Map.of());
+
+        H2StoreMaintenance.CompactionResult result = maintenance.compact();
+
+        assertThat(result.fileSizeAfter()).isLessThanOrEqualTo(result.fileSizeBefore());
+        assertThat(maintenance.stats().compactions()).isEqualTo(1);
+        // база закрывалась командой SHUTDOWN COMPACT, пул выдаёт уже новые соединения
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM users", Map.of(), Integer.class)).isNotNull();
+    }
+
+    @Test
+    public void testBackupsAreRotated() {
+        maintenance.backup();
+        maintenance.backup();
+        H2StoreMaintenance.BackupFile newest = maintenance.backup();
+
+        assertThat(maintenance.listBackups()).hasSize(2).first().isEqualTo(newest);
+        assertThat(Files.exists(directory.resolve("backup").resolve(newest.name()))).isTrue();
+        assertThat(newest.size()).isPositive();
+        assertThat(maintenance.stats().backups()).isEqualTo(3);
+    }
+}
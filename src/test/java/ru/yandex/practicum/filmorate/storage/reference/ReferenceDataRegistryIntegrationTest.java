@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.storage.reference;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ReferenceDataRegistry.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ReferenceDataRegistryIntegrationTest {
+
+    @Autowired
+    private ReferenceDataRegistry referenceData;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Test
+    public void testDictionariesAreLoaded() throws IOException {
+        assertThat(referenceData.genres()).extracting(Genre::getId).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+        assertThat(referenceData.findGenre(1L)).map(Genre::getName).contains("Комедия");
+        assertThat(referenceData.findMpa(3L)).hasValueSatisfying(mpa -> assertThat(mpa.getName()).isEqualTo("PG-13"));
+        assertThat(referenceData.findMpa(42L)).isEmpty();
+        assertThat(referenceData.eventTypeId("REVIEW")).isEqualTo(2L);
+        assertThat(referenceData.operationId("UPDATE")).isEqualTo(3L);
+        assertThat(referenceData.operationId("UNKNOWN")).isNull();
+
+        JsonNode mpa = new ObjectMapper().readTree(referenceData.mpaRatingsJson());
+        assertThat(mpa).hasSize(5);
+        assertThat(mpa.get(0).get("name").asText()).isEqualTo("G");
+    }
+
+    @Test
+    public void testReturnedModelsDoNotLeakIntoSnapshot() {
+        referenceData.findGenre(1L).orElseThrow().setName("Изменено");
+
+        assertThat(referenceData.findGenre(1L)).map(Genre::getName).contains("Комедия");
+    }
+
+    @Test
+    public void testRefreshPicksUpChanges() throws IOException {
+        long version = referenceData.version();
+        jdbc.update("INSERT INTO genres (genre_id, name) VALUES (7, 'Фантастика')", Map.of());
+        assertThat(referenceData.findGenre(7L)).isEmpty();
+
+        referenceData.refresh();
+
+        assertThat(referenceData.version()).isGreaterThan(version);
+        assertThat(referenceData.findGenre(7L)).map(Genre::getName).contains("Фантастика");
+        assertThat(new ObjectMapper().readTree(referenceData.genresJson())).hasSize(7);
+    }
+}
@@ -0,0 +1,218 @@
+package ru.yandex.practicum.filmorate.storage.review;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.mappers.ReviewLikesRowMapper;
+import ru.yandex.practicum.filmorate.mappers.ReviewRowMapper;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.base.RequestIdentityMap;
+import ru.yandex.practicum.filmorate.storage.reviewLikes.JdbcReviewLikesRepository;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JdbcReviewRepository.class, ReviewRowMapper.class, ReviewUsefulCounters.class, ReviewRankingIndex.class,
+        ReviewSearchIndex.class, JdbcReviewLikesRepository.class, ReviewLikesRowMapper.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // индекс обновляется после коммита
+@DirtiesContext
+public class JdbcReviewRepositoryIntegrationTest {
+
+    @Autowired
+    private JdbcReviewRepository reviewRepository;
+    @Autowired
+    private JdbcReviewLikesRepository reviewLikesRepository;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    private long filmId;
+    private long otherFilmId;
+
+    @BeforeEach
+    public void setUp() {
+        filmId = createFilm();
+        otherFilmId = createFilm();
+    }
+
+    @Test
+    public void testPagesFollowUsefulThenId() {
+        Review first = create(filmId);
+        Review second = create(filmId);
+        Review third = create(filmId);
+        Review other = create(otherFilmId);
+        reviewLikesRepository.setVote(second.getReviewId(), 1L, true);
+        reviewLikesRepository.setVote(third.getReviewId(), 1L, false);
+        reviewLikesRepository.setVote(other.getReviewId(), 2L, true);
+
+        List<Review> firstPage = reviewRepository.getReviewsPage(filmId, null, null, 2);
+        assertThat(firstPage).extracting(Review::getReviewId)
+                .containsExactly(second.getReviewId(), first.getReviewId());
+        assertThat(firstPage).extracting(Review::getUseful).containsExactly(1, 0);
+
+        Review last = firstPage.get(1);
+        assertThat(reviewRepository.getReviewsPage(filmId, last.getUseful(), last.getReviewId(), 2))
+                .extracting(Review::getReviewId)
+                .containsExactly(third.getReviewId());
+        assertThat(reviewRepository.getAllReviews(Integer.MAX_VALUE))
+                .extracting(Review::getReviewId)
+                .containsSubsequence(second.getReviewId(), first.getReviewId(), third.getReviewId())
+                .containsSubsequence(other.getReviewId(), first.getReviewId());
+    }
+
+    @Test
+    public void testCursorFromLastReviewFollowsIndexWhenDatabaseDisagrees() {
+        Review first = create(filmId);
+        Review second = create(filmId);
+        Review third = create(filmId);
+        // рейтинг изменён в обход индекса: индекс узнает об этом, только прочитав отзыв
+        jdbc.update("UPDATE reviews SET useful = -10 WHERE review_id = :reviewId",
+                Map.of("reviewId", second.getReviewId()));
+
+        List<Review> firstPage = reviewRepository.getReviewsPage(filmId, null, null, 2);
+        Review last = firstPage.get(1);
+        // страница продолжается с записи индекса после последнего отзыва, третий отзыв не пропущен;
+        // исправленный рейтинг второго отзыва действует уже для следующих запросов
+        List<Review> secondPage = reviewRepository.getReviewsPage(filmId, last.getUseful(), last.getReviewId(), 1);
+
+        assertThat(firstPage).extracting(Review::getReviewId)
+                .containsExactly(first.getReviewId(), second.getReviewId());
+        assertThat(firstPage).extracting(Review::getUseful).containsExactly(0, 0);
+        assertThat(secondPage).extracting(Review::getReviewId).containsExactly(third.getReviewId());
+        assertThat(reviewRepository.getReviewsPage(filmId, null, null, 3)).extracting(Review::getReviewId)
+                .containsExactly(first.getReviewId(), third.getReviewId(), second.getReviewId());
+    }
+
+    @Test
+    public void testVotesMoveReviewInRanking() {
+        Review first = create(filmId);
+        Review second = create(filmId);
+
+        reviewLikesRepository.setVote(second.getReviewId(), 1L, true);
+        assertThat(reviewRepository.getReviewsByFilmId(filmId, 1)).extracting(Review::getReviewId)
+                .containsExactly(second.getReviewId());
+
+        reviewLikesRepository.setVote(second.getReviewId(), 1L, false);
+        assertThat(reviewRepository.getReviewsByFilmId(filmId, 2)).extracting(Review::getReviewId)
+                .containsExactly(first.getReviewId(), second.getReviewId());
+    }
+
+    @Test
+    public void testReviewsRemovedOutsideRepositoryArePurgedFromIndex() {
+        Review first = create(filmId);
+        Review second = create(filmId);
+        Review third = create(filmId);
+        reviewRepository.deleteReview(first.getReviewId());
+        // каскадное удаление мимо репозитория: индекс узнаёт о нём только при чтении
+        jdbc.update("DELETE FROM reviews WHERE review_id = :reviewId", Map.of("reviewId", second.getReviewId()));
+
+        assertThat(reviewRepository.getReviewsPage(filmId, null, null, 10))
+                .extracting(Review::getReviewId)
+                .containsExactly(third.getReviewId());
+    }
+
+    @Test
+    public void testSearchMatchesAllTermsAndPhrasesRankedByUseful() {
+        Review calm = create(filmId, "Спокойный фильм, тёплый финал");
+        Review abusive = create(filmId, "Ужасный фильм и ужасный финал");
+        Review reordered = create(filmId, "Финал ужасный, фильм тоже");
+        Review otherFilm = create(otherFilmId, "Ужасный финал");
+        reviewLikesRepository.setVote(reordered.getReviewId(), 1L, true);
+
+        assertThat(reviewRepository.searchReviews("ужасный ФИНАЛ", filmId, null, 10))
+                .extracting(Review::getReviewId)
+                .containsExactly(reordered.getReviewId(), abusive.getReviewId());
+        assertThat(reviewRepository.searchReviews("\"ужасный финал\"", null, null, 10))
+                .extracting(Review::getReviewId)
+                .containsExactly(abusive.getReviewId(), otherFilm.getReviewId());
+        assertThat(reviewRepository.searchReviews("теплый", filmId, 1L, 10))
+                .extracting(Review::getReviewId)
+                .containsExactly(calm.getReviewId());
+        assertThat(reviewRepository.searchReviews("теплый", filmId, 2L, 10)).isEmpty();
+    }
+
+    @Test
+    public void testSearchFollowsUpdatesAndDeletes() {
+        Review review = create(filmId, "Ужасный фильм");
+        review.setContent("Отличный фильм");
+        reviewRepository.updateReview(review);
+
+        assertThat(reviewRepository.searchReviews("ужасный", filmId, null, 10)).isEmpty();
+        assertThat(reviewRepository.searchReviews("отличный", filmId, null, 10)).hasSize(1);
+
+        reviewRepository.deleteReview(review.getReviewId());
+        assertThat(reviewRepository.searchReviews("отличный", filmId, null, 10)).isEmpty();
+    }
+
+    @Test
+    public void testUpdateTakesAuthorFilmAndUsefulFromStoredRow() {
+        Review review = create(filmId);
+        reviewLikesRepository.setVote(review.getReviewId(), 2L, true);
+
+        Review update = Review.builder()
+                .reviewId(review.getReviewId())
+                .content("Изменённый текст")
+                .isPositive(false)
+                .userId(3L)
+                .filmId(otherFilmId)
+                .build();
+        Review updated = reviewRepository.updateReview(update);
+
+        assertThat(updated.getUserId()).isEqualTo(review.getUserId());
+        assertThat(updated.getFilmId()).isEqualTo(filmId);
+        assertThat(updated.getUseful()).isEqualTo(1);
+        assertThat(updated.getVersion()).isEqualTo(1L);
+        assertThat(updated.getContent()).isEqualTo("Изменённый текст");
+    }
+
+    @Test
+    public void testIdentityMapDeduplicatesReadsWithinScope() {
+        Review review = create(filmId);
+
+        try (RequestIdentityMap.Scope scope = RequestIdentityMap.open()) {
+            Review loaded = reviewRepository.getReviewById(review.getReviewId()).orElseThrow();
+            assertThat(reviewRepository.getReviewById(review.getReviewId())).containsSame(loaded);
+
+            review.setContent("Изменённый отзыв");
+            reviewRepository.updateReview(review);
+            assertThat(reviewRepository.getReviewById(review.getReviewId()).orElseThrow().getContent())
+                    .isEqualTo("Изменённый отзыв");
+
+            reviewLikesRepository.setVote(review.getReviewId(), 2L, true);
+            assertThat(reviewRepository.getReviewById(review.getReviewId()).orElseThrow().getUseful()).isEqualTo(1);
+            // обновление не читает отзыв заранее, из карты обслужено только повторное чтение
+            assertThat(scope.savedQueries()).isEqualTo(1);
+        }
+        assertThat(reviewRepository.getReviewById(review.getReviewId())).isPresent();
+    }
+
+    private long createFilm() {
+        long id = jdbc.queryForObject("SELECT MAX(film_id) + 1 FROM films", Map.of(), Long.class);
+        jdbc.update("INSERT INTO films (film_id, name, description, release_date, duration, mpa_id) "
+                + "VALUES (:id, 'Фильм', 'Описание', '2020-01-01', 100, 1)", Map.of("id", id));
+        return id;
+    }
+
+    private Review create(Long filmId) {
+        return create(filmId, "Отзыв");
+    }
+
+    private Review create(Long filmId, String content) {
+        return reviewRepository.createReview(Review.builder()
+                .content(content)
+                .isPositive(true)
+                .userId(1L)
+                .filmId(filmId)
+                .build());
+    }
+}
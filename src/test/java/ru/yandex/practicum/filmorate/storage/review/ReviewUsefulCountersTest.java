@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate.storage.review;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Разница горячего отзыва видна чтениям, пока UPDATE не зафиксирован, и снимается ровно
+ * на перенесённую величину: голоса, пришедшие во время переноса, остаются в памяти.
+ * Чтение, пересёкшееся с переносом, не видит перенесённую разницу ни дважды, ни ни разу.
+ */
+public class ReviewUsefulCountersTest {
+    private final NamedParameterJdbcOperations jdbc = mock(NamedParameterJdbcOperations.class);
+    private final ReviewUsefulCounters counters = new ReviewUsefulCounters(jdbc, 8, 10);
+    private final AtomicInteger stored = new AtomicInteger();
+
+    @Test
+    public void testPendingDeltaStaysVisibleUntilBatchCommits() {
+        counters.addAfterCommit(1L, 3);
+        when(jdbc.batchUpdate(anyString(), any(Map[].class))).thenAnswer(invocation -> {
+            assertThat(counters.pending(1L)).isEqualTo(3);
+            counters.addAfterCommit(1L, 2);
+            return new int[]{1};
+        });
+
+        counters.fold();
+
+        assertThat(counters.pending(1L)).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedBatchKeepsDeltaForNextFold() {
+        counters.addAfterCommit(1L, 3);
+        when(jdbc.batchUpdate(anyString(), any(Map[].class)))
+                .thenThrow(new DataAccessResourceFailureException("недоступна"))
+                .thenReturn(new int[]{1});
+
+        counters.fold();
+        assertThat(counters.pending(1L)).isEqualTo(3);
+
+        counters.fold();
+        assertThat(counters.pending(1L)).isZero();
+    }
+
+    @Test
+    public void testReadWaitsForSubtractionAfterBatchCommits() throws Exception {
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        counters.addAfterCommit(1L, 3);
+        when(jdbc.batchUpdate(anyString(), any(Map[].class))).thenAnswer(invocation -> {
+            stored.addAndGet(3);
+            committed.countDown();
+            release.await();
+            return new int[]{1};
+        });
+
+        CompletableFuture<Void> fold = CompletableFuture.runAsync(counters::fold);
+        assertThat(committed.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Integer> read = CompletableFuture.supplyAsync(() -> counters.readConsistent(this::useful));
+        Thread.sleep(100);
+        assertThat(read).isNotDone();
+
+        release.countDown();
+        fold.get(5, TimeUnit.SECONDS);
+        assertThat(read.get(5, TimeUnit.SECONDS)).isEqualTo(3);
+    }
+
+    @Test
+    public void testReadOverlappingFoldIsRepeated() {
+        counters.addAfterCommit(1L, 3);
+        when(jdbc.batchUpdate(anyString(), any(Map[].class))).thenAnswer(invocation -> {
+            stored.addAndGet(3);
+            return new int[]{1};
+        });
+        AtomicBoolean foldDuringRead = new AtomicBoolean(true);
+
+        int useful = counters.readConsistent(() -> {
+            int fromDatabase = stored.get();
+            if (foldDuringRead.getAndSet(false)) {
+                counters.fold();
+            }
+            return fromDatabase + counters.pending(1L);
+        });
+
+        assertThat(useful).isEqualTo(3);
+    }
+
+    @Test
+    public void testFoldedColdCellIsRemovedAndHotCellIsKept() {
+        counters.addAfterCommit(1L, 3);
+        // восемь пересечений делают отзыв горячим, следующие голоса держат его горячим после переноса
+        for (int i = 0; i < 20; i++) {
+            counters.enter(2L);
+        }
+        when(jdbc.batchUpdate(anyString(), any(Map[].class))).thenReturn(new int[]{1});
+
+        counters.fold();
+
+        assertThat(counters.isHot(2L)).isTrue();
+        Map<?, ?> cells = (Map<?, ?>) ReflectionTestUtils.getField(counters, "cells");
+        assertThat(cells).hasSize(1);
+        assertThat(cells.containsKey(2L)).isTrue();
+
+        counters.addAfterCommit(1L, 1);
+        assertThat(counters.pending(1L)).isEqualTo(1);
+    }
+
+    private int useful() {
+        return stored.get() + counters.pending(1L);
+    }
+}
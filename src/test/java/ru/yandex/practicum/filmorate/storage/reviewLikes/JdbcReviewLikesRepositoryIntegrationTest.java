@@ -0,0 +1,214 @@
+package ru.yandex.practicum.filmorate.storage.reviewLikes;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.mappers.ReviewLikesRowMapper;
+import ru.yandex.practicum.filmorate.model.ReviewVote;
+import ru.yandex.practicum.filmorate.storage.review.ReviewRankingIndex;
+import ru.yandex.practicum.filmorate.storage.review.ReviewUsefulCounters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JdbcReviewLikesRepository.class, ReviewLikesRowMapper.class, ReviewUsefulCounters.class,
+        ReviewRankingIndex.class})
+@TestPropertySource(properties = {
+        "filmorate.reviews.hot.promote-after=2",
+        "filmorate.reviews.hot.fold-interval=3600000" // перенос счётчиков вызывается из тестов явно
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // голоса из разных потоков должны видеть закоммиченные данные
+@DirtiesContext
+public class JdbcReviewLikesRepositoryIntegrationTest {
+    private static final int VOTERS = 20;
+
+    @Autowired
+    private ReviewLikesRepository reviewLikesRepository;
+    @Autowired
+    private ReviewUsefulCounters usefulCounters;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    private long reviewId;
+
+    @BeforeEach
+    public void setUp() {
+        for (long userId = 100; userId < 100 + VOTERS; userId++) {
+            jdbc.update("MERGE INTO users (user_id, email, login, name) VALUES (:id, :email, :login, :login)",
+                    Map.of("id", userId, "email", "voter" + userId + "@example.com", "login", "voter" + userId));
+        }
+        reviewId = createReview();
+    }
+
+    @Test
+    public void testVoteTransitionsApplyDeltas() {
+        assertThat(reviewLikesRepository.setVote(reviewId, 100L, true)).isEqualTo(1);
+        assertThat(reviewLikesRepository.setVote(reviewId, 100L, true)).isZero();
+        assertThat(reviewLikesRepository.setVote(reviewId, 100L, false)).isEqualTo(-2);
+        assertThat(reviewLikesRepository.removeVote(reviewId, 100L, true)).isZero();
+        assertThat(reviewLikesRepository.setVote(reviewId, 101L, false)).isEqualTo(-1);
+        assertThat(useful()).isEqualTo(-2);
+
+        assertThat(reviewLikesRepository.removeVote(reviewId, 100L, false)).isEqualTo(1);
+        assertThat(useful()).isEqualTo(-1);
+    }
+
+    @Test
+    public void testVoteForUnknownReviewOrUser() {
+        assertThatThrownBy(() -> reviewLikesRepository.setVote(-1L, 100L, true))
+                .isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> reviewLikesRepository.setVote(reviewId, -1L, true))
+                .isInstanceOf(NotFoundException.class);
+        assertThat(useful()).isZero();
+    }
+
+    @Test
+    public void testBatchAppliesLastVotePerPairAndOneDeltaPerReview() {
+        long otherReviewId = createReview();
+        reviewLikesRepository.setVote(reviewId, 100L, false);
+        reviewLikesRepository.setVote(otherReviewId, 101L, true);
+
+        Map<Long, Integer> deltas = reviewLikesRepository.applyVotes(List.of(
+                vote(reviewId, 100L, ReviewVote.Type.LIKE),
+                vote(reviewId, 101L, ReviewVote.Type.LIKE),
+                vote(reviewId, 102L, ReviewVote.Type.DISLIKE),
+                vote(reviewId, 102L, ReviewVote.Type.LIKE),
+                vote(otherReviewId, 101L, ReviewVote.Type.CLEAR),
+                vote(otherReviewId, 103L, ReviewVote.Type.CLEAR)));
+
+        assertThat(deltas).containsExactlyInAnyOrderEntriesOf(Map.of(reviewId, 4, otherReviewId, -1));
+        assertThat(useful()).isEqualTo(3);
+        assertThat(useful(otherReviewId)).isZero();
+    }
+
+    @Test
+    public void testBatchWithUnknownUserIsRolledBack() {
+        assertThatThrownBy(() -> reviewLikesRepository.applyVotes(List.of(
+                vote(reviewId, 100L, ReviewVote.Type.LIKE),
+                vote(reviewId, -1L, ReviewVote.Type.LIKE))))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("-1");
+        assertThat(useful()).isZero();
+        assertThat(reviewLikesRepository.removeVote(reviewId, 100L, true)).isZero();
+    }
+
+    @Test
+    public void testFindVotesByUserReturnsOnlyVotedReviews() {
+        long dislikedReviewId = createReview();
+        long unvotedReviewId = createReview();
+        reviewLikesRepository.setVote(reviewId, 100L, true);
+        reviewLikesRepository.setVote(dislikedReviewId, 100L, false);
+        reviewLikesRepository.setVote(unvotedReviewId, 101L, true);
+
+        assertThat(reviewLikesRepository.findVotesByUser(100L, List.of(reviewId, dislikedReviewId, unvotedReviewId)))
+                .containsExactlyInAnyOrderEntriesOf(Map.of(reviewId, true, dislikedReviewId, false));
+        assertThat(reviewLikesRepository.findVotesByUser(100L, List.of())).isEmpty();
+    }
+
+    @Test
+    public void testConcurrentVotesKeepUsefulConsistent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (long userId = 100; userId < 100 + VOTERS; userId++) {
+            long voter = userId;
+            for (int i = 0; i < 3; i++) {
+                tasks.add(() -> {
+                    start.await();
+                    for (int j = 0; j < 25; j++) {
+                        boolean isLike = ThreadLocalRandom.current().nextBoolean();
+                        if (ThreadLocalRandom.current().nextInt(4) == 0) {
+                            reviewLikesRepository.removeVote(reviewId, voter, isLike);
+                        } else {
+                            reviewLikesRepository.setVote(reviewId, voter, isLike);
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertThat(usefulCounters.isHot(reviewId)).isTrue();
+        usefulCounters.fold();
+
+        Integer expected = jdbc.queryForObject("""
+                SELECT COALESCE(SUM(CASE WHEN is_like THEN 1 ELSE -1 END), 0)
+                FROM review_likes
+                WHERE review_id = :reviewId
+                """, Map.of("reviewId", reviewId), Integer.class);
+        assertThat(useful()).isEqualTo(expected);
+        assertThat(usefulCounters.pending(reviewId)).isZero();
+    }
+
+    @Test
+    public void testHotReviewVotesAreDeferredUntilFold() {
+        usefulCounters.enter(reviewId);
+        usefulCounters.enter(reviewId);
+        usefulCounters.enter(reviewId);
+        usefulCounters.exit(reviewId);
+        usefulCounters.exit(reviewId);
+        usefulCounters.exit(reviewId);
+        assertThat(usefulCounters.isHot(reviewId)).isTrue();
+
+        reviewLikesRepository.setVote(reviewId, 100L, true);
+        reviewLikesRepository.setVote(reviewId, 101L, true);
+        reviewLikesRepository.setVote(reviewId, 102L, false);
+
+        assertThat(useful()).isZero();
+        assertThat(usefulCounters.pending(reviewId)).isEqualTo(1);
+
+        usefulCounters.fold();
+
+        assertThat(useful()).isEqualTo(1);
+        assertThat(usefulCounters.pending(reviewId)).isZero();
+        assertThat(usefulCounters.isHot(reviewId)).isFalse();
+    }
+
+    private long createReview() {
+        jdbc.update("INSERT INTO reviews (content, is_positive, user_id, film_id) VALUES ('Отзыв', TRUE, 1, 1)",
+                Map.of());
+        return jdbc.queryForObject("SELECT MAX(review_id) FROM reviews", Map.of(), Long.class);
+    }
+
+    private ReviewVote vote(long reviewId, long userId, ReviewVote.Type type) {
+        return new ReviewVote(reviewId, userId, type);
+    }
+
+    private int useful() {
+        return useful(reviewId);
+    }
+
+    private int useful(long reviewId) {
+        return jdbc.queryForObject("SELECT useful FROM reviews WHERE review_id = :reviewId",
+                Map.of("reviewId", reviewId), Integer.class);
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.JdbcUserRepository;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Две локальные базы H2: основная (spring.datasource) и «реплика», в которой есть пользователь,
+ * отсутствующий в основной. По нему видно, куда ушло чтение.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({
+        RoutingDataSourceConfiguration.class,
+        JdbcUserRepository.class,
+        UserRowMapper.class
+})
+@TestPropertySource(properties = {
+        // тест удаляет всех пользователей и фиксирует это, поэтому основная база своя, а не общая testdb
+        "spring.datasource.url=jdbc:h2:mem:routing-primary",
+        "filmorate.datasource.replica.url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "filmorate.datasource.replica.lag-query=SELECT seconds FROM replica_lag",
+        "filmorate.datasource.replica.max-lag=2s",
+        "filmorate.datasource.replica.lag-check-interval=3600000",
+        "filmorate.reviews.hot.fold-interval=3600000"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ReadWriteRoutingIntegrationTest {
+    private static final String REPLICA_LOGIN = "replica_only";
+
+    @Autowired
+    private JdbcUserRepository userRepository;
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private HikariDataSource replicaDataSource;
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+    @Autowired
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    public void setUp() {
+        Flyway.configure().dataSource(replicaDataSource).load().migrate();
+        replica = new JdbcTemplate(replicaDataSource);
+        replica.update("CREATE TABLE IF NOT EXISTS replica_lag (seconds INT)");
+        replica.update("DELETE FROM replica_lag");
+        replica.update("INSERT INTO replica_lag VALUES (0)");
+        replica.update("DELETE FROM users WHERE login = ?", REPLICA_LOGIN);
+        replica.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, DATE '1990-01-01')",
+                REPLICA_LOGIN + "@example.com", REPLICA_LOGIN, "Replica");
+        lagMonitor.check();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    public void testReadOnlyPathsGoToReplica() {
+        assertThat(userRepository.findAllUsers()).extracting(User::getLogin).contains(REPLICA_LOGIN);
+        assertThat(routingDataSource.stats())
+                .filteredOn(stats -> stats.route() == DataSourceRoute.REPLICA)
+                .singleElement()
+                .satisfies(stats -> {
+                    assertThat(stats.pool()).isEqualTo("replica");
+                    assertThat(stats.routed()).isPositive();
+                });
+    }
+
+    @Test
+    public void testWritesAndUnannotatedReadsGoToPrimary() {
+        userRepository.deleteAllUsers();
+        User user = User.builder()
+                .email("primary@example.com")
+                .login("primary_only")
+                .name("Primary")
+                .birthday(LocalDate.of(1991, 1, 1))
+                .build();
+        Long id = userRepository.createUser(user).getId();
+
+        assertThat(userRepository.getUserById(id)).map(User::getLogin).contains("primary_only");
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM users WHERE login = 'primary_only'", Integer.class))
+                .isZero();
+    }
+
+    @Test
+    public void testPinnedRequestReadsItsWritesFromPrimary() {
+        ReadYourWrites.pin();
+
+        assertThat(userRepository.findAllUsers()).extracting(User::getLogin).doesNotContain(REPLICA_LOGIN);
+    }
+
+    @Test
+    public void testLaggingReplicaIsBypassed() {
+        replica.update("UPDATE replica_lag SET seconds = 60");
+        lagMonitor.check();
+
+        assertThat(lagMonitor.isAvailable()).isFalse();
+        assertThat(userRepository.findAllUsers()).extracting(User::getLogin).doesNotContain(REPLICA_LOGIN);
+
+        replica.update("UPDATE replica_lag SET seconds = 1");
+        lagMonitor.check();
+
+        assertThat(lagMonitor.isAvailable()).isTrue();
+        assertThat(userRepository.findAllUsers()).extracting(User::getLogin).contains(REPLICA_LOGIN);
+    }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Три шарда событий ленты в отдельных базах H2 в памяти.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({
+        ShardSet.class,
+        ShardedEventRepository.class,
+        EventRowMapper.class,
+        ReferenceDataRegistry.class
+})
+@TestPropertySource(properties = {
+        "filmorate.sharding.enabled=true",
+        "filmorate.sharding.urls=jdbc:h2:mem:events0;DB_CLOSE_DELAY=-1,"
+                + "jdbc:h2:mem:events1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:events2;DB_CLOSE_DELAY=-1",
+        "filmorate.reviews.hot.fold-interval=3600000"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ShardedEventRepositoryIntegrationTest {
+
+    @Autowired
+    private ShardSet shards;
+    @Autowired
+    private ShardedEventRepository eventRepository;
+
+    @BeforeEach
+    public void setUp() {
+        shards.scatter(shard -> shard.update("DELETE FROM event", Map.of()));
+    }
+
+    @Test
+    public void testEventIdsAreUniqueAndPointToAuthorShard() {
+        List<Event> events = new ArrayList<>();
+        for (long userId = 1; userId <= 12; userId++) {
+            eventRepository.insertEvent(userId, 100L, "LIKE", "ADD");
+            eventRepository.insertEvent(userId, 101L, "FRIEND", "REMOVE");
+            events.addAll(eventRepository.findEventsByUserId(userId, 0));
+        }
+
+        assertThat(events).hasSize(24);
+        assertThat(events).extracting(Event::getEventId).doesNotHaveDuplicates();
+        assertThat(events).allSatisfy(event ->
+                assertThat(shards.shardOfEvent(event.getEventId())).isEqualTo(shards.shardOf(event.getUserId())));
+        assertThat(eventRepository.findEventsByUserId(5L, 0)).extracting(Event::getEventType)
+                .containsExactlyInAnyOrder("LIKE", "FRIEND");
+    }
+
+    @Test
+    public void testEventSliceMergesShardsNewestFirst() {
+        for (long userId = 1; userId <= 6; userId++) {
+            eventRepository.insertEvent(userId, userId, "LIKE", "ADD");
+        }
+        List<Long> userIds = List.of(1L, 2L, 3L, 4L, 5L, 6L);
+        List<Event> all = new ArrayList<>();
+        userIds.forEach(userId -> all.addAll(eventRepository.findEventsByUserId(userId, 0)));
+        all.sort(Comparator.comparing(Event::getTimestamp).thenComparing(Event::getEventId).reversed());
+
+        List<Event> slice = eventRepository.findEventSlice(userIds, Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, 4);
+        Event cursor = slice.get(3);
+
+        assertThat(all).hasSize(6);
+        assertThat(slice).containsExactlyElementsOf(all.subList(0, 4));
+        assertThat(eventRepository.findEventSlice(userIds, Long.MIN_VALUE, cursor.getTimestamp(),
+                cursor.getEventId(), 4)).containsExactlyElementsOf(all.subList(4, 6));
+    }
+
+    @Test
+    public void testCompactionPassesMergeAllShards() {
+        for (long userId = 1; userId <= 9; userId++) {
+            eventRepository.insertEvent(userId, userId, "LIKE", "ADD");
+        }
+
+        assertThat(eventRepository.findUserIdsWithEventsBefore(2, Long.MAX_VALUE, 4)).containsExactly(3L, 4L, 5L, 6L);
+
+        List<Event> likes = eventRepository.findEventsByUserIdsBefore(List.of(6L, 1L, 4L), Long.MAX_VALUE,
+                Set.of("LIKE"));
+        assertThat(likes).extracting(Event::getUserId).containsExactly(1L, 4L, 6L);
+
+        assertThat(eventRepository.deleteEventsByIds(likes.stream().map(Event::getEventId).toList())).isEqualTo(3);
+        assertThat(eventRepository.findUserIdsWithEventsBefore(0, Long.MAX_VALUE, 10))
+                .containsExactly(2L, 3L, 5L, 7L, 8L, 9L);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Три шарда друзей в отдельных базах H2 в памяти; профили пользователей лежат в основной тестовой базе.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({
+        ShardSet.class,
+        ShardedFriendRepository.class,
+        UserRowMapper.class
+})
+@TestPropertySource(properties = {
+        "filmorate.sharding.enabled=true",
+        "filmorate.sharding.urls=jdbc:h2:mem:friends0;DB_CLOSE_DELAY=-1,"
+                + "jdbc:h2:mem:friends1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:friends2;DB_CLOSE_DELAY=-1",
+        "filmorate.reviews.hot.fold-interval=3600000"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ShardedFriendRepositoryIntegrationTest {
+
+    @Autowired
+    private ShardSet shards;
+    @Autowired
+    private ShardedFriendRepository friendRepository;
+
+    @BeforeEach
+    public void setUp() {
+        shards.scatter(shard -> shard.update("DELETE FROM friends", Map.of()));
+    }
+
+    @Test
+    public void testFriendshipIsStoredOnlyInUserShard() {
+        friendRepository.addFriend(1L, 2L);
+
+        int home = shards.shardOf(1L);
+        for (int i = 0; i < shards.size(); i++) {
+            Integer rows = shards.shard(i).getJdbcOperations()
+                    .queryForObject("SELECT COUNT(*) FROM friends WHERE user_id = 1", Integer.class);
+            assertThat(rows).isEqualTo(i == home ? 1 : 0);
+        }
+        assertThat(friendRepository.getFriendIds(1L)).containsExactly(2L);
+        assertThat(friendRepository.getFriends(1L)).extracting(User::getLogin).containsExactly("user2");
+        assertThat(friendRepository.hasFriendship(1L, 2L)).isTrue();
+        assertThat(friendRepository.hasFriendship(2L, 1L)).isFalse();
+
+        friendRepository.removeFriend(1L, 2L);
+        assertThat(friendRepository.getFriendIds(1L)).isEmpty();
+    }
+
+    @Test
+    public void testCommonFriendsAreIntersectedAcrossShards() {
+        friendRepository.addFriend(1L, 3L);
+        friendRepository.addFriend(1L, 2L);
+        friendRepository.addFriend(2L, 3L);
+
+        assertThat(friendRepository.getCommonFriends(1L, 2L)).extracting(User::getId).containsExactly(3L);
+    }
+
+    @Test
+    public void testBulkFriendshipsAndDeleteReachEveryShard() {
+        friendRepository.addFriendships(new long[]{1, 2, 3}, new long[]{3, 3, 1}, new boolean[]{true, true, true});
+
+        assertThat(friendRepository.getFriendIds(2L)).containsExactly(3L);
+
+        friendRepository.deleteAllFriendsByUserId(3L);
+
+        assertThat(friendRepository.getFriendIds(1L)).isEmpty();
+        assertThat(friendRepository.getFriendIds(2L)).isEmpty();
+        assertThat(friendRepository.getFriendIds(3L)).isEmpty();
+    }
+}
@@ -0,0 +1,196 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.mappers.MpaRatingRowMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.JdbcFilmRepository;
+import ru.yandex.practicum.filmorate.storage.genre.JdbcGenreRepository;
+import ru.yandex.practicum.filmorate.storage.mpa.JdbcMpaRepository;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Три шарда лайков в отдельных базах H2 в памяти; фильмы лежат в основной тестовой базе.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({
+        ShardSet.class,
+        ShardedLikeRepository.class,
+        ShardedFilmRepository.class,
+        JdbcFilmRepository.class,
+        FilmRowMapper.class,
+        JdbcGenreRepository.class,
+        GenreRowMapper.class,
+        JdbcMpaRepository.class,
+        MpaRatingRowMapper.class,
+        ReferenceDataRegistry.class
+})
+@TestPropertySource(properties = {
+        "filmorate.sharding.enabled=true",
+        "filmorate.sharding.urls=jdbc:h2:mem:likes0;DB_CLOSE_DELAY=-1,"
+                + "jdbc:h2:mem:likes1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:likes2;DB_CLOSE_DELAY=-1",
+        "filmorate.reviews.hot.fold-interval=3600000"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ShardedLikeRepositoryIntegrationTest {
+    private static final int FILMS = 40;
+
+    @Autowired
+    private ShardSet shards;
+    @Autowired
+    private ShardedLikeRepository likeRepository;
+    @Autowired
+    private ShardedFilmRepository filmRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        likeRepository.deleteAllLikes();
+        for (long filmId = 3; filmId <= FILMS; filmId++) {
+            jdbcTemplate.update("""
+                    MERGE INTO films (film_id, name, description, release_date, duration, mpa_id)
+                    VALUES (?, ?, 'Description', DATE '2000-01-01', 100, 1)""", filmId, "Film " + filmId);
+        }
+    }
+
+    @Test
+    public void testLikeIsStoredOnlyInUserShard() {
+        likeRepository.addLike(7L, 42L);
+
+        int home = shards.shardOf(42L);
+        for (int i = 0; i < shards.size(); i++) {
+            Integer rows = shards.shard(i).getJdbcOperations()
+                    .queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = 7", Integer.class);
+            assertThat(rows).isEqualTo(i == home ? 1 : 0);
+        }
+        assertThat(likeRepository.findFilmIdsByUserId(42L)).containsExactly(7L);
+
+        likeRepository.removeLike(7L, 42L);
+        assertThat(likeRepository.findFilmIdsByUserId(42L)).isEmpty();
+    }
+
+    @Test
+    public void testTopFilmsMatchesCountingAllLikes() {
+        Random random = new Random(45);
+        Map<Long, Long> expected = new HashMap<>();
+        for (long userId = 1; userId <= 300; userId++) {
+            for (int i = 0; i < 6; i++) {
+                // перекос к первым фильмам, чтобы у шардов были разные локальные лидеры
+                long filmId = 1 + (long) (FILMS * Math.pow(random.nextDouble(), 2));
+                if (likeRepository.findFilmIdsByUserId(userId).add(filmId)) {
+                    likeRepository.addLike(filmId, userId);
+                    expected.merge(filmId, 1L, Long::sum);
+                }
+            }
+        }
+
+        List<Map.Entry<Long, Long>> bruteForce = expected.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(10)
+                .toList();
+
+        assertThat(likeRepository.topFilms(10)).containsExactlyElementsOf(bruteForce);
+    }
+
+    @Test
+    public void testTopFilmsAmongCandidatesMatchesCountingTheirLikes() {
+        Random random = new Random(46);
+        Map<Long, Long> expected = new HashMap<>();
+        for (long userId = 1; userId <= 300; userId++) {
+            for (int i = 0; i < 6; i++) {
+                long filmId = 1 + (long) (FILMS * Math.pow(random.nextDouble(), 2));
+                if (likeRepository.findFilmIdsByUserId(userId).add(filmId)) {
+                    likeRepository.addLike(filmId, userId);
+                    if (filmId % 3 == 0) {
+                        expected.merge(filmId, 1L, Long::sum);
+                    }
+                }
+            }
+        }
+        List<Long> candidates = LongStream.rangeClosed(1, FILMS).filter(id -> id % 3 == 0).boxed().toList();
+
+        List<Map.Entry<Long, Long>> bruteForce = expected.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(5)
+                .toList();
+
+        assertThat(likeRepository.topFilms(5, candidates)).containsExactlyElementsOf(bruteForce);
+    }
+
+    @Test
+    public void testFilteredPopularFilmsRankCandidatesAndPadWithoutLikes() {
+        jdbcTemplate.update("UPDATE films SET release_date = DATE '1995-06-01' WHERE film_id IN (20, 21, 22, 23)");
+        for (long userId = 1; userId <= 4; userId++) {
+            likeRepository.addLike(22L, userId);
+        }
+        likeRepository.addLike(21L, 1L);
+        // популярный фильм вне фильтра в выборку не попадает
+        for (long userId = 1; userId <= 6; userId++) {
+            likeRepository.addLike(9L, userId);
+        }
+
+        List<Long> popular = filmRepository.getPopularFilmsByYears(3, 1995, 1995).stream()
+                .map(Film::getId)
+                .toList();
+
+        assertThat(popular).containsExactly(22L, 21L, 20L);
+    }
+
+    @Test
+    public void testPopularFilmsAreGatheredFromAllShardsAndPadded() {
+        for (long userId = 1; userId <= 5; userId++) {
+            likeRepository.addLike(9L, userId);
+        }
+        likeRepository.addLike(4L, 1L);
+        likeRepository.addLike(4L, 2L);
+        likeRepository.addLike(12L, 3L);
+
+        List<Long> popular = filmRepository.getPopularFilms(5).stream().map(Film::getId).toList();
+
+        assertThat(popular).containsExactly(9L, 4L, 12L, 1L, 2L);
+    }
+
+    @Test
+    public void testCommonAndRecommendedFilms() {
+        likeRepository.addLike(5L, 1L);
+        likeRepository.addLike(6L, 1L);
+        likeRepository.addLike(7L, 1L);
+        likeRepository.addLike(6L, 2L);
+        likeRepository.addLike(7L, 2L);
+        likeRepository.addLike(8L, 2L);
+        likeRepository.addLike(7L, 3L);
+
+        assertThat(filmRepository.getCommonFilms(1L, 2L).stream().map(Film::getId))
+                .containsExactly(7L, 6L);
+        // у пользователя 3 пересечение меньше, чем у 2, но ему нечего порекомендовать
+        assertThat(filmRepository.getRecommendedFilms(1L)).isEmpty();
+        assertThat(filmRepository.getRecommendedFilms(3L).stream().map(Film::getId))
+                .isSortedAccordingTo(Comparator.naturalOrder())
+                .containsExactly(5L, 6L);
+    }
+}
@@ -0,0 +1,185 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.storage.existence.ExistenceIndex;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Снимок снимается с тестовой базы в памяти, после чего база портится и восстанавливается из файла.
+ * Тест фиксирует удаления и правку flyway_schema_history, поэтому база своя, а не общая testdb:
+ * она закрывается вместе с контекстом после каждого теста.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({
+        DatasetSnapshots.class,
+        ReferenceDataRegistry.class,
+        ExistenceIndex.class
+})
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:snapshots")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class DatasetSnapshotsIntegrationTest {
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    private DatasetSnapshots snapshots;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcOperations jdbc;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ReferenceDataRegistry referenceData;
+    @Autowired
+    private ExistenceIndex existenceIndex;
+
+    @DynamicPropertySource
+    static void snapshotProperties(DynamicPropertyRegistry registry) {
+        registry.add("filmorate.snapshot.enabled", () -> "true");
+        registry.add("filmorate.snapshot.file", () -> directory.resolve("filmorate.snapshot").toString());
+        registry.add("filmorate.snapshot.restore-on-startup", () -> "false");
+        registry.add("filmorate.snapshot.restore.batch-size", () -> "2");
+        registry.add("filmorate.reviews.hot.fold-interval", () -> "3600000");
+    }
+
+    @Test
+    public void testRestoreReturnsAllTablesToSnapshotState() {
+        jdbcTemplate.update("INSERT INTO reviews (content, is_positive, user_id, film_id, useful) "
+                + "VALUES ('Отзыв с \"кавычками\"', TRUE, 1, 1, 3)");
+        long likes = count("likes");
+        long users = count("users");
+
+        DatasetSnapshots.SnapshotFile snapshot = snapshots.snapshot();
+        assertThat(Files.exists(Path.of(snapshot.path()))).isTrue();
+        assertThat(snapshot.tables()).containsEntry("LIKES", likes).containsEntry("USERS", users)
+                .doesNotContainKey("flyway_schema_history");
+
+        jdbcTemplate.update("DELETE FROM likes");
+        jdbcTemplate.update("UPDATE films SET name = 'Changed', release_date = DATE '1999-01-01' WHERE film_id = 1");
+        jdbcTemplate.update("INSERT INTO users (user_id, email, login, name, birthday) "
+                + "VALUES (50, 'late@example.com', 'late', 'Late', DATE '2000-01-01')");
+
+        DatasetSnapshots.RestoreResult result = snapshots.restore(Path.of(snapshot.path()));
+
+        assertThat(result.restored()).isTrue();
+        assertThat(count("likes")).isEqualTo(likes);
+        assertThat(count("users")).isEqualTo(users);
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM films WHERE film_id = 1", String.class))
+                .isEqualTo("Test Film 1");
+        assertThat(jdbcTemplate.queryForObject("SELECT release_year FROM films WHERE film_id = 1", Integer.class))
+                .isEqualTo(2020);
+        assertThat(jdbcTemplate.queryForObject("SELECT content FROM reviews", String.class))
+                .isEqualTo("Отзыв с \"кавычками\"");
+        // индексы построены заново, а генератор ID продолжает после восстановленных строк
+        assertThat(jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM information_schema.indexes
+                WHERE index_name IN ('IDX_LIKES_USER_ID', 'IDX_FILMS_RELEASE_YEAR')""", Integer.class)).isEqualTo(2);
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) "
+                + "VALUES ('next@example.com', 'next', 'Next', DATE '2000-01-01')");
+        assertThat(jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'next'", Long.class))
+                .isEqualTo(jdbcTemplate.queryForObject("SELECT MAX(user_id) FROM users WHERE login <> 'next'",
+                        Long.class) + 1);
+    }
+
+    @Test
+    public void testSnapshotOfAnotherSchemaVersionIsNotRestored() {
+        DatasetSnapshots.SnapshotFile snapshot = snapshots.snapshot();
+        jdbcTemplate.update("DELETE FROM likes");
+        jdbcTemplate.update("""
+                UPDATE "flyway_schema_history" SET "version" = '999'
+                WHERE "installed_rank" = (SELECT MAX("installed_rank") FROM "flyway_schema_history")""");
+
+        DatasetSnapshots.RestoreResult result = snapshots.restore(Path.of(snapshot.path()));
+
+        assertThat(result.restored()).isFalse();
+        assertThat(count("likes")).isZero();
+    }
+
+    @Test
+    public void testShutdownSnapshotWaitsForApplicationReady() throws IOException {
+        // отдельный экземпляр: контекст теста уже получил ApplicationReadyEvent
+        DatasetSnapshots starting = new DatasetSnapshots(jdbc, dataSource, transactionManager, referenceData,
+                existenceIndex, directory.resolve("starting.snapshot"), false, true, 2, 1);
+        Path file = Path.of(starting.snapshot().path());
+        byte[] good = Files.readAllBytes(file);
+        jdbcTemplate.update("DELETE FROM likes");
+
+        starting.snapshotOnShutdown();
+        assertThat(Files.readAllBytes(file)).isEqualTo(good);
+
+        starting.markReady();
+        starting.snapshotOnShutdown();
+        assertThat(Files.readAllBytes(file)).isNotEqualTo(good);
+    }
+
+    @Test
+    public void testFailedRestoreRebuildsIndexesAndKeepsSnapshot() throws IOException {
+        Path file = Path.of(snapshots.snapshot().path());
+        byte[] good = Files.readAllBytes(file);
+        Path broken = directory.resolve("broken.snapshot");
+        copyWithBrokenEntry(file, broken, "tables/LIKES");
+
+        assertThatThrownBy(() -> snapshots.restore(broken)).isInstanceOf(InternalServerException.class);
+
+        assertThat(jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM information_schema.indexes
+                WHERE index_name IN ('IDX_LIKES_USER_ID', 'IDX_FILMS_RELEASE_YEAR')""", Integer.class)).isEqualTo(2);
+        snapshots.scheduledSnapshot();
+        assertThat(Files.readAllBytes(file)).isEqualTo(good);
+    }
+
+    private static void copyWithBrokenEntry(Path source, Path target, String brokenEntry) throws IOException {
+        try (ZipFile zip = new ZipFile(source.toFile());
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(target))) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                if (entry.getName().equals(brokenEntry)) {
+                    // заголовок с одним столбцом неизвестного типа
+                    out.write(new byte[]{0, 0, 0, 1, 0, 1, 'x', 127});
+                } else {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        in.transferTo(out);
+                    }
+                }
+                out.closeEntry();
+            }
+        }
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+}
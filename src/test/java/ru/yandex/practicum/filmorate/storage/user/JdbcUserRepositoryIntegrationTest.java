@@ -7,6 +7,8 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.VersionConflictException;
 import ru.yandex.practicum.filmorate.mappers.UserRowMapper;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.friend.FriendRepository;
@@ -17,6 +19,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -86,6 +89,30 @@ public class JdbcUserRepositoryIntegrationTest {
         assertThat(result.getLogin()).isEqualTo("updatedLogin");
         assertThat(result.getName()).isEqualTo("Updated Name");
         assertThat(result.getBirthday()).isEqualTo(LocalDate.of(1995, 5, 5));
+        assertThat(result.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testUpdateUserWithStaleVersionIsRejected() {
+        User created = userRepository.createUser(createUniqueUser("versioned"));
+        assertThat(created.getVersion()).isZero();
+
+        User first = created.toBuilder().name("First").version(0L).build();
+        assertThat(userRepository.updateUser(first).getVersion()).isEqualTo(1L);
+
+        User second = created.toBuilder().name("Second").version(0L).build();
+        assertThatThrownBy(() -> userRepository.updateUser(second))
+                .isInstanceOf(VersionConflictException.class);
+        assertThat(userRepository.getUserById(created.getId())).get()
+                .extracting(User::getName, User::getVersion)
+                .containsExactly("First", 1L);
+    }
+
+    @Test
+    public void testUpdateNonExistentUser() {
+        User missing = createUniqueUser("missing").toBuilder().id(999L).version(0L).build();
+        assertThatThrownBy(() -> userRepository.updateUser(missing))
+                .isInstanceOf(NotFoundException.class);
     }
 
     @Test
@@ -45,4 +45,15 @@ MERGE INTO film_genre (film_id, genre_id) VALUES
 -- Тестовые данные для режиссера
 MERGE INTO directors (director_id, name) VALUES
 (1, 'Director One'),
-(2, 'Director Two');
\ No newline at end of file
+(2, 'Director Two');
+
+-- Типы событий и операции ленты
+MERGE INTO event_type (type_id, name) VALUES
+(1, 'LIKE'),
+(2, 'REVIEW'),
+(3, 'FRIEND');
+
+MERGE INTO operation (operation_id, name) VALUES
+(1, 'REMOVE'),
+(2, 'ADD'),
+(3, 'UPDATE');